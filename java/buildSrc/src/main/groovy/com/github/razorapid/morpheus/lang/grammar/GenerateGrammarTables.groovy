@@ -0,0 +1,51 @@
+package com.github.razorapid.morpheus.lang.grammar
+
+import org.gradle.api.DefaultTask
+import org.gradle.api.file.DirectoryProperty
+import org.gradle.api.file.RegularFileProperty
+import org.gradle.api.provider.Property
+import org.gradle.api.tasks.CacheableTask
+import org.gradle.api.tasks.Input
+import org.gradle.api.tasks.InputFile
+import org.gradle.api.tasks.OutputDirectory
+import org.gradle.api.tasks.PathSensitive
+import org.gradle.api.tasks.PathSensitivity
+import org.gradle.api.tasks.TaskAction
+
+/**
+ * Compiles the xbnf grammar into a Java class with parsing tables of its production rules
+ *
+ * @see GrammarTablesWriter
+ */
+@CacheableTask
+abstract class GenerateGrammarTables extends DefaultTask {
+
+    @InputFile
+    @PathSensitive(PathSensitivity.NONE)
+    abstract RegularFileProperty getGrammar()
+
+    @Input
+    abstract Property<String> getPackageName()
+
+    @Input
+    abstract Property<String> getClassName()
+
+    @OutputDirectory
+    abstract DirectoryProperty getOutputDirectory()
+
+    GenerateGrammarTables() {
+        className.convention('GrammarTables')
+    }
+
+    @TaskAction
+    void generate() {
+        def grammar = XbnfGrammar.parse(getGrammar().get().asFile.text)
+        def source = new GrammarTablesWriter(grammar, packageName.get(), className.get()).write()
+
+        def outputDir = outputDirectory.get().asFile
+        outputDir.deleteDir()
+        def packageDir = new File(outputDir, packageName.get().replace('.', '/'))
+        packageDir.mkdirs()
+        new File(packageDir, "${className.get()}.java").text = source
+    }
+}
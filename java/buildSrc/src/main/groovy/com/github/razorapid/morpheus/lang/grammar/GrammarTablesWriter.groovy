@@ -0,0 +1,289 @@
+package com.github.razorapid.morpheus.lang.grammar
+
+import groovy.transform.CompileStatic
+
+import com.github.razorapid.morpheus.lang.grammar.XbnfGrammar.Alternative
+import com.github.razorapid.morpheus.lang.grammar.XbnfGrammar.Element
+import com.github.razorapid.morpheus.lang.grammar.XbnfGrammar.OperatorPrecedence
+import com.github.razorapid.morpheus.lang.grammar.XbnfGrammar.Rule
+
+/**
+ * Writes the parsing tables of the grammar as a Java class with a nested class for every production rule:
+ *
+ * - FIRST - tokens that can start the rule,
+ * - PREDICT - alternative of the rule predicted by the first token (LL(1) prediction),
+ * - POSTFIX - left recursive alternative that continues the rule, predicted by the token after it,
+ * - NODE_TYPES and NAMES - syntax tree node types and names of the labelled alternatives,
+ * - PRECEDENCE - precedence levels of the binary operator alternatives, from the operator precedence table,
+ * - GROUP_n - tokens that can start the n-th group (parenthesized alternatives) of the rule, in the grammar order.
+ *
+ * Tables are indexed by the token type ordinal, alternatives are numbered from 1 in the grammar order, 0 means no alternative.
+ * When more than one alternative can start with the same token, the earlier one is predicted,
+ * which is how the hand-written parser orders its alternatives too.
+ */
+@CompileStatic
+class GrammarTablesWriter {
+
+    /**
+     * Labels of the grammar alternatives whose syntax tree nodes are named differently than the label
+     */
+    private static final Map<String, String> IRREGULAR_NAMES = [
+        greaterOrEqualExpression: 'greaterThanOrEqualExpression',
+        moduloDivisionExpression: 'moduloExpression'
+    ]
+
+    /**
+     * Names of the syntax tree nodes whose node type is named differently than the convention
+     */
+    private static final Map<String, String> IRREGULAR_NODE_TYPES = [
+        lessThanOrEqualExpression: 'LESS_THAN_OR_EQUALS_EXPRESSION'
+    ]
+
+    private final XbnfGrammar grammar
+    private final String packageName
+    private final String className
+    private final StringBuilder out = new StringBuilder()
+
+    GrammarTablesWriter(XbnfGrammar grammar, String packageName, String className) {
+        this.grammar = grammar
+        this.packageName = packageName
+        this.className = className
+    }
+
+    String write() {
+        line("package ${packageName};")
+        line()
+        line('import com.github.razorapid.morpheus.lang.TokenType;')
+        line('import com.github.razorapid.morpheus.lang.cst.ConcreteSyntaxTree.NodeType;')
+        line()
+        line('import static com.github.razorapid.morpheus.lang.TokenType.*;')
+        line()
+        line('/**')
+        line(' * Parsing tables of the morpheus.xbnf grammar.')
+        line(' *')
+        line(' * Generated by the generateGrammarTables task, don\'t edit it, change the grammar instead.')
+        line(' * The ' + grammar.startRule + ' rule only frames the statements with marker tokens, so it has no tables.')
+        line(' */')
+        line("final class ${className} {")
+        line("    private static final int TOKEN_TYPES = TokenType.values().length;")
+        line()
+        line("    private ${className}() {")
+        line('    }')
+
+        grammar.rules.values().findAll { it.name != grammar.startRule }.each { writeRule(it) }
+
+        line()
+        line('    private static boolean[] tokens(TokenType... types) {')
+        line('        var tokens = new boolean[TOKEN_TYPES];')
+        line('        for (var type : types) {')
+        line('            tokens[type.ordinal()] = true;')
+        line('        }')
+        line('        return tokens;')
+        line('    }')
+        line('}')
+        out.toString()
+    }
+
+    private void writeRule(Rule rule) {
+        def alternatives = rule.alternatives
+        def choice = alternatives.size() > 1
+        def names = alternativeNames(rule)
+
+        line()
+        line('    /**')
+        line('     * <pre>')
+        line("     * ${rule.name}")
+        alternatives.eachWithIndex { Alternative alternative, int i ->
+            line("     *  ${i == 0 ? ':' : '|'} ${escape(format(alternative))}")
+        }
+        line('     * </pre>')
+        def conflicts = choice ? conflicts(rule) : [:]
+        if (!conflicts.isEmpty()) {
+            line('     *')
+            line('     * Alternatives starting with the same token, the first one is predicted:')
+            line('     * <ul>')
+            conflicts.each { token, alternativeNames ->
+                line("     * <li>${token}: ${alternativeNames.join(', ')}</li>")
+            }
+            line('     * </ul>')
+        }
+        line('     */')
+        line("    static final class ${className(rule.name)} {")
+
+        if (choice) {
+            names.eachWithIndex { String name, int i ->
+                line("        static final int ${name} = ${i + 1};")
+            }
+            line()
+        }
+
+        line("        static final boolean[] FIRST = tokens(${grammar.first(rule.name).join(', ')});")
+
+        if (choice) {
+            writePredictions(rule, names)
+        }
+        if (choice && alternatives.any { it.label != null }) {
+            writeLabels(rule, names)
+        }
+        if (choice && alternatives.any { precedence(rule, it) != null }) {
+            writePrecedence(rule, names)
+        }
+        writeGroups(rule)
+
+        line()
+        line("        private ${className(rule.name)}() {")
+        line('        }')
+        line('    }')
+    }
+
+    private void writePredictions(Rule rule, List<String> names) {
+        def predict = new LinkedHashMap<String, String>()
+        def postfix = new LinkedHashMap<String, String>()
+        rule.alternatives.eachWithIndex { Alternative alternative, int i ->
+            if (grammar.isLeftRecursive(rule, alternative)) {
+                grammar.postfixFirst(rule, alternative).each { postfix.putIfAbsent(it, names[i]) }
+            } else {
+                grammar.first(alternative.elements).each { predict.putIfAbsent(it, names[i]) }
+            }
+        }
+
+        if (!predict.isEmpty()) {
+            writeTable('PREDICT', predict)
+        }
+        if (!postfix.isEmpty()) {
+            writeTable('POSTFIX', postfix)
+        }
+    }
+
+    private void writeTable(String name, Map<String, String> entries) {
+        line("        static final byte[] ${name} = new byte[TOKEN_TYPES];")
+        line('        static {')
+        entries.each { token, alternative ->
+            line("            ${name}[${token}.ordinal()] = ${alternative};")
+        }
+        line('        }')
+    }
+
+    private void writeLabels(Rule rule, List<String> names) {
+        line("        static final NodeType[] NODE_TYPES = new NodeType[${names.size() + 1}];")
+        line("        static final String[] NAMES = new String[${names.size() + 1}];")
+        line('        static {')
+        rule.alternatives.eachWithIndex { Alternative alternative, int i ->
+            if (alternative.label != null) {
+                def name = nodeName(alternative.label)
+                line("            NODE_TYPES[${names[i]}] = NodeType.${nodeType(name)};")
+                line("            NAMES[${names[i]}] = \"${name}\";")
+            }
+        }
+        line('        }')
+    }
+
+    private void writePrecedence(Rule rule, List<String> names) {
+        line("        static final int[] PRECEDENCE = new int[${names.size() + 1}];")
+        line('        static {')
+        rule.alternatives.eachWithIndex { Alternative alternative, int i ->
+            def precedence = precedence(rule, alternative)
+            if (precedence != null) {
+                line("            PRECEDENCE[${names[i]}] = ${precedence.level};")
+            }
+        }
+        line('        }')
+    }
+
+    private void writeGroups(Rule rule) {
+        def groups = rule.alternatives.collectMany { alternative -> alternative.elements.findAll { it.group != null } }
+        if (groups.isEmpty()) {
+            return
+        }
+        line()
+        groups.eachWithIndex { Element group, int i ->
+            line("        static final boolean[] GROUP_${i + 1} = tokens(${grammar.first([group]).join(', ')});")
+        }
+    }
+
+    /**
+     * Binary operator alternative has the shape: operand TOKEN operand
+     */
+    private OperatorPrecedence precedence(Rule rule, Alternative alternative) {
+        def elements = alternative.elements
+        if (elements.size() != 3 || !elements[1].isToken() || !grammar.isLeftRecursive(rule, alternative)) {
+            return null
+        }
+        grammar.binaryPrecedence(elements[1].name)
+    }
+
+    private Map<String, List<String>> conflicts(Rule rule) {
+        def names = alternativeNames(rule)
+        def alternativesByToken = new LinkedHashMap<String, List<String>>()
+        rule.alternatives.eachWithIndex { Alternative alternative, int i ->
+            if (!grammar.isLeftRecursive(rule, alternative)) {
+                grammar.first(alternative.elements).each {
+                    alternativesByToken.computeIfAbsent(it) { [] as List<String> } << names[i]
+                }
+            }
+        }
+        alternativesByToken.findAll { it.value.size() > 1 }
+    }
+
+    /**
+     * Alternatives are named by their label, by the only rule or token they consist of,
+     * by the operator token of an operand TOKEN operand alternative, or by their position
+     */
+    private static List<String> alternativeNames(Rule rule) {
+        def names = [] as List<String>
+        rule.alternatives.eachWithIndex { Alternative alternative, int i ->
+            def elements = alternative.elements
+            String name
+            if (alternative.label != null) {
+                name = constantName(alternative.label)
+            } else if (elements.size() == 1 && elements[0].name != null && elements[0].quantifier == null) {
+                name = constantName(elements[0].name)
+            } else if (elements.size() == 3 && elements[1].isToken() && elements[0].isRule() && elements[2].isRule()) {
+                name = constantName(elements[1].name)
+            } else {
+                name = "ALTERNATIVE_${i + 1}"
+            }
+            names << (name in names ? "${name}_${i + 1}".toString() : name)
+        }
+        names
+    }
+
+    private static String nodeName(String label) {
+        IRREGULAR_NAMES[label] ?: label
+    }
+
+    private static String nodeType(String name) {
+        IRREGULAR_NODE_TYPES[name] ?: constantName(name)
+    }
+
+    private static String constantName(String name) {
+        if (name.startsWith('TOKEN_')) {
+            return name.substring('TOKEN_'.length())
+        }
+        name.replaceAll(/([a-z0-9])([A-Z])/, '$1_$2').toUpperCase()
+    }
+
+    private static String className(String ruleName) {
+        ruleName.substring(0, 1).toUpperCase() + ruleName.substring(1)
+    }
+
+    private static String format(Alternative alternative) {
+        def text = alternative.elements.collect { format(it) }.join(' ')
+        alternative.label != null ? "${text} #${alternative.label}" : text
+    }
+
+    private static String format(Element element) {
+        def text = element.group != null
+            ? '(' + element.group.collect { format(it) }.join(' | ') + ')'
+            : element.name
+        text + (element.quantifier ?: '')
+    }
+
+    private static String escape(String text) {
+        text.replace('&', '&amp;').replace('<', '&lt;').replace('>', '&gt;').replace('*/', '*&#47;')
+    }
+
+    private void line(String text = '') {
+        out.append(text).append('\n')
+    }
+}
@@ -0,0 +1,399 @@
+package com.github.razorapid.morpheus.lang.grammar
+
+import groovy.transform.Canonical
+import groovy.transform.CompileStatic
+
+/**
+ * Production rules of the xbnf grammar (see morpheus.xbnf) with the sets needed to build parsing tables.
+ *
+ * Only the parser rules (camelCase) are read as rules, token definitions (SNAKE_CASE) are read for their literals,
+ * so the binary operators can be matched against the operator precedence table.
+ */
+@CompileStatic
+class XbnfGrammar {
+
+    @Canonical
+    static class Rule {
+        String name
+        List<Alternative> alternatives
+    }
+
+    @Canonical
+    static class Alternative {
+        List<Element> elements
+        String label
+    }
+
+    @Canonical
+    static class Element {
+        /** token or rule name, null for a group */
+        String name
+        /** alternatives of a group, null for a token or rule */
+        List<Alternative> group
+        /** null, '?', '*' or '+' */
+        String quantifier
+
+        boolean isToken() {
+            name != null && !Character.isLowerCase(name.charAt(0))
+        }
+
+        boolean isRule() {
+            name != null && Character.isLowerCase(name.charAt(0))
+        }
+
+        boolean isOptional() {
+            quantifier == '?' || quantifier == '*'
+        }
+    }
+
+    @Canonical
+    static class OperatorPrecedence {
+        String name
+        String operator
+        String type
+        String associativity
+        int level
+    }
+
+    /** start rule, it frames the statements with artificial marker tokens */
+    final String startRule
+    final Map<String, Rule> rules
+    final Map<String, String> tokenLiterals
+    final List<OperatorPrecedence> precedenceTable
+
+    private final Map<String, Boolean> nullable = [:]
+    private final Map<String, Set<String>> first = [:]
+
+    private XbnfGrammar(Map<String, Rule> rules, Map<String, String> tokenLiterals, List<OperatorPrecedence> precedenceTable) {
+        this.rules = rules
+        this.tokenLiterals = tokenLiterals
+        this.precedenceTable = precedenceTable
+        this.startRule = rules.keySet().first()
+        computeFirstSets()
+    }
+
+    static XbnfGrammar parse(String text) {
+        def tokens = tokenize(text)
+        def rules = new LinkedHashMap<String, Rule>()
+        def tokenLiterals = new LinkedHashMap<String, String>()
+
+        def definition = []
+        for (token in tokens) {
+            if (token != ';') {
+                definition << token
+                continue
+            }
+            readDefinition(definition as List<String>, rules, tokenLiterals)
+            definition = []
+        }
+        new XbnfGrammar(rules, tokenLiterals, readPrecedenceTable(text))
+    }
+
+    Set<String> first(String ruleName) {
+        first[ruleName]
+    }
+
+    /**
+     * Tokens that can start the alternative, not including tokens that only follow it when it matches nothing
+     */
+    Set<String> first(List<Element> elements) {
+        def tokens = new LinkedHashSet<String>()
+        for (element in elements) {
+            tokens.addAll(elementFirst(element))
+            if (!isNullable(element)) {
+                break
+            }
+        }
+        tokens
+    }
+
+    /**
+     * An alternative is left recursive when its leftmost element derives the rule itself at the leftmost position,
+     * i.e. alternative `expression TOKEN_PLUS expression` of the binaryExpression rule.
+     * Such alternatives can't be predicted by their first token, they continue an already parsed rule instead.
+     */
+    boolean isLeftRecursive(Rule rule, Alternative alternative) {
+        def leftmost = alternative.elements.first()
+        leftmost.isRule() && (leftmost.name == rule.name || leftCorners(leftmost.name).contains(rule.name))
+    }
+
+    /**
+     * Tokens that continue an already parsed left recursive rule with the alternative,
+     * i.e. the operator tokens for the binary expression alternatives.
+     */
+    Set<String> postfixFirst(Rule rule, Alternative alternative) {
+        collectPostfixFirst(rule, alternative, new HashSet<String>())
+    }
+
+    private Set<String> collectPostfixFirst(Rule rule, Alternative alternative, Set<String> visited) {
+        def rest = alternative.elements.drop(1)
+        if (!rest.isEmpty()) {
+            return first(rest)
+        }
+
+        def leftmost = alternative.elements.first()
+        def tokens = new LinkedHashSet<String>()
+        if (leftmost.name != rule.name && visited.add(leftmost.name)) {
+            def nested = rules[leftmost.name]
+            for (nestedAlternative in nested.alternatives) {
+                if (isLeftRecursive(rule, nestedAlternative)) {
+                    tokens.addAll(collectPostfixFirst(rule, nestedAlternative, visited))
+                }
+            }
+        }
+        tokens
+    }
+
+    OperatorPrecedence binaryPrecedence(String tokenName) {
+        def literal = tokenLiterals[tokenName]
+        precedenceTable.find { it.type == 'BINARY' && it.operator == literal }
+    }
+
+    private Set<String> leftCorners(String ruleName) {
+        def corners = new LinkedHashSet<String>()
+        def pending = new ArrayDeque<String>([ruleName])
+        while (!pending.isEmpty()) {
+            def rule = rules[pending.pop()]
+            if (rule == null) {
+                continue
+            }
+            for (alternative in rule.alternatives) {
+                for (name in leftmostRules(alternative.elements)) {
+                    if (corners.add(name)) {
+                        pending.push(name)
+                    }
+                }
+            }
+        }
+        corners
+    }
+
+    private Set<String> leftmostRules(List<Element> elements) {
+        def names = new LinkedHashSet<String>()
+        for (element in elements) {
+            if (element.isRule()) {
+                names << element.name
+            } else if (element.group != null) {
+                element.group.each { names.addAll(leftmostRules(it.elements)) }
+            }
+            if (!isNullable(element)) {
+                break
+            }
+        }
+        names
+    }
+
+    private Set<String> elementFirst(Element element) {
+        if (element.isToken()) {
+            return [tokenName(element.name)] as Set<String>
+        }
+        if (element.isRule()) {
+            return first[element.name] ?: ([] as Set<String>)
+        }
+        def tokens = new LinkedHashSet<String>()
+        element.group.each { tokens.addAll(first(it.elements)) }
+        tokens
+    }
+
+    private boolean isNullable(Element element) {
+        if (element.isOptional()) {
+            return true
+        }
+        if (element.isToken()) {
+            return false
+        }
+        if (element.isRule()) {
+            return nullable[element.name] ?: false
+        }
+        element.group.any { isNullable(it.elements) }
+    }
+
+    private boolean isNullable(List<Element> elements) {
+        elements.every { isNullable(it) }
+    }
+
+    private void computeFirstSets() {
+        rules.keySet().each {
+            nullable[it] = false
+            first[it] = new LinkedHashSet<String>()
+        }
+
+        def changed = true
+        while (changed) {
+            changed = false
+            for (rule in rules.values()) {
+                for (alternative in rule.alternatives) {
+                    if (!nullable[rule.name] && isNullable(alternative.elements)) {
+                        nullable[rule.name] = true
+                        changed = true
+                    }
+                    if (first[rule.name].addAll(first(alternative.elements))) {
+                        changed = true
+                    }
+                }
+            }
+        }
+    }
+
+    /**
+     * End of the input is named EOF in the grammar
+     */
+    private static String tokenName(String name) {
+        name == 'EOF' ? 'TOKEN_EOF' : name
+    }
+
+    private static void readDefinition(List<String> definition, Map<String, Rule> rules, Map<String, String> tokenLiterals) {
+        if (definition.isEmpty() || definition[0] == 'grammar' || definition[0] == 'fragment') {
+            return
+        }
+
+        def name = definition[0]
+        if (definition.size() < 2 || definition[1] != ':') {
+            throw new IllegalArgumentException("Expected ':' after $name")
+        }
+
+        def body = definition.drop(2)
+        if (Character.isLowerCase(name.charAt(0))) {
+            def reader = new RuleReader(name, body)
+            rules[name] = new Rule(name, reader.readAlternatives())
+            reader.expectEnd()
+        } else if (body.size() == 1 && body[0].startsWith("'")) {
+            tokenLiterals[name] = unquote(body[0])
+        }
+    }
+
+    private static List<OperatorPrecedence> readPrecedenceTable(String text) {
+        def table = []
+        def row = ~/^\s*\|\s*([A-Z ]+?)\s*\|\s*'(.*?)'\s*\|\s*([A-Z ()]+?)\s*\|\s*(LEFT|RIGHT)\s*\|\s*(\d+)\s*$/
+        text.eachLine { String line ->
+            def matcher = row.matcher(line)
+            if (matcher.matches()) {
+                table << new OperatorPrecedence(
+                    matcher.group(1),
+                    matcher.group(2),
+                    matcher.group(3),
+                    matcher.group(4),
+                    matcher.group(5) as int
+                )
+            }
+        }
+        table as List<OperatorPrecedence>
+    }
+
+    private static String unquote(String literal) {
+        literal.substring(1, literal.length() - 1).replace("\\'", "'").replace('\\\\', '\\')
+    }
+
+    /**
+     * Splits the grammar into names, quoted literals, character sets, labels and punctuation.
+     * Comments are skipped.
+     */
+    private static List<String> tokenize(String text) {
+        def tokens = []
+        def i = 0
+        while (i < text.length()) {
+            def c = text.charAt(i)
+            if (Character.isWhitespace(c)) {
+                i++
+            } else if (text.startsWith('//', i)) {
+                i = skipTo(text, '\n', i)
+            } else if (text.startsWith('/*', i)) {
+                i = skipTo(text, '*/', i)
+            } else if (c == '\'' as char || c == '[' as char) {
+                def end = literalEnd(text, i, c == '[' as char ? ']' as char : '\'' as char)
+                tokens << text.substring(i, end)
+                i = end
+            } else if (c == '#' as char || Character.isLetterOrDigit(c) || c == '_' as char) {
+                def end = i + 1
+                while (end < text.length() && (Character.isLetterOrDigit(text.charAt(end)) || text.charAt(end) == '_' as char)) {
+                    end++
+                }
+                tokens << text.substring(i, end)
+                i = end
+            } else if (text.startsWith('->', i)) {
+                tokens << '->'
+                i += 2
+            } else {
+                tokens << String.valueOf(c)
+                i++
+            }
+        }
+        tokens as List<String>
+    }
+
+    private static int skipTo(String text, String end, int from) {
+        def i = text.indexOf(end, from + 2)
+        i < 0 ? text.length() : i + end.length()
+    }
+
+    private static int literalEnd(String text, int from, char closing) {
+        def i = from + 1
+        while (i < text.length() && text.charAt(i) != closing) {
+            i += text.charAt(i) == '\\' as char ? 2 : 1
+        }
+        i + 1
+    }
+
+    @CompileStatic
+    private static class RuleReader {
+        private final String rule
+        private final List<String> tokens
+        private int pos = 0
+
+        RuleReader(String rule, List<String> tokens) {
+            this.rule = rule
+            this.tokens = tokens
+        }
+
+        List<Alternative> readAlternatives() {
+            def alternatives = [readAlternative()]
+            while (peek() == '|') {
+                pos++
+                alternatives << readAlternative()
+            }
+            alternatives
+        }
+
+        void expectEnd() {
+            if (pos < tokens.size()) {
+                throw new IllegalArgumentException("Unexpected '${peek()}' in rule $rule")
+            }
+        }
+
+        private Alternative readAlternative() {
+            def elements = []
+            String label = null
+            while (peek() != null && peek() != '|' && peek() != ')') {
+                def token = tokens[pos++]
+                if (token.startsWith('#')) {
+                    label = token.substring(1)
+                } else if (token == '(') {
+                    def group = readAlternatives()
+                    if (peek() != ')') {
+                        throw new IllegalArgumentException("Missing ')' in rule $rule")
+                    }
+                    pos++
+                    elements << new Element(null, group, readQuantifier())
+                } else if (Character.isLetter(token.charAt(0))) {
+                    elements << new Element(token, null, readQuantifier())
+                } else {
+                    throw new IllegalArgumentException("Unexpected '$token' in rule $rule")
+                }
+            }
+            new Alternative(elements as List<Element>, label)
+        }
+
+        private String readQuantifier() {
+            def quantifier = peek()
+            if (quantifier in ['?', '*', '+']) {
+                pos++
+                return quantifier
+            }
+            null
+        }
+
+        private String peek() {
+            pos < tokens.size() ? tokens[pos] : null
+        }
+    }
+}
@@ -0,0 +1,10 @@
+package com.github.razorapid.morpheus.lang.benchmark;
+
+import java.io.PrintStream;
+
+/**
+ * Benchmark run by {@link Benchmarks}, it prints its measurements
+ */
+interface Benchmark {
+    void run(PrintStream out) throws Exception;
+}
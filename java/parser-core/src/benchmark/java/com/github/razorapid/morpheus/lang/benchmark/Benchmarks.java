@@ -0,0 +1,34 @@
+package com.github.razorapid.morpheus.lang.benchmark;
+
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Runs the benchmarks named in the arguments, or all of them without arguments.
+ */
+public final class Benchmarks {
+    private static final Map<String, Benchmark> BENCHMARKS = new LinkedHashMap<>();
+    static {
+        BENCHMARKS.put("parsing", new ParsingBenchmark());
+        BENCHMARKS.put("lowering", new LoweringBenchmark());
+        BENCHMARKS.put("dispatching", new DispatchingBenchmark());
+        BENCHMARKS.put("binary-tree-files", new BinaryTreeFileBenchmark());
+        BENCHMARKS.put("startup", new StartupBenchmark());
+    }
+
+    private Benchmarks() {
+    }
+
+    public static void main(String[] args) throws Exception {
+        var names = args.length > 0 ? List.of(args) : List.copyOf(BENCHMARKS.keySet());
+        for (var name : names) {
+            var benchmark = BENCHMARKS.get(name);
+            if (benchmark == null) {
+                throw new IllegalArgumentException("Unknown benchmark " + name + ", expected one of " + BENCHMARKS.keySet());
+            }
+            System.out.println(name + ":");
+            benchmark.run(System.out);
+        }
+    }
+}
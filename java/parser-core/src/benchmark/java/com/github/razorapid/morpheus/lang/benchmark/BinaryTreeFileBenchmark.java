@@ -0,0 +1,32 @@
+package com.github.razorapid.morpheus.lang.benchmark;
+
+import com.github.razorapid.morpheus.lang.cst.ConcreteSyntaxTreeFile;
+import com.github.razorapid.morpheus.lang.lexer.Lexer;
+import com.github.razorapid.morpheus.lang.parser.Parser;
+
+import java.io.PrintStream;
+import java.nio.file.Files;
+
+import static com.github.razorapid.morpheus.lang.benchmark.Measurements.fastestNanos;
+import static com.github.razorapid.morpheus.lang.benchmark.Measurements.millis;
+
+/**
+ * Lexing and parsing of the test scripts against mapping the binary tree file of them
+ */
+final class BinaryTreeFileBenchmark implements Benchmark {
+    @Override
+    public void run(PrintStream out) throws Exception {
+        var source = Measurements.testScripts(10);
+        var file = Files.createTempFile("morpheus-lang-benchmark", ".cst");
+        try {
+            ConcreteSyntaxTreeFile.write(new Parser(source, new Lexer(source).scan()).parse(), file);
+
+            var parsing = fastestNanos(10, () -> new Parser(source, new Lexer(source).scan()).parse());
+            var mapping = fastestNanos(10, () -> ConcreteSyntaxTreeFile.map(file, source).tree());
+            out.println("  parsing: " + millis(parsing));
+            out.println("  mapping: " + millis(mapping));
+        } finally {
+            Files.deleteIfExists(file);
+        }
+    }
+}
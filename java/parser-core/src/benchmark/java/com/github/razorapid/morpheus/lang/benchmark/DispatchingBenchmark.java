@@ -0,0 +1,164 @@
+package com.github.razorapid.morpheus.lang.benchmark;
+
+import com.github.razorapid.morpheus.lang.ast.AbstractSyntaxTree;
+import com.github.razorapid.morpheus.lang.ast.AbstractSyntaxTree.Node;
+import com.github.razorapid.morpheus.lang.ast.AbstractSyntaxTreeDispatcher;
+import com.github.razorapid.morpheus.lang.cst.visitors.CstToAstLowering;
+import com.github.razorapid.morpheus.lang.lexer.Lexer;
+import com.github.razorapid.morpheus.lang.parser.Parser;
+
+import java.io.PrintStream;
+import java.util.List;
+
+import static com.github.razorapid.morpheus.lang.benchmark.Measurements.fastestNanos;
+import static com.github.razorapid.morpheus.lang.benchmark.Measurements.millis;
+
+/**
+ * Walk of the abstract syntax tree of the test scripts counting its nodes,
+ * with the children visited through {@link Node#accept} against {@link AbstractSyntaxTreeDispatcher#dispatch}
+ */
+final class DispatchingBenchmark implements Benchmark {
+    @Override
+    public void run(PrintStream out) throws Exception {
+        var source = Measurements.testScripts(400);
+        var ast = new CstToAstLowering().lower(new Parser(source, new Lexer(source).scan()).parse());
+        var accepting = new NodeCounter(true);
+        var dispatching = new NodeCounter(false);
+
+        out.println("  nodes: " + dispatching.count(ast.program()));
+        out.println("  accept: " + millis(fastestNanos(50, () -> accepting.count(ast.program()))));
+        out.println("  dispatch: " + millis(fastestNanos(50, () -> dispatching.count(ast.program()))));
+    }
+
+    private static final class NodeCounter extends AbstractSyntaxTreeDispatcher<Integer> {
+        private final boolean accepting;
+
+        NodeCounter(boolean accepting) {
+            this.accepting = accepting;
+        }
+
+        int count(Node node) {
+            if (node == null) {
+                return 0;
+            }
+            return accepting ? node.accept(this) : dispatch(node);
+        }
+
+        private int count(List<? extends Node> nodes) {
+            var count = 0;
+            for (var node : nodes) {
+                count += count(node);
+            }
+            return count;
+        }
+
+        @Override
+        public Integer visitSyntaxError(AbstractSyntaxTree.SyntaxError node) {
+            return 1;
+        }
+
+        @Override
+        public Integer visitStatements(AbstractSyntaxTree.Statements node) {
+            return 1 + count(node.statements());
+        }
+
+        @Override
+        public Integer visitThreadLabel(AbstractSyntaxTree.ThreadLabel node) {
+            return 1 + count(node.params());
+        }
+
+        @Override
+        public Integer visitSwitchCase(AbstractSyntaxTree.SwitchCase node) {
+            return 1 + count(node.params());
+        }
+
+        @Override
+        public Integer visitIfElse(AbstractSyntaxTree.IfElse node) {
+            return 1 + count(node.condition()) + count(node.ifClause()) + count(node.elseClause());
+        }
+
+        @Override
+        public Integer visitSwitch(AbstractSyntaxTree.Switch node) {
+            return 1 + count(node.condition()) + count(node.body());
+        }
+
+        @Override
+        public Integer visitWhileLoop(AbstractSyntaxTree.WhileLoop node) {
+            return 1 + count(node.condition()) + count(node.body());
+        }
+
+        @Override
+        public Integer visitForLoop(AbstractSyntaxTree.ForLoop node) {
+            return 1 + count(node.initializer()) + count(node.condition()) + count(node.advancement()) + count(node.body());
+        }
+
+        @Override
+        public Integer visitTryCatch(AbstractSyntaxTree.TryCatch node) {
+            return 1 + count(node.tryClause()) + count(node.catchClause());
+        }
+
+        @Override
+        public Integer visitNoOperation(AbstractSyntaxTree.NoOperation node) {
+            return 1;
+        }
+
+        @Override
+        public Integer visitBreak(AbstractSyntaxTree.Break node) {
+            return 1;
+        }
+
+        @Override
+        public Integer visitContinue(AbstractSyntaxTree.Continue node) {
+            return 1;
+        }
+
+        @Override
+        public Integer visitExpressionStmt(AbstractSyntaxTree.ExpressionStmt node) {
+            return 1 + count(node.expression());
+        }
+
+        @Override
+        public Integer visitFunctionCall(AbstractSyntaxTree.FunctionCall node) {
+            return 1 + count(node.listener()) + count(node.params());
+        }
+
+        @Override
+        public Integer visitParams(AbstractSyntaxTree.Params node) {
+            return 1 + count(node.param());
+        }
+
+        @Override
+        public Integer visitPostfixOp(AbstractSyntaxTree.PostfixOp node) {
+            return 1 + count(node.lhs());
+        }
+
+        @Override
+        public Integer visitPrefixOp(AbstractSyntaxTree.PrefixOp node) {
+            return 1 + count(node.rhs());
+        }
+
+        @Override
+        public Integer visitBinaryOp(AbstractSyntaxTree.BinaryOp node) {
+            return 1 + count(node.lhs()) + count(node.rhs());
+        }
+
+        @Override
+        public Integer visitLiteral(AbstractSyntaxTree.Literal node) {
+            return 1;
+        }
+
+        @Override
+        public Integer visitVectorDeclaration(AbstractSyntaxTree.VectorDeclaration node) {
+            return 1 + count(node.x()) + count(node.y()) + count(node.z());
+        }
+
+        @Override
+        public Integer visitConstArrayDeclaration(AbstractSyntaxTree.ConstArrayDeclaration node) {
+            var count = 1;
+            for (var index : node.indices()) {
+                count += count(index);
+            }
+            return count;
+        }
+    }
+}
@@ -0,0 +1,32 @@
+package com.github.razorapid.morpheus.lang.benchmark;
+
+import com.github.razorapid.morpheus.lang.cst.visitors.CstToAstLowering;
+import com.github.razorapid.morpheus.lang.cst.visitors.CstToAstVisitor;
+import com.github.razorapid.morpheus.lang.lexer.Lexer;
+import com.github.razorapid.morpheus.lang.parser.Parser;
+
+import java.io.PrintStream;
+
+import static com.github.razorapid.morpheus.lang.benchmark.Measurements.allocatedBytes;
+import static com.github.razorapid.morpheus.lang.benchmark.Measurements.fastestNanos;
+import static com.github.razorapid.morpheus.lang.benchmark.Measurements.megabytes;
+import static com.github.razorapid.morpheus.lang.benchmark.Measurements.millis;
+
+/**
+ * Lowering of the concrete syntax tree of the test scripts to the abstract syntax tree,
+ * with the visitor against the lowering
+ */
+final class LoweringBenchmark implements Benchmark {
+    @Override
+    public void run(PrintStream out) throws Exception {
+        var source = Measurements.testScripts(10);
+        var cst = new Parser(source, new Lexer(source).scan()).parse();
+        var visitor = new CstToAstVisitor();
+        var lowering = new CstToAstLowering();
+
+        out.println("  visitor: " + millis(fastestNanos(20, () -> visitor.visit(cst))) + ", "
+            + megabytes(allocatedBytes(() -> visitor.visit(cst))) + " allocated");
+        out.println("  lowering: " + millis(fastestNanos(20, () -> lowering.lower(cst))) + ", "
+            + megabytes(allocatedBytes(() -> lowering.lower(cst))) + " allocated");
+    }
+}
@@ -0,0 +1,86 @@
+package com.github.razorapid.morpheus.lang.benchmark;
+
+import com.github.razorapid.morpheus.lang.Source;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.lang.management.ManagementFactory;
+import java.nio.charset.StandardCharsets;
+
+final class Measurements {
+    private static final int SCRIPTS = 14;
+    private static final int WARMUP_RUNS = 5;
+
+    private Measurements() {
+    }
+
+    interface Task {
+        void run() throws Exception;
+    }
+
+    /**
+     * @return test scripts of the parser (scripts/0_test.scr to scripts/13_test.scr) one after another, repeated
+     */
+    static Source testScripts(int repeated) {
+        var script = new StringBuilder();
+        for (int i = 0; i < SCRIPTS; i++) {
+            script.append(resource("/parser/scripts/" + i + "_test.scr")).append('\n');
+        }
+        return new Source("benchmark.scr", script.toString().repeat(repeated));
+    }
+
+    static String resource(String name) {
+        try (var in = Measurements.class.getResourceAsStream(name)) {
+            if (in == null) {
+                throw new IllegalArgumentException("No resource " + name);
+            }
+            return new String(in.readAllBytes(), StandardCharsets.UTF_8);
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    /**
+     * @return time of the fastest of the runs, after the runs warming up the JIT
+     */
+    static long fastestNanos(int runs, Task task) throws Exception {
+        for (int i = 0; i < WARMUP_RUNS; i++) {
+            task.run();
+        }
+        var fastest = Long.MAX_VALUE;
+        for (int i = 0; i < runs; i++) {
+            var started = System.nanoTime();
+            task.run();
+            fastest = Math.min(fastest, System.nanoTime() - started);
+        }
+        return fastest;
+    }
+
+    /**
+     * @return bytes allocated by the current thread while the task runs, after a run warming up the JIT
+     */
+    static long allocatedBytes(Task task) throws Exception {
+        var threads = (com.sun.management.ThreadMXBean) ManagementFactory.getThreadMXBean();
+        for (int i = 0; i < WARMUP_RUNS; i++) {
+            task.run();
+        }
+        var allocated = threads.getCurrentThreadAllocatedBytes();
+        task.run();
+        return threads.getCurrentThreadAllocatedBytes() - allocated;
+    }
+
+    static String millis(long nanos) {
+        return String.format("%.2f ms", nanos / 1_000_000.0);
+    }
+
+    static String megabytes(long bytes) {
+        return String.format("%.2f MB", bytes / 1_000_000.0);
+    }
+
+    /**
+     * @return characters of the script processed per second, in millions
+     */
+    static String throughput(long chars, long nanos) {
+        return String.format("%.2f MB/s", chars * 1_000.0 / nanos);
+    }
+}
@@ -0,0 +1,27 @@
+package com.github.razorapid.morpheus.lang.benchmark;
+
+import com.github.razorapid.morpheus.lang.Source;
+import com.github.razorapid.morpheus.lang.cst.visitors.XmlPrinterVisitor;
+import com.github.razorapid.morpheus.lang.lexer.Lexer;
+import com.github.razorapid.morpheus.lang.parser.Parser;
+
+import java.io.Writer;
+import java.nio.file.Files;
+import java.nio.file.Path;
+
+/**
+ * Minimal program of a consumer of the library, run by {@link StartupBenchmark} in a JVM of its own:
+ * it parses the script given in the arguments and writes the xml of its tree
+ */
+public final class ParseOneFile {
+
+    private ParseOneFile() {
+    }
+
+    public static void main(String[] args) throws Exception {
+        var file = Path.of(args[0]);
+        var source = new Source(file.getFileName().toString(), Files.readString(file));
+        var cst = new Parser(source, new Lexer(source).scan()).parse();
+        new XmlPrinterVisitor(false).write(cst, Writer.nullWriter());
+    }
+}
@@ -0,0 +1,35 @@
+package com.github.razorapid.morpheus.lang.benchmark;
+
+import com.github.razorapid.morpheus.lang.Tokens;
+import com.github.razorapid.morpheus.lang.lexer.Lexer;
+import com.github.razorapid.morpheus.lang.parser.Parser;
+import com.github.razorapid.morpheus.lang.parser.TableAssistedParser;
+
+import java.io.PrintStream;
+
+import static com.github.razorapid.morpheus.lang.benchmark.Measurements.allocatedBytes;
+import static com.github.razorapid.morpheus.lang.benchmark.Measurements.fastestNanos;
+import static com.github.razorapid.morpheus.lang.benchmark.Measurements.megabytes;
+import static com.github.razorapid.morpheus.lang.benchmark.Measurements.millis;
+import static com.github.razorapid.morpheus.lang.benchmark.Measurements.throughput;
+
+/**
+ * Parsing of the tokens of the test scripts, without lexing them, by the parser and the table assisted parser
+ */
+final class ParsingBenchmark implements Benchmark {
+    @Override
+    public void run(PrintStream out) throws Exception {
+        var source = Measurements.testScripts(10);
+        var tokens = new Lexer(source).scan().list();
+
+        var parsing = fastestNanos(20, () -> new Parser(source, Tokens.of(tokens)).parse());
+        var allocated = allocatedBytes(() -> new Parser(source, Tokens.of(tokens)).parse());
+        out.println("  parsing: " + millis(parsing) + ", " + throughput(source.source().length(), parsing));
+        out.println("  allocated: " + megabytes(allocated));
+
+        var tableAssisted = fastestNanos(20, () -> new TableAssistedParser(source, Tokens.of(tokens)).parse());
+        var tableAssistedAllocated = allocatedBytes(() -> new TableAssistedParser(source, Tokens.of(tokens)).parse());
+        out.println("  table assisted parsing: " + millis(tableAssisted) + ", " + throughput(source.source().length(), tableAssisted));
+        out.println("  table assisted allocated: " + megabytes(tableAssistedAllocated));
+    }
+}
@@ -0,0 +1,85 @@
+package com.github.razorapid.morpheus.lang.benchmark;
+
+import java.io.BufferedReader;
+import java.io.File;
+import java.io.InputStreamReader;
+import java.io.PrintStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Arrays;
+import java.util.List;
+
+import static com.github.razorapid.morpheus.lang.benchmark.Measurements.millis;
+
+/**
+ * Startup and class loading of {@link ParseOneFile} in a new JVM, with parser-core on the class path.
+ *
+ * Given the class path of another build of the library in the system property {@value #BASELINE}
+ * (i.e. the parser jar from before the split into parser-core and parser-viz, with its dependencies),
+ * the program is run against it too, so the two can be compared.
+ */
+final class StartupBenchmark implements Benchmark {
+    static final String BASELINE = "morpheus.startup.baseline";
+    private static final int RUNS = 21;
+
+    @Override
+    public void run(PrintStream out) throws Exception {
+        var script = Files.createTempFile("morpheus-lang-benchmark", ".scr");
+        try {
+            Files.writeString(script, Measurements.resource("/parser/scripts/0_test.scr"));
+            measure(out, "parser-core", System.getProperty("java.class.path"), script);
+            var baseline = System.getProperty(BASELINE);
+            if (baseline != null && !baseline.isBlank()) {
+                measure(out, "baseline", baseline + File.pathSeparator + benchmarkClasses(), script);
+            }
+        } finally {
+            Files.deleteIfExists(script);
+        }
+    }
+
+    private static void measure(PrintStream out, String name, String classPath, Path script) throws Exception {
+        var nanos = new long[RUNS];
+        var loaded = new Loaded(0, 0);
+        for (int i = 0; i < RUNS; i++) {
+            var started = System.nanoTime();
+            loaded = runProgram(classPath, script);
+            nanos[i] = System.nanoTime() - started;
+        }
+        Arrays.sort(nanos);
+        out.println("  " + name + ": " + loaded.classes() + " classes loaded (" + loaded.fromClassPath() + " from the class path), "
+            + millis(nanos[RUNS / 2]) + " median of " + RUNS + " runs");
+    }
+
+    private static Loaded runProgram(String classPath, Path script) throws Exception {
+        var java = Path.of(System.getProperty("java.home"), "bin", "java").toString();
+        var process = new ProcessBuilder(List.of(java, "-Xlog:class+load=info:stdout", "-cp", classPath,
+                ParseOneFile.class.getName(), script.toString()))
+            .redirectErrorStream(true)
+            .start();
+        var classes = 0;
+        var fromClassPath = 0;
+        try (var lines = new BufferedReader(new InputStreamReader(process.getInputStream(), StandardCharsets.UTF_8))) {
+            String line;
+            while ((line = lines.readLine()) != null) {
+                if (line.contains("[class,load]")) {
+                    classes++;
+                    if (line.contains("source: file:")) {
+                        fromClassPath++;
+                    }
+                }
+            }
+        }
+        if (process.waitFor() != 0) {
+            throw new IllegalStateException("Program " + ParseOneFile.class.getName() + " failed on the class path " + classPath);
+        }
+        return new Loaded(classes, fromClassPath);
+    }
+
+    private static String benchmarkClasses() throws Exception {
+        return Path.of(ParseOneFile.class.getProtectionDomain().getCodeSource().getLocation().toURI()).toString();
+    }
+
+    private record Loaded(int classes, int fromClassPath) {
+    }
+}
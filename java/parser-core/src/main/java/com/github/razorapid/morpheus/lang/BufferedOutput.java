@@ -0,0 +1,68 @@
+package com.github.razorapid.morpheus.lang;
+
+import java.io.Flushable;
+import java.io.IOException;
+import java.io.Writer;
+import java.nio.CharBuffer;
+
+/**
+ * Buffer of a fixed size in front of an output, written out whenever it fills up.
+ * Writers of large documents append to it piece by piece,
+ * so the document is never on the heap as a whole.
+ */
+public final class BufferedOutput {
+    private static final int SIZE = 8192;
+
+    private final Appendable out;
+    private final char[] buffer = new char[SIZE];
+    private int size = 0;
+
+    public BufferedOutput(Appendable out) {
+        this.out = out;
+    }
+
+    public BufferedOutput append(char c) throws IOException {
+        if (size == SIZE) {
+            drain();
+        }
+        buffer[size++] = c;
+        return this;
+    }
+
+    public BufferedOutput append(String s) throws IOException {
+        var from = 0;
+        while (from < s.length()) {
+            if (size == SIZE) {
+                drain();
+            }
+            var count = Math.min(SIZE - size, s.length() - from);
+            s.getChars(from, from + count, buffer, size);
+            size += count;
+            from += count;
+        }
+        return this;
+    }
+
+    public BufferedOutput append(long value) throws IOException {
+        return append(Long.toString(value));
+    }
+
+    /**
+     * Writes out the buffer and flushes (but doesn't close) the output when it's {@link Flushable}
+     */
+    public void flush() throws IOException {
+        drain();
+        if (out instanceof Flushable flushable) {
+            flushable.flush();
+        }
+    }
+
+    private void drain() throws IOException {
+        if (out instanceof Writer writer) {
+            writer.write(buffer, 0, size);
+        } else {
+            out.append(CharBuffer.wrap(buffer, 0, size));
+        }
+        size = 0;
+    }
+}
@@ -0,0 +1,74 @@
+package com.github.razorapid.morpheus.lang;
+
+import java.time.Duration;
+import java.util.function.LongSupplier;
+
+/**
+ * Cooperative cancellation of lexing and parsing.
+ *
+ * The token is cancelled either explicitly with {@link #cancel()} (i.e. from another thread,
+ * when a newer version of the script arrives) or when its deadline passes.
+ * Lexer and parser check it between tokens, statements and nested expressions and abort with {@link CancelledException}.
+ * They check it often, so the deadline is read from the clock only on every 1024th check
+ * (and the first one), while {@link #cancel()} is seen on the next check.
+ */
+public final class CancellationToken {
+    private static final long NO_DEADLINE = Long.MAX_VALUE;
+    private static final int CLOCK_CHECK_INTERVAL = 1024;
+    private static final CancellationToken NONE = new CancellationToken(NO_DEADLINE, System::nanoTime);
+
+    private final long deadline;
+    private final LongSupplier clock;
+    private volatile boolean cancelled = false;
+    /** checks of the deadline so far, a lost update (of a token checked by many threads) only delays the next reading of the clock */
+    private int checks = 0;
+
+    private CancellationToken(long deadline, LongSupplier clock) {
+        this.deadline = deadline;
+        this.clock = clock;
+    }
+
+    /**
+     * Token that is never cancelled
+     */
+    public static CancellationToken none() {
+        return NONE;
+    }
+
+    public static CancellationToken create() {
+        return new CancellationToken(NO_DEADLINE, System::nanoTime);
+    }
+
+    /**
+     * Token that cancels itself once the given time passes
+     */
+    public static CancellationToken withTimeout(Duration timeout) {
+        return new CancellationToken(System.nanoTime() + timeout.toNanos(), System::nanoTime);
+    }
+
+    /**
+     * Token that cancels itself once the clock reaches the deadline, for the tests to decide when the deadline passes
+     */
+    static CancellationToken withDeadline(long deadline, LongSupplier clock) {
+        return new CancellationToken(deadline, clock);
+    }
+
+    public void cancel() {
+        if (this != NONE) {
+            cancelled = true;
+        }
+    }
+
+    public boolean isCancelled() {
+        if (!cancelled && deadline != NO_DEADLINE && clock.getAsLong() - deadline >= 0) {
+            cancelled = true;
+        }
+        return cancelled;
+    }
+
+    public void throwIfCancelled(String operation) {
+        if (cancelled || deadline != NO_DEADLINE && (checks++ & (CLOCK_CHECK_INTERVAL - 1)) == 0 && isCancelled()) {
+            throw new CancelledException(operation + " cancelled");
+        }
+    }
+}
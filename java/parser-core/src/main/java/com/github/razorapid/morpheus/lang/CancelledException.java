@@ -0,0 +1,12 @@
+package com.github.razorapid.morpheus.lang;
+
+import java.util.concurrent.CancellationException;
+
+/**
+ * Thrown when lexing or parsing is aborted, because its {@link CancellationToken} was cancelled
+ */
+public class CancelledException extends CancellationException {
+    public CancelledException(String message) {
+        super(message);
+    }
+}
@@ -0,0 +1,111 @@
+package com.github.razorapid.morpheus.lang;
+
+import java.io.Flushable;
+import java.io.IOException;
+
+/**
+ * Writes a directed graph in the DOT language as it's built, through a {@link BufferedOutput}.
+ *
+ * Nodes get sequential ids (n0, n1, ...) in the order they're added, an edge refers to the ids of its ends,
+ * so nodes and edges are written out right away and the graph is never held in the memory.
+ * Labels are either plain strings or HTML-like lines, the text of an HTML-like line is escaped
+ * with {@link Escapes#javaHtml(String)}.
+ */
+public final class DotWriter {
+    private final BufferedOutput out;
+    private int nodes = 0;
+    private int edges = 0;
+
+    public DotWriter(Appendable out) {
+        this.out = new BufferedOutput(out);
+    }
+
+    public DotWriter begin(String name) throws IOException {
+        append("digraph ");
+        quoted(name);
+        append(" {\n");
+        return this;
+    }
+
+    /**
+     * Adds a node with a plain label
+     *
+     * @param shape shape of the node, the default shape when null
+     * @return id of the node
+     */
+    public int node(String shape, String label) throws IOException {
+        var id = open();
+        if (shape != null) {
+            append("shape=").append(shape).append(',');
+        }
+        append("label=");
+        quoted(label);
+        append("]\n");
+        return id;
+    }
+
+    /**
+     * Adds a node with a HTML-like label of two lines, the second one in bold
+     *
+     * @return id of the node
+     */
+    public int htmlNode(String line, String boldLine) throws IOException {
+        var id = open();
+        append("label=<");
+        append(Escapes.javaHtml(line));
+        append("<br/><b>");
+        append(Escapes.javaHtml(boldLine));
+        append("</b>>]\n");
+        return id;
+    }
+
+    public DotWriter edge(int from, int to) throws IOException {
+        append("n").append(from).append(" -> n").append(to).append('\n');
+        edges++;
+        return this;
+    }
+
+    /**
+     * Closes the graph and flushes (but doesn't close) the output when it's {@link Flushable}
+     */
+    public void end() throws IOException {
+        append("}\n");
+        out.flush();
+    }
+
+    public int nodes() {
+        return nodes;
+    }
+
+    public int edges() {
+        return edges;
+    }
+
+    private int open() throws IOException {
+        var id = nodes++;
+        append("n").append(id).append(" [");
+        return id;
+    }
+
+    private void quoted(String s) throws IOException {
+        append('"');
+        for (int i = 0; i < s.length(); i++) {
+            var c = s.charAt(i);
+            switch (c) {
+                case '"' -> append("\\\"");
+                case '\\' -> append("\\\\");
+                case '\n' -> append("\\n");
+                default -> append(c);
+            }
+        }
+        append('"');
+    }
+
+    private BufferedOutput append(char c) throws IOException {
+        return out.append(c);
+    }
+
+    private BufferedOutput append(String s) throws IOException {
+        return out.append(s);
+    }
+}
@@ -0,0 +1,56 @@
+package com.github.razorapid.morpheus.lang;
+
+/**
+ * Escaping of lexemes and error messages for the text outputs of the trees (XML, graph labels)
+ */
+public final class Escapes {
+    private static final char[] HEX = "0123456789ABCDEF".toCharArray();
+
+    private Escapes() {
+    }
+
+    /**
+     * Escapes the text as Java (control and non-ASCII characters as escape sequences) and then as HTML,
+     * quotes are left as they are by the former and ']' is escaped by the latter as well.
+     *
+     * @return the text itself if there's nothing to escape
+     */
+    public static String javaHtml(String s) {
+        var i = 0;
+        while (i < s.length() && !needsEscape(s.charAt(i))) {
+            i++;
+        }
+        if (i == s.length()) {
+            return s;
+        }
+        var escaped = new StringBuilder(s.length() + 16).append(s, 0, i);
+        for (; i < s.length(); i++) {
+            var c = s.charAt(i);
+            switch (c) {
+                case '"' -> escaped.append("&quot;");
+                case '&' -> escaped.append("&amp;");
+                case '<' -> escaped.append("&lt;");
+                case '>' -> escaped.append("&gt;");
+                case ']' -> escaped.append("&#93;");
+                case '\\' -> escaped.append("\\\\");
+                case '\b' -> escaped.append("\\b");
+                case '\n' -> escaped.append("\\n");
+                case '\t' -> escaped.append("\\t");
+                case '\f' -> escaped.append("\\f");
+                case '\r' -> escaped.append("\\r");
+                default -> {
+                    if (c < 32 || c > 0x7f) {
+                        escaped.append("\\u").append(HEX[c >> 12 & 0xF]).append(HEX[c >> 8 & 0xF]).append(HEX[c >> 4 & 0xF]).append(HEX[c & 0xF]);
+                    } else {
+                        escaped.append(c);
+                    }
+                }
+            }
+        }
+        return escaped.toString();
+    }
+
+    private static boolean needsEscape(char c) {
+        return c < 32 || c > 0x7f || c == '"' || c == '&' || c == '<' || c == '>' || c == ']' || c == '\\';
+    }
+}
@@ -0,0 +1,51 @@
+package com.github.razorapid.morpheus.lang;
+
+import java.util.Arrays;
+
+/**
+ * Offsets of the starts of the lines of a script, to resolve offsets in the script to lines and columns
+ * the way the lexer counts them: lines start after {@code \n}, lines and columns are counted from 1,
+ * and every character is a column ({@code \r} and tabs too).
+ */
+public final class LineIndex {
+    private final int[] lineStarts;
+
+    private LineIndex(int[] lineStarts) {
+        this.lineStarts = lineStarts;
+    }
+
+    public static LineIndex of(String source) {
+        var lineStarts = new int[16];
+        var lines = 1;
+        for (int i = 0; i < source.length(); i++) {
+            if (source.charAt(i) == '\n') {
+                if (lines == lineStarts.length) {
+                    lineStarts = Arrays.copyOf(lineStarts, lines * 2);
+                }
+                lineStarts[lines++] = i + 1;
+            }
+        }
+        return new LineIndex(Arrays.copyOf(lineStarts, lines));
+    }
+
+    public int lines() {
+        return lineStarts.length;
+    }
+
+    /**
+     * @return line of the offset, offsets past the end of the script are on the last line
+     */
+    public int line(int offset) {
+        var line = Arrays.binarySearch(lineStarts, offset);
+        return line >= 0 ? line + 1 : -line - 1;
+    }
+
+    public int col(int offset) {
+        return offset - lineStarts[line(offset) - 1] + 1;
+    }
+
+    public SourcePos position(int offset) {
+        var line = line(offset);
+        return new SourcePos(offset, line, offset - lineStarts[line - 1] + 1);
+    }
+}
@@ -0,0 +1,275 @@
+package com.github.razorapid.morpheus.lang;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Binary file of primitive arrays (sections), the container of the syntax tree files.
+ *
+ * The file starts with a header: the magic number of the format, its version, a stamp of the enums
+ * the format stores by their ordinals, the number of sections and the offset, length and element size of every section.
+ * A section is an array of bytes, shorts, ints or longs, or a table of strings (offsets into UTF-8 bytes that follow them).
+ * Which section holds what is up to the format, the file only knows where they are and where they end, so a truncated
+ * file is rejected when it's opened rather than when a section is read. Sections are aligned to 8 bytes
+ * and stored in the little endian order.
+ *
+ * Files are read by memory-mapping them: elements are read from the mapping on access and strings are decoded
+ * on the first access, so opening a file costs the same whatever its size.
+ */
+public final class SectionFile {
+    private static final int HEADER_SIZE = 24;
+    private static final int SECTION_ENTRY_SIZE = 12;
+    private static final int STRINGS = 0;
+
+    private final ByteBuffer buffer;
+    private final int[] offsets;
+    private final int[] lengths;
+    private final String[][] strings;
+
+    private SectionFile(ByteBuffer buffer, int[] offsets, int[] lengths) {
+        this.buffer = buffer;
+        this.offsets = offsets;
+        this.lengths = lengths;
+        this.strings = new String[offsets.length][];
+    }
+
+    /**
+     * Maps the file into the memory, the mapping stays valid once the file is closed
+     *
+     * @throws IOException if the file can't be read, or it isn't a file of the given format, version and stamp
+     */
+    public static SectionFile map(Path file, int magic, int version, long stamp) throws IOException {
+        try (var channel = FileChannel.open(file, StandardOpenOption.READ)) {
+            return of(channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size()), magic, version, stamp);
+        }
+    }
+
+    /**
+     * @throws IOException if the buffer doesn't hold a file of the given format, version and stamp
+     */
+    public static SectionFile of(ByteBuffer buffer, int magic, int version, long stamp) throws IOException {
+        var file = buffer.duplicate().order(ByteOrder.LITTLE_ENDIAN);
+        if (file.limit() < HEADER_SIZE || file.getInt(0) != magic) {
+            throw new IOException("Not a file of the format " + Integer.toHexString(magic));
+        }
+        if (file.getInt(4) != version || file.getLong(8) != stamp) {
+            throw new IOException("File of the format " + Integer.toHexString(magic) + " is of another version: " + file.getInt(4));
+        }
+        var sections = file.getInt(16);
+        if (sections < 0 || (long) HEADER_SIZE + (long) sections * SECTION_ENTRY_SIZE > file.limit()) {
+            throw new IOException("Truncated file of the format " + Integer.toHexString(magic));
+        }
+        var offsets = new int[sections];
+        var lengths = new int[sections];
+        for (int i = 0; i < sections; i++) {
+            offsets[i] = file.getInt(HEADER_SIZE + i * SECTION_ENTRY_SIZE);
+            lengths[i] = file.getInt(HEADER_SIZE + i * SECTION_ENTRY_SIZE + 4);
+            var elementSize = file.getInt(HEADER_SIZE + i * SECTION_ENTRY_SIZE + 8);
+            if (offsets[i] < 0 || lengths[i] < 0 || sectionEnd(file, offsets[i], lengths[i], elementSize) > file.limit()) {
+                throw new IOException("Truncated file of the format " + Integer.toHexString(magic));
+            }
+        }
+        return new SectionFile(file, offsets, lengths);
+    }
+
+    /**
+     * @return offset of the first byte past the section, or {@link Long#MAX_VALUE} when the section can't be in the file
+     */
+    private static long sectionEnd(ByteBuffer file, int offset, int length, int elementSize) {
+        if (elementSize != STRINGS) {
+            return switch (elementSize) {
+                case Byte.BYTES, Short.BYTES, Integer.BYTES, Long.BYTES -> (long) offset + (long) length * elementSize;
+                default -> Long.MAX_VALUE;
+            };
+        }
+        var textOffset = (long) offset + ((long) length + 1) * Integer.BYTES;
+        if (textOffset > file.limit()) {
+            return Long.MAX_VALUE;
+        }
+        var textSize = file.getInt((int) textOffset - Integer.BYTES);
+        return textSize < 0 ? Long.MAX_VALUE : textOffset + textSize;
+    }
+
+    /**
+     * Stamp of the constants of the enums, changes when a constant is added, removed or moved
+     */
+    @SafeVarargs
+    public static long stamp(Class<? extends Enum<?>>... enums) {
+        var hash = 0xcbf29ce484222325L;
+        for (var type : enums) {
+            for (var constant : type.getEnumConstants()) {
+                for (var c : (constant.name() + ';').toCharArray()) {
+                    hash = (hash ^ c) * 0x100000001b3L;
+                }
+            }
+        }
+        return hash;
+    }
+
+    public int sections() {
+        return offsets.length;
+    }
+
+    /**
+     * @return number of elements (of strings, for a table of strings) in the section
+     */
+    public int length(int section) {
+        return lengths[section];
+    }
+
+    public byte byteAt(int section, int index) {
+        return buffer.get(offsets[section] + index);
+    }
+
+    public short shortAt(int section, int index) {
+        return buffer.getShort(offsets[section] + index * Short.BYTES);
+    }
+
+    public int intAt(int section, int index) {
+        return buffer.getInt(offsets[section] + index * Integer.BYTES);
+    }
+
+    public long longAt(int section, int index) {
+        return buffer.getLong(offsets[section] + index * Long.BYTES);
+    }
+
+    /**
+     * @return the section of bytes as a buffer of its own, i.e. a file nested in this one
+     */
+    public ByteBuffer slice(int section) {
+        return buffer.slice(offsets[section], lengths[section]);
+    }
+
+    public String string(int section, int index) {
+        var table = strings[section];
+        if (table == null) {
+            table = new String[lengths[section]];
+            strings[section] = table;
+        }
+        var string = table[index];
+        if (string == null) {
+            var from = intAt(section, index);
+            var to = intAt(section, index + 1);
+            var bytes = new byte[to - from];
+            buffer.get(offsets[section] + (lengths[section] + 1) * Integer.BYTES + from, bytes);
+            string = new String(bytes, StandardCharsets.UTF_8);
+            table[index] = string;
+        }
+        return string;
+    }
+
+    /**
+     * Collects the sections in the order they're added and writes them out as a file
+     */
+    public static final class Writer {
+        private final int magic;
+        private final int version;
+        private final long stamp;
+        private final List<ByteBuffer> sections = new ArrayList<>();
+        private final List<Integer> lengths = new ArrayList<>();
+        private final List<Integer> elementSizes = new ArrayList<>();
+
+        public Writer(int magic, int version, long stamp) {
+            this.magic = magic;
+            this.version = version;
+            this.stamp = stamp;
+        }
+
+        public Writer bytes(byte[] values, int length) {
+            return add(section(length).put(values, 0, length), length, Byte.BYTES);
+        }
+
+        /**
+         * Adds the remaining bytes of the buffer, i.e. a file to nest in this one
+         */
+        public Writer bytes(ByteBuffer values) {
+            var length = values.remaining();
+            return add(section(length).put(values.duplicate()), length, Byte.BYTES);
+        }
+
+        public Writer shorts(short[] values, int length) {
+            var section = section(length * Short.BYTES);
+            section.asShortBuffer().put(values, 0, length);
+            return add(section, length, Short.BYTES);
+        }
+
+        public Writer ints(int[] values, int length) {
+            var section = section(length * Integer.BYTES);
+            section.asIntBuffer().put(values, 0, length);
+            return add(section, length, Integer.BYTES);
+        }
+
+        public Writer longs(long[] values, int length) {
+            var section = section(length * Long.BYTES);
+            section.asLongBuffer().put(values, 0, length);
+            return add(section, length, Long.BYTES);
+        }
+
+        public Writer strings(String[] values) {
+            var encoded = new byte[values.length][];
+            var size = 0;
+            for (int i = 0; i < values.length; i++) {
+                encoded[i] = values[i].getBytes(StandardCharsets.UTF_8);
+                size += encoded[i].length;
+            }
+            var section = section((values.length + 1) * Integer.BYTES + size);
+            var offset = 0;
+            for (var bytes : encoded) {
+                section.putInt(offset);
+                offset += bytes.length;
+            }
+            section.putInt(offset);
+            for (var bytes : encoded) {
+                section.put(bytes);
+            }
+            return add(section, values.length, STRINGS);
+        }
+
+        public ByteBuffer toBuffer() {
+            var size = align(HEADER_SIZE + sections.size() * SECTION_ENTRY_SIZE);
+            for (var section : sections) {
+                size += align(section.capacity());
+            }
+            var buffer = ByteBuffer.allocate(size).order(ByteOrder.LITTLE_ENDIAN);
+            buffer.putInt(magic).putInt(version).putLong(stamp).putInt(sections.size()).putInt(0);
+            var offset = align(HEADER_SIZE + sections.size() * SECTION_ENTRY_SIZE);
+            for (int i = 0; i < sections.size(); i++) {
+                buffer.putInt(offset).putInt(lengths.get(i)).putInt(elementSizes.get(i));
+                buffer.put(offset, sections.get(i), 0, sections.get(i).capacity());
+                offset += align(sections.get(i).capacity());
+            }
+            return buffer.clear();
+        }
+
+        public void write(Path file) throws IOException {
+            try (var channel = FileChannel.open(file, StandardOpenOption.CREATE, StandardOpenOption.TRUNCATE_EXISTING, StandardOpenOption.WRITE)) {
+                var buffer = toBuffer();
+                while (buffer.hasRemaining()) {
+                    channel.write(buffer);
+                }
+            }
+        }
+
+        private Writer add(ByteBuffer section, int length, int elementSize) {
+            sections.add(section);
+            lengths.add(length);
+            elementSizes.add(elementSize);
+            return this;
+        }
+
+        private static ByteBuffer section(int size) {
+            return ByteBuffer.allocate(size).order(ByteOrder.LITTLE_ENDIAN);
+        }
+
+        private static int align(int size) {
+            return (size + 7) & ~7;
+        }
+    }
+}
@@ -1,5 +1,8 @@
 package com.github.razorapid.morpheus.lang;
 
+import lombok.EqualsAndHashCode;
+import lombok.Getter;
+import lombok.ToString;
 import lombok.Value;
 
 import java.util.Optional;
@@ -9,6 +12,14 @@ public class Source {
     String name;
     String source;
 
+    /**
+     * Index of the lines of the script, built on the first call
+     */
+    @Getter(lazy = true)
+    @EqualsAndHashCode.Exclude
+    @ToString.Exclude
+    LineIndex lineIndex = LineIndex.of(source);
+
     public Optional<String> line(long idx) {
         var lastNewLineCol = -1L;
         var currentNewLineCol = 1L;
@@ -0,0 +1,384 @@
+package com.github.razorapid.morpheus.lang;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+
+/**
+ * Spans of the nodes of a syntax tree, indexed by their offsets in the script.
+ *
+ * The index is built in one pass over the tree. Nodes are numbered in the preorder and their spans are cached
+ * in arrays. Spans the tree doesn't give (i.e. of concrete syntax tree non-terminals) are derived from the children,
+ * nodes without any tokens get an empty span where they'd be in the script. Next to the spans, the script
+ * is split into segments covered by the same innermost node, so the innermost node at an offset
+ * is a binary search away, as are the nodes in a range, since their preorder follows their offsets.
+ *
+ * When a subtree is parsed again after an edit, {@link #replace} puts the new subtree in place of the old one
+ * without walking the rest of the tree again. It's still a rebuild of the arrays, linear in the size of the index,
+ * see there.
+ *
+ * Nodes are looked up by identity. The index isn't thread-safe.
+ */
+public final class SpanIndex<N> {
+    /**
+     * No node, or no offset of a node (the tree doesn't give the span)
+     */
+    public static final int NONE = -1;
+
+    /**
+     * The shape of the indexed tree, walked by a {@link TreeCursor}, and the spans of its nodes
+     */
+    public interface Tree<N> extends TreeCursor.Tree<N> {
+        /**
+         * @return offset the node starts at, or {@link #NONE} to derive the span from the children
+         */
+        int start(N node);
+
+        /**
+         * @return offset right after the node, or {@link #NONE} to derive the span from the children
+         */
+        int end(N node);
+    }
+
+    private final Tree<N> tree;
+    private final Map<N, Integer> indices = new IdentityHashMap<>();
+
+    private Object[] nodes;
+    private int[] starts;
+    private int[] ends;
+    private int[] parents;
+    private int[] sizes;
+    private int size;
+
+    private int[] segmentStarts;
+    private int[] segmentNodes;
+    private int segments;
+
+    private SpanIndex(Tree<N> tree, Subtree subtree) {
+        this.tree = tree;
+        this.nodes = subtree.nodes;
+        this.starts = subtree.starts;
+        this.ends = subtree.ends;
+        this.parents = subtree.parents;
+        this.sizes = subtree.sizes;
+        this.size = subtree.size;
+        this.segmentStarts = new int[size * 2 + 1];
+        this.segmentNodes = new int[size * 2 + 1];
+        for (int i = 0; i < size; i++) {
+            indices.put(node(i), i);
+        }
+        addSegments(subtree, 0);
+        addSegment(size > 0 ? ends[0] : 0, NONE);
+    }
+
+    public static <N> SpanIndex<N> of(N root, Tree<N> tree) {
+        return new SpanIndex<>(tree, flatten(root, tree, NONE, 0));
+    }
+
+    public int size() {
+        return size;
+    }
+
+    /**
+     * @return the innermost node that spans the offset, empty if the offset is outside the tree
+     */
+    public Optional<N> nodeAt(int offset) {
+        var segment = lastAtOrBefore(segmentStarts, segments, offset);
+        if (segment == NONE || segmentNodes[segment] == NONE) {
+            return Optional.empty();
+        }
+        return Optional.of(node(segmentNodes[segment]));
+    }
+
+    /**
+     * @return nodes that lie within the range, from (inclusive) to (exclusive), in the preorder
+     */
+    public List<N> nodesIn(int from, int to) {
+        var result = new ArrayList<N>();
+        for (int i = firstAtOrAfter(starts, size, from); i < size && starts[i] < to; i++) {
+            if (ends[i] <= to) {
+                result.add(node(i));
+            }
+        }
+        return result;
+    }
+
+    public int start(N node) {
+        return starts[indexOf(node)];
+    }
+
+    public int end(N node) {
+        return ends[indexOf(node)];
+    }
+
+    /**
+     * @return parent of the node in the indexed tree, empty for the root
+     */
+    public Optional<N> parent(N node) {
+        var parent = parents[indexOf(node)];
+        return parent != NONE ? Optional.of(node(parent)) : Optional.empty();
+    }
+
+    /**
+     * Puts the replacement, with its spans in the edited script, in place of the node.
+     *
+     * The edit has to be within the span of the node, so the replacement starts where the node did
+     * and the nodes that follow are shifted by the difference in their ends. Ancestors of the node are kept,
+     * with their spans updated, as the replacement is usually parsed on its own and has no parent.
+     *
+     * Only the replacement is walked, but the arrays are rebuilt: the spans of the nodes that follow are shifted
+     * one by one and the segments are copied, so a replace is linear in the size of the index. A replacement
+     * with as many nodes as the node (i.e. a token edited in place) is copied over the old nodes, the arrays
+     * aren't reallocated and the nodes that follow keep their indices. Otherwise they're renumbered too.
+     */
+    public void replace(N node, N replacement) {
+        var index = indexOf(node);
+        var oldSize = sizes[index];
+        var oldStart = starts[index];
+        var oldEnd = ends[index];
+        var subtree = flatten(replacement, tree, parents[index], oldStart);
+        var shift = subtree.ends[0] - oldEnd;
+        var sizeShift = subtree.size - oldSize;
+
+        for (int i = index; i < index + oldSize; i++) {
+            indices.remove(node(i));
+        }
+        for (int ancestor = parents[index]; ancestor != NONE; ancestor = parents[ancestor]) {
+            ends[ancestor] += shift;
+            sizes[ancestor] += sizeShift;
+        }
+
+        var suffix = index + oldSize;
+        if (sizeShift == 0) {
+            System.arraycopy(subtree.nodes, 0, nodes, index, subtree.size);
+            System.arraycopy(subtree.starts, 0, starts, index, subtree.size);
+            System.arraycopy(subtree.ends, 0, ends, index, subtree.size);
+            System.arraycopy(subtree.parents, 0, parents, index, subtree.size);
+            System.arraycopy(subtree.sizes, 0, sizes, index, subtree.size);
+        } else {
+            var newSize = size + sizeShift;
+            var suffixSize = size - suffix;
+            nodes = splice(nodes, index, subtree.nodes, subtree.size, suffix, suffixSize, newSize);
+            starts = splice(starts, index, subtree.starts, subtree.size, suffix, suffixSize, newSize);
+            ends = splice(ends, index, subtree.ends, subtree.size, suffix, suffixSize, newSize);
+            parents = splice(parents, index, subtree.parents, subtree.size, suffix, suffixSize, newSize);
+            sizes = splice(sizes, index, subtree.sizes, subtree.size, suffix, suffixSize, newSize);
+            size = newSize;
+        }
+
+        for (int i = index; i < index + subtree.size; i++) {
+            if (i > index) {
+                parents[i] += index;
+            }
+            indices.put(node(i), i);
+        }
+        for (int i = index + subtree.size; i < size; i++) {
+            starts[i] += shift;
+            ends[i] += shift;
+            if (sizeShift != 0) {
+                if (parents[i] >= suffix) {
+                    parents[i] += sizeShift;
+                }
+                indices.put(node(i), i);
+            }
+        }
+
+        var oldSegmentStarts = segmentStarts;
+        var oldSegmentNodes = segmentNodes;
+        var oldSegments = segments;
+        var prefixSegments = firstAtOrAfter(oldSegmentStarts, oldSegments, oldStart);
+        var suffixSegments = firstAtOrAfter(oldSegmentStarts, oldSegments, oldEnd);
+        segmentStarts = Arrays.copyOf(oldSegmentStarts, prefixSegments + subtree.size * 2 + oldSegments - suffixSegments);
+        segmentNodes = Arrays.copyOf(oldSegmentNodes, segmentStarts.length);
+        segments = prefixSegments;
+        addSegments(subtree, index);
+        for (int i = suffixSegments; i < oldSegments; i++) {
+            var segmentNode = oldSegmentNodes[i];
+            addSegment(oldSegmentStarts[i] + shift, segmentNode >= suffix ? segmentNode + sizeShift : segmentNode);
+        }
+    }
+
+    @SuppressWarnings("unchecked")
+    private N node(int index) {
+        return (N) nodes[index];
+    }
+
+    private int indexOf(N node) {
+        var index = indices.get(node);
+        if (index == null) {
+            throw new IllegalArgumentException("Node is not in the index: " + node);
+        }
+        return index;
+    }
+
+    /**
+     * Segments of the innermost nodes of the subtree, numbered from the given index.
+     * Nodes are entered in the preorder, each one starts a segment of its own and its parent's segment
+     * resumes once it ends. Segments starting at the same offset are covered by the last one, the innermost.
+     */
+    private void addSegments(Subtree subtree, int firstIndex) {
+        var open = new int[16];
+        var depth = 0;
+        for (int i = 0; i < subtree.size; i++) {
+            var parent = i > 0 ? subtree.parents[i] : NONE;
+            while (depth > 0 && open[depth - 1] != parent) {
+                var closed = open[--depth];
+                if (depth > 0) {
+                    addSegment(subtree.ends[closed], firstIndex + open[depth - 1]);
+                }
+            }
+            addSegment(subtree.starts[i], firstIndex + i);
+            if (depth == open.length) {
+                open = Arrays.copyOf(open, depth * 2);
+            }
+            open[depth++] = i;
+        }
+        while (depth > 1) {
+            var closed = open[--depth];
+            addSegment(subtree.ends[closed], firstIndex + open[depth - 1]);
+        }
+    }
+
+    private void addSegment(int start, int node) {
+        if (segments > 0 && segmentStarts[segments - 1] >= start) {
+            segmentNodes[segments - 1] = node;
+            return;
+        }
+        if (segments == segmentStarts.length) {
+            segmentStarts = Arrays.copyOf(segmentStarts, segments * 2 + 1);
+            segmentNodes = Arrays.copyOf(segmentNodes, segments * 2 + 1);
+        }
+        segmentStarts[segments] = start;
+        segmentNodes[segments] = node;
+        segments++;
+    }
+
+    private static int lastAtOrBefore(int[] offsets, int length, int offset) {
+        var index = firstAtOrAfter(offsets, length, offset + 1);
+        return index > 0 ? index - 1 : NONE;
+    }
+
+    private static int firstAtOrAfter(int[] offsets, int length, int offset) {
+        int low = 0, high = length;
+        while (low < high) {
+            var mid = (low + high) >>> 1;
+            if (offsets[mid] < offset) {
+                low = mid + 1;
+            } else {
+                high = mid;
+            }
+        }
+        return low;
+    }
+
+    private static int[] splice(int[] array, int index, int[] replacement, int replacementSize, int suffix, int suffixSize, int newSize) {
+        var result = Arrays.copyOf(array, newSize);
+        System.arraycopy(replacement, 0, result, index, replacementSize);
+        System.arraycopy(array, suffix, result, index + replacementSize, suffixSize);
+        return result;
+    }
+
+    private static Object[] splice(Object[] array, int index, Object[] replacement, int replacementSize, int suffix, int suffixSize, int newSize) {
+        var result = Arrays.copyOf(array, newSize);
+        System.arraycopy(replacement, 0, result, index, replacementSize);
+        System.arraycopy(array, suffix, result, index + replacementSize, suffixSize);
+        return result;
+    }
+
+    /**
+     * Numbers the subtree in the preorder and caches the spans of its nodes.
+     * The root gets the given parent, the other nodes are numbered from 0 within the subtree.
+     *
+     * @param offset where the nodes without tokens are, until the first token of the subtree
+     */
+    private static <N> Subtree flatten(N root, Tree<N> tree, int rootParent, int offset) {
+        var flattening = new Flattening<>(tree, rootParent, offset);
+        new TreeCursor<>(root, tree).walk(flattening);
+        return flattening.subtree;
+    }
+
+    private static final class Subtree {
+        private Object[] nodes = new Object[64];
+        private int[] starts = new int[64];
+        private int[] ends = new int[64];
+        private int[] parents = new int[64];
+        private int[] sizes = new int[64];
+        private int size = 0;
+
+        int add(Object node, int parent) {
+            if (size == nodes.length) {
+                var capacity = size * 2;
+                nodes = Arrays.copyOf(nodes, capacity);
+                starts = Arrays.copyOf(starts, capacity);
+                ends = Arrays.copyOf(ends, capacity);
+                parents = Arrays.copyOf(parents, capacity);
+                sizes = Arrays.copyOf(sizes, capacity);
+            }
+            nodes[size] = node;
+            parents[size] = parent;
+            return size++;
+        }
+    }
+
+    /**
+     * Walk of the subtree that adds the nodes as the cursor enters them and spans them as it leaves them.
+     * Spans derived from the children are kept per depth, as the span of the children of the node at the depth.
+     */
+    private static final class Flattening<N> implements TreeCursor.Walker<N, RuntimeException> {
+        private final Subtree subtree = new Subtree();
+        private final Tree<N> tree;
+        private final int rootParent;
+        private int lastEnd;
+        private int[] path = new int[64];
+        private int[] childrenStarts = new int[64];
+        private int[] childrenEnds = new int[64];
+
+        Flattening(Tree<N> tree, int rootParent, int offset) {
+            this.tree = tree;
+            this.rootParent = rootParent;
+            this.lastEnd = offset;
+        }
+
+        @Override
+        public void enter(TreeCursor<N> cursor) {
+            var depth = cursor.depth();
+            if (depth == path.length) {
+                path = Arrays.copyOf(path, depth * 2);
+                childrenStarts = Arrays.copyOf(childrenStarts, depth * 2);
+                childrenEnds = Arrays.copyOf(childrenEnds, depth * 2);
+            }
+            path[depth] = subtree.add(cursor.node(), depth > 0 ? path[depth - 1] : rootParent);
+            childrenStarts[depth] = NONE;
+            childrenEnds[depth] = NONE;
+        }
+
+        @Override
+        public void leave(TreeCursor<N> cursor) {
+            var depth = cursor.depth();
+            var index = path[depth];
+            var start = tree.start(cursor.node());
+            var end = tree.end(cursor.node());
+            if (start == NONE || end == NONE) {
+                start = childrenStarts[depth];
+                end = childrenEnds[depth];
+            }
+            if (start == NONE) {
+                start = lastEnd;
+                end = lastEnd;
+            } else {
+                lastEnd = Math.max(lastEnd, end);
+                if (depth > 0) {
+                    var parent = depth - 1;
+                    childrenStarts[parent] = childrenStarts[parent] == NONE ? start : Math.min(childrenStarts[parent], start);
+                    childrenEnds[parent] = Math.max(childrenEnds[parent], end);
+                }
+            }
+            subtree.starts[index] = start;
+            subtree.ends[index] = end;
+            subtree.sizes[index] = subtree.size - index;
+        }
+    }
+}
@@ -34,6 +34,14 @@ public class Tokens {
         tokens.pos(pos);
     }
 
+    /**
+     * Restores the stream to the given position, as if the given token was the last one consumed before it
+     */
+    public void restore(int pos, Token lastToken) {
+        restore(pos);
+        this.lastToken = lastToken;
+    }
+
     public Token consume(TokenType... type) {
         return match(type) ? lastToken : null;
     }
@@ -0,0 +1,205 @@
+package com.github.razorapid.morpheus.lang;
+
+import java.util.Arrays;
+
+/**
+ * Cursor walking a syntax tree node by node, without recursion and without lists of children.
+ *
+ * The cursor keeps the path from the root to the current node in an explicit stack of arrays (the nodes
+ * and their indices among the children of their parents), which only grows when the tree is deeper than
+ * it's been so far, so a step allocates nothing. Empty (null) children are skipped, unless the cursor is created
+ * to stop at them. {@link #walk} enters and leaves every node of a subtree, for the walks that do something
+ * with a node once its children are done.
+ *
+ * A cursor is created by {@code cursor()} of the tree and walks the tree it was created for. It isn't thread-safe.
+ */
+public final class TreeCursor<N> {
+    private static final int INITIAL_DEPTH = 64;
+
+    /**
+     * The shape of the walked tree, children are accessed by their indices
+     */
+    public interface Tree<N> {
+        int childCount(N node);
+
+        /**
+         * @return the child, null for an empty child
+         */
+        N child(N node, int index);
+    }
+
+    /**
+     * Callbacks of {@link #walk}, called with the cursor at the node
+     */
+    public interface Walker<N, E extends Exception> {
+        /**
+         * Called when the walk enters the node, before its children
+         */
+        void enter(TreeCursor<N> cursor) throws E;
+
+        /**
+         * Called when the walk leaves the node, after its children
+         */
+        void leave(TreeCursor<N> cursor) throws E;
+    }
+
+    private final Tree<N> tree;
+    private final boolean emptyChildren;
+    private Object[] nodes = new Object[INITIAL_DEPTH];
+    private int[] indices = new int[INITIAL_DEPTH];
+    private int depth = 0;
+
+    public TreeCursor(N root, Tree<N> tree) {
+        this(root, tree, false);
+    }
+
+    /**
+     * @param emptyChildren true if the cursor stops at empty children too, {@link #node()} is null at them
+     */
+    public TreeCursor(N root, Tree<N> tree, boolean emptyChildren) {
+        this.tree = tree;
+        this.emptyChildren = emptyChildren;
+        this.nodes[0] = root;
+    }
+
+    @SuppressWarnings("unchecked")
+    public N node() {
+        return (N) nodes[depth];
+    }
+
+    /**
+     * @return number of nodes between the current node and the root, 0 at the root
+     */
+    public int depth() {
+        return depth;
+    }
+
+    /**
+     * @return index of the current node among the children of its parent (counting empty children), -1 at the root
+     */
+    public int index() {
+        return depth > 0 ? indices[depth] : -1;
+    }
+
+    /**
+     * @return indices of the nodes from the root to the current node among the children of their parents
+     * (counting empty children), the root itself excluded, so empty at the root
+     */
+    public int[] path() {
+        return Arrays.copyOfRange(indices, 1, depth + 1);
+    }
+
+    /**
+     * Moves to the first child of the current node
+     *
+     * @return false if the node has no children, the cursor doesn't move then
+     */
+    public boolean gotoFirstChild() {
+        var node = node();
+        if (node == null) {
+            return false;
+        }
+        var count = tree.childCount(node);
+        for (int i = 0; i < count; i++) {
+            var child = tree.child(node, i);
+            if (child != null || emptyChildren) {
+                push(child, i);
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * Moves to the next sibling of the current node
+     *
+     * @return false if the node is the last child of its parent or the root, the cursor doesn't move then
+     */
+    public boolean gotoNextSibling() {
+        if (depth == 0) {
+            return false;
+        }
+        @SuppressWarnings("unchecked")
+        var parent = (N) nodes[depth - 1];
+        var count = tree.childCount(parent);
+        for (int i = indices[depth] + 1; i < count; i++) {
+            var sibling = tree.child(parent, i);
+            if (sibling != null || emptyChildren) {
+                nodes[depth] = sibling;
+                indices[depth] = i;
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * @return false at the root, the cursor doesn't move then
+     */
+    public boolean gotoParent() {
+        if (depth == 0) {
+            return false;
+        }
+        nodes[depth--] = null;
+        return true;
+    }
+
+    /**
+     * Moves to the node that follows the subtree of the current node in the preorder:
+     * the next sibling of the node or of its closest ancestor that has one
+     *
+     * @return false if no node follows the subtree, the cursor is at the root then
+     */
+    public boolean skipSubtree() {
+        while (!gotoNextSibling()) {
+            if (!gotoParent()) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * Moves to the next node in the preorder
+     *
+     * @return false once the whole tree is walked, the cursor is at the root then
+     */
+    public boolean gotoNext() {
+        return gotoFirstChild() || skipSubtree();
+    }
+
+    /**
+     * Walks the subtree of the current node in the preorder, entering and leaving every node,
+     * and returns to the node
+     */
+    public <E extends Exception> void walk(Walker<N, E> walker) throws E {
+        var root = depth;
+        walker.enter(this);
+        while (true) {
+            if (gotoFirstChild()) {
+                walker.enter(this);
+                continue;
+            }
+            while (true) {
+                walker.leave(this);
+                if (depth == root) {
+                    return;
+                }
+                if (gotoNextSibling()) {
+                    walker.enter(this);
+                    break;
+                }
+                gotoParent();
+            }
+        }
+    }
+
+    private void push(N node, int index) {
+        if (++depth == nodes.length) {
+            nodes = Arrays.copyOf(nodes, depth * 2);
+            indices = Arrays.copyOf(indices, depth * 2);
+        }
+        nodes[depth] = node;
+        indices[depth] = index;
+    }
+}
@@ -1,25 +1,77 @@
 package com.github.razorapid.morpheus.lang.ast;
 
 import com.github.razorapid.morpheus.lang.SourcePos;
+import com.github.razorapid.morpheus.lang.SpanIndex;
 import com.github.razorapid.morpheus.lang.Token;
+import com.github.razorapid.morpheus.lang.TreeCursor;
 import com.github.razorapid.morpheus.lang.parser.ParseError;
 import lombok.Value;
 
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
 import java.util.List;
 
 @Value
 public class AbstractSyntaxTree {
 
     Node program;
-    public interface Node {
+
+    /**
+     * Index of the spans of the nodes, i.e. to find the innermost node at an offset, see {@link SpanIndex}
+     */
+    public SpanIndex<Node> spanIndex() {
+        return SpanIndex.of(program, new Spans());
+    }
+
+    /**
+     * Spans of the nodes, with the children of {@link #cursor()}, so the spans are per index like the slots are per cursor
+     */
+    private static final class Spans implements SpanIndex.Tree<Node> {
+        private final ChildSlots children = new ChildSlots();
+
+        @Override
+        public int childCount(Node node) {
+            return children.childCount(node);
+        }
+
+        @Override
+        public Node child(Node node, int index) {
+            return children.child(node, index);
+        }
+
+        @Override
+        public int start(Node node) {
+            return node.start() != null ? (int) node.start().pos() : SpanIndex.NONE;
+        }
+
+        @Override
+        public int end(Node node) {
+            return node.end() != null ? (int) node.end().pos() : SpanIndex.NONE;
+        }
+    }
+
+    /**
+     * Cursor walking the tree from the program node, see {@link TreeCursor}.
+     * Children are the ones {@link #spanIndex()} indexes, tokens of the nodes aren't nodes on their own.
+     */
+    public TreeCursor<Node> cursor() {
+        return new TreeCursor<>(program, new ChildSlots());
+    }
+
+    public sealed interface Node permits Error, Statement, Expression {
         SourcePos start();
         SourcePos end();
 
         <T> T accept(AbstractSyntaxTreeVisitor<T> visitor);
     }
-    public interface Error extends Node {}
-    public interface Statement extends Node {}
-    public interface Expression extends Node {}
+    public sealed interface Error extends Node permits SyntaxError {}
+    public sealed interface Statement extends Node
+            permits Statements, ThreadLabel, SwitchCase, IfElse, Switch, WhileLoop,
+                    ForLoop, TryCatch, NoOperation, Break, Continue, ExpressionStmt {}
+    public sealed interface Expression extends Node
+            permits FunctionCall, Params, PostfixOp, PrefixOp, BinaryOp,
+                    Literal, VectorDeclaration, ConstArrayDeclaration {}
 
     @Value
     public static class Statements implements Statement {
@@ -288,4 +340,160 @@ public class AbstractSyntaxTree {
             return visitor.visitSyntaxError(this);
         }
     }
+
+    /**
+     * Children of the nodes by their indices, in the order they appear in the script, without lists of them.
+     * Tokens of the nodes aren't nodes on their own.
+     * The visit methods set the number of the children and return the one at the requested index,
+     * so the slots are per cursor.
+     */
+    static final class ChildSlots implements AbstractSyntaxTreeVisitor<Node>, TreeCursor.Tree<Node> {
+        private int index;
+        private int count;
+
+        @Override
+        public int childCount(Node node) {
+            index = -1;
+            node.accept(this);
+            return count;
+        }
+
+        @Override
+        public Node child(Node node, int index) {
+            this.index = index;
+            return node.accept(this);
+        }
+
+        private Node slots(int count, Node first, Node second, Node third, Node fourth) {
+            this.count = count;
+            return switch (index) {
+                case 0 -> first;
+                case 1 -> second;
+                case 2 -> third;
+                case 3 -> fourth;
+                default -> null;
+            };
+        }
+
+        private Node slots(List<? extends Node> children) {
+            count = children.size();
+            return index >= 0 && index < count ? children.get(index) : null;
+        }
+
+        @Override
+        public Node visitSyntaxError(SyntaxError node) {
+            return slots(0, null, null, null, null);
+        }
+
+        @Override
+        public Node visitStatements(Statements node) {
+            return slots(node.statements());
+        }
+
+        @Override
+        public Node visitThreadLabel(ThreadLabel node) {
+            return slots(1, node.params(), null, null, null);
+        }
+
+        @Override
+        public Node visitSwitchCase(SwitchCase node) {
+            return slots(1, node.params(), null, null, null);
+        }
+
+        @Override
+        public Node visitIfElse(IfElse node) {
+            return slots(3, node.condition(), node.ifClause(), node.elseClause(), null);
+        }
+
+        @Override
+        public Node visitSwitch(Switch node) {
+            return slots(2, node.condition(), node.body(), null, null);
+        }
+
+        @Override
+        public Node visitWhileLoop(WhileLoop node) {
+            return slots(2, node.condition(), node.body(), null, null);
+        }
+
+        @Override
+        public Node visitForLoop(ForLoop node) {
+            return slots(4, node.initializer(), node.condition(), node.advancement(), node.body());
+        }
+
+        @Override
+        public Node visitTryCatch(TryCatch node) {
+            return slots(2, node.tryClause(), node.catchClause(), null, null);
+        }
+
+        @Override
+        public Node visitNoOperation(NoOperation node) {
+            return slots(0, null, null, null, null);
+        }
+
+        @Override
+        public Node visitBreak(Break node) {
+            return slots(0, null, null, null, null);
+        }
+
+        @Override
+        public Node visitContinue(Continue node) {
+            return slots(0, null, null, null, null);
+        }
+
+        @Override
+        public Node visitExpressionStmt(ExpressionStmt node) {
+            return slots(1, node.expression(), null, null, null);
+        }
+
+        @Override
+        public Node visitFunctionCall(FunctionCall node) {
+            return slots(2, node.listener(), node.params(), null, null);
+        }
+
+        @Override
+        public Node visitParams(Params node) {
+            return slots(node.param());
+        }
+
+        @Override
+        public Node visitPostfixOp(PostfixOp node) {
+            return slots(1, node.lhs(), null, null, null);
+        }
+
+        @Override
+        public Node visitPrefixOp(PrefixOp node) {
+            return slots(1, node.rhs(), null, null, null);
+        }
+
+        @Override
+        public Node visitBinaryOp(BinaryOp node) {
+            return slots(2, node.lhs(), node.rhs(), null, null);
+        }
+
+        @Override
+        public Node visitLiteral(Literal node) {
+            return slots(0, null, null, null, null);
+        }
+
+        @Override
+        public Node visitVectorDeclaration(VectorDeclaration node) {
+            return slots(3, node.x(), node.y(), node.z(), null);
+        }
+
+        /**
+         * Elements of the rows one after another, the row of an element is found by skipping the rows before it
+         */
+        @Override
+        public Node visitConstArrayDeclaration(ConstArrayDeclaration node) {
+            count = 0;
+            Node element = null;
+            for (var row : node.indices()) {
+                if (index >= count && index < count + row.size()) {
+                    element = row.get(index - count);
+                }
+                count += row.size();
+            }
+            return element;
+        }
+    }
 }
@@ -0,0 +1,525 @@
+package com.github.razorapid.morpheus.lang.ast;
+
+import com.github.razorapid.morpheus.lang.LineIndex;
+import com.github.razorapid.morpheus.lang.Source;
+import com.github.razorapid.morpheus.lang.SourcePos;
+import com.github.razorapid.morpheus.lang.Token;
+import com.github.razorapid.morpheus.lang.TokenType;
+import com.github.razorapid.morpheus.lang.ast.AbstractSyntaxTree.BinaryOp;
+import com.github.razorapid.morpheus.lang.ast.AbstractSyntaxTree.Break;
+import com.github.razorapid.morpheus.lang.ast.AbstractSyntaxTree.ConstArrayDeclaration;
+import com.github.razorapid.morpheus.lang.ast.AbstractSyntaxTree.Continue;
+import com.github.razorapid.morpheus.lang.ast.AbstractSyntaxTree.Expression;
+import com.github.razorapid.morpheus.lang.ast.AbstractSyntaxTree.ExpressionStmt;
+import com.github.razorapid.morpheus.lang.ast.AbstractSyntaxTree.ForLoop;
+import com.github.razorapid.morpheus.lang.ast.AbstractSyntaxTree.FunctionCall;
+import com.github.razorapid.morpheus.lang.ast.AbstractSyntaxTree.IfElse;
+import com.github.razorapid.morpheus.lang.ast.AbstractSyntaxTree.Literal;
+import com.github.razorapid.morpheus.lang.ast.AbstractSyntaxTree.Node;
+import com.github.razorapid.morpheus.lang.ast.AbstractSyntaxTree.NoOperation;
+import com.github.razorapid.morpheus.lang.ast.AbstractSyntaxTree.Params;
+import com.github.razorapid.morpheus.lang.ast.AbstractSyntaxTree.PostfixOp;
+import com.github.razorapid.morpheus.lang.ast.AbstractSyntaxTree.PrefixOp;
+import com.github.razorapid.morpheus.lang.ast.AbstractSyntaxTree.Statements;
+import com.github.razorapid.morpheus.lang.ast.AbstractSyntaxTree.Switch;
+import com.github.razorapid.morpheus.lang.ast.AbstractSyntaxTree.SwitchCase;
+import com.github.razorapid.morpheus.lang.ast.AbstractSyntaxTree.SyntaxError;
+import com.github.razorapid.morpheus.lang.ast.AbstractSyntaxTree.ThreadLabel;
+import com.github.razorapid.morpheus.lang.ast.AbstractSyntaxTree.TryCatch;
+import com.github.razorapid.morpheus.lang.ast.AbstractSyntaxTree.VectorDeclaration;
+import com.github.razorapid.morpheus.lang.ast.AbstractSyntaxTree.WhileLoop;
+import com.github.razorapid.morpheus.lang.parser.ParseError;
+
+import java.util.AbstractList;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.RandomAccess;
+
+/**
+ * Abstract syntax tree of a script flattened into primitive arrays.
+ *
+ * Every node of the tree is an index into the arrays that hold its class, its span and where its payload starts
+ * in the shared array of the payloads. The payload of a node holds what its class holds, in the order of the fields:
+ * indices of the child nodes ({@link #NONE} for no child), indices of the tokens, the flags and the sizes of the lists.
+ * Nodes are numbered in the preorder of {@link AbstractSyntaxTree#cursor()}, the root is 0.
+ *
+ * Positions (of the nodes and of the tokens) are offsets in the script, lines and columns are resolved through
+ * the {@link LineIndex} of the script when the positions are read. The few positions the lexer counted otherwise
+ * are kept as they are, so the tree read back is equal to the flattened one. Tokens are kept the same way
+ * as in {@link com.github.razorapid.morpheus.lang.cst.ConcreteSyntaxTreeArena}, with their lexemes stored once
+ * for all the tokens that share them.
+ *
+ * Visitors dispatch on the node classes of {@link AbstractSyntaxTree}, so {@link #node(int)} and {@link #tree()}
+ * give the nodes as instances of these classes, created on access: the node with the nodes of its fields,
+ * the nodes of its lists (statements, parameters) when the lists are read.
+ */
+public final class AbstractSyntaxTreeArena {
+    /**
+     * No node (no child) or no position in the script (span of a node without tokens)
+     */
+    public static final int NONE = -1;
+
+    private static final TokenType[] TOKEN_TYPES = TokenType.values();
+
+    private static final byte SYNTAX_ERROR = 0;
+    private static final byte STATEMENTS = 1;
+    private static final byte THREAD_LABEL = 2;
+    private static final byte SWITCH_CASE = 3;
+    private static final byte IF_ELSE = 4;
+    private static final byte SWITCH = 5;
+    private static final byte WHILE_LOOP = 6;
+    private static final byte FOR_LOOP = 7;
+    private static final byte TRY_CATCH = 8;
+    private static final byte NO_OPERATION = 9;
+    private static final byte BREAK = 10;
+    private static final byte CONTINUE = 11;
+    private static final byte EXPRESSION_STMT = 12;
+    private static final byte FUNCTION_CALL = 13;
+    private static final byte PARAMS = 14;
+    private static final byte POSTFIX_OP = 15;
+    private static final byte PREFIX_OP = 16;
+    private static final byte BINARY_OP = 17;
+    private static final byte LITERAL = 18;
+    private static final byte VECTOR_DECLARATION = 19;
+    private static final byte CONST_ARRAY_DECLARATION = 20;
+
+    private final byte[] kinds;
+    private final int[] starts;
+    private final int[] ends;
+    private final int[] payloads;
+    private final int[] payload;
+
+    private final byte[] tokenTypes;
+    private final int[] tokenLexemes;
+    private final int[] tokenPositions;
+
+    private final String[] lexemeTable;
+    private final ParseError[] errors;
+    private final LineIndex lines;
+    /** positions of the nodes (start at node * 2, end at node * 2 + 1) the line index doesn't resolve to */
+    private final Map<Integer, SourcePos> lexedPositions;
+    /** positions of the tokens the line index doesn't resolve to */
+    private final Map<Integer, SourcePos> lexedTokenPositions;
+
+    private AbstractSyntaxTreeArena(Builder builder) {
+        var size = builder.size;
+        this.kinds = Arrays.copyOf(builder.kinds, size);
+        this.starts = Arrays.copyOf(builder.starts, size);
+        this.ends = Arrays.copyOf(builder.ends, size);
+        this.payloads = Arrays.copyOf(builder.payloads, size);
+        this.payload = Arrays.copyOf(builder.payload, builder.payloadSize);
+
+        var tokens = builder.tokens;
+        this.tokenTypes = Arrays.copyOf(builder.tokenTypes, tokens);
+        this.tokenLexemes = Arrays.copyOf(builder.tokenLexemes, tokens);
+        this.tokenPositions = Arrays.copyOf(builder.tokenPositions, tokens);
+
+        this.lexemeTable = new String[builder.lexemeIds.size()];
+        builder.lexemeIds.forEach((lexeme, id) -> lexemeTable[id] = lexeme);
+        this.errors = builder.errors.toArray(ParseError[]::new);
+        this.lines = builder.lines;
+        this.lexedPositions = Map.copyOf(builder.lexedPositions);
+        this.lexedTokenPositions = Map.copyOf(builder.lexedTokenPositions);
+    }
+
+    /**
+     * Flattens the tree of the script, the positions in the tree are offsets in the script
+     */
+    public static AbstractSyntaxTreeArena of(AbstractSyntaxTree ast, Source script) {
+        return new AbstractSyntaxTreeArena(new Builder(script.lineIndex()).append(ast));
+    }
+
+    public AbstractSyntaxTree tree() {
+        return new AbstractSyntaxTree(node(0));
+    }
+
+    public int size() {
+        return kinds.length;
+    }
+
+    /**
+     * Dispatches the node to the visitor as the instance of its class
+     */
+    public <T> T accept(int node, AbstractSyntaxTreeVisitor<T> visitor) {
+        return node(node).accept(visitor);
+    }
+
+    public Node node(int node) {
+        var at = payloads[node];
+        var start = start(node) != NONE ? position(node * 2, start(node)) : null;
+        var end = end(node) != NONE ? position(node * 2 + 1, end(node)) : null;
+        return switch (kinds[node]) {
+            case SYNTAX_ERROR -> new SyntaxError(errors[payload[at]], start, end);
+            case STATEMENTS -> new Statements(start, end, new NodeList<>(at + 1, payload[at]));
+            case THREAD_LABEL -> new ThreadLabel(start, end, token(payload[at]), child(payload[at + 1]));
+            case SWITCH_CASE -> new SwitchCase(start, end, token(payload[at]), token(payload[at + 1]), child(payload[at + 2]));
+            case IF_ELSE -> new IfElse(start, end, child(payload[at]), child(payload[at + 1]), child(payload[at + 2]));
+            case SWITCH -> new Switch(start, end, child(payload[at]), child(payload[at + 1]));
+            case WHILE_LOOP -> new WhileLoop(start, end, child(payload[at]), child(payload[at + 1]));
+            case FOR_LOOP -> new ForLoop(start, end, child(payload[at]), child(payload[at + 1]), child(payload[at + 2]), child(payload[at + 3]));
+            case TRY_CATCH -> new TryCatch(start, end, child(payload[at]), child(payload[at + 1]));
+            case NO_OPERATION -> new NoOperation(start, end);
+            case BREAK -> new Break(start, end);
+            case CONTINUE -> new Continue(start, end);
+            case EXPRESSION_STMT -> new ExpressionStmt(start, end, child(payload[at]));
+            case FUNCTION_CALL -> new FunctionCall(start, end, payload[at] != 0, child(payload[at + 1]), token(payload[at + 2]), child(payload[at + 3]));
+            case PARAMS -> new Params(start, end, new NodeList<>(at + 1, payload[at]));
+            case POSTFIX_OP -> new PostfixOp(start, end, child(payload[at]), token(payload[at + 1]));
+            case PREFIX_OP -> new PrefixOp(start, end, token(payload[at]), child(payload[at + 1]));
+            case BINARY_OP -> new BinaryOp(start, end, child(payload[at]), token(payload[at + 1]), child(payload[at + 2]));
+            case LITERAL -> new Literal(start, end, token(payload[at]));
+            case VECTOR_DECLARATION -> new VectorDeclaration(start, end, child(payload[at]), child(payload[at + 1]), child(payload[at + 2]));
+            case CONST_ARRAY_DECLARATION -> new ConstArrayDeclaration(start, end, payload[at] != 0, rows(at));
+            default -> throw new IllegalStateException("Unknown node kind: " + kinds[node]);
+        };
+    }
+
+    /**
+     * @return offset of the start of the node in the script, {@link #NONE} if the node has no position
+     */
+    public int start(int node) {
+        return starts[node];
+    }
+
+    /**
+     * @return offset of the end of the node in the script, {@link #NONE} if the node has no position
+     */
+    public int end(int node) {
+        return ends[node];
+    }
+
+    /**
+     * Nodes are cast to the classes of the fields they're set to, with the cast of the generic method erased
+     * the same as the lists of the nodes
+     */
+    @SuppressWarnings("unchecked")
+    private <N extends Node> N child(int node) {
+        return node != NONE ? (N) node(node) : null;
+    }
+
+    private Token token(int token) {
+        if (token == NONE) {
+            return null;
+        }
+        var position = lexedTokenPositions.get(token);
+        if (position == null) {
+            position = lines.position(tokenPositions[token]);
+        }
+        return Token.of(TOKEN_TYPES[tokenTypes[token]], lexemeTable[tokenLexemes[token]], position.pos(), position.line(), position.col());
+    }
+
+    private SourcePos position(int key, int offset) {
+        var position = lexedPositions.get(key);
+        return position != null ? position : lines.position(offset);
+    }
+
+    /**
+     * Rows of the array: the number of the rows, the sizes of the rows and the elements of them one after another
+     */
+    private List<List<Expression>> rows(int at) {
+        var rows = payload[at + 1];
+        var result = new ArrayList<List<Expression>>(rows);
+        var element = at + 2 + rows;
+        for (int row = 0; row < rows; row++) {
+            result.add(new NodeList<>(element, payload[at + 2 + row]));
+            element += payload[at + 2 + row];
+        }
+        return List.copyOf(result);
+    }
+
+    /**
+     * Nodes of a list of a node, created from the arena on access
+     */
+    private final class NodeList<N extends Node> extends AbstractList<N> implements RandomAccess {
+        private final int from;
+        private final int size;
+
+        NodeList(int from, int size) {
+            this.from = from;
+            this.size = size;
+        }
+
+        @Override
+        public N get(int index) {
+            if (index < 0 || index >= size) {
+                throw new IndexOutOfBoundsException(index);
+            }
+            return child(payload[from + index]);
+        }
+
+        @Override
+        public int size() {
+            return size;
+        }
+    }
+
+    /**
+     * Appends the nodes in the preorder of the cursor of the tree, without recursion. The payload of a node
+     * is written when the node is appended, with no children, and every child sets itself in the payload of its parent.
+     */
+    private static final class Builder implements AbstractSyntaxTreeVisitor<Byte> {
+        private final LineIndex lines;
+
+        private int size = 0;
+        private byte[] kinds = new byte[1024];
+        private int[] starts = new int[1024];
+        private int[] ends = new int[1024];
+        private int[] payloads = new int[1024];
+
+        private int payloadSize = 0;
+        private int[] payload = new int[2048];
+
+        private int tokens = 0;
+        private byte[] tokenTypes = new byte[512];
+        private int[] tokenLexemes = new int[512];
+        private int[] tokenPositions = new int[512];
+
+        private final Map<String, Integer> lexemeIds = new HashMap<>();
+        private final List<ParseError> errors = new ArrayList<>();
+        private final Map<Integer, SourcePos> lexedPositions = new HashMap<>();
+        private final Map<Integer, SourcePos> lexedTokenPositions = new HashMap<>();
+
+        Builder(LineIndex lines) {
+            this.lines = lines;
+        }
+
+        Builder append(AbstractSyntaxTree ast) {
+            var parents = new int[64];
+            var cursor = ast.cursor();
+            do {
+                var depth = cursor.depth();
+                var node = allocate(cursor.node());
+                if (depth > 0) {
+                    var parent = parents[depth - 1];
+                    payload[slot(parent, cursor.index())] = node;
+                }
+                if (depth == parents.length) {
+                    parents = Arrays.copyOf(parents, depth * 2);
+                }
+                parents[depth] = node;
+            } while (cursor.gotoNext());
+            return this;
+        }
+
+        /**
+         * @return position of the child in the payload of the parent, for the index of the child in {@link AbstractSyntaxTree#cursor()}
+         */
+        private int slot(int parent, int index) {
+            var at = payloads[parent];
+            return switch (kinds[parent]) {
+                case STATEMENTS, PARAMS -> at + 1 + index;
+                case THREAD_LABEL, PREFIX_OP -> at + 1;
+                case SWITCH_CASE -> at + 2;
+                case FUNCTION_CALL -> at + 1 + index * 2;
+                case BINARY_OP -> at + index * 2;
+                case CONST_ARRAY_DECLARATION -> at + 2 + payload[at + 1] + index;
+                default -> at + index;
+            };
+        }
+
+        private int allocate(Node node) {
+            if (size == kinds.length) {
+                kinds = Arrays.copyOf(kinds, size * 2);
+                starts = Arrays.copyOf(starts, size * 2);
+                ends = Arrays.copyOf(ends, size * 2);
+                payloads = Arrays.copyOf(payloads, size * 2);
+            }
+            var index = size++;
+            starts[index] = offset(index * 2, node.start());
+            ends[index] = offset(index * 2 + 1, node.end());
+            payloads[index] = payloadSize;
+            kinds[index] = node.accept(this);
+            return index;
+        }
+
+        private int offset(int key, SourcePos position) {
+            if (position == null) {
+                return NONE;
+            }
+            var offset = Math.toIntExact(position.pos());
+            if (!lines.position(offset).equals(position)) {
+                lexedPositions.put(key, position);
+            }
+            return offset;
+        }
+
+        private void write(int value) {
+            if (payloadSize == payload.length) {
+                payload = Arrays.copyOf(payload, payloadSize * 2);
+            }
+            payload[payloadSize++] = value;
+        }
+
+        private void children(int count) {
+            for (int i = 0; i < count; i++) {
+                write(NONE);
+            }
+        }
+
+        private void token(Token token) {
+            if (token == null) {
+                write(NONE);
+                return;
+            }
+            if (tokens == tokenTypes.length) {
+                tokenTypes = Arrays.copyOf(tokenTypes, tokens * 2);
+                tokenLexemes = Arrays.copyOf(tokenLexemes, tokens * 2);
+                tokenPositions = Arrays.copyOf(tokenPositions, tokens * 2);
+            }
+            var index = tokens++;
+            tokenTypes[index] = (byte) token.type().ordinal();
+            tokenLexemes[index] = lexemeIds.computeIfAbsent(token.lexeme(), lexeme -> lexemeIds.size());
+            tokenPositions[index] = Math.toIntExact(token.pos().pos());
+            if (!lines.position(tokenPositions[index]).equals(token.pos())) {
+                lexedTokenPositions.put(index, token.pos());
+            }
+            write(index);
+        }
+
+        @Override
+        public Byte visitSyntaxError(SyntaxError node) {
+            write(errors.size());
+            errors.add(node.error());
+            return SYNTAX_ERROR;
+        }
+
+        @Override
+        public Byte visitStatements(Statements node) {
+            write(node.statements().size());
+            children(node.statements().size());
+            return STATEMENTS;
+        }
+
+        @Override
+        public Byte visitThreadLabel(ThreadLabel node) {
+            token(node.identifier());
+            children(1);
+            return THREAD_LABEL;
+        }
+
+        @Override
+        public Byte visitSwitchCase(SwitchCase node) {
+            token(node.operator());
+            token(node.identifier());
+            children(1);
+            return SWITCH_CASE;
+        }
+
+        @Override
+        public Byte visitIfElse(IfElse node) {
+            children(3);
+            return IF_ELSE;
+        }
+
+        @Override
+        public Byte visitSwitch(Switch node) {
+            children(2);
+            return SWITCH;
+        }
+
+        @Override
+        public Byte visitWhileLoop(WhileLoop node) {
+            children(2);
+            return WHILE_LOOP;
+        }
+
+        @Override
+        public Byte visitForLoop(ForLoop node) {
+            children(4);
+            return FOR_LOOP;
+        }
+
+        @Override
+        public Byte visitTryCatch(TryCatch node) {
+            children(2);
+            return TRY_CATCH;
+        }
+
+        @Override
+        public Byte visitNoOperation(NoOperation node) {
+            return NO_OPERATION;
+        }
+
+        @Override
+        public Byte visitBreak(Break node) {
+            return BREAK;
+        }
+
+        @Override
+        public Byte visitContinue(Continue node) {
+            return CONTINUE;
+        }
+
+        @Override
+        public Byte visitExpressionStmt(ExpressionStmt node) {
+            children(1);
+            return EXPRESSION_STMT;
+        }
+
+        @Override
+        public Byte visitFunctionCall(FunctionCall node) {
+            write(node.thread() ? 1 : 0);
+            children(1);
+            token(node.identifier());
+            children(1);
+            return FUNCTION_CALL;
+        }
+
+        @Override
+        public Byte visitParams(Params node) {
+            write(node.param().size());
+            children(node.param().size());
+            return PARAMS;
+        }
+
+        @Override
+        public Byte visitPostfixOp(PostfixOp node) {
+            children(1);
+            token(node.operator());
+            return POSTFIX_OP;
+        }
+
+        @Override
+        public Byte visitPrefixOp(PrefixOp node) {
+            token(node.operator());
+            children(1);
+            return PREFIX_OP;
+        }
+
+        @Override
+        public Byte visitBinaryOp(BinaryOp node) {
+            children(1);
+            token(node.operator());
+            children(1);
+            return BINARY_OP;
+        }
+
+        @Override
+        public Byte visitLiteral(Literal node) {
+            token(node.token());
+            return LITERAL;
+        }
+
+        @Override
+        public Byte visitVectorDeclaration(VectorDeclaration node) {
+            children(3);
+            return VECTOR_DECLARATION;
+        }
+
+        @Override
+        public Byte visitConstArrayDeclaration(ConstArrayDeclaration node) {
+            write(node.list() ? 1 : 0);
+            write(node.indices().size());
+            var elements = 0;
+            for (var row : node.indices()) {
+                write(row.size());
+                elements += row.size();
+            }
+            children(elements);
+            return CONST_ARRAY_DECLARATION;
+        }
+    }
+}
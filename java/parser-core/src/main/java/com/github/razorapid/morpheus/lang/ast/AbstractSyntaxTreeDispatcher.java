@@ -0,0 +1,83 @@
+package com.github.razorapid.morpheus.lang.ast;
+
+import com.github.razorapid.morpheus.lang.ast.AbstractSyntaxTree.BinaryOp;
+import com.github.razorapid.morpheus.lang.ast.AbstractSyntaxTree.Break;
+import com.github.razorapid.morpheus.lang.ast.AbstractSyntaxTree.ConstArrayDeclaration;
+import com.github.razorapid.morpheus.lang.ast.AbstractSyntaxTree.Continue;
+import com.github.razorapid.morpheus.lang.ast.AbstractSyntaxTree.ExpressionStmt;
+import com.github.razorapid.morpheus.lang.ast.AbstractSyntaxTree.ForLoop;
+import com.github.razorapid.morpheus.lang.ast.AbstractSyntaxTree.FunctionCall;
+import com.github.razorapid.morpheus.lang.ast.AbstractSyntaxTree.IfElse;
+import com.github.razorapid.morpheus.lang.ast.AbstractSyntaxTree.Literal;
+import com.github.razorapid.morpheus.lang.ast.AbstractSyntaxTree.Node;
+import com.github.razorapid.morpheus.lang.ast.AbstractSyntaxTree.NoOperation;
+import com.github.razorapid.morpheus.lang.ast.AbstractSyntaxTree.Params;
+import com.github.razorapid.morpheus.lang.ast.AbstractSyntaxTree.PostfixOp;
+import com.github.razorapid.morpheus.lang.ast.AbstractSyntaxTree.PrefixOp;
+import com.github.razorapid.morpheus.lang.ast.AbstractSyntaxTree.Statements;
+import com.github.razorapid.morpheus.lang.ast.AbstractSyntaxTree.Switch;
+import com.github.razorapid.morpheus.lang.ast.AbstractSyntaxTree.SwitchCase;
+import com.github.razorapid.morpheus.lang.ast.AbstractSyntaxTree.SyntaxError;
+import com.github.razorapid.morpheus.lang.ast.AbstractSyntaxTree.ThreadLabel;
+import com.github.razorapid.morpheus.lang.ast.AbstractSyntaxTree.TryCatch;
+import com.github.razorapid.morpheus.lang.ast.AbstractSyntaxTree.VectorDeclaration;
+import com.github.razorapid.morpheus.lang.ast.AbstractSyntaxTree.WhileLoop;
+
+/**
+ * Visitor dispatching on the class of the node itself instead of calling {@link Node#accept}.
+ *
+ * {@link Node#accept} is a call to any of the node classes, the JIT can't inline it once a call site sees more than two
+ * of them and it goes through the table of the interface then. {@link #dispatch} instead compares the class
+ * of the node to the final classes of the sealed hierarchy, see {@link Node}, the most common nodes first,
+ * so a node costs a few compares and a call of the visit method of the subclass.
+ * Interfaces aren't checked on the way, checking an interface is a scan of the interfaces of the class.
+ *
+ * Subclasses visit the children with {@link #dispatch} too, the result is the one of {@link Node#accept} then.
+ */
+public abstract class AbstractSyntaxTreeDispatcher<R> implements AbstractSyntaxTreeVisitor<R> {
+
+    public final R dispatch(Node node) {
+        if (node instanceof Literal literal) {
+            return visitLiteral(literal);
+        } else if (node instanceof FunctionCall functionCall) {
+            return visitFunctionCall(functionCall);
+        } else if (node instanceof ExpressionStmt expressionStmt) {
+            return visitExpressionStmt(expressionStmt);
+        } else if (node instanceof Params params) {
+            return visitParams(params);
+        } else if (node instanceof BinaryOp binaryOp) {
+            return visitBinaryOp(binaryOp);
+        } else if (node instanceof Statements statements) {
+            return visitStatements(statements);
+        } else if (node instanceof IfElse ifElse) {
+            return visitIfElse(ifElse);
+        } else if (node instanceof PrefixOp prefixOp) {
+            return visitPrefixOp(prefixOp);
+        } else if (node instanceof PostfixOp postfixOp) {
+            return visitPostfixOp(postfixOp);
+        } else if (node instanceof ThreadLabel threadLabel) {
+            return visitThreadLabel(threadLabel);
+        } else if (node instanceof WhileLoop whileLoop) {
+            return visitWhileLoop(whileLoop);
+        } else if (node instanceof ForLoop forLoop) {
+            return visitForLoop(forLoop);
+        } else if (node instanceof NoOperation noOperation) {
+            return visitNoOperation(noOperation);
+        } else if (node instanceof Break breakStmt) {
+            return visitBreak(breakStmt);
+        } else if (node instanceof Continue continueStmt) {
+            return visitContinue(continueStmt);
+        } else if (node instanceof Switch switchStmt) {
+            return visitSwitch(switchStmt);
+        } else if (node instanceof SwitchCase switchCase) {
+            return visitSwitchCase(switchCase);
+        } else if (node instanceof TryCatch tryCatch) {
+            return visitTryCatch(tryCatch);
+        } else if (node instanceof VectorDeclaration vectorDeclaration) {
+            return visitVectorDeclaration(vectorDeclaration);
+        } else if (node instanceof ConstArrayDeclaration constArrayDeclaration) {
+            return visitConstArrayDeclaration(constArrayDeclaration);
+        }
+        return visitSyntaxError((SyntaxError) node);
+    }
+}
@@ -0,0 +1,619 @@
+package com.github.razorapid.morpheus.lang.ast;
+
+import com.github.razorapid.morpheus.lang.SectionFile;
+import com.github.razorapid.morpheus.lang.Source;
+import com.github.razorapid.morpheus.lang.SourcePos;
+import com.github.razorapid.morpheus.lang.Token;
+import com.github.razorapid.morpheus.lang.TokenType;
+import com.github.razorapid.morpheus.lang.TreeCursor;
+import com.github.razorapid.morpheus.lang.ast.AbstractSyntaxTree.BinaryOp;
+import com.github.razorapid.morpheus.lang.ast.AbstractSyntaxTree.Break;
+import com.github.razorapid.morpheus.lang.ast.AbstractSyntaxTree.ConstArrayDeclaration;
+import com.github.razorapid.morpheus.lang.ast.AbstractSyntaxTree.Continue;
+import com.github.razorapid.morpheus.lang.ast.AbstractSyntaxTree.Expression;
+import com.github.razorapid.morpheus.lang.ast.AbstractSyntaxTree.ExpressionStmt;
+import com.github.razorapid.morpheus.lang.ast.AbstractSyntaxTree.ForLoop;
+import com.github.razorapid.morpheus.lang.ast.AbstractSyntaxTree.FunctionCall;
+import com.github.razorapid.morpheus.lang.ast.AbstractSyntaxTree.IfElse;
+import com.github.razorapid.morpheus.lang.ast.AbstractSyntaxTree.Literal;
+import com.github.razorapid.morpheus.lang.ast.AbstractSyntaxTree.Node;
+import com.github.razorapid.morpheus.lang.ast.AbstractSyntaxTree.NoOperation;
+import com.github.razorapid.morpheus.lang.ast.AbstractSyntaxTree.Params;
+import com.github.razorapid.morpheus.lang.ast.AbstractSyntaxTree.PostfixOp;
+import com.github.razorapid.morpheus.lang.ast.AbstractSyntaxTree.PrefixOp;
+import com.github.razorapid.morpheus.lang.ast.AbstractSyntaxTree.Statement;
+import com.github.razorapid.morpheus.lang.ast.AbstractSyntaxTree.Statements;
+import com.github.razorapid.morpheus.lang.ast.AbstractSyntaxTree.Switch;
+import com.github.razorapid.morpheus.lang.ast.AbstractSyntaxTree.SwitchCase;
+import com.github.razorapid.morpheus.lang.ast.AbstractSyntaxTree.SyntaxError;
+import com.github.razorapid.morpheus.lang.ast.AbstractSyntaxTree.ThreadLabel;
+import com.github.razorapid.morpheus.lang.ast.AbstractSyntaxTree.TryCatch;
+import com.github.razorapid.morpheus.lang.ast.AbstractSyntaxTree.VectorDeclaration;
+import com.github.razorapid.morpheus.lang.ast.AbstractSyntaxTree.WhileLoop;
+import com.github.razorapid.morpheus.lang.parser.ParseError;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.file.Path;
+import java.util.AbstractList;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.RandomAccess;
+
+/**
+ * Abstract syntax tree stored in a {@link SectionFile}, so a script that hasn't changed is loaded rather than lowered again.
+ *
+ * Nodes are numbered in the preorder and stored in arrays, like in {@link com.github.razorapid.morpheus.lang.cst.ConcreteSyntaxTreeArena}:
+ * the kind of the node, its flags (thread calls, const arrays), its span, up to two tokens, the first child and the next sibling.
+ * Empty children (i.e. a missing else clause) are stored as empty nodes, the rows of a made array as nodes of their own.
+ * Tokens are kept in the token arrays, with their lexemes stored once, parse errors in the error records.
+ *
+ * A loaded file is a view of the mapped arrays. Nodes are created on access, with the statement and parameter lists
+ * (and the rows of arrays) read from the file only when their elements are accessed.
+ * Parse errors refer to the script, which isn't stored, so the script is given when the file is loaded.
+ */
+public final class AbstractSyntaxTreeFile {
+    public static final int MAGIC = 0x5453414d;
+    public static final int VERSION = 2;
+    private static final long STAMP = SectionFile.stamp(TokenType.class);
+
+    private static final int NONE = -1;
+    private static final TokenType[] TOKEN_TYPES = TokenType.values();
+
+    private static final byte NULL = 0;
+    private static final byte STATEMENTS = 1;
+    private static final byte THREAD_LABEL = 2;
+    private static final byte SWITCH_CASE = 3;
+    private static final byte IF_ELSE = 4;
+    private static final byte SWITCH = 5;
+    private static final byte WHILE_LOOP = 6;
+    private static final byte FOR_LOOP = 7;
+    private static final byte TRY_CATCH = 8;
+    private static final byte NO_OPERATION = 9;
+    private static final byte BREAK = 10;
+    private static final byte CONTINUE = 11;
+    private static final byte EXPRESSION_STMT = 12;
+    private static final byte FUNCTION_CALL = 13;
+    private static final byte PARAMS = 14;
+    private static final byte POSTFIX_OP = 15;
+    private static final byte PREFIX_OP = 16;
+    private static final byte BINARY_OP = 17;
+    private static final byte LITERAL = 18;
+    private static final byte VECTOR_DECLARATION = 19;
+    private static final byte CONST_ARRAY_DECLARATION = 20;
+    private static final byte SYNTAX_ERROR = 21;
+    private static final byte ROW = 22;
+
+    /** thread call of {@link FunctionCall}, const array (a list) of {@link ConstArrayDeclaration} */
+    private static final byte FLAG = 1;
+
+    private static final int KINDS = 0;
+    private static final int FLAGS = 1;
+    private static final int START_POSITIONS = 2;
+    private static final int START_LINES = 3;
+    private static final int START_COLS = 4;
+    private static final int END_POSITIONS = 5;
+    private static final int END_LINES = 6;
+    private static final int END_COLS = 7;
+    private static final int FIRST_TOKENS = 8;
+    private static final int SECOND_TOKENS = 9;
+    private static final int FIRST_CHILDREN = 10;
+    private static final int NEXT_SIBLINGS = 11;
+    private static final int TOKEN_TYPES_SECTION = 12;
+    private static final int TOKEN_LEXEMES = 13;
+    private static final int TOKEN_POSITIONS = 14;
+    private static final int TOKEN_LINES = 15;
+    private static final int TOKEN_COLS = 16;
+    private static final int LEXEME_TABLE = 17;
+    private static final int ERROR_POSITIONS = 18;
+    private static final int ERROR_LINES = 19;
+    private static final int ERROR_COLS = 20;
+    private static final int ERROR_MESSAGES = 21;
+    private static final int SECTIONS = 22;
+
+    private final SectionFile file;
+    private final Source source;
+
+    private AbstractSyntaxTreeFile(SectionFile file, Source source) throws IOException {
+        if (file.sections() != SECTIONS) {
+            throw new IOException("Abstract syntax tree file has " + file.sections() + " sections, expected " + SECTIONS);
+        }
+        this.file = file;
+        this.source = source;
+    }
+
+    public static void write(AbstractSyntaxTree ast, Path path) throws IOException {
+        writer(ast).write(path);
+    }
+
+    /**
+     * @return the file in a heap buffer, i.e. to keep it in the memory or to send it elsewhere
+     */
+    public static ByteBuffer toBuffer(AbstractSyntaxTree ast) {
+        return writer(ast).toBuffer();
+    }
+
+    /**
+     * Maps the file into the memory
+     *
+     * @param source the script the tree was lowered from, the parse errors refer to it
+     * @throws IOException if the file can't be read or isn't an abstract syntax tree file of this version
+     */
+    public static AbstractSyntaxTreeFile map(Path path, Source source) throws IOException {
+        return new AbstractSyntaxTreeFile(SectionFile.map(path, MAGIC, VERSION, STAMP), source);
+    }
+
+    /**
+     * @param source the script the tree was lowered from, the parse errors refer to it
+     * @throws IOException if the buffer doesn't hold an abstract syntax tree file of this version
+     */
+    public static AbstractSyntaxTreeFile of(ByteBuffer buffer, Source source) throws IOException {
+        return new AbstractSyntaxTreeFile(SectionFile.of(buffer, MAGIC, VERSION, STAMP), source);
+    }
+
+    private static SectionFile.Writer writer(AbstractSyntaxTree ast) {
+        var builder = new Builder();
+        builder.append(ast.program());
+        return builder.write(new SectionFile.Writer(MAGIC, VERSION, STAMP));
+    }
+
+    public AbstractSyntaxTree tree() {
+        return new AbstractSyntaxTree(node(0));
+    }
+
+    /**
+     * Number of nodes in the tree, including the empty children and the rows of arrays
+     */
+    public int size() {
+        return file.length(KINDS);
+    }
+
+    /**
+     * @return the node, null for an empty child or a row of an array
+     */
+    public Node node(int node) {
+        var start = pos(node, START_POSITIONS, START_LINES, START_COLS);
+        var end = pos(node, END_POSITIONS, END_LINES, END_COLS);
+        var children = children(node);
+        return switch (file.byteAt(KINDS, node)) {
+            case STATEMENTS -> new Statements(start, end, new Children<>(children));
+            case THREAD_LABEL -> new ThreadLabel(start, end, token(node, FIRST_TOKENS), (Params) node(children[0]));
+            case SWITCH_CASE -> new SwitchCase(start, end, token(node, FIRST_TOKENS), token(node, SECOND_TOKENS), (Params) node(children[0]));
+            case IF_ELSE -> new IfElse(start, end, (Expression) node(children[0]), (Statement) node(children[1]), (Statement) node(children[2]));
+            case SWITCH -> new Switch(start, end, (Expression) node(children[0]), (Statement) node(children[1]));
+            case WHILE_LOOP -> new WhileLoop(start, end, (Expression) node(children[0]), (Statement) node(children[1]));
+            case FOR_LOOP -> new ForLoop(start, end, (Statement) node(children[0]), (Expression) node(children[1]),
+                    (Statement) node(children[2]), (Statement) node(children[3]));
+            case TRY_CATCH -> new TryCatch(start, end, (Statement) node(children[0]), (Statement) node(children[1]));
+            case NO_OPERATION -> new NoOperation(start, end);
+            case BREAK -> new Break(start, end);
+            case CONTINUE -> new Continue(start, end);
+            case EXPRESSION_STMT -> new ExpressionStmt(start, end, (Expression) node(children[0]));
+            case FUNCTION_CALL -> new FunctionCall(start, end, isFlagged(node), (Expression) node(children[0]),
+                    token(node, FIRST_TOKENS), (Params) node(children[1]));
+            case PARAMS -> new Params(start, end, new Children<>(children));
+            case POSTFIX_OP -> new PostfixOp(start, end, (Expression) node(children[0]), token(node, FIRST_TOKENS));
+            case PREFIX_OP -> new PrefixOp(start, end, token(node, FIRST_TOKENS), (Expression) node(children[0]));
+            case BINARY_OP -> new BinaryOp(start, end, (Expression) node(children[0]), token(node, FIRST_TOKENS), (Expression) node(children[1]));
+            case LITERAL -> new Literal(start, end, token(node, FIRST_TOKENS));
+            case VECTOR_DECLARATION -> new VectorDeclaration(start, end,
+                    (Expression) node(children[0]), (Expression) node(children[1]), (Expression) node(children[2]));
+            case CONST_ARRAY_DECLARATION -> new ConstArrayDeclaration(start, end, isFlagged(node), rows(children));
+            case SYNTAX_ERROR -> new SyntaxError(error(file.intAt(FIRST_TOKENS, node)), start, end);
+            default -> null;
+        };
+    }
+
+    private int[] children(int parent) {
+        var count = 0;
+        for (var child = file.intAt(FIRST_CHILDREN, parent); child != NONE; child = file.intAt(NEXT_SIBLINGS, child)) {
+            count++;
+        }
+        var children = new int[count];
+        var i = 0;
+        for (var child = file.intAt(FIRST_CHILDREN, parent); child != NONE; child = file.intAt(NEXT_SIBLINGS, child)) {
+            children[i++] = child;
+        }
+        return children;
+    }
+
+    private List<List<Expression>> rows(int[] rows) {
+        var result = new ArrayList<List<Expression>>(rows.length);
+        for (var row : rows) {
+            result.add(new Children<>(children(row)));
+        }
+        return result;
+    }
+
+    private boolean isFlagged(int node) {
+        return (file.byteAt(FLAGS, node) & FLAG) != 0;
+    }
+
+    private SourcePos pos(int node, int positions, int lines, int cols) {
+        var pos = file.intAt(positions, node);
+        return pos != NONE ? new SourcePos(pos, file.intAt(lines, node), file.intAt(cols, node)) : null;
+    }
+
+    private Token token(int node, int tokens) {
+        var token = file.intAt(tokens, node);
+        if (token == NONE) {
+            return null;
+        }
+        return Token.of(
+                TOKEN_TYPES[file.byteAt(TOKEN_TYPES_SECTION, token)],
+                file.string(LEXEME_TABLE, file.intAt(TOKEN_LEXEMES, token)),
+                file.intAt(TOKEN_POSITIONS, token),
+                file.intAt(TOKEN_LINES, token),
+                file.intAt(TOKEN_COLS, token)
+        );
+    }
+
+    private ParseError error(int error) {
+        var pos = new SourcePos(file.intAt(ERROR_POSITIONS, error), file.intAt(ERROR_LINES, error), file.intAt(ERROR_COLS, error));
+        return new ParseError(source, pos, file.string(ERROR_MESSAGES, error));
+    }
+
+    /**
+     * Statements, parameters or elements of a row, created from the file on access
+     */
+    private final class Children<T extends Node> extends AbstractList<T> implements RandomAccess {
+        private final int[] children;
+
+        Children(int[] children) {
+            this.children = children;
+        }
+
+        @Override
+        @SuppressWarnings("unchecked")
+        public T get(int index) {
+            return (T) node(children[index]);
+        }
+
+        @Override
+        public int size() {
+            return children.length;
+        }
+    }
+
+    private static final class Builder implements AbstractSyntaxTreeVisitor<Void>, TreeCursor.Walker<Object, RuntimeException> {
+        private int size = 0;
+        private byte[] kinds = new byte[1024];
+        private byte[] flags = new byte[1024];
+        private int[] startPositions = new int[1024];
+        private int[] startLines = new int[1024];
+        private int[] startCols = new int[1024];
+        private int[] endPositions = new int[1024];
+        private int[] endLines = new int[1024];
+        private int[] endCols = new int[1024];
+        private int[] firstTokens = new int[1024];
+        private int[] secondTokens = new int[1024];
+        private int[] firstChildren = new int[1024];
+        private int[] nextSiblings = new int[1024];
+
+        private int tokens = 0;
+        private byte[] tokenTypes = new byte[512];
+        private int[] tokenLexemes = new int[512];
+        private int[] tokenPositions = new int[512];
+        private int[] tokenLines = new int[512];
+        private int[] tokenCols = new int[512];
+        private final Map<String, Integer> lexemeIds = new HashMap<>();
+
+        private final List<ParseError> errors = new ArrayList<>();
+
+        /** the node being allocated, filled in by the visit methods */
+        private int current;
+
+        /** nodes on the path of the cursor and the last children appended to them */
+        private int[] path = new int[64];
+        private int[] lastChildren = new int[64];
+
+        /**
+         * Appends the tree in the preorder
+         */
+        void append(Node root) {
+            new TreeCursor<Object>(root, new StoredChildren(), true).walk(this);
+        }
+
+        @Override
+        public void enter(TreeCursor<Object> cursor) {
+            var index = allocate();
+            var depth = cursor.depth();
+            if (depth > 0) {
+                var parent = depth - 1;
+                if (lastChildren[parent] != NONE) {
+                    nextSiblings[lastChildren[parent]] = index;
+                } else {
+                    firstChildren[path[parent]] = index;
+                }
+                lastChildren[parent] = index;
+            }
+            if (depth == path.length) {
+                path = Arrays.copyOf(path, depth * 2);
+                lastChildren = Arrays.copyOf(lastChildren, depth * 2);
+            }
+            path[depth] = index;
+            lastChildren[depth] = NONE;
+            record(index, cursor.node());
+        }
+
+        @Override
+        public void leave(TreeCursor<Object> cursor) {
+        }
+
+        private void record(int index, Object node) {
+            if (node == null) {
+                kinds[index] = NULL;
+                return;
+            }
+            if (node instanceof List<?>) {
+                kinds[index] = ROW;
+                return;
+            }
+            var treeNode = (Node) node;
+            current = index;
+            if (treeNode.start() != null) {
+                startPositions[index] = (int) treeNode.start().pos();
+                startLines[index] = (int) treeNode.start().line();
+                startCols[index] = (int) treeNode.start().col();
+            }
+            if (treeNode.end() != null) {
+                endPositions[index] = (int) treeNode.end().pos();
+                endLines[index] = (int) treeNode.end().line();
+                endCols[index] = (int) treeNode.end().col();
+            }
+            treeNode.accept(this);
+        }
+
+        SectionFile.Writer write(SectionFile.Writer file) {
+            var lexemeTable = new String[lexemeIds.size()];
+            lexemeIds.forEach((lexeme, id) -> lexemeTable[id] = lexeme);
+            var errorPositions = new int[errors.size()];
+            var errorLines = new int[errors.size()];
+            var errorCols = new int[errors.size()];
+            var errorMessages = new String[errors.size()];
+            for (int i = 0; i < errors.size(); i++) {
+                var error = errors.get(i);
+                errorPositions[i] = (int) error.pos().pos();
+                errorLines[i] = (int) error.pos().line();
+                errorCols[i] = (int) error.pos().col();
+                errorMessages[i] = error.error();
+            }
+            return file.bytes(kinds, size)
+                    .bytes(flags, size)
+                    .ints(startPositions, size)
+                    .ints(startLines, size)
+                    .ints(startCols, size)
+                    .ints(endPositions, size)
+                    .ints(endLines, size)
+                    .ints(endCols, size)
+                    .ints(firstTokens, size)
+                    .ints(secondTokens, size)
+                    .ints(firstChildren, size)
+                    .ints(nextSiblings, size)
+                    .bytes(tokenTypes, tokens)
+                    .ints(tokenLexemes, tokens)
+                    .ints(tokenPositions, tokens)
+                    .ints(tokenLines, tokens)
+                    .ints(tokenCols, tokens)
+                    .strings(lexemeTable)
+                    .ints(errorPositions, errors.size())
+                    .ints(errorLines, errors.size())
+                    .ints(errorCols, errors.size())
+                    .strings(errorMessages);
+        }
+
+        private Void node(byte kind) {
+            kinds[current] = kind;
+            return null;
+        }
+
+        private Void node(byte kind, Token token) {
+            firstTokens[current] = addToken(token);
+            return node(kind);
+        }
+
+        @Override
+        public Void visitSyntaxError(SyntaxError node) {
+            firstTokens[current] = errors.size();
+            errors.add(node.error());
+            return node(SYNTAX_ERROR);
+        }
+
+        @Override
+        public Void visitStatements(Statements node) {
+            return node(STATEMENTS);
+        }
+
+        @Override
+        public Void visitThreadLabel(ThreadLabel node) {
+            return node(THREAD_LABEL, node.identifier());
+        }
+
+        @Override
+        public Void visitSwitchCase(SwitchCase node) {
+            secondTokens[current] = addToken(node.identifier());
+            return node(SWITCH_CASE, node.operator());
+        }
+
+        @Override
+        public Void visitIfElse(IfElse node) {
+            return node(IF_ELSE);
+        }
+
+        @Override
+        public Void visitSwitch(Switch node) {
+            return node(SWITCH);
+        }
+
+        @Override
+        public Void visitWhileLoop(WhileLoop node) {
+            return node(WHILE_LOOP);
+        }
+
+        @Override
+        public Void visitForLoop(ForLoop node) {
+            return node(FOR_LOOP);
+        }
+
+        @Override
+        public Void visitTryCatch(TryCatch node) {
+            return node(TRY_CATCH);
+        }
+
+        @Override
+        public Void visitNoOperation(NoOperation node) {
+            return node(NO_OPERATION);
+        }
+
+        @Override
+        public Void visitBreak(Break node) {
+            return node(BREAK);
+        }
+
+        @Override
+        public Void visitContinue(Continue node) {
+            return node(CONTINUE);
+        }
+
+        @Override
+        public Void visitExpressionStmt(ExpressionStmt node) {
+            return node(EXPRESSION_STMT);
+        }
+
+        @Override
+        public Void visitFunctionCall(FunctionCall node) {
+            flags[current] = node.thread() ? FLAG : 0;
+            return node(FUNCTION_CALL, node.identifier());
+        }
+
+        @Override
+        public Void visitParams(Params node) {
+            return node(PARAMS);
+        }
+
+        @Override
+        public Void visitPostfixOp(PostfixOp node) {
+            return node(POSTFIX_OP, node.operator());
+        }
+
+        @Override
+        public Void visitPrefixOp(PrefixOp node) {
+            return node(PREFIX_OP, node.operator());
+        }
+
+        @Override
+        public Void visitBinaryOp(BinaryOp node) {
+            return node(BINARY_OP, node.operator());
+        }
+
+        @Override
+        public Void visitLiteral(Literal node) {
+            return node(LITERAL, node.token());
+        }
+
+        @Override
+        public Void visitVectorDeclaration(VectorDeclaration node) {
+            return node(VECTOR_DECLARATION);
+        }
+
+        @Override
+        public Void visitConstArrayDeclaration(ConstArrayDeclaration node) {
+            flags[current] = node.list() ? FLAG : 0;
+            return node(CONST_ARRAY_DECLARATION);
+        }
+
+        private int allocate() {
+            if (size == kinds.length) {
+                grow();
+            }
+            var index = size++;
+            kinds[index] = NULL;
+            flags[index] = 0;
+            startPositions[index] = NONE;
+            startLines[index] = NONE;
+            startCols[index] = NONE;
+            endPositions[index] = NONE;
+            endLines[index] = NONE;
+            endCols[index] = NONE;
+            firstTokens[index] = NONE;
+            secondTokens[index] = NONE;
+            firstChildren[index] = NONE;
+            nextSiblings[index] = NONE;
+            return index;
+        }
+
+        private int addToken(Token token) {
+            if (token == null) {
+                return NONE;
+            }
+            if (tokens == tokenTypes.length) {
+                growTokens();
+            }
+            var index = tokens++;
+            tokenTypes[index] = (byte) token.type().ordinal();
+            tokenLexemes[index] = lexemeIds.computeIfAbsent(token.lexeme(), it -> lexemeIds.size());
+            tokenPositions[index] = (int) token.pos().pos();
+            tokenLines[index] = (int) token.line();
+            tokenCols[index] = (int) token.col();
+            return index;
+        }
+
+        private void grow() {
+            var capacity = kinds.length * 2;
+            kinds = Arrays.copyOf(kinds, capacity);
+            flags = Arrays.copyOf(flags, capacity);
+            startPositions = Arrays.copyOf(startPositions, capacity);
+            startLines = Arrays.copyOf(startLines, capacity);
+            startCols = Arrays.copyOf(startCols, capacity);
+            endPositions = Arrays.copyOf(endPositions, capacity);
+            endLines = Arrays.copyOf(endLines, capacity);
+            endCols = Arrays.copyOf(endCols, capacity);
+            firstTokens = Arrays.copyOf(firstTokens, capacity);
+            secondTokens = Arrays.copyOf(secondTokens, capacity);
+            firstChildren = Arrays.copyOf(firstChildren, capacity);
+            nextSiblings = Arrays.copyOf(nextSiblings, capacity);
+        }
+
+        private void growTokens() {
+            var capacity = tokenTypes.length * 2;
+            tokenTypes = Arrays.copyOf(tokenTypes, capacity);
+            tokenLexemes = Arrays.copyOf(tokenLexemes, capacity);
+            tokenPositions = Arrays.copyOf(tokenPositions, capacity);
+            tokenLines = Arrays.copyOf(tokenLines, capacity);
+            tokenCols = Arrays.copyOf(tokenCols, capacity);
+        }
+    }
+
+    /**
+     * Children of the nodes in the order they're stored: the children of {@link AbstractSyntaxTree#cursor()},
+     * except for the made arrays, whose children are their rows, and the rows, whose children are their elements
+     */
+    private static final class StoredChildren implements TreeCursor.Tree<Object> {
+        private final AbstractSyntaxTree.ChildSlots slots = new AbstractSyntaxTree.ChildSlots();
+
+        @Override
+        public int childCount(Object node) {
+            if (node instanceof List<?> row) {
+                return row.size();
+            }
+            if (node instanceof ConstArrayDeclaration constArray) {
+                return constArray.indices().size();
+            }
+            return slots.childCount((Node) node);
+        }
+
+        @Override
+        public Object child(Object node, int index) {
+            if (node instanceof List<?> row) {
+                return row.get(index);
+            }
+            if (node instanceof ConstArrayDeclaration constArray) {
+                return constArray.indices().get(index);
+            }
+            return slots.child((Node) node, index);
+        }
+    }
+}
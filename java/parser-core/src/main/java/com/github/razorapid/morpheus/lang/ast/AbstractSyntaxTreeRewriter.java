@@ -0,0 +1,359 @@
+package com.github.razorapid.morpheus.lang.ast;
+
+import com.github.razorapid.morpheus.lang.Token;
+import com.github.razorapid.morpheus.lang.TreeCursor;
+import com.github.razorapid.morpheus.lang.ast.AbstractSyntaxTree.BinaryOp;
+import com.github.razorapid.morpheus.lang.ast.AbstractSyntaxTree.Break;
+import com.github.razorapid.morpheus.lang.ast.AbstractSyntaxTree.ConstArrayDeclaration;
+import com.github.razorapid.morpheus.lang.ast.AbstractSyntaxTree.Continue;
+import com.github.razorapid.morpheus.lang.ast.AbstractSyntaxTree.Expression;
+import com.github.razorapid.morpheus.lang.ast.AbstractSyntaxTree.ExpressionStmt;
+import com.github.razorapid.morpheus.lang.ast.AbstractSyntaxTree.ForLoop;
+import com.github.razorapid.morpheus.lang.ast.AbstractSyntaxTree.FunctionCall;
+import com.github.razorapid.morpheus.lang.ast.AbstractSyntaxTree.IfElse;
+import com.github.razorapid.morpheus.lang.ast.AbstractSyntaxTree.Literal;
+import com.github.razorapid.morpheus.lang.ast.AbstractSyntaxTree.Node;
+import com.github.razorapid.morpheus.lang.ast.AbstractSyntaxTree.NoOperation;
+import com.github.razorapid.morpheus.lang.ast.AbstractSyntaxTree.Params;
+import com.github.razorapid.morpheus.lang.ast.AbstractSyntaxTree.PostfixOp;
+import com.github.razorapid.morpheus.lang.ast.AbstractSyntaxTree.PrefixOp;
+import com.github.razorapid.morpheus.lang.ast.AbstractSyntaxTree.Statement;
+import com.github.razorapid.morpheus.lang.ast.AbstractSyntaxTree.Statements;
+import com.github.razorapid.morpheus.lang.ast.AbstractSyntaxTree.Switch;
+import com.github.razorapid.morpheus.lang.ast.AbstractSyntaxTree.SwitchCase;
+import com.github.razorapid.morpheus.lang.ast.AbstractSyntaxTree.SyntaxError;
+import com.github.razorapid.morpheus.lang.ast.AbstractSyntaxTree.ThreadLabel;
+import com.github.razorapid.morpheus.lang.ast.AbstractSyntaxTree.TryCatch;
+import com.github.razorapid.morpheus.lang.ast.AbstractSyntaxTree.VectorDeclaration;
+import com.github.razorapid.morpheus.lang.ast.AbstractSyntaxTree.WhileLoop;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.TreeMap;
+
+/**
+ * Batch of edits of an abstract syntax tree (replace, insert or remove a statement, rename a token),
+ * applied to a new tree that shares every subtree the edits don't touch with the edited one.
+ *
+ * Nodes are addressed by their paths from the program node: indices of the nodes among the children of their parents,
+ * as {@link TreeCursor#path()} of {@link AbstractSyntaxTree#cursor()} gives them. All the paths of a batch are paths
+ * in the edited tree, edits don't shift the paths of the other edits. Only the nodes on the paths to the edited nodes
+ * are copied (lists of statements and parameters on the paths as a whole), so a batch costs the number of the edits
+ * times the depth of the tree, no matter how big the tree is.
+ *
+ * Copied nodes keep their positions, positions of the new tree are the ones in the edited script
+ * (the new tree can be printed back to a script with {@link com.github.razorapid.morpheus.lang.ast.visitors.ScriptPrinter}).
+ * A rewriter isn't thread-safe.
+ */
+public final class AbstractSyntaxTreeRewriter {
+    private final AbstractSyntaxTree ast;
+    private final Edit root = new Edit(new int[0]);
+
+    public AbstractSyntaxTreeRewriter(AbstractSyntaxTree ast) {
+        this.ast = ast;
+    }
+
+    /**
+     * Replaces the node at the path with the node, the empty path replaces the program.
+     * A statement is replaced with a statement, an expression with an expression and parameters with parameters.
+     */
+    public AbstractSyntaxTreeRewriter replace(int[] path, Node node) {
+        edit(path, path.length).replacement = node;
+        return this;
+    }
+
+    /**
+     * Inserts the statement before the statement at the path in a list of statements, the index past the last statement
+     * of the list appends the statement. Statements inserted at the same index keep the order they're inserted in.
+     */
+    public AbstractSyntaxTreeRewriter insert(int[] path, Statement statement) {
+        requireParent(path);
+        edit(path, path.length - 1).inserts.computeIfAbsent(path[path.length - 1], index -> new ArrayList<>()).add(statement);
+        return this;
+    }
+
+    /**
+     * Removes the statement at the path from its list of statements
+     */
+    public AbstractSyntaxTreeRewriter remove(int[] path) {
+        requireParent(path);
+        edit(path, path.length).removed = true;
+        return this;
+    }
+
+    /**
+     * Renames the identifier of the thread label, the case label or the function call, or the token of the literal
+     * at the path, the token keeps its type and position
+     */
+    public AbstractSyntaxTreeRewriter rename(int[] path, String lexeme) {
+        edit(path, path.length).lexeme = lexeme;
+        return this;
+    }
+
+    /**
+     * @return tree with the edits applied, the edited tree doesn't change
+     * @throws IllegalArgumentException when a path doesn't lead to a node the edit applies to,
+     *                                  or an edit is in a subtree another edit replaces or removes
+     */
+    public AbstractSyntaxTree apply() {
+        var edits = resolve();
+        var rebuild = new Rebuild();
+        for (int i = edits.size() - 1; i >= 0; i--) {
+            var edit = edits.get(i);
+            if (edit.replacement != null) {
+                edit.result = edit.replacement;
+            } else if (!edit.removed) {
+                rebuild.edit = edit;
+                edit.result = edit.original.accept(rebuild);
+            }
+        }
+        return new AbstractSyntaxTree(root.result);
+    }
+
+    /**
+     * Finds the nodes of the edits, parents before children
+     */
+    private List<Edit> resolve() {
+        var slots = new AbstractSyntaxTree.ChildSlots();
+        var edits = new ArrayList<Edit>();
+        var pending = new ArrayDeque<Edit>();
+        root.original = ast.program();
+        pending.push(root);
+        while (!pending.isEmpty()) {
+            var edit = pending.pop();
+            edits.add(edit);
+            var node = edit.original;
+            if ((edit.replacement != null || edit.removed) &&
+                    (!edit.children.isEmpty() || !edit.inserts.isEmpty() || edit.lexeme != null || edit.replacement != null && edit.removed)) {
+                throw new IllegalArgumentException("Overlapping edits at path " + Arrays.toString(edit.path));
+            }
+            if (edit.replacement != null && !fits(node, edit.replacement)) {
+                throw new IllegalArgumentException("Can't replace " + node.getClass().getSimpleName() + " with " +
+                        edit.replacement.getClass().getSimpleName() + " at path " + Arrays.toString(edit.path));
+            }
+            if (edit.lexeme != null && !(node instanceof ThreadLabel || node instanceof SwitchCase || node instanceof FunctionCall || node instanceof Literal)) {
+                throw new IllegalArgumentException("Nothing to rename at path " + Arrays.toString(edit.path));
+            }
+            var count = slots.childCount(node);
+            if (!edit.inserts.isEmpty() && !(node instanceof Statements && edit.inserts.lastKey() <= count)) {
+                throw new IllegalArgumentException("No list of statements to insert at " + edit.inserts.lastKey() + " at path " + Arrays.toString(edit.path));
+            }
+            for (var child : edit.children.entrySet()) {
+                var childNode = child.getKey() < count ? slots.child(node, child.getKey()) : null;
+                if (childNode == null) {
+                    throw new IllegalArgumentException("No node at path " + Arrays.toString(child.getValue().path));
+                }
+                if (child.getValue().removed && !(node instanceof Statements)) {
+                    throw new IllegalArgumentException("No statement to remove from a list of statements at path " + Arrays.toString(child.getValue().path));
+                }
+                child.getValue().original = childNode;
+                pending.push(child.getValue());
+            }
+        }
+        return edits;
+    }
+
+    private static boolean fits(Node node, Node replacement) {
+        if (node instanceof Params) {
+            return replacement instanceof Params;
+        }
+        return node instanceof Statement ? replacement instanceof Statement : replacement instanceof Expression;
+    }
+
+    private Edit edit(int[] path, int length) {
+        var edit = root;
+        for (int i = 0; i < length; i++) {
+            var index = i;
+            edit = edit.children.computeIfAbsent(path[i], key -> new Edit(Arrays.copyOf(path, index + 1)));
+        }
+        return edit;
+    }
+
+    private static void requireParent(int[] path) {
+        if (path.length == 0) {
+            throw new IllegalArgumentException("The program isn't in a list of statements");
+        }
+    }
+
+    /**
+     * Edits of a node and the edited descendants of it by their indices among the children of the node
+     */
+    private static final class Edit {
+        private final int[] path;
+        private final TreeMap<Integer, Edit> children = new TreeMap<>();
+        private final TreeMap<Integer, List<Statement>> inserts = new TreeMap<>();
+        private Node replacement;
+        private boolean removed;
+        private String lexeme;
+
+        private Node original;
+        private Node result;
+
+        Edit(int[] path) {
+            this.path = path;
+        }
+    }
+
+    /**
+     * Copy of the node of the edit, with its edited children and its token renamed,
+     * the edited children are rebuilt before their parents
+     */
+    private static final class Rebuild implements AbstractSyntaxTreeVisitor<Node> {
+        private Edit edit;
+
+        @SuppressWarnings("unchecked")
+        private <N extends Node> N child(int index, N node) {
+            var child = edit.children.get(index);
+            return child != null ? (N) child.result : node;
+        }
+
+        private <N extends Node> List<N> children(int from, List<N> nodes) {
+            var copy = new ArrayList<N>(nodes.size());
+            for (int i = 0; i < nodes.size(); i++) {
+                copy.add(child(from + i, nodes.get(i)));
+            }
+            return Collections.unmodifiableList(copy);
+        }
+
+        private Token token(Token token) {
+            if (edit.lexeme == null || token == null) {
+                return token;
+            }
+            return Token.of(token.type(), edit.lexeme, token.pos().pos(), token.line(), token.col());
+        }
+
+        @Override
+        public Node visitSyntaxError(SyntaxError node) {
+            return node;
+        }
+
+        @Override
+        public Node visitStatements(Statements node) {
+            var statements = new ArrayList<Statement>(node.statements().size() + edit.inserts.size());
+            for (int i = 0; i <= node.statements().size(); i++) {
+                var inserted = edit.inserts.get(i);
+                if (inserted != null) {
+                    statements.addAll(inserted);
+                }
+                if (i < node.statements().size()) {
+                    var child = edit.children.get(i);
+                    if (child == null) {
+                        statements.add(node.statements().get(i));
+                    } else if (!child.removed) {
+                        statements.add((Statement) child.result);
+                    }
+                }
+            }
+            return new Statements(node.start(), node.end(), Collections.unmodifiableList(statements));
+        }
+
+        @Override
+        public Node visitThreadLabel(ThreadLabel node) {
+            return new ThreadLabel(node.start(), node.end(), token(node.identifier()), child(0, node.params()));
+        }
+
+        @Override
+        public Node visitSwitchCase(SwitchCase node) {
+            return new SwitchCase(node.start(), node.end(), node.operator(), token(node.identifier()), child(0, node.params()));
+        }
+
+        @Override
+        public Node visitIfElse(IfElse node) {
+            return new IfElse(node.start(), node.end(), child(0, node.condition()), child(1, node.ifClause()), child(2, node.elseClause()));
+        }
+
+        @Override
+        public Node visitSwitch(Switch node) {
+            return new Switch(node.start(), node.end(), child(0, node.condition()), child(1, node.body()));
+        }
+
+        @Override
+        public Node visitWhileLoop(WhileLoop node) {
+            return new WhileLoop(node.start(), node.end(), child(0, node.condition()), child(1, node.body()));
+        }
+
+        @Override
+        public Node visitForLoop(ForLoop node) {
+            return new ForLoop(node.start(), node.end(),
+                    child(0, node.initializer()), child(1, node.condition()), child(2, node.advancement()), child(3, node.body()));
+        }
+
+        @Override
+        public Node visitTryCatch(TryCatch node) {
+            return new TryCatch(node.start(), node.end(), child(0, node.tryClause()), child(1, node.catchClause()));
+        }
+
+        @Override
+        public Node visitNoOperation(NoOperation node) {
+            return node;
+        }
+
+        @Override
+        public Node visitBreak(Break node) {
+            return node;
+        }
+
+        @Override
+        public Node visitContinue(Continue node) {
+            return node;
+        }
+
+        @Override
+        public Node visitExpressionStmt(ExpressionStmt node) {
+            return new ExpressionStmt(node.start(), node.end(), child(0, node.expression()));
+        }
+
+        @Override
+        public Node visitFunctionCall(FunctionCall node) {
+            return new FunctionCall(node.start(), node.end(), node.thread(),
+                    child(0, node.listener()), token(node.identifier()), child(1, node.params()));
+        }
+
+        @Override
+        public Node visitParams(Params node) {
+            return new Params(node.start(), node.end(), children(0, node.param()));
+        }
+
+        @Override
+        public Node visitPostfixOp(PostfixOp node) {
+            return new PostfixOp(node.start(), node.end(), child(0, node.lhs()), node.operator());
+        }
+
+        @Override
+        public Node visitPrefixOp(PrefixOp node) {
+            return new PrefixOp(node.start(), node.end(), node.operator(), child(0, node.rhs()));
+        }
+
+        @Override
+        public Node visitBinaryOp(BinaryOp node) {
+            return new BinaryOp(node.start(), node.end(), child(0, node.lhs()), node.operator(), child(1, node.rhs()));
+        }
+
+        @Override
+        public Node visitLiteral(Literal node) {
+            return new Literal(node.start(), node.end(), token(node.token()));
+        }
+
+        @Override
+        public Node visitVectorDeclaration(VectorDeclaration node) {
+            return new VectorDeclaration(node.start(), node.end(), child(0, node.x()), child(1, node.y()), child(2, node.z()));
+        }
+
+        /**
+         * Elements of the rows are indexed one after another, as {@link AbstractSyntaxTree.ChildSlots} does
+         */
+        @Override
+        public Node visitConstArrayDeclaration(ConstArrayDeclaration node) {
+            var rows = new ArrayList<List<Expression>>(node.indices().size());
+            var from = 0;
+            for (var row : node.indices()) {
+                rows.add(children(from, row));
+                from += row.size();
+            }
+            return new ConstArrayDeclaration(node.start(), node.end(), node.list(), Collections.unmodifiableList(rows));
+        }
+    }
+}
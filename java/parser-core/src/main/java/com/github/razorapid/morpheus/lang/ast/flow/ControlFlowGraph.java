@@ -0,0 +1,335 @@
+package com.github.razorapid.morpheus.lang.ast.flow;
+
+import com.github.razorapid.morpheus.lang.ast.AbstractSyntaxTree.Node;
+
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * Control flow graph of a thread: basic blocks of the statements (and the conditions of the branches, loops
+ * and switches) that run one after another, and the jumps between the blocks.
+ *
+ * Blocks are numbered from 0, {@link #ENTRY} is the block of the thread label and {@link #EXIT} is the empty block
+ * the thread ends in. The graph is kept in arrays of ints: the nodes of the blocks one block after another
+ * in a single array, and the successors and the predecessors of the blocks the same way, a block is the range
+ * of its entries (offsets of the ranges are indexed by the blocks). Dominators and loops are computed when the graph
+ * is built, the graph doesn't change after that and can be shared between threads.
+ *
+ * Blocks nothing jumps to (i.e. the statements after a {@code break}) are kept, they're unreachable:
+ * they have no dominator and aren't in loops.
+ */
+public final class ControlFlowGraph {
+    public static final int ENTRY = 0;
+    public static final int EXIT = 1;
+    public static final int NONE = -1;
+
+    private final Node[] nodes;
+    private final int[] nodeOffsets;
+    private final int[] successorOffsets;
+    private final int[] successors;
+    private final int[] predecessorOffsets;
+    private final int[] predecessors;
+    /** position of the blocks in the reverse postorder from the entry, NONE for unreachable blocks */
+    private final int[] order;
+    private final int[] dominators;
+    private final int[] loopHeaders;
+    private final int[] loopParents;
+    private final int[] loopDepths;
+
+    ControlFlowGraph(Node[] nodes, int[] nodeOffsets, int[] successorOffsets, int[] successors,
+                     int[] predecessorOffsets, int[] predecessors) {
+        this.nodes = nodes;
+        this.nodeOffsets = nodeOffsets;
+        this.successorOffsets = successorOffsets;
+        this.successors = successors;
+        this.predecessorOffsets = predecessorOffsets;
+        this.predecessors = predecessors;
+
+        var blocks = blockCount();
+        this.order = new int[blocks];
+        this.dominators = new int[blocks];
+        this.loopHeaders = new int[blocks];
+        this.loopParents = new int[blocks];
+        this.loopDepths = new int[blocks];
+        var preorder = new int[blocks];
+        var parents = new int[blocks];
+        var reversePostorder = reversePostorder(preorder, parents);
+        computeDominators(preorder, parents, reversePostorder.length);
+        computeLoops(reversePostorder);
+    }
+
+    public int blockCount() {
+        return nodeOffsets.length - 1;
+    }
+
+    /**
+     * @return statements of the block and the conditions of the branches, loops and switches, in the order they run
+     */
+    public List<Node> nodes(int block) {
+        return Collections.unmodifiableList(Arrays.asList(nodes).subList(nodeOffsets[block], nodeOffsets[block + 1]));
+    }
+
+    /**
+     * @return block of the statement or the condition, NONE if it isn't in the graph (the graph is scanned for it)
+     */
+    public int block(Node node) {
+        for (int block = 0; block < blockCount(); block++) {
+            for (int i = nodeOffsets[block]; i < nodeOffsets[block + 1]; i++) {
+                if (nodes[i] == node) {
+                    return block;
+                }
+            }
+        }
+        return NONE;
+    }
+
+    public int successorCount(int block) {
+        return successorOffsets[block + 1] - successorOffsets[block];
+    }
+
+    /**
+     * @return successor of the block, successors are ordered by their numbers
+     */
+    public int successor(int block, int index) {
+        return successors[successorOffsets[block] + index];
+    }
+
+    public int predecessorCount(int block) {
+        return predecessorOffsets[block + 1] - predecessorOffsets[block];
+    }
+
+    /**
+     * @return predecessor of the block, predecessors are ordered by their numbers
+     */
+    public int predecessor(int block, int index) {
+        return predecessors[predecessorOffsets[block] + index];
+    }
+
+    public boolean isReachable(int block) {
+        return order[block] != NONE;
+    }
+
+    /**
+     * @return closest block every path from the entry to the block goes through, the entry for the entry itself,
+     * NONE for unreachable blocks
+     */
+    public int immediateDominator(int block) {
+        return dominators[block];
+    }
+
+    /**
+     * @return whether every path from the entry to the block goes through the dominator (a block dominates itself)
+     */
+    public boolean dominates(int dominator, int block) {
+        if (!isReachable(dominator) || !isReachable(block)) {
+            return false;
+        }
+        while (order[block] > order[dominator]) {
+            block = dominators[block];
+        }
+        return block == dominator;
+    }
+
+    public boolean isLoopHeader(int block) {
+        return loopHeaders[block] == block;
+    }
+
+    /**
+     * @return header of the innermost loop the block is in (the block itself for a header), NONE outside loops
+     */
+    public int loopHeader(int block) {
+        return loopHeaders[block];
+    }
+
+    /**
+     * @return header of the loop the loop of the header is nested in, NONE for outermost loops and blocks that aren't headers
+     */
+    public int loopParent(int header) {
+        return loopParents[header];
+    }
+
+    /**
+     * @return number of the loops the block is in, 0 outside loops
+     */
+    public int loopDepth(int block) {
+        return loopDepths[block];
+    }
+
+    /**
+     * Depth first search from the entry, the reachable blocks in the preorder and their parents in the search
+     * are kept for the dominators
+     */
+    private int[] reversePostorder(int[] preorder, int[] parents) {
+        var blocks = blockCount();
+        var postorder = new int[blocks];
+        var visited = 0;
+        var found = 1;
+        var stack = new int[blocks];
+        var next = new int[blocks];
+        var depth = 0;
+        Arrays.fill(order, NONE);
+        order[ENTRY] = 0;
+        preorder[0] = ENTRY;
+        parents[ENTRY] = NONE;
+        stack[0] = ENTRY;
+        next[0] = successorOffsets[ENTRY];
+        while (depth >= 0) {
+            var block = stack[depth];
+            if (next[depth] < successorOffsets[block + 1]) {
+                var successor = successors[next[depth]++];
+                if (order[successor] == NONE) {
+                    order[successor] = 0;
+                    preorder[found++] = successor;
+                    parents[successor] = block;
+                    stack[++depth] = successor;
+                    next[depth] = successorOffsets[successor];
+                }
+            } else {
+                postorder[visited++] = block;
+                depth--;
+            }
+        }
+
+        var reversePostorder = new int[visited];
+        for (int i = 0; i < visited; i++) {
+            reversePostorder[i] = postorder[visited - 1 - i];
+            order[reversePostorder[i]] = i;
+        }
+        return reversePostorder;
+    }
+
+    /**
+     * Algorithm of Lengauer and Tarjan with path compression: semidominators of the blocks are found
+     * in the reverse preorder through the forest of the blocks searched so far, the immediate dominators follow
+     * from them in the preorder. Joins of many branches deep in the dominator tree (i.e. after nested ifs) take
+     * the same time as any other block.
+     */
+    private void computeDominators(int[] preorder, int[] parents, int count) {
+        var blocks = blockCount();
+        var semidominators = new int[blocks];
+        var ancestors = new int[blocks];
+        var labels = new int[blocks];
+        var buckets = new int[blocks];
+        var bucketNext = new int[blocks];
+        var path = new int[blocks];
+        Arrays.fill(dominators, NONE);
+        Arrays.fill(ancestors, NONE);
+        Arrays.fill(buckets, NONE);
+        for (int i = 0; i < count; i++) {
+            semidominators[preorder[i]] = i;
+            labels[preorder[i]] = preorder[i];
+        }
+
+        for (int i = count - 1; i > 0; i--) {
+            var block = preorder[i];
+            for (int p = predecessorOffsets[block]; p < predecessorOffsets[block + 1]; p++) {
+                var predecessor = predecessors[p];
+                if (isReachable(predecessor)) {
+                    var label = evaluate(predecessor, ancestors, labels, semidominators, path);
+                    semidominators[block] = Math.min(semidominators[block], semidominators[label]);
+                }
+            }
+            var semidominator = preorder[semidominators[block]];
+            bucketNext[block] = buckets[semidominator];
+            buckets[semidominator] = block;
+
+            var parent = parents[block];
+            ancestors[block] = parent;
+            for (int bucketed = buckets[parent]; bucketed != NONE; bucketed = bucketNext[bucketed]) {
+                var label = evaluate(bucketed, ancestors, labels, semidominators, path);
+                dominators[bucketed] = semidominators[label] < semidominators[bucketed] ? label : parent;
+            }
+            buckets[parent] = NONE;
+        }
+
+        dominators[ENTRY] = ENTRY;
+        for (int i = 1; i < count; i++) {
+            var block = preorder[i];
+            if (dominators[block] != preorder[semidominators[block]]) {
+                dominators[block] = dominators[dominators[block]];
+            }
+        }
+    }
+
+    /**
+     * @return block of the least semidominator on the path from the block up to the root of its tree in the forest,
+     * the path is compressed to the root on the way
+     */
+    private static int evaluate(int block, int[] ancestors, int[] labels, int[] semidominators, int[] path) {
+        if (ancestors[block] == NONE) {
+            return block;
+        }
+        var length = 0;
+        for (var next = block; ancestors[ancestors[next]] != NONE; next = ancestors[next]) {
+            path[length++] = next;
+        }
+        while (length > 0) {
+            var next = path[--length];
+            var ancestor = ancestors[next];
+            if (semidominators[labels[ancestor]] < semidominators[labels[next]]) {
+                labels[next] = labels[ancestor];
+            }
+            ancestors[next] = ancestors[ancestor];
+        }
+        return labels[block];
+    }
+
+    /**
+     * Natural loops of the back edges (jumps to a block that dominates the jumping block), innermost loops first:
+     * a header comes after the headers of the loops it's nested in in the reverse postorder. A loop collects
+     * the blocks that reach its back edges backwards without going through its header, an inner loop found
+     * on the way is nested in the loop as a whole.
+     */
+    private void computeLoops(int[] reversePostorder) {
+        Arrays.fill(loopHeaders, NONE);
+        Arrays.fill(loopParents, NONE);
+        var pending = new int[Math.max(predecessors.length, 1)];
+        for (int i = reversePostorder.length - 1; i >= 0; i--) {
+            var header = reversePostorder[i];
+            var count = 0;
+            for (int p = predecessorOffsets[header]; p < predecessorOffsets[header + 1]; p++) {
+                if (dominates(header, predecessors[p])) {
+                    pending[count++] = predecessors[p];
+                }
+            }
+            if (count == 0) {
+                continue;
+            }
+            loopHeaders[header] = header;
+            while (count > 0) {
+                var block = pending[--count];
+                if (loopHeaders[block] == NONE) {
+                    loopHeaders[block] = header;
+                } else {
+                    block = outermostLoop(loopHeaders[block]);
+                    if (block == header) {
+                        continue;
+                    }
+                    loopParents[block] = header;
+                }
+                for (int p = predecessorOffsets[block]; p < predecessorOffsets[block + 1]; p++) {
+                    if (isReachable(predecessors[p])) {
+                        pending[count++] = predecessors[p];
+                    }
+                }
+            }
+        }
+
+        for (var block : reversePostorder) {
+            var header = loopHeaders[block];
+            if (header == block) {
+                loopDepths[block] = loopParents[block] != NONE ? loopDepths[loopParents[block]] + 1 : 1;
+            } else if (header != NONE) {
+                loopDepths[block] = loopDepths[header];
+            }
+        }
+    }
+
+    private int outermostLoop(int header) {
+        while (loopParents[header] != NONE) {
+            header = loopParents[header];
+        }
+        return header;
+    }
+}
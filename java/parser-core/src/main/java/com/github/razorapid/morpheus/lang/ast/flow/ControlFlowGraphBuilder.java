@@ -0,0 +1,548 @@
+package com.github.razorapid.morpheus.lang.ast.flow;
+
+import com.github.razorapid.morpheus.lang.TokenType;
+import com.github.razorapid.morpheus.lang.ast.AbstractSyntaxTree.Break;
+import com.github.razorapid.morpheus.lang.ast.AbstractSyntaxTree.Continue;
+import com.github.razorapid.morpheus.lang.ast.AbstractSyntaxTree.Expression;
+import com.github.razorapid.morpheus.lang.ast.AbstractSyntaxTree.ExpressionStmt;
+import com.github.razorapid.morpheus.lang.ast.AbstractSyntaxTree.ForLoop;
+import com.github.razorapid.morpheus.lang.ast.AbstractSyntaxTree.FunctionCall;
+import com.github.razorapid.morpheus.lang.ast.AbstractSyntaxTree.IfElse;
+import com.github.razorapid.morpheus.lang.ast.AbstractSyntaxTree.Literal;
+import com.github.razorapid.morpheus.lang.ast.AbstractSyntaxTree.Node;
+import com.github.razorapid.morpheus.lang.ast.AbstractSyntaxTree.Statement;
+import com.github.razorapid.morpheus.lang.ast.AbstractSyntaxTree.Statements;
+import com.github.razorapid.morpheus.lang.ast.AbstractSyntaxTree.Switch;
+import com.github.razorapid.morpheus.lang.ast.AbstractSyntaxTree.SwitchCase;
+import com.github.razorapid.morpheus.lang.ast.AbstractSyntaxTree.ThreadLabel;
+import com.github.razorapid.morpheus.lang.ast.AbstractSyntaxTree.TryCatch;
+import com.github.razorapid.morpheus.lang.ast.AbstractSyntaxTree.WhileLoop;
+
+import java.util.ArrayDeque;
+import java.util.Arrays;
+import java.util.List;
+
+import static com.github.razorapid.morpheus.lang.ast.flow.ControlFlowGraph.ENTRY;
+import static com.github.razorapid.morpheus.lang.ast.flow.ControlFlowGraph.EXIT;
+import static com.github.razorapid.morpheus.lang.ast.flow.ControlFlowGraph.NONE;
+
+/**
+ * Builds the control flow graph of the statements of a thread, without recursion: compound statements are frames
+ * of an explicit stack, resumed at their next step once the statement of the previous step is built.
+ *
+ * <ul>
+ *     <li>an if jumps from the block of its condition to both of its branches (fold the tree with
+ *     {@link com.github.razorapid.morpheus.lang.ast.visitors.ConstantFolder} first to drop the branches that never run),
+ *     the branches meet in the block after the if</li>
+ *     <li>a loop has a block of its condition (the header) the body jumps back to, a {@code for} jumps back through
+ *     the block of its advancement, a loop of a non-zero integer condition (or a {@code for} without a condition)
+ *     is left only with {@code break}</li>
+ *     <li>a switch jumps from the block of its condition to every case label ({@code default:} is a thread label
+ *     in a switch), a case falls through to the next one</li>
+ *     <li>every block of a try clause can jump to the catch clause</li>
+ *     <li>{@code end} jumps to the exit, and so does the last statement of the thread</li>
+ * </ul>
+ *
+ * Calls are statements like any other, jumps to other threads ({@code goto}, {@code waitthread} and the others)
+ * aren't followed. A {@code break} or {@code continue} outside of loops and a case label outside of switches don't jump.
+ *
+ * Empty blocks that only pass the flow on to another block (the blocks after ifs that end their enclosing branch, ...)
+ * are skipped when the graph is built.
+ */
+final class ControlFlowGraphBuilder {
+    private final ArrayDeque<Frame> frames = new ArrayDeque<>();
+    private final ArrayDeque<Frame> switches = new ArrayDeque<>();
+    private int[] breaks = new int[16];
+    private int breakCount;
+    private int[] continues = new int[16];
+    private int continueCount;
+
+    private Node[] nodes = new Node[64];
+    private int[] nodeBlocks = new int[64];
+    private int nodeCount;
+    private long[] edges = new long[64];
+    private int edgeCount;
+    private int blocks = 2;
+    private int current = ENTRY;
+
+    ControlFlowGraph build(List<Statement> statements, int from, int to) {
+        for (int i = from; i < to; i++) {
+            var statement = statements.get(i);
+            if (statement != null) {
+                enter(statement);
+                while (!frames.isEmpty()) {
+                    var child = resume(frames.peek());
+                    if (child != null) {
+                        enter(child);
+                    } else {
+                        frames.pop();
+                    }
+                }
+            }
+        }
+        edge(current, EXIT);
+        return graph();
+    }
+
+    /**
+     * Compound statement being built, the blocks it needs later on its steps
+     */
+    private static final class Frame {
+        private final Statement statement;
+        private int step;
+        private int first = NONE;
+        private int second = NONE;
+        private int third = NONE;
+
+        Frame(Statement statement) {
+            this.statement = statement;
+        }
+    }
+
+    private void enter(Statement statement) {
+        if (statement instanceof Statements || statement instanceof IfElse || statement instanceof WhileLoop ||
+                statement instanceof ForLoop || statement instanceof Switch || statement instanceof TryCatch) {
+            frames.push(new Frame(statement));
+        } else if (statement instanceof Break) {
+            append(statement);
+            if (breakCount > 0) {
+                jump(breaks[breakCount - 1]);
+            }
+        } else if (statement instanceof Continue) {
+            append(statement);
+            if (continueCount > 0) {
+                jump(continues[continueCount - 1]);
+            }
+        } else if ((statement instanceof SwitchCase || statement instanceof ThreadLabel) && !switches.isEmpty()) {
+            caseLabel(statement);
+        } else {
+            append(statement);
+            if (isThreadEnd(statement)) {
+                jump(EXIT);
+            }
+        }
+    }
+
+    /**
+     * Runs the frame up to the next statement to build
+     *
+     * @return the statement, null once the frame is built
+     */
+    private Statement resume(Frame frame) {
+        var statement = frame.statement;
+        if (statement instanceof Statements statements) {
+            var list = statements.statements();
+            while (frame.step < list.size()) {
+                var child = list.get(frame.step++);
+                if (child != null) {
+                    return child;
+                }
+            }
+            return null;
+        } else if (statement instanceof IfElse ifElse) {
+            return resumeIfElse(frame, ifElse);
+        } else if (statement instanceof WhileLoop whileLoop) {
+            return resumeWhileLoop(frame, whileLoop);
+        } else if (statement instanceof ForLoop forLoop) {
+            return resumeForLoop(frame, forLoop);
+        } else if (statement instanceof Switch switchStmt) {
+            return resumeSwitch(frame, switchStmt);
+        }
+        return resumeTryCatch(frame, (TryCatch) statement);
+    }
+
+    /**
+     * first: block of the condition, second: last block of the if clause
+     */
+    private Statement resumeIfElse(Frame frame, IfElse ifElse) {
+        switch (frame.step++) {
+            case 0 -> {
+                append(ifElse.condition());
+                frame.first = current;
+                current = branch(frame.first);
+                if (ifElse.ifClause() != null) {
+                    return ifElse.ifClause();
+                }
+                return resumeIfElse(frame, ifElse);
+            }
+            case 1 -> {
+                frame.second = current;
+                if (ifElse.elseClause() != null) {
+                    current = branch(frame.first);
+                    return ifElse.elseClause();
+                }
+                current = join(frame.first, frame.second);
+                return null;
+            }
+            default -> {
+                current = join(frame.second, current);
+                return null;
+            }
+        }
+    }
+
+    /**
+     * first: header, second: block after the loop
+     */
+    private Statement resumeWhileLoop(Frame frame, WhileLoop whileLoop) {
+        if (frame.step++ == 0) {
+            frame.first = header(whileLoop.condition());
+            frame.second = newBlock();
+            if (!isAlwaysTrue(whileLoop.condition())) {
+                edge(frame.first, frame.second);
+            }
+            pushLoop(frame.second, frame.first);
+            current = branch(frame.first);
+            if (whileLoop.body() != null) {
+                return whileLoop.body();
+            }
+        }
+        edge(current, frame.first);
+        breakCount--;
+        continueCount--;
+        current = frame.second;
+        return null;
+    }
+
+    /**
+     * first: header, second: block after the loop, third: block of the advancement
+     */
+    private Statement resumeForLoop(Frame frame, ForLoop forLoop) {
+        switch (frame.step++) {
+            case 0 -> {
+                if (forLoop.initializer() != null) {
+                    return forLoop.initializer();
+                }
+                return resumeForLoop(frame, forLoop);
+            }
+            case 1 -> {
+                frame.first = header(forLoop.condition());
+                frame.second = newBlock();
+                frame.third = newBlock();
+                if (forLoop.condition() != null && !isAlwaysTrue(forLoop.condition())) {
+                    edge(frame.first, frame.second);
+                }
+                pushLoop(frame.second, frame.third);
+                current = branch(frame.first);
+                if (forLoop.body() != null) {
+                    return forLoop.body();
+                }
+                return resumeForLoop(frame, forLoop);
+            }
+            case 2 -> {
+                edge(current, frame.third);
+                current = frame.third;
+                breakCount--;
+                continueCount--;
+                if (forLoop.advancement() != null) {
+                    return forLoop.advancement();
+                }
+                return resumeForLoop(frame, forLoop);
+            }
+            default -> {
+                edge(current, frame.first);
+                current = frame.second;
+                return null;
+            }
+        }
+    }
+
+    /**
+     * first: block of the condition, second: block after the switch, third: 1 once the switch has a default label
+     */
+    private Statement resumeSwitch(Frame frame, Switch switchStmt) {
+        if (frame.step++ == 0) {
+            append(switchStmt.condition());
+            frame.first = current;
+            frame.second = newBlock();
+            frame.third = 0;
+            pushBreak(frame.second);
+            switches.push(frame);
+            // statements before the first label never run
+            current = NONE;
+            if (switchStmt.body() != null) {
+                return switchStmt.body();
+            }
+        }
+        edge(current, frame.second);
+        if (frame.third == 0) {
+            edge(frame.first, frame.second);
+        }
+        breakCount--;
+        switches.pop();
+        current = frame.second;
+        return null;
+    }
+
+    /**
+     * first: first block of the try clause, second: last block of the try clause
+     */
+    private Statement resumeTryCatch(Frame frame, TryCatch tryCatch) {
+        switch (frame.step++) {
+            case 0 -> {
+                frame.first = branch(current);
+                current = frame.first;
+                if (tryCatch.tryClause() != null) {
+                    return tryCatch.tryClause();
+                }
+                return resumeTryCatch(frame, tryCatch);
+            }
+            case 1 -> {
+                frame.second = current;
+                var catchClause = newBlock();
+                for (int block = frame.first; block < catchClause; block++) {
+                    edge(block, catchClause);
+                }
+                current = catchClause;
+                if (tryCatch.catchClause() != null) {
+                    return tryCatch.catchClause();
+                }
+                return resumeTryCatch(frame, tryCatch);
+            }
+            default -> {
+                current = join(frame.second, current);
+                return null;
+            }
+        }
+    }
+
+    private void caseLabel(Statement label) {
+        var switchFrame = switches.peek();
+        var block = branch(switchFrame.first);
+        edge(current, block);
+        current = block;
+        append(label);
+        if (label instanceof ThreadLabel threadLabel && "default".equalsIgnoreCase(threadLabel.identifier().lexeme())) {
+            switchFrame.third = 1;
+        }
+    }
+
+    private static boolean isThreadEnd(Statement statement) {
+        return statement instanceof ExpressionStmt expressionStmt &&
+                expressionStmt.expression() instanceof FunctionCall call &&
+                call.thread() && call.listener() == null && call.identifier().isType(TokenType.TOKEN_END);
+    }
+
+    private static boolean isAlwaysTrue(Expression condition) {
+        if (condition instanceof Literal literal && literal.token().isType(TokenType.TOKEN_INTEGER)) {
+            try {
+                return Integer.parseInt(literal.token().lexeme()) != 0;
+            } catch (NumberFormatException e) {
+                return false;
+            }
+        }
+        return false;
+    }
+
+    private void pushLoop(int breakTarget, int continueTarget) {
+        pushBreak(breakTarget);
+        if (continueCount == continues.length) {
+            continues = Arrays.copyOf(continues, continueCount * 2);
+        }
+        continues[continueCount++] = continueTarget;
+    }
+
+    private void pushBreak(int target) {
+        if (breakCount == breaks.length) {
+            breaks = Arrays.copyOf(breaks, breakCount * 2);
+        }
+        breaks[breakCount++] = target;
+    }
+
+    /**
+     * New block of the loop condition, the current block jumps to it
+     */
+    private int header(Expression condition) {
+        var header = newBlock();
+        edge(current, header);
+        current = header;
+        if (condition != null) {
+            append(condition);
+        }
+        return header;
+    }
+
+    /**
+     * @return new block the block jumps to
+     */
+    private int branch(int from) {
+        var block = newBlock();
+        edge(from, block);
+        return block;
+    }
+
+    /**
+     * @return new block both blocks jump to
+     */
+    private int join(int first, int second) {
+        var block = newBlock();
+        edge(first, block);
+        edge(second, block);
+        return block;
+    }
+
+    /**
+     * Jumps from the current block, the statements that follow are unreachable until a block jumps to them
+     */
+    private void jump(int target) {
+        edge(current, target);
+        current = NONE;
+    }
+
+    private int newBlock() {
+        return blocks++;
+    }
+
+    private void append(Node node) {
+        if (current == NONE) {
+            current = newBlock();
+        }
+        if (nodeCount == nodes.length) {
+            nodes = Arrays.copyOf(nodes, nodeCount * 2);
+            nodeBlocks = Arrays.copyOf(nodeBlocks, nodeCount * 2);
+        }
+        nodes[nodeCount] = node;
+        nodeBlocks[nodeCount++] = current;
+    }
+
+    private void edge(int from, int to) {
+        if (from == NONE) {
+            return;
+        }
+        if (edgeCount == edges.length) {
+            edges = Arrays.copyOf(edges, edgeCount * 2);
+        }
+        edges[edgeCount++] = (long) from << 32 | to;
+    }
+
+    /**
+     * Packs the nodes and the edges by the blocks, once the empty blocks of a single successor are skipped
+     */
+    private ControlFlowGraph graph() {
+        while (skipEmptyBlocks()) {
+            // a skipped block can leave a block before it with a single successor
+        }
+
+        var nodeOffsets = new int[blocks + 1];
+        for (int i = 0; i < nodeCount; i++) {
+            nodeOffsets[nodeBlocks[i] + 1]++;
+        }
+        for (int block = 0; block < blocks; block++) {
+            nodeOffsets[block + 1] += nodeOffsets[block];
+        }
+        var packedNodes = new Node[nodeCount];
+        var filled = Arrays.copyOf(nodeOffsets, blocks);
+        for (int i = 0; i < nodeCount; i++) {
+            packedNodes[filled[nodeBlocks[i]]++] = nodes[i];
+        }
+
+        var successorOffsets = new int[blocks + 1];
+        var predecessorOffsets = new int[blocks + 1];
+        for (int i = 0; i < edgeCount; i++) {
+            successorOffsets[(int) (edges[i] >>> 32) + 1]++;
+            predecessorOffsets[(int) edges[i] + 1]++;
+        }
+        for (int block = 0; block < blocks; block++) {
+            successorOffsets[block + 1] += successorOffsets[block];
+            predecessorOffsets[block + 1] += predecessorOffsets[block];
+        }
+        var successors = new int[edgeCount];
+        var predecessors = new int[edgeCount];
+        var predecessorsFilled = Arrays.copyOf(predecessorOffsets, blocks);
+        for (int i = 0; i < edgeCount; i++) {
+            var to = (int) edges[i];
+            successors[i] = to;
+            predecessors[predecessorsFilled[to]++] = (int) (edges[i] >>> 32);
+        }
+        return new ControlFlowGraph(packedNodes, nodeOffsets, successorOffsets, successors, predecessorOffsets, predecessors);
+    }
+
+    /**
+     * Sorts the edges and drops the duplicates, then skips the empty blocks of a single successor: jumps to them
+     * jump to their successor, the other blocks are numbered anew in the order they were created
+     *
+     * @return whether any block was skipped
+     */
+    private boolean skipEmptyBlocks() {
+        Arrays.sort(edges, 0, edgeCount);
+        var unique = 0;
+        for (int i = 0; i < edgeCount; i++) {
+            if (unique == 0 || edges[i] != edges[unique - 1]) {
+                edges[unique++] = edges[i];
+            }
+        }
+        edgeCount = unique;
+
+        var empty = new boolean[blocks];
+        Arrays.fill(empty, true);
+        for (int i = 0; i < nodeCount; i++) {
+            empty[nodeBlocks[i]] = false;
+        }
+        var successorCounts = new int[blocks];
+        var targets = new int[blocks];
+        for (int block = 0; block < blocks; block++) {
+            targets[block] = block;
+        }
+        for (int i = 0; i < edgeCount; i++) {
+            var from = (int) (edges[i] >>> 32);
+            if (from != ENTRY && from != EXIT && empty[from]) {
+                targets[from] = successorCounts[from]++ == 0 ? (int) edges[i] : from;
+            }
+        }
+        var skipped = false;
+        for (int block = 0; block < blocks; block++) {
+            skipped |= targets[block] != block;
+        }
+        if (!skipped) {
+            return false;
+        }
+
+        resolve(targets);
+        var numbers = new int[blocks];
+        var count = 0;
+        for (int block = 0; block < blocks; block++) {
+            numbers[block] = targets[block] == block ? count++ : NONE;
+        }
+        for (int i = 0; i < nodeCount; i++) {
+            nodeBlocks[i] = numbers[nodeBlocks[i]];
+        }
+        var kept = 0;
+        for (int i = 0; i < edgeCount; i++) {
+            var from = numbers[(int) (edges[i] >>> 32)];
+            if (from != NONE) {
+                edges[kept++] = (long) from << 32 | numbers[targets[(int) edges[i]]];
+            }
+        }
+        edgeCount = kept;
+        blocks = count;
+        return true;
+    }
+
+    /**
+     * Follows the chains of the skipped blocks to the blocks they end in, a cycle of skipped blocks
+     * (i.e. an empty {@code for (;;) {}}) keeps the block it's found at
+     */
+    private static void resolve(int[] targets) {
+        var states = new byte[targets.length];
+        var chain = new int[targets.length];
+        for (int block = 0; block < targets.length; block++) {
+            var length = 0;
+            var end = block;
+            while (states[end] == 0 && targets[end] != end) {
+                states[end] = 1;
+                chain[length++] = end;
+                end = targets[end];
+            }
+            if (states[end] == 1) {
+                targets[end] = end;
+            } else if (states[end] == 2) {
+                end = targets[end];
+            }
+            for (int i = 0; i < length; i++) {
+                states[chain[i]] = 2;
+                targets[chain[i]] = end;
+            }
+            states[end] = 2;
+        }
+    }
+}
@@ -0,0 +1,82 @@
+package com.github.razorapid.morpheus.lang.ast.flow;
+
+import com.github.razorapid.morpheus.lang.ast.AbstractSyntaxTree;
+import com.github.razorapid.morpheus.lang.ast.AbstractSyntaxTree.Statement;
+import com.github.razorapid.morpheus.lang.ast.AbstractSyntaxTree.Statements;
+import com.github.razorapid.morpheus.lang.ast.AbstractSyntaxTree.ThreadLabel;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+
+/**
+ * Control flow graphs of the threads of a script, built on the first request for a thread
+ * and the same graph for every request after that.
+ *
+ * The top-level statements of the script are split into threads: a thread label and the statements up to the next
+ * label (the statements before the first label are a thread without a label too), see {@link ControlFlowGraphBuilder}
+ * for the graph of a thread. Graphs can be requested from many threads at once, a graph built by two of them
+ * at the same time is built twice and the first one is kept.
+ */
+public final class ControlFlowGraphs {
+    private final List<Statement> statements;
+    /** indices of the statements the threads start at, and the number of the statements at the end */
+    private final int[] threads;
+    /** threads by the names of their labels, the first thread of a name */
+    private final Map<String, Integer> names = new HashMap<>();
+    private final AtomicReferenceArray<ControlFlowGraph> graphs;
+
+    public ControlFlowGraphs(AbstractSyntaxTree ast) {
+        this.statements = ast.program() instanceof Statements program ? program.statements() : List.of((Statement) ast.program());
+        var starts = new ArrayList<Integer>();
+        starts.add(0);
+        for (int i = 1; i < statements.size(); i++) {
+            if (statements.get(i) instanceof ThreadLabel) {
+                starts.add(i);
+            }
+        }
+        starts.add(statements.size());
+        this.threads = starts.stream().mapToInt(Integer::intValue).toArray();
+        for (int thread = 0; thread < threadCount(); thread++) {
+            var name = name(thread);
+            if (name != null) {
+                names.putIfAbsent(name, thread);
+            }
+        }
+        this.graphs = new AtomicReferenceArray<>(threadCount());
+    }
+
+    public int threadCount() {
+        return threads.length - 1;
+    }
+
+    /**
+     * @return name of the label of the thread, null for the statements before the first label
+     */
+    public String name(int thread) {
+        var start = threads[thread];
+        if (start < threads[thread + 1] && statements.get(start) instanceof ThreadLabel label) {
+            return label.identifier().lexeme();
+        }
+        return null;
+    }
+
+    public ControlFlowGraph graph(int thread) {
+        var graph = graphs.get(thread);
+        if (graph == null) {
+            graph = new ControlFlowGraphBuilder().build(statements, threads[thread], threads[thread + 1]);
+            var built = graphs.compareAndExchange(thread, null, graph);
+            if (built != null) {
+                graph = built;
+            }
+        }
+        return graph;
+    }
+
+    public Optional<ControlFlowGraph> graph(String name) {
+        return Optional.ofNullable(names.get(name)).map(this::graph);
+    }
+}
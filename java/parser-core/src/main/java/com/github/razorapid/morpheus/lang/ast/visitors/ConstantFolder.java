@@ -0,0 +1,412 @@
+package com.github.razorapid.morpheus.lang.ast.visitors;
+
+import com.github.razorapid.morpheus.lang.SourcePos;
+import com.github.razorapid.morpheus.lang.Token;
+import com.github.razorapid.morpheus.lang.TokenType;
+import com.github.razorapid.morpheus.lang.TreeCursor;
+import com.github.razorapid.morpheus.lang.ast.AbstractSyntaxTree;
+import com.github.razorapid.morpheus.lang.ast.AbstractSyntaxTree.BinaryOp;
+import com.github.razorapid.morpheus.lang.ast.AbstractSyntaxTree.Expression;
+import com.github.razorapid.morpheus.lang.ast.AbstractSyntaxTree.IfElse;
+import com.github.razorapid.morpheus.lang.ast.AbstractSyntaxTree.Literal;
+import com.github.razorapid.morpheus.lang.ast.AbstractSyntaxTree.Node;
+import com.github.razorapid.morpheus.lang.ast.AbstractSyntaxTree.NoOperation;
+import com.github.razorapid.morpheus.lang.ast.AbstractSyntaxTree.PrefixOp;
+import com.github.razorapid.morpheus.lang.ast.AbstractSyntaxTree.Statements;
+import com.github.razorapid.morpheus.lang.ast.AbstractSyntaxTree.VectorDeclaration;
+import com.github.razorapid.morpheus.lang.ast.AbstractSyntaxTreeRewriter;
+import lombok.Value;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * Folds the constant expressions of abstract syntax trees and removes the branches of ifs that never run,
+ * i.e. the literal arithmetic and the {@code if 0} / {@code if 1} guards of generated scripts.
+ *
+ * Binary and prefix operators of constants are folded to literals the way the game evaluates them: integers are 32-bit
+ * and wrap around, an integer with a float gives a (32-bit) float, integer division and modulo truncate, comparisons
+ * and logical operators give 1 or 0, and {@code &&} / {@code ||} of a constant left side that decides them
+ * don't need the right side. Strings are concatenated with {@code +}, vectors of constant components (floats)
+ * are added, subtracted and scaled. Whatever fails when the script runs (division by zero, the lowest integer
+ * divided by -1) and floats that overflow are left to fail there. Components of vector declarations are folded
+ * on their own, a vector is folded as a whole only when it's the result of an operator.
+ *
+ * An if with an integer constant condition is replaced with the branch that runs, with its folds.
+ * An if without that branch is removed from its list of statements, or replaced with an empty statement
+ * where it's the only statement of a branch or a loop.
+ *
+ * The tree is walked once with {@link AbstractSyntaxTree#cursor()}, without recursion, and the folds are applied with
+ * {@link AbstractSyntaxTreeRewriter}, so the folded tree shares every subtree without folds with the original one.
+ */
+public final class ConstantFolder {
+
+    @Value
+    public static class Result {
+        AbstractSyntaxTree ast;
+        /** folds of the nodes of the original tree, the folds in the branch of an if before the fold of the if */
+        List<Fold> folds;
+    }
+
+    /**
+     * Node of the original tree and the node it's folded to in the folded tree, null for a removed if
+     */
+    @Value
+    public static class Fold {
+        Node original;
+        Node folded;
+    }
+
+    public Result fold(AbstractSyntaxTree ast) {
+        var folding = new Folding();
+        ast.cursor().walk(folding);
+        if (folding.edits.isEmpty()) {
+            return new Result(ast, List.of());
+        }
+
+        var rewriter = new AbstractSyntaxTreeRewriter(ast);
+        var folds = new ArrayList<Fold>(folding.edits.size());
+        for (var edit : folding.edits) {
+            if (!edit.applied) {
+                edit.apply(rewriter, edit.path);
+            }
+            folds.add(new Fold(edit.original, edit.folded));
+        }
+        return new Result(rewriter.apply(), Collections.unmodifiableList(folds));
+    }
+
+    /**
+     * Fold of the node at the path, applied to the tree of the branch of an if instead when the if is folded
+     */
+    private static final class Edit {
+        private final int[] path;
+        private final Node original;
+        private final Node folded;
+        private boolean applied;
+
+        Edit(int[] path, Node original, Node folded) {
+            this.path = path;
+            this.original = original;
+            this.folded = folded;
+        }
+
+        void apply(AbstractSyntaxTreeRewriter rewriter, int[] path) {
+            if (folded == null) {
+                rewriter.remove(path);
+            } else {
+                rewriter.replace(path, folded);
+            }
+            applied = true;
+        }
+    }
+
+    /**
+     * Walk of the tree that folds the nodes when it leaves them, children before parents.
+     * Values of the children are kept per depth, as the operands of the parent, and the edits of a subtree
+     * are the last ones in {@link #edits}, so a fold of a node drops the edits of its subtree.
+     */
+    private static final class Folding implements TreeCursor.Walker<Node, RuntimeException> {
+        private static final int OPERANDS = 3;
+
+        private final List<Edit> edits = new ArrayList<>();
+        private Node[] nodes = new Node[64];
+        private int[] marks = new int[64];
+        private Constant[] operands = new Constant[64 * OPERANDS];
+
+        @Override
+        public void enter(TreeCursor<Node> cursor) {
+            var depth = cursor.depth();
+            if (depth == nodes.length) {
+                nodes = Arrays.copyOf(nodes, depth * 2);
+                marks = Arrays.copyOf(marks, depth * 2);
+                operands = Arrays.copyOf(operands, depth * 2 * OPERANDS);
+            }
+            nodes[depth] = cursor.node();
+            marks[depth] = edits.size();
+            Arrays.fill(operands, depth * OPERANDS, depth * OPERANDS + OPERANDS, null);
+        }
+
+        @Override
+        public void leave(TreeCursor<Node> cursor) {
+            var depth = cursor.depth();
+            var node = cursor.node();
+            var operand = depth * OPERANDS;
+            Constant value = null;
+            if (node instanceof Literal literal) {
+                value = depth > 0 && takesOperands(nodes[depth - 1]) ? Constant.of(literal.token()) : null;
+            } else if (node instanceof BinaryOp binaryOp) {
+                value = Constant.binary(binaryOp.operator().type(), operands[operand], operands[operand + 1]);
+                if (value != null) {
+                    fold(cursor, node, value.expression(node.start(), node.end()));
+                }
+            } else if (node instanceof PrefixOp prefixOp) {
+                value = Constant.unary(prefixOp.operator().type(), operands[operand]);
+                if (value != null) {
+                    fold(cursor, node, value.expression(node.start(), node.end()));
+                }
+            } else if (node instanceof VectorDeclaration) {
+                value = Constant.vector(operands[operand], operands[operand + 1], operands[operand + 2]);
+            } else if (node instanceof IfElse ifElse) {
+                branch(cursor, ifElse, operands[operand]);
+            }
+            nodes[depth] = null;
+
+            var index = cursor.index();
+            if (value != null && depth > 0 && index < OPERANDS) {
+                operands[operand - OPERANDS + index] = value;
+            }
+        }
+
+        private static boolean takesOperands(Node node) {
+            return node instanceof BinaryOp || node instanceof PrefixOp || node instanceof VectorDeclaration || node instanceof IfElse;
+        }
+
+        private void fold(TreeCursor<Node> cursor, Node original, Node folded) {
+            edits.subList(marks[cursor.depth()], edits.size()).clear();
+            edits.add(new Edit(cursor.path(), original, folded));
+        }
+
+        /**
+         * Replaces the if with the branch that runs, the folds in that branch are applied to the branch
+         * and the folds in the other one are dropped
+         */
+        private void branch(TreeCursor<Node> cursor, IfElse ifElse, Constant condition) {
+            if (condition == null || condition.type != Constant.Type.INTEGER) {
+                return;
+            }
+            var depth = cursor.depth();
+            var path = cursor.path();
+            var index = condition.integer != 0 ? 1 : 2;
+            var branch = condition.integer != 0 ? ifElse.ifClause() : ifElse.elseClause();
+
+            var rewriter = branch != null ? new AbstractSyntaxTreeRewriter(new AbstractSyntaxTree(branch)) : null;
+            var rewritten = false;
+            var kept = new ArrayList<Edit>();
+            var subtree = edits.subList(marks[depth], edits.size());
+            for (var edit : subtree) {
+                if (edit.path[path.length] == index) {
+                    if (!edit.applied) {
+                        edit.apply(rewriter, Arrays.copyOfRange(edit.path, path.length + 1, edit.path.length));
+                        rewritten = true;
+                    }
+                    kept.add(edit);
+                }
+            }
+            subtree.clear();
+            edits.addAll(kept);
+
+            Node folded;
+            if (branch != null) {
+                folded = rewritten ? rewriter.apply().program() : branch;
+            } else if (depth > 0 && nodes[depth - 1] instanceof Statements) {
+                folded = null;
+            } else {
+                folded = new NoOperation(ifElse.start(), ifElse.end());
+            }
+            edits.add(new Edit(path, ifElse, folded));
+        }
+    }
+
+    /**
+     * Value of a constant expression: an integer, a float, a string or a vector
+     */
+    private static final class Constant {
+        enum Type { INTEGER, FLOAT, STRING, VECTOR }
+
+        private final Type type;
+        private final int integer;
+        private final float real;
+        /** contents of the string, between the quotes and with the escapes of the script */
+        private final String string;
+        private final float[] vector;
+
+        private Constant(Type type, int integer, float real, String string, float[] vector) {
+            this.type = type;
+            this.integer = integer;
+            this.real = real;
+            this.string = string;
+            this.vector = vector;
+        }
+
+        static Constant integer(int value) {
+            return new Constant(Type.INTEGER, value, 0, null, null);
+        }
+
+        static Constant bool(boolean value) {
+            return integer(value ? 1 : 0);
+        }
+
+        static Constant real(float value) {
+            return Float.isFinite(value) ? new Constant(Type.FLOAT, 0, value, null, null) : null;
+        }
+
+        static Constant string(String value) {
+            return new Constant(Type.STRING, 0, 0, value, null);
+        }
+
+        static Constant vector(float x, float y, float z) {
+            if (!Float.isFinite(x) || !Float.isFinite(y) || !Float.isFinite(z)) {
+                return null;
+            }
+            return new Constant(Type.VECTOR, 0, 0, null, new float[] {x, y, z});
+        }
+
+        static Constant of(Token token) {
+            var lexeme = token.lexeme();
+            try {
+                return switch (token.type()) {
+                    case TOKEN_INTEGER -> integer(Integer.parseInt(lexeme));
+                    case TOKEN_FLOAT -> real(Float.parseFloat(lexeme));
+                    case TOKEN_STRING -> lexeme.length() >= 2 ? string(lexeme.substring(1, lexeme.length() - 1)) : null;
+                    default -> null;
+                };
+            } catch (NumberFormatException e) {
+                return null;
+            }
+        }
+
+        static Constant vector(Constant x, Constant y, Constant z) {
+            if (!isNumber(x) || !isNumber(y) || !isNumber(z)) {
+                return null;
+            }
+            return vector(x.asFloat(), y.asFloat(), z.asFloat());
+        }
+
+        static Constant unary(TokenType operator, Constant operand) {
+            if (operand == null) {
+                return null;
+            }
+            return switch (operator) {
+                case TOKEN_NEG -> switch (operand.type) {
+                    case INTEGER -> operand.integer != Integer.MIN_VALUE ? integer(-operand.integer) : null;
+                    case FLOAT -> real(-operand.real);
+                    default -> null;
+                };
+                case TOKEN_COMPLEMENT -> operand.type == Type.INTEGER ? integer(~operand.integer) : null;
+                case TOKEN_NOT -> operand.type == Type.INTEGER ? bool(operand.integer == 0) : null;
+                default -> null;
+            };
+        }
+
+        static Constant binary(TokenType operator, Constant lhs, Constant rhs) {
+            if (operator == TokenType.TOKEN_LOGICAL_AND || operator == TokenType.TOKEN_LOGICAL_OR) {
+                return logical(operator == TokenType.TOKEN_LOGICAL_AND, lhs, rhs);
+            }
+            if (lhs == null || rhs == null) {
+                return null;
+            }
+            if (lhs.type == Type.INTEGER && rhs.type == Type.INTEGER) {
+                return integers(operator, lhs.integer, rhs.integer);
+            }
+            if (isNumber(lhs) && isNumber(rhs)) {
+                return floats(operator, lhs.asFloat(), rhs.asFloat());
+            }
+            if (lhs.type == Type.STRING && rhs.type == Type.STRING) {
+                return operator == TokenType.TOKEN_PLUS ? string(lhs.string + rhs.string) : null;
+            }
+            if (lhs.type == Type.VECTOR || rhs.type == Type.VECTOR) {
+                return vectors(operator, lhs, rhs);
+            }
+            return null;
+        }
+
+        private static Constant logical(boolean and, Constant lhs, Constant rhs) {
+            if (lhs == null || lhs.type != Type.INTEGER) {
+                return null;
+            }
+            if (and == (lhs.integer == 0)) {
+                return bool(!and);
+            }
+            return rhs != null && rhs.type == Type.INTEGER ? bool(rhs.integer != 0) : null;
+        }
+
+        private static Constant integers(TokenType operator, int lhs, int rhs) {
+            return switch (operator) {
+                case TOKEN_PLUS -> integer(lhs + rhs);
+                case TOKEN_MINUS -> integer(lhs - rhs);
+                case TOKEN_MULTIPLY -> integer(lhs * rhs);
+                case TOKEN_DIVIDE -> rhs != 0 && !(lhs == Integer.MIN_VALUE && rhs == -1) ? integer(lhs / rhs) : null;
+                case TOKEN_PERCENTAGE -> rhs != 0 && !(lhs == Integer.MIN_VALUE && rhs == -1) ? integer(lhs % rhs) : null;
+                case TOKEN_BITWISE_AND -> integer(lhs & rhs);
+                case TOKEN_BITWISE_OR -> integer(lhs | rhs);
+                case TOKEN_BITWISE_EXCL_OR -> integer(lhs ^ rhs);
+                case TOKEN_EQUALITY -> bool(lhs == rhs);
+                case TOKEN_INEQUALITY -> bool(lhs != rhs);
+                case TOKEN_LESS_THAN -> bool(lhs < rhs);
+                case TOKEN_LESS_THAN_OR_EQUAL -> bool(lhs <= rhs);
+                case TOKEN_GREATER_THAN -> bool(lhs > rhs);
+                case TOKEN_GREATER_THAN_OR_EQUAL -> bool(lhs >= rhs);
+                default -> null;
+            };
+        }
+
+        private static Constant floats(TokenType operator, float lhs, float rhs) {
+            return switch (operator) {
+                case TOKEN_PLUS -> real(lhs + rhs);
+                case TOKEN_MINUS -> real(lhs - rhs);
+                case TOKEN_MULTIPLY -> real(lhs * rhs);
+                case TOKEN_DIVIDE -> rhs != 0 ? real(lhs / rhs) : null;
+                case TOKEN_EQUALITY -> bool(lhs == rhs);
+                case TOKEN_INEQUALITY -> bool(lhs != rhs);
+                case TOKEN_LESS_THAN -> bool(lhs < rhs);
+                case TOKEN_LESS_THAN_OR_EQUAL -> bool(lhs <= rhs);
+                case TOKEN_GREATER_THAN -> bool(lhs > rhs);
+                case TOKEN_GREATER_THAN_OR_EQUAL -> bool(lhs >= rhs);
+                default -> null;
+            };
+        }
+
+        private static Constant vectors(TokenType operator, Constant lhs, Constant rhs) {
+            if (lhs.type == Type.VECTOR && rhs.type == Type.VECTOR) {
+                var l = lhs.vector;
+                var r = rhs.vector;
+                return switch (operator) {
+                    case TOKEN_PLUS -> vector(l[0] + r[0], l[1] + r[1], l[2] + r[2]);
+                    case TOKEN_MINUS -> vector(l[0] - r[0], l[1] - r[1], l[2] - r[2]);
+                    default -> null;
+                };
+            }
+            if (operator != TokenType.TOKEN_MULTIPLY) {
+                return null;
+            }
+            var vector = lhs.type == Type.VECTOR ? lhs : rhs;
+            var scale = lhs.type == Type.VECTOR ? rhs : lhs;
+            if (!isNumber(scale)) {
+                return null;
+            }
+            var v = vector.vector;
+            var s = scale.asFloat();
+            return vector(v[0] * s, v[1] * s, v[2] * s);
+        }
+
+        private static boolean isNumber(Constant constant) {
+            return constant != null && (constant.type == Type.INTEGER || constant.type == Type.FLOAT);
+        }
+
+        private float asFloat() {
+            return type == Type.INTEGER ? (float) integer : real;
+        }
+
+        /**
+         * Literal of the value (a vector declaration of float literals for a vector), tokens at the start of the node
+         */
+        Expression expression(SourcePos start, SourcePos end) {
+            return switch (type) {
+                case INTEGER -> literal(TokenType.TOKEN_INTEGER, Integer.toString(integer), start, end);
+                case FLOAT -> literal(TokenType.TOKEN_FLOAT, Float.toString(real), start, end);
+                case STRING -> literal(TokenType.TOKEN_STRING, '"' + string + '"', start, end);
+                case VECTOR -> new VectorDeclaration(start, end,
+                        literal(TokenType.TOKEN_FLOAT, Float.toString(vector[0]), start, end),
+                        literal(TokenType.TOKEN_FLOAT, Float.toString(vector[1]), start, end),
+                        literal(TokenType.TOKEN_FLOAT, Float.toString(vector[2]), start, end));
+            };
+        }
+
+        private static Literal literal(TokenType type, String lexeme, SourcePos start, SourcePos end) {
+            var token = start != null ? Token.of(type, lexeme, start.pos(), start.line(), start.col()) : Token.of(type, lexeme, 0, 0, 0);
+            return new Literal(start, end, token);
+        }
+    }
+}
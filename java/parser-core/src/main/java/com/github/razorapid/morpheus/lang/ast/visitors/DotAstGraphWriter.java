@@ -0,0 +1,230 @@
+package com.github.razorapid.morpheus.lang.ast.visitors;
+
+import com.github.razorapid.morpheus.lang.DotWriter;
+import com.github.razorapid.morpheus.lang.Token;
+import com.github.razorapid.morpheus.lang.TreeCursor;
+import com.github.razorapid.morpheus.lang.ast.AbstractSyntaxTree;
+import com.github.razorapid.morpheus.lang.ast.AbstractSyntaxTreeVisitor;
+
+import java.io.IOException;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * Writes the same graph as {@code VisualAstGraphVisitor} in the DOT language, node by node as the tree is walked.
+ * Tokens are nodes of the graph too, so the tree is walked by a {@link TreeCursor} over the nodes and their tokens.
+ */
+public class DotAstGraphWriter {
+
+    /**
+     * @return number of nodes written
+     */
+    public int write(AbstractSyntaxTree ast, Appendable out) throws IOException {
+        var dot = new DotWriter(out).begin("program");
+        new TreeCursor<Object>(ast.program(), new Children()).walk(new Writer(dot));
+        dot.end();
+        return dot.nodes();
+    }
+
+    private static final class Writer implements TreeCursor.Walker<Object, IOException> {
+        private final DotWriter dot;
+        private int[] ids = new int[64];
+
+        Writer(DotWriter dot) {
+            this.dot = dot;
+        }
+
+        @Override
+        public void enter(TreeCursor<Object> cursor) throws IOException {
+            var id = node(cursor.node());
+            var depth = cursor.depth();
+            if (depth > 0) {
+                dot.edge(ids[depth - 1], id);
+            }
+            if (depth == ids.length) {
+                ids = Arrays.copyOf(ids, depth * 2);
+            }
+            ids[depth] = id;
+        }
+
+        @Override
+        public void leave(TreeCursor<Object> cursor) {
+        }
+
+        private int node(Object child) throws IOException {
+            if (child instanceof Token token) {
+                return dot.htmlNode(
+                        token.type().name() + " [start: " + token.pos() + ", end: " + token.pos().addCol(token.lexeme().length()) + "]",
+                        token.lexeme()
+                );
+            }
+            var node = (AbstractSyntaxTree.Node) child;
+            var label = node.getClass().getSimpleName() + " [start: " + node.start() + ", end: " + node.end() + "]";
+            if (node instanceof AbstractSyntaxTree.SyntaxError error) {
+                return dot.node(null, error.error().error() + " [start: " + node.start() + ", end: " + node.end() + "]");
+            }
+            if (node instanceof AbstractSyntaxTree.Expression) {
+                return dot.node("invhouse", label);
+            }
+            return dot.node("rectangle", label);
+        }
+    }
+
+    /**
+     * Children of the nodes and their tokens by their indices, in the order {@code VisualAstGraphVisitor} links them.
+     * The visit methods set the number of the children and return the one at the requested index, like the children
+     * of {@link AbstractSyntaxTree#cursor()} do, so the slots are per cursor.
+     */
+    private static final class Children implements AbstractSyntaxTreeVisitor<Object>, TreeCursor.Tree<Object> {
+        private int index;
+        private int count;
+
+        @Override
+        public int childCount(Object node) {
+            if (node instanceof Token) {
+                return 0;
+            }
+            index = -1;
+            ((AbstractSyntaxTree.Node) node).accept(this);
+            return count;
+        }
+
+        @Override
+        public Object child(Object node, int index) {
+            this.index = index;
+            return ((AbstractSyntaxTree.Node) node).accept(this);
+        }
+
+        private Object slots(int count, Object first, Object second, Object third, Object fourth) {
+            this.count = count;
+            return switch (index) {
+                case 0 -> first;
+                case 1 -> second;
+                case 2 -> third;
+                case 3 -> fourth;
+                default -> null;
+            };
+        }
+
+        private Object slots(List<?> children) {
+            count = children.size();
+            return index >= 0 && index < count ? children.get(index) : null;
+        }
+
+        @Override
+        public Object visitSyntaxError(AbstractSyntaxTree.SyntaxError node) {
+            return slots(0, null, null, null, null);
+        }
+
+        @Override
+        public Object visitStatements(AbstractSyntaxTree.Statements node) {
+            return slots(node.statements());
+        }
+
+        @Override
+        public Object visitThreadLabel(AbstractSyntaxTree.ThreadLabel node) {
+            return slots(2, node.identifier(), node.params(), null, null);
+        }
+
+        @Override
+        public Object visitSwitchCase(AbstractSyntaxTree.SwitchCase node) {
+            return slots(3, node.operator(), node.identifier(), node.params(), null);
+        }
+
+        @Override
+        public Object visitIfElse(AbstractSyntaxTree.IfElse node) {
+            return slots(3, node.condition(), node.ifClause(), node.elseClause(), null);
+        }
+
+        @Override
+        public Object visitSwitch(AbstractSyntaxTree.Switch node) {
+            return slots(2, node.condition(), node.body(), null, null);
+        }
+
+        @Override
+        public Object visitWhileLoop(AbstractSyntaxTree.WhileLoop node) {
+            return slots(2, node.condition(), node.body(), null, null);
+        }
+
+        @Override
+        public Object visitForLoop(AbstractSyntaxTree.ForLoop node) {
+            return slots(4, node.initializer(), node.condition(), node.advancement(), node.body());
+        }
+
+        @Override
+        public Object visitTryCatch(AbstractSyntaxTree.TryCatch node) {
+            return slots(2, node.tryClause(), node.catchClause(), null, null);
+        }
+
+        @Override
+        public Object visitNoOperation(AbstractSyntaxTree.NoOperation node) {
+            return slots(0, null, null, null, null);
+        }
+
+        @Override
+        public Object visitBreak(AbstractSyntaxTree.Break node) {
+            return slots(0, null, null, null, null);
+        }
+
+        @Override
+        public Object visitContinue(AbstractSyntaxTree.Continue node) {
+            return slots(0, null, null, null, null);
+        }
+
+        @Override
+        public Object visitExpressionStmt(AbstractSyntaxTree.ExpressionStmt node) {
+            return slots(1, node.expression(), null, null, null);
+        }
+
+        @Override
+        public Object visitFunctionCall(AbstractSyntaxTree.FunctionCall node) {
+            return slots(3, node.listener(), node.identifier(), node.params(), null);
+        }
+
+        @Override
+        public Object visitParams(AbstractSyntaxTree.Params node) {
+            return slots(node.param());
+        }
+
+        @Override
+        public Object visitPostfixOp(AbstractSyntaxTree.PostfixOp node) {
+            return slots(2, node.lhs(), node.operator(), null, null);
+        }
+
+        @Override
+        public Object visitPrefixOp(AbstractSyntaxTree.PrefixOp node) {
+            return slots(2, node.operator(), node.rhs(), null, null);
+        }
+
+        @Override
+        public Object visitBinaryOp(AbstractSyntaxTree.BinaryOp node) {
+            return slots(3, node.lhs(), node.operator(), node.rhs(), null);
+        }
+
+        @Override
+        public Object visitLiteral(AbstractSyntaxTree.Literal node) {
+            return slots(1, node.token(), null, null, null);
+        }
+
+        @Override
+        public Object visitVectorDeclaration(AbstractSyntaxTree.VectorDeclaration node) {
+            return slots(3, node.x(), node.y(), node.z(), null);
+        }
+
+        /**
+         * Elements of the rows one after another, the row of an element is found by skipping the rows before it
+         */
+        @Override
+        public Object visitConstArrayDeclaration(AbstractSyntaxTree.ConstArrayDeclaration node) {
+            count = 0;
+            Object element = null;
+            for (var row : node.indices()) {
+                if (index >= count && index < count + row.size()) {
+                    element = row.get(index - count);
+                }
+                count += row.size();
+            }
+            return element;
+        }
+    }
+}
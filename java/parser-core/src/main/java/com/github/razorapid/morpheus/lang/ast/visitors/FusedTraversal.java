@@ -0,0 +1,339 @@
+package com.github.razorapid.morpheus.lang.ast.visitors;
+
+import com.github.razorapid.morpheus.lang.ast.AbstractSyntaxTree;
+import com.github.razorapid.morpheus.lang.ast.AbstractSyntaxTree.BinaryOp;
+import com.github.razorapid.morpheus.lang.ast.AbstractSyntaxTree.Break;
+import com.github.razorapid.morpheus.lang.ast.AbstractSyntaxTree.ConstArrayDeclaration;
+import com.github.razorapid.morpheus.lang.ast.AbstractSyntaxTree.Continue;
+import com.github.razorapid.morpheus.lang.ast.AbstractSyntaxTree.ExpressionStmt;
+import com.github.razorapid.morpheus.lang.ast.AbstractSyntaxTree.ForLoop;
+import com.github.razorapid.morpheus.lang.ast.AbstractSyntaxTree.FunctionCall;
+import com.github.razorapid.morpheus.lang.ast.AbstractSyntaxTree.IfElse;
+import com.github.razorapid.morpheus.lang.ast.AbstractSyntaxTree.Literal;
+import com.github.razorapid.morpheus.lang.ast.AbstractSyntaxTree.Node;
+import com.github.razorapid.morpheus.lang.ast.AbstractSyntaxTree.NoOperation;
+import com.github.razorapid.morpheus.lang.ast.AbstractSyntaxTree.Params;
+import com.github.razorapid.morpheus.lang.ast.AbstractSyntaxTree.PostfixOp;
+import com.github.razorapid.morpheus.lang.ast.AbstractSyntaxTree.PrefixOp;
+import com.github.razorapid.morpheus.lang.ast.AbstractSyntaxTree.Statements;
+import com.github.razorapid.morpheus.lang.ast.AbstractSyntaxTree.Switch;
+import com.github.razorapid.morpheus.lang.ast.AbstractSyntaxTree.SwitchCase;
+import com.github.razorapid.morpheus.lang.ast.AbstractSyntaxTree.SyntaxError;
+import com.github.razorapid.morpheus.lang.ast.AbstractSyntaxTree.ThreadLabel;
+import com.github.razorapid.morpheus.lang.ast.AbstractSyntaxTree.TryCatch;
+import com.github.razorapid.morpheus.lang.ast.AbstractSyntaxTree.VectorDeclaration;
+import com.github.razorapid.morpheus.lang.ast.AbstractSyntaxTree.WhileLoop;
+import com.github.razorapid.morpheus.lang.ast.AbstractSyntaxTreeVisitor;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * Runs many visitors (rules) in a single walk of the tree, e.g. the rules of a linter.
+ *
+ * Every rule is added with the node classes it's interested in (classes of the nodes or the interfaces of them,
+ * {@link AbstractSyntaxTree.Statement}, {@link AbstractSyntaxTree.Expression} or {@link Node} for all the nodes),
+ * and only the nodes of those classes are dispatched to it. The classes are resolved to the rules once, when a rule
+ * is added, so a node costs one dispatch per interested rule, no matter how many rules there are.
+ *
+ * A rule returns {@link Walk#SKIP_SUBTREE} for a node to get nothing from its subtree, the other rules still do.
+ * The subtree isn't walked at all once no rule gets anything from it.
+ *
+ * Nodes are visited in the preorder of {@link AbstractSyntaxTree#cursor()}, without recursion.
+ */
+public final class FusedTraversal {
+    private static final List<Class<? extends Node>> NODE_CLASSES = List.of(
+            SyntaxError.class, Statements.class, ThreadLabel.class, SwitchCase.class, IfElse.class, Switch.class,
+            WhileLoop.class, ForLoop.class, TryCatch.class, NoOperation.class, Break.class, Continue.class,
+            ExpressionStmt.class, FunctionCall.class, Params.class, PostfixOp.class, PrefixOp.class, BinaryOp.class,
+            Literal.class, VectorDeclaration.class, ConstArrayDeclaration.class
+    );
+    private static final Kinds KINDS = new Kinds();
+
+    public enum Walk {
+        CONTINUE,
+        /** nothing from the subtree of the node is dispatched to the rule */
+        SKIP_SUBTREE
+    }
+
+    /**
+     * Rule that continues the walk on every node, to override the visits of the nodes the rule is interested in
+     */
+    public abstract static class Rule implements AbstractSyntaxTreeVisitor<Walk> {
+        @Override
+        public Walk visitSyntaxError(SyntaxError node) {
+            return Walk.CONTINUE;
+        }
+
+        @Override
+        public Walk visitStatements(Statements node) {
+            return Walk.CONTINUE;
+        }
+
+        @Override
+        public Walk visitThreadLabel(ThreadLabel node) {
+            return Walk.CONTINUE;
+        }
+
+        @Override
+        public Walk visitSwitchCase(SwitchCase node) {
+            return Walk.CONTINUE;
+        }
+
+        @Override
+        public Walk visitIfElse(IfElse node) {
+            return Walk.CONTINUE;
+        }
+
+        @Override
+        public Walk visitSwitch(Switch node) {
+            return Walk.CONTINUE;
+        }
+
+        @Override
+        public Walk visitWhileLoop(WhileLoop node) {
+            return Walk.CONTINUE;
+        }
+
+        @Override
+        public Walk visitForLoop(ForLoop node) {
+            return Walk.CONTINUE;
+        }
+
+        @Override
+        public Walk visitTryCatch(TryCatch node) {
+            return Walk.CONTINUE;
+        }
+
+        @Override
+        public Walk visitNoOperation(NoOperation node) {
+            return Walk.CONTINUE;
+        }
+
+        @Override
+        public Walk visitBreak(Break node) {
+            return Walk.CONTINUE;
+        }
+
+        @Override
+        public Walk visitContinue(Continue node) {
+            return Walk.CONTINUE;
+        }
+
+        @Override
+        public Walk visitExpressionStmt(ExpressionStmt node) {
+            return Walk.CONTINUE;
+        }
+
+        @Override
+        public Walk visitFunctionCall(FunctionCall node) {
+            return Walk.CONTINUE;
+        }
+
+        @Override
+        public Walk visitParams(Params node) {
+            return Walk.CONTINUE;
+        }
+
+        @Override
+        public Walk visitPostfixOp(PostfixOp node) {
+            return Walk.CONTINUE;
+        }
+
+        @Override
+        public Walk visitPrefixOp(PrefixOp node) {
+            return Walk.CONTINUE;
+        }
+
+        @Override
+        public Walk visitBinaryOp(BinaryOp node) {
+            return Walk.CONTINUE;
+        }
+
+        @Override
+        public Walk visitLiteral(Literal node) {
+            return Walk.CONTINUE;
+        }
+
+        @Override
+        public Walk visitVectorDeclaration(VectorDeclaration node) {
+            return Walk.CONTINUE;
+        }
+
+        @Override
+        public Walk visitConstArrayDeclaration(ConstArrayDeclaration node) {
+            return Walk.CONTINUE;
+        }
+    }
+
+    private final List<AbstractSyntaxTreeVisitor<Walk>> rules = new ArrayList<>();
+    /** indices of the rules by the kinds of the nodes they're interested in, in the order the rules are added */
+    private final int[][] dispatch = new int[NODE_CLASSES.size()][0];
+
+    /**
+     * Adds the rule, the nodes of the classes are dispatched to it. A rule returning null continues the walk.
+     *
+     * @return this traversal
+     */
+    @SafeVarargs
+    public final FusedTraversal add(AbstractSyntaxTreeVisitor<Walk> rule, Class<? extends Node>... nodes) {
+        var index = rules.size();
+        rules.add(rule);
+        for (int kind = 0; kind < NODE_CLASSES.size(); kind++) {
+            for (var nodeClass : nodes) {
+                if (nodeClass.isAssignableFrom(NODE_CLASSES.get(kind))) {
+                    dispatch[kind] = Arrays.copyOf(dispatch[kind], dispatch[kind].length + 1);
+                    dispatch[kind][dispatch[kind].length - 1] = index;
+                    break;
+                }
+            }
+        }
+        return this;
+    }
+
+    public int rules() {
+        return rules.size();
+    }
+
+    /**
+     * Walks the tree once, dispatching every node to the rules interested in it
+     */
+    public void walk(AbstractSyntaxTree ast) {
+        var skipping = new boolean[rules.size()];
+        // rules skipping subtrees and the depths of the roots of the subtrees, the depths only grow up the stack
+        var skippedRules = new int[rules.size()];
+        var skippedDepths = new int[rules.size()];
+        var skipped = 0;
+
+        var cursor = ast.cursor();
+        while (true) {
+            var depth = cursor.depth();
+            while (skipped > 0 && skippedDepths[skipped - 1] >= depth) {
+                skipping[skippedRules[--skipped]] = false;
+            }
+            var node = cursor.node();
+            for (var rule : dispatch[node.accept(KINDS)]) {
+                if (!skipping[rule] && node.accept(rules.get(rule)) == Walk.SKIP_SUBTREE) {
+                    skipping[rule] = true;
+                    skippedRules[skipped] = rule;
+                    skippedDepths[skipped++] = depth;
+                }
+            }
+            var walked = skipped == rules.size() ? cursor.skipSubtree() : cursor.gotoNext();
+            if (!walked) {
+                return;
+            }
+        }
+    }
+
+    /**
+     * Index of the class of the node in {@link #NODE_CLASSES}
+     */
+    private static final class Kinds implements AbstractSyntaxTreeVisitor<Integer> {
+        @Override
+        public Integer visitSyntaxError(SyntaxError node) {
+            return 0;
+        }
+
+        @Override
+        public Integer visitStatements(Statements node) {
+            return 1;
+        }
+
+        @Override
+        public Integer visitThreadLabel(ThreadLabel node) {
+            return 2;
+        }
+
+        @Override
+        public Integer visitSwitchCase(SwitchCase node) {
+            return 3;
+        }
+
+        @Override
+        public Integer visitIfElse(IfElse node) {
+            return 4;
+        }
+
+        @Override
+        public Integer visitSwitch(Switch node) {
+            return 5;
+        }
+
+        @Override
+        public Integer visitWhileLoop(WhileLoop node) {
+            return 6;
+        }
+
+        @Override
+        public Integer visitForLoop(ForLoop node) {
+            return 7;
+        }
+
+        @Override
+        public Integer visitTryCatch(TryCatch node) {
+            return 8;
+        }
+
+        @Override
+        public Integer visitNoOperation(NoOperation node) {
+            return 9;
+        }
+
+        @Override
+        public Integer visitBreak(Break node) {
+            return 10;
+        }
+
+        @Override
+        public Integer visitContinue(Continue node) {
+            return 11;
+        }
+
+        @Override
+        public Integer visitExpressionStmt(ExpressionStmt node) {
+            return 12;
+        }
+
+        @Override
+        public Integer visitFunctionCall(FunctionCall node) {
+            return 13;
+        }
+
+        @Override
+        public Integer visitParams(Params node) {
+            return 14;
+        }
+
+        @Override
+        public Integer visitPostfixOp(PostfixOp node) {
+            return 15;
+        }
+
+        @Override
+        public Integer visitPrefixOp(PrefixOp node) {
+            return 16;
+        }
+
+        @Override
+        public Integer visitBinaryOp(BinaryOp node) {
+            return 17;
+        }
+
+        @Override
+        public Integer visitLiteral(Literal node) {
+            return 18;
+        }
+
+        @Override
+        public Integer visitVectorDeclaration(VectorDeclaration node) {
+            return 19;
+        }
+
+        @Override
+        public Integer visitConstArrayDeclaration(ConstArrayDeclaration node) {
+            return 20;
+        }
+    }
+}
@@ -0,0 +1,107 @@
+package com.github.razorapid.morpheus.lang.ast.visitors;
+
+import com.github.razorapid.morpheus.lang.ast.AbstractSyntaxTree;
+import com.github.razorapid.morpheus.lang.ast.AbstractSyntaxTree.Statement;
+import com.github.razorapid.morpheus.lang.ast.AbstractSyntaxTree.Statements;
+import com.github.razorapid.morpheus.lang.ast.AbstractSyntaxTree.ThreadLabel;
+import com.github.razorapid.morpheus.lang.ast.AbstractSyntaxTreeVisitor;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveTask;
+import java.util.function.BinaryOperator;
+
+/**
+ * Runs a visitor over the top-level statements of a script in parallel, in a {@link ForkJoinPool}.
+ *
+ * The statements are split into thread sections: a thread label and the statements up to the next label
+ * (the statements before the first label are a section too). Sections are split in halves into tasks until
+ * a task is a single section or has few statements, and a task visits its statements one by one.
+ * Results of the statements are merged by the combiner in the order of the statements, starting with the identity,
+ * so the combiner has to be associative and the identity has to be neutral to it, the result is the one
+ * of a sequential visit then.
+ *
+ * The visitor is called from many threads at once, so it has to be thread-safe.
+ */
+public final class ParallelVisitor<R> {
+    /** tasks with fewer statements than that aren't split */
+    private static final int SEQUENTIAL_STATEMENTS = 64;
+
+    private final AbstractSyntaxTreeVisitor<R> visitor;
+    private final R identity;
+    private final BinaryOperator<R> combiner;
+
+    public ParallelVisitor(AbstractSyntaxTreeVisitor<R> visitor, R identity, BinaryOperator<R> combiner) {
+        this.visitor = visitor;
+        this.identity = identity;
+        this.combiner = combiner;
+    }
+
+    /**
+     * Visits the statements of the program, a program of a single statement is visited as it is
+     */
+    public R visit(AbstractSyntaxTree ast, ForkJoinPool pool) {
+        if (ast.program() instanceof Statements statements) {
+            return visit(statements, pool);
+        }
+        return combiner.apply(identity, ast.program().accept(visitor));
+    }
+
+    public R visit(Statements statements, ForkJoinPool pool) {
+        var sections = sections(statements.statements());
+        var task = new Section(statements.statements(), sections, 0, sections.length - 1);
+        return sections.length > 2 ? pool.invoke(task) : task.compute();
+    }
+
+    /**
+     * @return indices of the statements the sections start at, and the number of the statements at the end
+     */
+    private static int[] sections(List<Statement> statements) {
+        var starts = new ArrayList<Integer>();
+        starts.add(0);
+        for (int i = 1; i < statements.size(); i++) {
+            if (statements.get(i) instanceof ThreadLabel) {
+                starts.add(i);
+            }
+        }
+        starts.add(statements.size());
+        return starts.stream().mapToInt(Integer::intValue).toArray();
+    }
+
+    /**
+     * Task of the sections from the first one up to (excluding) the last one
+     */
+    private final class Section extends RecursiveTask<R> {
+        private final List<Statement> statements;
+        private final int[] sections;
+        private final int first;
+        private final int last;
+
+        Section(List<Statement> statements, int[] sections, int first, int last) {
+            this.statements = statements;
+            this.sections = sections;
+            this.first = first;
+            this.last = last;
+        }
+
+        @Override
+        protected R compute() {
+            if (last - first <= 1 || sections[last] - sections[first] < SEQUENTIAL_STATEMENTS) {
+                var result = identity;
+                for (int i = sections[first]; i < sections[last]; i++) {
+                    var statement = statements.get(i);
+                    if (statement != null) {
+                        result = combiner.apply(result, statement.accept(visitor));
+                    }
+                }
+                return result;
+            }
+            var middle = (first + last) >>> 1;
+            var left = new Section(statements, sections, first, middle);
+            left.fork();
+            var right = new Section(statements, sections, middle, last).compute();
+            return combiner.apply(left.join(), right);
+        }
+    }
+}
@@ -0,0 +1,409 @@
+package com.github.razorapid.morpheus.lang.ast.visitors;
+
+import com.github.razorapid.morpheus.lang.TokenType;
+import com.github.razorapid.morpheus.lang.ast.AbstractSyntaxTree;
+import com.github.razorapid.morpheus.lang.ast.AbstractSyntaxTree.BinaryOp;
+import com.github.razorapid.morpheus.lang.ast.AbstractSyntaxTree.Break;
+import com.github.razorapid.morpheus.lang.ast.AbstractSyntaxTree.ConstArrayDeclaration;
+import com.github.razorapid.morpheus.lang.ast.AbstractSyntaxTree.Continue;
+import com.github.razorapid.morpheus.lang.ast.AbstractSyntaxTree.Expression;
+import com.github.razorapid.morpheus.lang.ast.AbstractSyntaxTree.ExpressionStmt;
+import com.github.razorapid.morpheus.lang.ast.AbstractSyntaxTree.ForLoop;
+import com.github.razorapid.morpheus.lang.ast.AbstractSyntaxTree.FunctionCall;
+import com.github.razorapid.morpheus.lang.ast.AbstractSyntaxTree.IfElse;
+import com.github.razorapid.morpheus.lang.ast.AbstractSyntaxTree.Literal;
+import com.github.razorapid.morpheus.lang.ast.AbstractSyntaxTree.Node;
+import com.github.razorapid.morpheus.lang.ast.AbstractSyntaxTree.NoOperation;
+import com.github.razorapid.morpheus.lang.ast.AbstractSyntaxTree.Params;
+import com.github.razorapid.morpheus.lang.ast.AbstractSyntaxTree.PostfixOp;
+import com.github.razorapid.morpheus.lang.ast.AbstractSyntaxTree.PrefixOp;
+import com.github.razorapid.morpheus.lang.ast.AbstractSyntaxTree.Statement;
+import com.github.razorapid.morpheus.lang.ast.AbstractSyntaxTree.Statements;
+import com.github.razorapid.morpheus.lang.ast.AbstractSyntaxTree.Switch;
+import com.github.razorapid.morpheus.lang.ast.AbstractSyntaxTree.SwitchCase;
+import com.github.razorapid.morpheus.lang.ast.AbstractSyntaxTree.SyntaxError;
+import com.github.razorapid.morpheus.lang.ast.AbstractSyntaxTree.ThreadLabel;
+import com.github.razorapid.morpheus.lang.ast.AbstractSyntaxTree.TryCatch;
+import com.github.razorapid.morpheus.lang.ast.AbstractSyntaxTree.VectorDeclaration;
+import com.github.razorapid.morpheus.lang.ast.AbstractSyntaxTree.WhileLoop;
+import com.github.razorapid.morpheus.lang.ast.AbstractSyntaxTreeVisitor;
+
+import java.util.List;
+
+/**
+ * Prints abstract syntax trees back to scripts, i.e. the trees rewritten by
+ * {@link com.github.razorapid.morpheus.lang.ast.AbstractSyntaxTreeRewriter}.
+ *
+ * The abstract syntax tree doesn't keep the layout and the comments of the script, so the script is laid out anew:
+ * a statement per line, statements of threads and blocks indented with tabs, and parentheses only where the precedence
+ * of the operators needs them (and around function calls in expressions). Parsing the printed script gives back
+ * the same tree, positions aside. Trees with syntax errors can't be printed.
+ */
+public class ScriptPrinter {
+    /** precedence of function calls, they're parenthesized everywhere but in expression statements */
+    private static final int CALL = -1;
+    private static final int ASSIGNMENT = 0;
+    /** precedence of const arrays, they're parenthesized everywhere but in assignments and parameters */
+    private static final int CONST_ARRAY = 0;
+    private static final int UNARY = 10;
+    private static final int POSTFIX = 11;
+    private static final int PRIMARY = 12;
+
+    public String print(AbstractSyntaxTree ast) {
+        return print(ast.program());
+    }
+
+    public String print(Node node) {
+        var printer = new Printer();
+        if (node instanceof Statements statements) {
+            printer.threads(statements.statements());
+        } else if (node instanceof Statement statement) {
+            printer.statement(statement, 0);
+        } else {
+            printer.expression((Expression) node, CALL);
+        }
+        return printer.out.toString();
+    }
+
+    private static int precedence(Expression expression) {
+        if (expression instanceof BinaryOp binaryOp) {
+            return precedence(binaryOp.operator().type());
+        } else if (expression instanceof PrefixOp prefixOp) {
+            return prefixOp.operator().isType(TokenType.TOKEN_DOLLAR) ? PRIMARY : UNARY;
+        } else if (expression instanceof PostfixOp) {
+            return POSTFIX;
+        } else if (expression instanceof FunctionCall) {
+            return CALL;
+        } else if (expression instanceof ConstArrayDeclaration constArray) {
+            // nothing follows endArray on its line, so makeArray is parenthesized before subscripts and members
+            return constArray.list() ? CONST_ARRAY : UNARY;
+        } else if (expression instanceof Literal literal && literal.token().lexeme().startsWith("-")) {
+            return UNARY;
+        }
+        return PRIMARY;
+    }
+
+    private static int precedence(TokenType operator) {
+        return switch (operator) {
+            case TOKEN_ASSIGNMENT, TOKEN_PLUS_EQUALS, TOKEN_MINUS_EQUALS -> ASSIGNMENT;
+            case TOKEN_LOGICAL_OR -> 1;
+            case TOKEN_LOGICAL_AND -> 2;
+            case TOKEN_BITWISE_OR -> 3;
+            case TOKEN_BITWISE_EXCL_OR -> 4;
+            case TOKEN_BITWISE_AND -> 5;
+            case TOKEN_EQUALITY, TOKEN_INEQUALITY -> 6;
+            case TOKEN_LESS_THAN, TOKEN_LESS_THAN_OR_EQUAL, TOKEN_GREATER_THAN, TOKEN_GREATER_THAN_OR_EQUAL -> 7;
+            case TOKEN_PLUS, TOKEN_MINUS -> 8;
+            case TOKEN_MULTIPLY, TOKEN_DIVIDE, TOKEN_PERCENTAGE -> 9;
+            default -> POSTFIX;
+        };
+    }
+
+    private static boolean isThreadEnd(Statement statement) {
+        return statement instanceof ExpressionStmt expressionStmt &&
+                expressionStmt.expression() instanceof FunctionCall call &&
+                call.thread() && call.identifier().isType(TokenType.TOKEN_END) && call.params().param().isEmpty();
+    }
+
+    private static final class Printer implements AbstractSyntaxTreeVisitor<Void> {
+        private final StringBuilder out = new StringBuilder();
+        private int indent;
+
+        /**
+         * Statements of the script, statements of a thread are indented up to the end of the thread,
+         * and threads are separated with empty lines
+         */
+        void threads(List<Statement> statements) {
+            var inThread = false;
+            for (var statement : statements) {
+                if (statement instanceof ThreadLabel && !out.isEmpty()) {
+                    out.append('\n');
+                }
+                if (statement instanceof ThreadLabel || isThreadEnd(statement)) {
+                    statement(statement, 0);
+                    inThread = statement instanceof ThreadLabel;
+                } else {
+                    statement(statement, inThread ? 1 : 0);
+                }
+            }
+        }
+
+        void statement(Statement statement, int indent) {
+            this.indent = indent;
+            out.append("\t".repeat(indent));
+            statement.accept(this);
+            out.append('\n');
+        }
+
+        /**
+         * Statement on the same line, a block goes on the lines below with the closing brace at the indent
+         */
+        private void clause(Statement statement) {
+            var indent = this.indent;
+            if (statement instanceof Statements statements) {
+                out.append("{\n");
+                var labeled = false;
+                for (var child : statements.statements()) {
+                    var label = child instanceof ThreadLabel || child instanceof SwitchCase;
+                    labeled |= label;
+                    statement(child, indent + (labeled && !label ? 2 : 1));
+                }
+                out.append("\t".repeat(indent)).append('}');
+            } else {
+                statement.accept(this);
+            }
+            this.indent = indent;
+        }
+
+        void expression(Expression expression, int precedence) {
+            var parenthesized = precedence(expression) < precedence;
+            if (parenthesized) {
+                out.append('(');
+            }
+            expression.accept(this);
+            if (parenthesized) {
+                out.append(')');
+            }
+        }
+
+        /**
+         * Condition in parentheses, but an identifier in parentheses is a call of a function of that name
+         */
+        private void condition(Expression condition) {
+            if (condition instanceof Literal literal && literal.token().isType(TokenType.TOKEN_IDENTIFIER)) {
+                out.append(literal.token().lexeme()).append(' ');
+                return;
+            }
+            out.append('(');
+            expression(condition, CALL);
+            out.append(") ");
+        }
+
+        private void param(Expression expression) {
+            expression(expression, expression instanceof ConstArrayDeclaration ? CONST_ARRAY : UNARY);
+        }
+
+        private void params(Params params) {
+            for (var param : params.param()) {
+                out.append(' ');
+                param(param);
+            }
+        }
+
+        @Override
+        public Void visitSyntaxError(SyntaxError node) {
+            throw new IllegalArgumentException("Can't print syntax error: " + node.error().error());
+        }
+
+        @Override
+        public Void visitStatements(Statements node) {
+            clause(node);
+            return null;
+        }
+
+        @Override
+        public Void visitThreadLabel(ThreadLabel node) {
+            out.append(node.identifier().lexeme());
+            params(node.params());
+            out.append(':');
+            return null;
+        }
+
+        @Override
+        public Void visitSwitchCase(SwitchCase node) {
+            out.append("case");
+            out.append(node.operator() != null ? node.operator().lexeme() : " ");
+            out.append(node.identifier().lexeme());
+            params(node.params());
+            out.append(':');
+            return null;
+        }
+
+        @Override
+        public Void visitIfElse(IfElse node) {
+            out.append("if ");
+            condition(node.condition());
+            clause(node.ifClause());
+            if (node.elseClause() != null) {
+                out.append(" else ");
+                clause(node.elseClause());
+            }
+            return null;
+        }
+
+        @Override
+        public Void visitSwitch(Switch node) {
+            out.append("switch ");
+            condition(node.condition());
+            clause(node.body());
+            return null;
+        }
+
+        @Override
+        public Void visitWhileLoop(WhileLoop node) {
+            out.append("while ");
+            condition(node.condition());
+            clause(node.body());
+            return null;
+        }
+
+        @Override
+        public Void visitForLoop(ForLoop node) {
+            out.append("for (");
+            if (node.initializer() != null) {
+                node.initializer().accept(this);
+            }
+            out.append("; ");
+            expression(node.condition(), CALL);
+            out.append(';');
+            var advancement = node.advancement() instanceof Statements statements ? statements.statements() : List.of(node.advancement());
+            for (var statement : advancement) {
+                out.append(' ');
+                statement.accept(this);
+            }
+            out.append(") ");
+            clause(node.body());
+            return null;
+        }
+
+        @Override
+        public Void visitTryCatch(TryCatch node) {
+            out.append("try ");
+            clause(node.tryClause());
+            out.append(" catch ");
+            clause(node.catchClause());
+            return null;
+        }
+
+        @Override
+        public Void visitNoOperation(NoOperation node) {
+            out.append(';');
+            return null;
+        }
+
+        @Override
+        public Void visitBreak(Break node) {
+            out.append("break");
+            return null;
+        }
+
+        @Override
+        public Void visitContinue(Continue node) {
+            out.append("continue");
+            return null;
+        }
+
+        @Override
+        public Void visitExpressionStmt(ExpressionStmt node) {
+            expression(node.expression(), CALL);
+            return null;
+        }
+
+        @Override
+        public Void visitFunctionCall(FunctionCall node) {
+            if (node.listener() != null) {
+                expression(node.listener(), POSTFIX);
+                out.append(' ');
+            }
+            out.append(node.identifier().lexeme());
+            params(node.params());
+            return null;
+        }
+
+        @Override
+        public Void visitParams(Params node) {
+            params(node);
+            return null;
+        }
+
+        @Override
+        public Void visitPostfixOp(PostfixOp node) {
+            expression(node.lhs(), POSTFIX);
+            out.append(node.operator().lexeme());
+            return null;
+        }
+
+        /**
+         * Operators keep their lexemes, the space the lexer reads as a part of the unary minus and plus too
+         */
+        @Override
+        public Void visitPrefixOp(PrefixOp node) {
+            out.append(node.operator().lexeme());
+            expression(node.rhs(), precedence(node));
+            return null;
+        }
+
+        @Override
+        public Void visitBinaryOp(BinaryOp node) {
+            var operator = node.operator().type();
+            if (operator == TokenType.TOKEN_PERIOD) {
+                expression(node.lhs(), POSTFIX);
+                out.append('.');
+                expression(node.rhs(), PRIMARY);
+            } else if (operator == TokenType.TOKEN_LEFT_SQUARE_BRACKET) {
+                expression(node.lhs(), POSTFIX);
+                out.append('[');
+                expression(node.rhs(), ASSIGNMENT);
+                out.append(']');
+            } else if (precedence(operator) == ASSIGNMENT) {
+                expression(node.lhs(), POSTFIX);
+                out.append(' ').append(node.operator().lexeme()).append(' ');
+                expression(node.rhs(), ASSIGNMENT);
+            } else {
+                var precedence = precedence(operator);
+                expression(node.lhs(), precedence);
+                out.append(' ').append(node.operator().lexeme()).append(' ');
+                expression(node.rhs(), precedence + 1);
+            }
+            return null;
+        }
+
+        @Override
+        public Void visitLiteral(Literal node) {
+            if (node.token().lexeme().startsWith("-")) {
+                // negative numbers (i.e. folded by ConstantFolder) are read back as negations, with the space before
+                out.append(' ');
+            }
+            out.append(node.token().lexeme());
+            return null;
+        }
+
+        @Override
+        public Void visitVectorDeclaration(VectorDeclaration node) {
+            out.append('(');
+            for (var component : List.of(node.x(), node.y(), node.z())) {
+                out.append(' ');
+                expression(component, UNARY);
+            }
+            out.append(" )");
+            return null;
+        }
+
+        @Override
+        public Void visitConstArrayDeclaration(ConstArrayDeclaration node) {
+            if (node.list()) {
+                var elements = node.indices().get(0);
+                for (int i = 0; i < elements.size(); i++) {
+                    if (i > 0) {
+                        out.append("::");
+                    }
+                    expression(elements.get(i), UNARY);
+                }
+                return null;
+            }
+            out.append("makeArray\n");
+            for (var row : node.indices()) {
+                out.append("\t".repeat(indent + 1));
+                for (int i = 0; i < row.size(); i++) {
+                    if (i > 0) {
+                        out.append(' ');
+                    }
+                    param(row.get(i));
+                }
+                out.append('\n');
+            }
+            out.append("\t".repeat(indent)).append("endArray");
+            return null;
+        }
+    }
+}
@@ -0,0 +1,474 @@
+package com.github.razorapid.morpheus.lang.cst;
+
+import com.github.razorapid.morpheus.lang.SourcePos;
+import com.github.razorapid.morpheus.lang.SpanIndex;
+import com.github.razorapid.morpheus.lang.Token;
+import com.github.razorapid.morpheus.lang.TreeCursor;
+import com.github.razorapid.morpheus.lang.parser.ParseError;
+import lombok.AllArgsConstructor;
+import lombok.Value;
+
+import java.util.Arrays;
+import java.util.List;
+import java.util.function.Supplier;
+
+@Value
+public class ConcreteSyntaxTree {
+    Node program;
+
+    /**
+     * Index of the spans of the nodes, i.e. to find the innermost node at an offset, see {@link SpanIndex}.
+     * Thread bodies not parsed yet in outline mode are indexed as a whole, without their statements.
+     */
+    public SpanIndex<Node> spanIndex() {
+        return SpanIndex.of(program, SPANS);
+    }
+
+    private static final SpanIndex.Tree<Node> SPANS = new SpanIndex.Tree<>() {
+        @Override
+        public int childCount(Node node) {
+            if (node instanceof LazyNode lazy && !lazy.isParsed()) {
+                return 0;
+            }
+            return SHAPE.childCount(node);
+        }
+
+        @Override
+        public Node child(Node node, int index) {
+            return SHAPE.child(node, index);
+        }
+
+        @Override
+        public int start(Node node) {
+            if (node instanceof TokenNode token) {
+                return (int) token.value().pos().pos();
+            }
+            if (node instanceof LazyNode lazy) {
+                return (int) lazy.start().pos();
+            }
+            return SpanIndex.NONE;
+        }
+
+        @Override
+        public int end(Node node) {
+            if (node instanceof TokenNode token) {
+                return (int) token.value().pos().pos() + token.value().lexeme().length();
+            }
+            if (node instanceof LazyNode lazy) {
+                return (int) lazy.end().pos();
+            }
+            return SpanIndex.NONE;
+        }
+    };
+
+    /**
+     * Cursor walking the tree from the program node, see {@link TreeCursor}.
+     * Thread bodies not parsed yet in outline mode are parsed when the cursor enters them.
+     */
+    public TreeCursor<Node> cursor() {
+        return new TreeCursor<>(program, SHAPE);
+    }
+
+    /**
+     * Children of the non-terminal nodes by their indices, empty children included
+     */
+    static final TreeCursor.Tree<Node> SHAPE = new TreeCursor.Tree<>() {
+        @Override
+        public int childCount(Node node) {
+            return node instanceof NonTerminalNode nonTerminal ? nonTerminal.children().size() : 0;
+        }
+
+        @Override
+        public Node child(Node node, int index) {
+            return ((NonTerminalNode) node).children().get(index);
+        }
+    };
+
+    public enum NodeType {
+        ERROR,
+        STATEMENT_LINE,
+        EOL,
+        STATEMENT,
+        COMPOUND_STATEMENT,
+        LABEL_STATEMENT,
+        SELECTION_STATEMENT,
+        ITERATION_STATEMENT,
+        TRY_CATCH_STATEMENT,
+        BREAK_STATEMENT,
+        CONTINUE_STATEMENT,
+        NOOP_STATEMENT,
+        EXPRESSION_STATEMENT,
+        THREAD_FUNCTION_CALL_EXPRESSION,
+        LISTENER_FUNCTION_CALL_EXPRESSION,
+        ASSIGNMENT_EXPRESSION,
+        INCREMENT_EXPRESSION,
+        DECREMENT_EXPRESSION,
+        EVENT_PARAMETER_LIST,
+        NON_IDENTIFIER_PRIMARY_EXPRESSION,
+        SWITCH_CASE_LABEL_STATEMENT,
+        THREAD_LABEL_STATEMENT,
+        IF_ELSE_STATEMENT,
+        SWITCH_STATEMENT,
+        WHILE_STATEMENT,
+        FOR_STATEMENT,
+        PRIMARY_EXPRESSION,
+        CONST_ARRAY_EXPRESSION,
+        IDENTIFIER_PRIMARY_EXPRESSION,
+        IDENTIFIER_LITERAL,
+        EXPRESSION,
+        FUNCTION_PRIMARY_EXPRESSION,
+        BINARY_EXPRESSION,
+        UNARY_FUNCTION_PRIMARY_EXPRESSION,
+        ARITHMETIC_NEGATION_FUNCTION_EXPRESSION,
+        BITWISE_COMPLETION_FUNCTION_EXPRESSION,
+        LOGICAL_NEGATION_FUNCTION_EXPRESSION,
+        VECTOR_DECLARATION_EXPRESSION,
+        GROUPING_EXPRESSION,
+        MAKE_ARRAY_EXPRESSION,
+        MAKE_ARRAY_ROW_EXPRESSION,
+        BLOCK_START,
+        BLOCK_END,
+        SEMICOLON,
+        IDENTIFIER,
+        INFIX_OPERATOR,
+        POSTFIX_OPERATOR,
+        COLON,
+        DOUBLE_COLON,
+        SCALAR_COMPONENT_EXPRESSION,
+        IDENTIFIER_SCALAR_COMPONENT_EXPRESSION,
+        NON_IDENTIFIER_SCALAR_COMPONENT_EXPRESSION,
+        TARGETNAME_EXPRESSION,
+        PREFIX_OPERATOR,
+        MEMBER_SELECTION_EXPRESSION,
+        SUBSCRIPT_EXPRESSION,
+        KEYWORD,
+        UNARY_NON_IDENTIFIER_EXPRESSION,
+        LITERAL_EXPRESSION,
+        LITERAL,
+        MULTIPLICATION_EXPRESSION,
+        DIVISION_EXPRESSION,
+        MODULO_EXPRESSION,
+        ADDITION_EXPRESSION,
+        SUBTRACTION_EXPRESSION,
+        LESS_THAN_EXPRESSION,
+        GREATER_THAN_EXPRESSION,
+        LESS_THAN_OR_EQUALS_EXPRESSION,
+        GREATER_THAN_OR_EQUAL_EXPRESSION,
+        EQUALITY_EXPRESSION,
+        INEQUALITY_EXPRESSION,
+        BITWISE_AND_EXPRESSION,
+        BITWISE_XOR_EXPRESSION,
+        BITWISE_OR_EXPRESSION,
+        LOGICAL_AND_EXPRESSION,
+        LOGICAL_OR_EXPRESSION,
+        ARITHMETIC_NEGATION_NON_IDENTIFIER_EXPRESSION,
+        BITWISE_COMPLEMENT_NON_IDENTIFIER_EXPRESSION,
+        LOGICAL_NEGATION_NON_IDENTIFIER_EXPRESSION,
+        NULL_LITERAL,
+        NIL_LITERAL,
+        LISTENER_LITERAL,
+        FLOAT_LITERAL,
+        INTEGER_LITERAL,
+        STRING_LITERAL,
+        STATEMENT_LIST,
+        THREAD_BODY
+    }
+
+    /**
+     * Pass-through wrappers: nodes with a single child that add nothing but their type.
+     * The builder in compact mode doesn't create them, it records them in the {@code elided} mask
+     * of the child instead, one bit per type in the order of this list.
+     */
+    private static final List<NodeType> PASS_THROUGH_TYPES = List.of(
+            NodeType.STATEMENT,
+            NodeType.LABEL_STATEMENT,
+            NodeType.SELECTION_STATEMENT,
+            NodeType.ITERATION_STATEMENT,
+            NodeType.NON_IDENTIFIER_PRIMARY_EXPRESSION,
+            NodeType.IDENTIFIER_PRIMARY_EXPRESSION,
+            NodeType.PRIMARY_EXPRESSION,
+            NodeType.EXPRESSION,
+            NodeType.FUNCTION_PRIMARY_EXPRESSION,
+            NodeType.BINARY_EXPRESSION,
+            NodeType.SCALAR_COMPONENT_EXPRESSION,
+            NodeType.NON_IDENTIFIER_SCALAR_COMPONENT_EXPRESSION,
+            NodeType.LITERAL_EXPRESSION
+    );
+    private static final long[] PASS_THROUGH_BITS = new long[NodeType.values().length];
+
+    static {
+        for (int i = 0; i < PASS_THROUGH_TYPES.size(); i++) {
+            PASS_THROUGH_BITS[PASS_THROUGH_TYPES.get(i).ordinal()] = 1L << i;
+        }
+    }
+
+    public interface Node {
+        NodeType type();
+        String name();
+
+        /**
+         * @return true if the node is of the given type, or it was wrapped in a pass-through node
+         * of the given type that was elided from the compact tree
+         */
+        default boolean isA(NodeType type) {
+            return type() == type;
+        }
+
+        <T> T accept(ConcreteSyntaxTreeVisitor<T> visitor);
+    }
+
+    public interface TerminalNode extends Node {
+    }
+    public interface NonTerminalNode extends Node {
+        List<Node> children();
+        default <T extends Node> T childAt(long id) {
+            return (T)children().get((int) id);
+        }
+    }
+
+    @Value
+    public static class ErrorNode implements NonTerminalNode {
+        NodeType type;
+        ParseError error;
+        List<Node> children;
+
+        @Override
+        public NodeType type() {
+            return NodeType.ERROR;
+        }
+
+        @Override
+        public String name() {
+            return type().name();
+        }
+
+        @Override
+        public <T> T accept(ConcreteSyntaxTreeVisitor<T> visitor) {
+            return visitor.visitError(this);
+        }
+    }
+
+    @Value
+    public static class TokenNode implements TerminalNode {
+        NodeType type;
+        Token value;
+
+        @Override
+        public NodeType type() {
+            return type;
+        }
+
+        @Override
+        public String name() {
+            return value.type().name();
+        }
+
+        @Override
+        public <T> T accept(ConcreteSyntaxTreeVisitor<T> visitor) {
+            return visitor.visitToken(this);
+        }
+    }
+
+    @Value
+    @AllArgsConstructor
+    public static class ExpressionNode implements NonTerminalNode {
+        NodeType type;
+        String name;
+        List<Node> children;
+        /** pass-through wrappers elided from the compact tree, see {@link #isA} */
+        long elided;
+
+        public ExpressionNode(NodeType type, String name, List<Node> children) {
+            this(type, name, children, 0);
+        }
+
+        @Override
+        public NodeType type() {
+            return type;
+        }
+
+        @Override
+        public boolean isA(NodeType type) {
+            return this.type == type || (elided & passThroughBit(type)) != 0;
+        }
+
+        @Override
+        public String name() {
+            return name;
+        }
+
+        @Override
+        public <T> T accept(ConcreteSyntaxTreeVisitor<T> visitor) {
+            return visitor.visitExpression(this);
+        }
+
+        @Override
+        public List<Node> children() {
+            return children;
+        }
+    }
+
+    @Value
+    @AllArgsConstructor
+    public static class StatementNode implements NonTerminalNode {
+        NodeType type;
+        String name;
+        List<Node> children;
+        /** pass-through wrappers elided from the compact tree, see {@link #isA} */
+        long elided;
+
+        public StatementNode(NodeType type, String name, List<Node> children) {
+            this(type, name, children, 0);
+        }
+
+        @Override
+        public NodeType type() {
+            return type;
+        }
+
+        @Override
+        public boolean isA(NodeType type) {
+            return this.type == type || (elided & passThroughBit(type)) != 0;
+        }
+
+        @Override
+        public String name() {
+            return name;
+        }
+
+        @Override
+        public <T> T accept(ConcreteSyntaxTreeVisitor<T> visitor) {
+            return visitor.visitStatement(this);
+        }
+
+        @Override
+        public List<Node> children() {
+            return children;
+        }
+    }
+
+    /**
+     * Thread body skipped by the parser in outline mode.
+     * Statements of the body are parsed on the first access to the node's children
+     * (or on the first visit) and the result is cached afterwards.
+     */
+    public static class LazyNode implements NonTerminalNode {
+        private final Token firstToken;
+        private final Token lastToken;
+        private Supplier<StatementNode> parseFn;
+        private volatile StatementNode node;
+
+        LazyNode(Token firstToken, Token lastToken, Supplier<StatementNode> parseFn) {
+            this.firstToken = firstToken;
+            this.lastToken = lastToken;
+            this.parseFn = parseFn;
+        }
+
+        @Override
+        public NodeType type() {
+            return NodeType.THREAD_BODY;
+        }
+
+        @Override
+        public String name() {
+            return "threadBody";
+        }
+
+        @Override
+        public List<Node> children() {
+            return node().children();
+        }
+
+        @Override
+        public <T> T accept(ConcreteSyntaxTreeVisitor<T> visitor) {
+            return visitor.visitStatement(node());
+        }
+
+        public SourcePos start() {
+            return firstToken.pos();
+        }
+
+        public SourcePos end() {
+            return lastToken.pos().addCol(lastToken.lexeme().length());
+        }
+
+        public boolean isParsed() {
+            return node != null;
+        }
+
+        public StatementNode node() {
+            var result = node;
+            if (result == null) {
+                synchronized (this) {
+                    result = node;
+                    if (result == null) {
+                        result = parseFn.get();
+                        node = result;
+                        parseFn = null;
+                    }
+                }
+            }
+            return result;
+        }
+    }
+
+    static Node createTokenNode(NodeType type, Token token) {
+        return new TokenNode(type, token);
+    }
+
+    static Node createStatementNode(NodeType type, String name, Node... children) {
+        return new StatementNode(type, name, Arrays.stream(children).toList());
+    }
+
+    static StatementNode createStatementNode(NodeType type, String name, List<Node> children) {
+        return new StatementNode(type, name, children);
+    }
+
+    static Node createExpressionNode(NodeType type, String name, Node... children) {
+        return new ExpressionNode(type, name, Arrays.stream(children).toList());
+    }
+
+    static Node createExpressionNode(NodeType type, String name, List<Node> children) {
+        return new ExpressionNode(type, name, children);
+    }
+
+    static Node createExpressionNode(NodeType type, String name, long elided, Node... children) {
+        return new ExpressionNode(type, name, Arrays.stream(children).toList(), elided);
+    }
+
+    static LazyNode createLazyNode(Token firstToken, Token lastToken, Supplier<StatementNode> parseFn) {
+        return new LazyNode(firstToken, lastToken, parseFn);
+    }
+
+    /**
+     * @return bit of the pass-through type in the {@code elided} mask, or 0 if the type isn't a pass-through wrapper
+     */
+    static long passThroughBit(NodeType type) {
+        return PASS_THROUGH_BITS[type.ordinal()];
+    }
+
+    /**
+     * @return the node with the wrapper of the given pass-through type recorded in its mask,
+     * or null if the node can't record it (tokens, errors, thread bodies) and the wrapper has to be created.
+     * The node is copied rather than changed, the parser shares memoized nodes between parse attempts.
+     */
+    static Node elide(NodeType wrapper, Node node) {
+        var bit = passThroughBit(wrapper);
+        if (bit == 0) {
+            return null;
+        }
+        if (node instanceof ExpressionNode expression) {
+            return (expression.elided & bit) != 0 ? expression :
+                    new ExpressionNode(expression.type, expression.name, expression.children, expression.elided | bit);
+        }
+        if (node instanceof StatementNode statement) {
+            return (statement.elided & bit) != 0 ? statement :
+                    new StatementNode(statement.type, statement.name, statement.children, statement.elided | bit);
+        }
+        return null;
+    }
+
+    static Node createErrorNode(ParseError error, Node... children) {
+        return new ErrorNode(NodeType.ERROR, error, Arrays.stream(children).toList());
+    }
+}
@@ -0,0 +1,427 @@
+package com.github.razorapid.morpheus.lang.cst;
+
+import com.github.razorapid.morpheus.lang.SectionFile;
+import com.github.razorapid.morpheus.lang.Token;
+import com.github.razorapid.morpheus.lang.TokenType;
+import com.github.razorapid.morpheus.lang.TreeCursor;
+import com.github.razorapid.morpheus.lang.cst.ConcreteSyntaxTree.ErrorNode;
+import com.github.razorapid.morpheus.lang.cst.ConcreteSyntaxTree.ExpressionNode;
+import com.github.razorapid.morpheus.lang.cst.ConcreteSyntaxTree.Node;
+import com.github.razorapid.morpheus.lang.cst.ConcreteSyntaxTree.NodeType;
+import com.github.razorapid.morpheus.lang.cst.ConcreteSyntaxTree.StatementNode;
+import com.github.razorapid.morpheus.lang.cst.ConcreteSyntaxTree.TokenNode;
+import com.github.razorapid.morpheus.lang.parser.ParseError;
+
+import java.util.AbstractList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.Map;
+import java.util.Objects;
+import java.util.RandomAccess;
+
+/**
+ * Concrete syntax tree flattened into primitive arrays.
+ *
+ * Every node of the tree is an index into the arrays that hold its type, name, first child
+ * (or token, for terminal nodes), next sibling, span and the pass-through wrappers elided from it in a compact tree
+ * (a mask of 16 bits is enough for them). Tokens are kept the same way, with their lexemes
+ * stored once for all the tokens that share them. Nodes are numbered in the preorder, the root is 0.
+ *
+ * Visitors dispatch on the node classes of {@link ConcreteSyntaxTree}, so {@link #node(int)} and {@link #tree()}
+ * give the nodes as instances of these classes, created on access and backed by the arena.
+ * The children of every node are cached as a range of one array of child nodes, so the children of a view
+ * are a view of the range, and a child is created once per view of its parent, on its first access.
+ * Views are only as long-lived as the caller keeps them, the arena alone is what stays retained.
+ *
+ * Thread bodies skipped in outline mode are parsed when the tree is flattened.
+ */
+public final class ConcreteSyntaxTreeArena {
+    /**
+     * No node (no child, no sibling) or no position in the script (span of a node without tokens)
+     */
+    public static final int NONE = -1;
+
+    private static final NodeType[] NODE_TYPES = NodeType.values();
+    private static final TokenType[] TOKEN_TYPES = TokenType.values();
+
+    private static final byte NULL = 0;
+    private static final byte TOKEN = 1;
+    private static final byte EXPRESSION = 2;
+    private static final byte STATEMENT = 3;
+    private static final byte ERROR = 4;
+
+    private final byte[] kinds;
+    private final byte[] types;
+    private final short[] names;
+    private final short[] elided;
+    private final int[] firstChildOrToken;
+    private final int[] nextSiblings;
+    private final int[] starts;
+    private final int[] ends;
+    /** children of the node n are childNodes[childOffsets[n]] up to (excluding) childNodes[childOffsets[n + 1]] */
+    private final int[] childOffsets;
+    private final int[] childNodes;
+
+    private final byte[] tokenTypes;
+    private final int[] tokenLexemes;
+    private final int[] tokenPositions;
+    private final int[] tokenLines;
+    private final int[] tokenCols;
+
+    private final String[] nameTable;
+    private final String[] lexemeTable;
+    private final Map<Integer, ParseError> errors;
+
+    private ConcreteSyntaxTreeArena(Builder builder) {
+        var size = builder.size;
+        this.kinds = Arrays.copyOf(builder.kinds, size);
+        this.types = Arrays.copyOf(builder.types, size);
+        this.names = Arrays.copyOf(builder.names, size);
+        this.elided = Arrays.copyOf(builder.elided, size);
+        this.firstChildOrToken = Arrays.copyOf(builder.firstChildOrToken, size);
+        this.nextSiblings = Arrays.copyOf(builder.nextSiblings, size);
+        this.starts = Arrays.copyOf(builder.starts, size);
+        this.ends = Arrays.copyOf(builder.ends, size);
+        this.childOffsets = new int[size + 1];
+        this.childNodes = new int[size];
+        var children = 0;
+        for (int node = 0; node < size; node++) {
+            childOffsets[node] = children;
+            for (var child = firstChild(node); child != NONE; child = nextSiblings[child]) {
+                childNodes[children++] = child;
+            }
+        }
+        childOffsets[size] = children;
+
+        var tokens = builder.tokens;
+        this.tokenTypes = Arrays.copyOf(builder.tokenTypes, tokens);
+        this.tokenLexemes = Arrays.copyOf(builder.tokenLexemes, tokens);
+        this.tokenPositions = Arrays.copyOf(builder.tokenPositions, tokens);
+        this.tokenLines = Arrays.copyOf(builder.tokenLines, tokens);
+        this.tokenCols = Arrays.copyOf(builder.tokenCols, tokens);
+
+        this.nameTable = new String[builder.nameIds.size()];
+        builder.nameIds.forEach((name, id) -> nameTable[id] = name);
+        this.lexemeTable = new String[builder.lexemeIds.size()];
+        builder.lexemeIds.forEach((lexeme, id) -> lexemeTable[id] = lexeme);
+        this.errors = Map.copyOf(builder.errors);
+    }
+
+    public static ConcreteSyntaxTreeArena of(ConcreteSyntaxTree cst) {
+        var builder = new Builder();
+        builder.append(cst.program(), NONE, NONE);
+        return new ConcreteSyntaxTreeArena(builder);
+    }
+
+    /**
+     * Flattens the statement lines into the statement list of the program as they come,
+     * i.e. from {@link com.github.razorapid.morpheus.lang.parser.Parser#statements()},
+     * so the whole tree of objects never has to be in the memory at once
+     */
+    public static ConcreteSyntaxTreeArena of(Iterator<Node> statementLines) {
+        var builder = new Builder();
+        var program = builder.allocate(STATEMENT, NodeType.STATEMENT_LIST, "statementList");
+        var previous = NONE;
+        while (statementLines.hasNext()) {
+            previous = builder.append(statementLines.next(), program, previous);
+            builder.extendSpan(program, previous);
+        }
+        return new ConcreteSyntaxTreeArena(builder);
+    }
+
+    public ConcreteSyntaxTree tree() {
+        return new ConcreteSyntaxTree(node(0));
+    }
+
+    /**
+     * Number of nodes in the tree, including the empty (null) children
+     */
+    public int size() {
+        return kinds.length;
+    }
+
+    public Node node(int node) {
+        return switch (kinds[node]) {
+            case NULL -> null;
+            case TOKEN -> new TokenNode(type(node), token(firstChildOrToken[node]));
+            case EXPRESSION -> new ExpressionNode(type(node), nameTable[names[node]], new Children(node), elided(node));
+            case STATEMENT -> new StatementNode(type(node), nameTable[names[node]], new Children(node), elided(node));
+            default -> new ErrorNode(NodeType.ERROR, errors.get(node), new Children(node));
+        };
+    }
+
+    /**
+     * @return type of the node, null for an empty child
+     */
+    public NodeType type(int node) {
+        return kinds[node] != NULL ? NODE_TYPES[types[node]] : null;
+    }
+
+    public boolean isTerminal(int node) {
+        return kinds[node] == TOKEN;
+    }
+
+    public int firstChild(int node) {
+        return kinds[node] != TOKEN ? firstChildOrToken[node] : NONE;
+    }
+
+    public int nextSibling(int node) {
+        return nextSiblings[node];
+    }
+
+    /**
+     * @return offset of the first token of the node in the script, {@link #NONE} if the node has no tokens
+     */
+    public int start(int node) {
+        return starts[node];
+    }
+
+    /**
+     * @return offset right after the last token of the node in the script, {@link #NONE} if the node has no tokens
+     */
+    public int end(int node) {
+        return ends[node];
+    }
+
+    /**
+     * Writes the arena out in the format of {@link ConcreteSyntaxTreeFile}
+     */
+    void write(SectionFile.Writer file) {
+        var errorNodes = errors.keySet().stream().mapToInt(Integer::intValue).sorted().toArray();
+        var errorPositions = new int[errorNodes.length];
+        var errorLines = new int[errorNodes.length];
+        var errorCols = new int[errorNodes.length];
+        var errorMessages = new String[errorNodes.length];
+        for (int i = 0; i < errorNodes.length; i++) {
+            var error = errors.get(errorNodes[i]);
+            errorPositions[i] = (int) error.pos().pos();
+            errorLines[i] = (int) error.pos().line();
+            errorCols[i] = (int) error.pos().col();
+            errorMessages[i] = error.error();
+        }
+        file.bytes(kinds, kinds.length)
+                .bytes(types, types.length)
+                .shorts(names, names.length)
+                .shorts(elided, elided.length)
+                .ints(firstChildOrToken, firstChildOrToken.length)
+                .ints(nextSiblings, nextSiblings.length)
+                .ints(starts, starts.length)
+                .ints(ends, ends.length)
+                .bytes(tokenTypes, tokenTypes.length)
+                .ints(tokenLexemes, tokenLexemes.length)
+                .ints(tokenPositions, tokenPositions.length)
+                .ints(tokenLines, tokenLines.length)
+                .ints(tokenCols, tokenCols.length)
+                .strings(nameTable)
+                .strings(lexemeTable)
+                .ints(errorNodes, errorNodes.length)
+                .ints(errorPositions, errorPositions.length)
+                .ints(errorLines, errorLines.length)
+                .ints(errorCols, errorCols.length)
+                .strings(errorMessages);
+    }
+
+    private long elided(int node) {
+        return elided[node] & 0xFFFF;
+    }
+
+    private Token token(int token) {
+        return Token.of(TOKEN_TYPES[tokenTypes[token]], lexemeTable[tokenLexemes[token]], tokenPositions[token], tokenLines[token], tokenCols[token]);
+    }
+
+    /**
+     * Children of a non-terminal node, the range of its child nodes in the arena.
+     * Views of the children are kept once they're accessed, so they aren't created again by this list.
+     */
+    private final class Children extends AbstractList<Node> implements RandomAccess {
+        private final int first;
+        private final int size;
+        private Node[] nodes;
+
+        Children(int parent) {
+            this.first = childOffsets[parent];
+            this.size = childOffsets[parent + 1] - first;
+        }
+
+        @Override
+        public Node get(int index) {
+            Objects.checkIndex(index, size);
+            if (nodes == null) {
+                nodes = new Node[size];
+            }
+            var node = nodes[index];
+            if (node == null) {
+                node = node(childNodes[first + index]);
+                nodes[index] = node;
+            }
+            return node;
+        }
+
+        @Override
+        public int size() {
+            return size;
+        }
+    }
+
+    private static final class Builder implements TreeCursor.Walker<Node, RuntimeException> {
+        private int size = 0;
+        private byte[] kinds = new byte[1024];
+        private byte[] types = new byte[1024];
+        private short[] names = new short[1024];
+        private short[] elided = new short[1024];
+        private int[] firstChildOrToken = new int[1024];
+        private int[] nextSiblings = new int[1024];
+        private int[] starts = new int[1024];
+        private int[] ends = new int[1024];
+
+        private int tokens = 0;
+        private byte[] tokenTypes = new byte[512];
+        private int[] tokenLexemes = new int[512];
+        private int[] tokenPositions = new int[512];
+        private int[] tokenLines = new int[512];
+        private int[] tokenCols = new int[512];
+
+        private final Map<String, Integer> nameIds = new HashMap<>();
+        private final Map<String, Integer> lexemeIds = new HashMap<>();
+        private final Map<Integer, ParseError> errors = new HashMap<>();
+
+        /** nodes on the path of the cursor and the last children appended to them */
+        private int[] path = new int[64];
+        private int[] lastChildren = new int[64];
+
+        /**
+         * Appends the subtree as the next child of the parent
+         *
+         * @return index of the subtree root
+         */
+        int append(Node root, int parent, int previousSibling) {
+            new TreeCursor<>(root, ConcreteSyntaxTree.SHAPE, true).walk(this);
+            var subtree = path[0];
+            link(parent, previousSibling, subtree);
+            return subtree;
+        }
+
+        @Override
+        public void enter(TreeCursor<Node> cursor) {
+            var node = allocate(cursor.node());
+            var depth = cursor.depth();
+            if (depth > 0) {
+                link(path[depth - 1], lastChildren[depth - 1], node);
+                lastChildren[depth - 1] = node;
+            }
+            if (depth == path.length) {
+                path = Arrays.copyOf(path, depth * 2);
+                lastChildren = Arrays.copyOf(lastChildren, depth * 2);
+            }
+            path[depth] = node;
+            lastChildren[depth] = NONE;
+        }
+
+        @Override
+        public void leave(TreeCursor<Node> cursor) {
+            var depth = cursor.depth();
+            if (depth > 0) {
+                extendSpan(path[depth - 1], path[depth]);
+            }
+        }
+
+        void extendSpan(int parent, int child) {
+            if (starts[child] == NONE) {
+                return;
+            }
+            if (starts[parent] == NONE) {
+                starts[parent] = starts[child];
+            }
+            ends[parent] = ends[child];
+        }
+
+        private void link(int parent, int previousSibling, int node) {
+            if (previousSibling != NONE) {
+                nextSiblings[previousSibling] = node;
+            } else if (parent != NONE) {
+                firstChildOrToken[parent] = node;
+            }
+        }
+
+        private int allocate(Node node) {
+            if (node == null) {
+                return allocate(NULL, null, null);
+            }
+            if (node instanceof TokenNode tokenNode) {
+                var index = allocate(TOKEN, tokenNode.type(), null);
+                var token = tokenNode.value();
+                firstChildOrToken[index] = addToken(token);
+                starts[index] = (int) token.pos().pos();
+                ends[index] = (int) token.pos().pos() + token.lexeme().length();
+                return index;
+            }
+            if (node instanceof ErrorNode errorNode) {
+                var index = allocate(ERROR, NodeType.ERROR, null);
+                errors.put(index, errorNode.error());
+                return index;
+            }
+            var index = allocate(node instanceof ExpressionNode ? EXPRESSION : STATEMENT, node.type(), node.name());
+            if (node instanceof ExpressionNode expression) {
+                elided[index] = (short) expression.elided();
+            } else if (node instanceof StatementNode statement) {
+                elided[index] = (short) statement.elided();
+            }
+            return index;
+        }
+
+        int allocate(byte kind, NodeType type, String name) {
+            if (size == kinds.length) {
+                grow();
+            }
+            var index = size++;
+            kinds[index] = kind;
+            types[index] = type != null ? (byte) type.ordinal() : 0;
+            names[index] = name != null ? nameId(name) : 0;
+            elided[index] = 0;
+            firstChildOrToken[index] = NONE;
+            nextSiblings[index] = NONE;
+            starts[index] = NONE;
+            ends[index] = NONE;
+            return index;
+        }
+
+        private int addToken(Token token) {
+            if (tokens == tokenTypes.length) {
+                growTokens();
+            }
+            var index = tokens++;
+            tokenTypes[index] = (byte) token.type().ordinal();
+            tokenLexemes[index] = lexemeIds.computeIfAbsent(token.lexeme(), it -> lexemeIds.size());
+            tokenPositions[index] = (int) token.pos().pos();
+            tokenLines[index] = (int) token.line();
+            tokenCols[index] = (int) token.col();
+            return index;
+        }
+
+        private short nameId(String name) {
+            return (short) (int) nameIds.computeIfAbsent(name, it -> nameIds.size());
+        }
+
+        private void grow() {
+            var capacity = kinds.length * 2;
+            kinds = Arrays.copyOf(kinds, capacity);
+            types = Arrays.copyOf(types, capacity);
+            names = Arrays.copyOf(names, capacity);
+            elided = Arrays.copyOf(elided, capacity);
+            firstChildOrToken = Arrays.copyOf(firstChildOrToken, capacity);
+            nextSiblings = Arrays.copyOf(nextSiblings, capacity);
+            starts = Arrays.copyOf(starts, capacity);
+            ends = Arrays.copyOf(ends, capacity);
+        }
+
+        private void growTokens() {
+            var capacity = tokenTypes.length * 2;
+            tokenTypes = Arrays.copyOf(tokenTypes, capacity);
+            tokenLexemes = Arrays.copyOf(tokenLexemes, capacity);
+            tokenPositions = Arrays.copyOf(tokenPositions, capacity);
+            tokenLines = Arrays.copyOf(tokenLines, capacity);
+            tokenCols = Arrays.copyOf(tokenCols, capacity);
+        }
+    }
+}
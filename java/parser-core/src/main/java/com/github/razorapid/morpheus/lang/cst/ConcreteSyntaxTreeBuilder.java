@@ -5,6 +5,7 @@ import com.github.razorapid.morpheus.lang.parser.ParseError;
 
 import java.util.ArrayList;
 import java.util.List;
+import java.util.function.Supplier;
 
 import static com.github.razorapid.morpheus.lang.cst.ConcreteSyntaxTree.Node;
 import static com.github.razorapid.morpheus.lang.cst.ConcreteSyntaxTree.NodeType;
@@ -62,19 +63,45 @@ import static com.github.razorapid.morpheus.lang.cst.ConcreteSyntaxTree.NodeType
 import static com.github.razorapid.morpheus.lang.cst.ConcreteSyntaxTree.NodeType.SWITCH_STATEMENT;
 import static com.github.razorapid.morpheus.lang.cst.ConcreteSyntaxTree.NodeType.TARGETNAME_EXPRESSION;
 import static com.github.razorapid.morpheus.lang.cst.ConcreteSyntaxTree.NodeType.THREAD_FUNCTION_CALL_EXPRESSION;
+import static com.github.razorapid.morpheus.lang.cst.ConcreteSyntaxTree.NodeType.THREAD_BODY;
 import static com.github.razorapid.morpheus.lang.cst.ConcreteSyntaxTree.NodeType.THREAD_LABEL_STATEMENT;
 import static com.github.razorapid.morpheus.lang.cst.ConcreteSyntaxTree.NodeType.TRY_CATCH_STATEMENT;
 import static com.github.razorapid.morpheus.lang.cst.ConcreteSyntaxTree.NodeType.UNARY_FUNCTION_PRIMARY_EXPRESSION;
 import static com.github.razorapid.morpheus.lang.cst.ConcreteSyntaxTree.NodeType.UNARY_NON_IDENTIFIER_EXPRESSION;
 import static com.github.razorapid.morpheus.lang.cst.ConcreteSyntaxTree.NodeType.VECTOR_DECLARATION_EXPRESSION;
 import static com.github.razorapid.morpheus.lang.cst.ConcreteSyntaxTree.NodeType.WHILE_STATEMENT;
+import static com.github.razorapid.morpheus.lang.cst.ConcreteSyntaxTree.LazyNode;
 import static com.github.razorapid.morpheus.lang.cst.ConcreteSyntaxTree.StatementNode;
 import static com.github.razorapid.morpheus.lang.cst.ConcreteSyntaxTree.createErrorNode;
 import static com.github.razorapid.morpheus.lang.cst.ConcreteSyntaxTree.createExpressionNode;
+import static com.github.razorapid.morpheus.lang.cst.ConcreteSyntaxTree.createLazyNode;
 import static com.github.razorapid.morpheus.lang.cst.ConcreteSyntaxTree.createStatementNode;
 import static com.github.razorapid.morpheus.lang.cst.ConcreteSyntaxTree.createTokenNode;
+import static com.github.razorapid.morpheus.lang.cst.ConcreteSyntaxTree.passThroughBit;
 
 public class ConcreteSyntaxTreeBuilder {
+    private final boolean compact;
+
+    public ConcreteSyntaxTreeBuilder() {
+        this(false);
+    }
+
+    private ConcreteSyntaxTreeBuilder(boolean compact) {
+        this.compact = compact;
+    }
+
+    /**
+     * Builder that doesn't create pass-through wrappers (i.e. expression, primaryExpression, statement)
+     * around expression and statement nodes. Types of the elided wrappers are recorded on the wrapped node,
+     * so {@link Node#isA} still answers for them, and the tree lowers to the same abstract syntax tree.
+     */
+    public static ConcreteSyntaxTreeBuilder compact() {
+        return new ConcreteSyntaxTreeBuilder(true);
+    }
+
+    private Node elided(NodeType wrapper, Node node) {
+        return compact ? ConcreteSyntaxTree.elide(wrapper, node) : null;
+    }
 
     public Node parseError(ParseError error, List<Node> children) {
         return createErrorNode(error, children.toArray(new Node[]{}));
@@ -94,8 +121,17 @@ public class ConcreteSyntaxTreeBuilder {
                 createStatementNode(STATEMENT_LINE,"statementLine", statement);
     }
 
+    public StatementNode threadBody(List<Node> statementLines) {
+        return createStatementNode(THREAD_BODY, "threadBody", statementLines);
+    }
+
+    public LazyNode lazyThreadBody(Token firstToken, Token lastToken, Supplier<StatementNode> parseFn) {
+        return createLazyNode(firstToken, lastToken, parseFn);
+    }
+
     public Node statement(Node statement) {
-        return createStatementNode(STATEMENT, "statement", statement);
+        var elided = elided(STATEMENT, statement);
+        return elided != null ? elided : createStatementNode(STATEMENT, "statement", statement);
     }
 
     public StatementNode compoundStatement(Token leftBraces, List<Node> statements, Token rightBraces) {
@@ -107,15 +143,18 @@ public class ConcreteSyntaxTreeBuilder {
     }
 
     public Node labelStatement(Node statement) {
-        return createStatementNode(LABEL_STATEMENT, "labelStatement", statement);
+        var elided = elided(LABEL_STATEMENT, statement);
+        return elided != null ? elided : createStatementNode(LABEL_STATEMENT, "labelStatement", statement);
     }
 
     public Node selectionStatement(Node statement) {
-        return createStatementNode(SELECTION_STATEMENT, "selectionStatement", statement);
+        var elided = elided(SELECTION_STATEMENT, statement);
+        return elided != null ? elided : createStatementNode(SELECTION_STATEMENT, "selectionStatement", statement);
     }
 
     public Node iterationStatement(Node statement) {
-        return createStatementNode(ITERATION_STATEMENT, "iterationStatement", statement);
+        var elided = elided(ITERATION_STATEMENT, statement);
+        return elided != null ? elided : createStatementNode(ITERATION_STATEMENT, "iterationStatement", statement);
     }
 
     public Node tryCatchStatement(Token tokenTry, Node tryStatement, Token tokenCatch, Node catchStatement) {
@@ -168,7 +207,8 @@ public class ConcreteSyntaxTreeBuilder {
     }
 
     public Node nonIdentifierPrimaryExpression(Node expression) {
-        return createExpressionNode(NON_IDENTIFIER_PRIMARY_EXPRESSION, "nonIdentifierPrimaryExpression", expression);
+        var elided = elided(NON_IDENTIFIER_PRIMARY_EXPRESSION, expression);
+        return elided != null ? elided : createExpressionNode(NON_IDENTIFIER_PRIMARY_EXPRESSION, "nonIdentifierPrimaryExpression", expression);
     }
 
     public Node switchCaseLabelStatement(Token tokenCase, Token tokenIntOrIdent, Node eventParamList, Token tokenColon) {
@@ -259,7 +299,8 @@ public class ConcreteSyntaxTreeBuilder {
     }
 
     public Node primaryExpression(Node expression) {
-        return createExpressionNode(PRIMARY_EXPRESSION, "primaryExpression", expression);
+        var elided = elided(PRIMARY_EXPRESSION, expression);
+        return elided != null ? elided : createExpressionNode(PRIMARY_EXPRESSION, "primaryExpression", expression);
     }
 
     public Node constArrayExpression(List<Node> elems) {
@@ -267,23 +308,30 @@ public class ConcreteSyntaxTreeBuilder {
     }
 
     public Node identifierPrimaryExpression(Token tokenIdentifier) {
+        var identifier = createTokenNode(IDENTIFIER, tokenIdentifier);
+        if (compact) {
+            return createExpressionNode(IDENTIFIER_LITERAL, "identifierLiteral", passThroughBit(IDENTIFIER_PRIMARY_EXPRESSION), identifier);
+        }
         return createExpressionNode(
                 IDENTIFIER_PRIMARY_EXPRESSION,
                 "identifierPrimaryExpression",
-                createExpressionNode(IDENTIFIER_LITERAL, "identifierLiteral", createTokenNode(IDENTIFIER, tokenIdentifier))
+                createExpressionNode(IDENTIFIER_LITERAL, "identifierLiteral", identifier)
         );
     }
 
     public Node expression(Node expression) {
-        return createExpressionNode(EXPRESSION, "expression", expression);
+        var elided = elided(EXPRESSION, expression);
+        return elided != null ? elided : createExpressionNode(EXPRESSION, "expression", expression);
     }
 
     public Node functionPrimaryExpression(Node expression) {
-        return createExpressionNode(FUNCTION_PRIMARY_EXPRESSION, "functionPrimaryExpression", expression);
+        var elided = elided(FUNCTION_PRIMARY_EXPRESSION, expression);
+        return elided != null ? elided : createExpressionNode(FUNCTION_PRIMARY_EXPRESSION, "functionPrimaryExpression", expression);
     }
 
     public Node binaryExpression(Node expression) {
-        return createExpressionNode(BINARY_EXPRESSION, "binaryExpression", expression);
+        var elided = elided(BINARY_EXPRESSION, expression);
+        return elided != null ? elided : createExpressionNode(BINARY_EXPRESSION, "binaryExpression", expression);
     }
 
     public Node unaryFunctionPrimaryExpression(Node expression) {
@@ -340,7 +388,8 @@ public class ConcreteSyntaxTreeBuilder {
     }
 
     public Node scalarComponentExpression(Node expression) {
-        return createExpressionNode(SCALAR_COMPONENT_EXPRESSION, "scalarComponentExpression", expression);
+        var elided = elided(SCALAR_COMPONENT_EXPRESSION, expression);
+        return elided != null ? elided : createExpressionNode(SCALAR_COMPONENT_EXPRESSION, "scalarComponentExpression", expression);
     }
 
     public Node identifierScalarComponentExpression(Token tokenIdentifier) {
@@ -348,7 +397,8 @@ public class ConcreteSyntaxTreeBuilder {
     }
 
     public Node nonIdentifierScalarComponentExpression(Node expression) {
-        return createExpressionNode(NON_IDENTIFIER_SCALAR_COMPONENT_EXPRESSION, "nonIdentifierScalarComponentExpression", expression);
+        var elided = elided(NON_IDENTIFIER_SCALAR_COMPONENT_EXPRESSION, expression);
+        return elided != null ? elided : createExpressionNode(NON_IDENTIFIER_SCALAR_COMPONENT_EXPRESSION, "nonIdentifierScalarComponentExpression", expression);
     }
 
     public Node targetnameExpression(Token tokenDollar, Node primaryExpression) {
@@ -368,8 +418,12 @@ public class ConcreteSyntaxTreeBuilder {
     }
 
     public Node literalExpression(NodeType nodeType, String name, Token token) {
+        var literal = createTokenNode(LITERAL, token);
+        if (compact) {
+            return createExpressionNode(nodeType, name, passThroughBit(LITERAL_EXPRESSION), literal);
+        }
         return createExpressionNode(LITERAL_EXPRESSION, "literalExpression",
-                createExpressionNode(nodeType, name, createTokenNode(LITERAL, token)));
+                createExpressionNode(nodeType, name, literal));
     }
 
     public Node unaryNonIdentifierExpression(boolean prefix, NodeType nodeType, String name, Token token, Node expression) {
@@ -0,0 +1,233 @@
+package com.github.razorapid.morpheus.lang.cst;
+
+import com.github.razorapid.morpheus.lang.SectionFile;
+import com.github.razorapid.morpheus.lang.Source;
+import com.github.razorapid.morpheus.lang.SourcePos;
+import com.github.razorapid.morpheus.lang.Token;
+import com.github.razorapid.morpheus.lang.TokenType;
+import com.github.razorapid.morpheus.lang.cst.ConcreteSyntaxTree.ErrorNode;
+import com.github.razorapid.morpheus.lang.cst.ConcreteSyntaxTree.ExpressionNode;
+import com.github.razorapid.morpheus.lang.cst.ConcreteSyntaxTree.Node;
+import com.github.razorapid.morpheus.lang.cst.ConcreteSyntaxTree.NodeType;
+import com.github.razorapid.morpheus.lang.cst.ConcreteSyntaxTree.StatementNode;
+import com.github.razorapid.morpheus.lang.cst.ConcreteSyntaxTree.TokenNode;
+import com.github.razorapid.morpheus.lang.parser.ParseError;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.file.Path;
+import java.util.AbstractList;
+import java.util.RandomAccess;
+
+/**
+ * Concrete syntax tree stored in a {@link SectionFile}, so a script that hasn't changed is loaded rather than parsed again.
+ *
+ * The file holds the arrays of {@link ConcreteSyntaxTreeArena} as they are: the node arrays, the token arrays,
+ * the tables of names and lexemes and the records of parse errors (the node, the position and the message).
+ * A loaded file is a view of the mapped arrays with the API of the arena, nothing is read until it's accessed.
+ * Parse errors refer to the script, which isn't stored, so the script is given when the file is loaded.
+ *
+ * Node and token types are stored by their ordinals, a file written for other enums fails to load.
+ */
+public final class ConcreteSyntaxTreeFile {
+    public static final int MAGIC = 0x5453434d;
+    public static final int VERSION = 2;
+    private static final long STAMP = SectionFile.stamp(NodeType.class, TokenType.class);
+
+    private static final NodeType[] NODE_TYPES = NodeType.values();
+    private static final TokenType[] TOKEN_TYPES = TokenType.values();
+
+    private static final byte NULL = 0;
+    private static final byte TOKEN = 1;
+    private static final byte EXPRESSION = 2;
+    private static final byte STATEMENT = 3;
+
+    private static final int KINDS = 0;
+    private static final int TYPES = 1;
+    private static final int NAMES = 2;
+    private static final int ELIDED = 3;
+    private static final int FIRST_CHILD_OR_TOKEN = 4;
+    private static final int NEXT_SIBLINGS = 5;
+    private static final int STARTS = 6;
+    private static final int ENDS = 7;
+    private static final int TOKEN_TYPES_SECTION = 8;
+    private static final int TOKEN_LEXEMES = 9;
+    private static final int TOKEN_POSITIONS = 10;
+    private static final int TOKEN_LINES = 11;
+    private static final int TOKEN_COLS = 12;
+    private static final int NAME_TABLE = 13;
+    private static final int LEXEME_TABLE = 14;
+    private static final int ERROR_NODES = 15;
+    private static final int ERROR_POSITIONS = 16;
+    private static final int ERROR_LINES = 17;
+    private static final int ERROR_COLS = 18;
+    private static final int ERROR_MESSAGES = 19;
+    private static final int SECTIONS = 20;
+
+    private final SectionFile file;
+    private final Source source;
+
+    private ConcreteSyntaxTreeFile(SectionFile file, Source source) throws IOException {
+        if (file.sections() != SECTIONS) {
+            throw new IOException("Concrete syntax tree file has " + file.sections() + " sections, expected " + SECTIONS);
+        }
+        this.file = file;
+        this.source = source;
+    }
+
+    public static void write(ConcreteSyntaxTree cst, Path path) throws IOException {
+        writer(cst).write(path);
+    }
+
+    /**
+     * @return the file in a heap buffer, i.e. to keep it in the memory or to send it elsewhere
+     */
+    public static ByteBuffer toBuffer(ConcreteSyntaxTree cst) {
+        return writer(cst).toBuffer();
+    }
+
+    /**
+     * Maps the file into the memory
+     *
+     * @param source the script the tree was parsed from, the parse errors refer to it
+     * @throws IOException if the file can't be read or isn't a concrete syntax tree file of this version
+     */
+    public static ConcreteSyntaxTreeFile map(Path path, Source source) throws IOException {
+        return new ConcreteSyntaxTreeFile(SectionFile.map(path, MAGIC, VERSION, STAMP), source);
+    }
+
+    /**
+     * @param source the script the tree was parsed from, the parse errors refer to it
+     * @throws IOException if the buffer doesn't hold a concrete syntax tree file of this version
+     */
+    public static ConcreteSyntaxTreeFile of(ByteBuffer buffer, Source source) throws IOException {
+        return new ConcreteSyntaxTreeFile(SectionFile.of(buffer, MAGIC, VERSION, STAMP), source);
+    }
+
+    private static SectionFile.Writer writer(ConcreteSyntaxTree cst) {
+        var writer = new SectionFile.Writer(MAGIC, VERSION, STAMP);
+        ConcreteSyntaxTreeArena.of(cst).write(writer);
+        return writer;
+    }
+
+    public ConcreteSyntaxTree tree() {
+        return new ConcreteSyntaxTree(node(0));
+    }
+
+    /**
+     * Number of nodes in the tree, including the empty (null) children
+     */
+    public int size() {
+        return file.length(KINDS);
+    }
+
+    public Node node(int node) {
+        return switch (file.byteAt(KINDS, node)) {
+            case NULL -> null;
+            case TOKEN -> new TokenNode(type(node), token(file.intAt(FIRST_CHILD_OR_TOKEN, node)));
+            case EXPRESSION -> new ExpressionNode(type(node), name(node), new Children(node), elided(node));
+            case STATEMENT -> new StatementNode(type(node), name(node), new Children(node), elided(node));
+            default -> new ErrorNode(NodeType.ERROR, error(node), new Children(node));
+        };
+    }
+
+    /**
+     * @return type of the node, null for an empty child
+     */
+    public NodeType type(int node) {
+        return file.byteAt(KINDS, node) != NULL ? NODE_TYPES[file.byteAt(TYPES, node)] : null;
+    }
+
+    public boolean isTerminal(int node) {
+        return file.byteAt(KINDS, node) == TOKEN;
+    }
+
+    public int firstChild(int node) {
+        return !isTerminal(node) ? file.intAt(FIRST_CHILD_OR_TOKEN, node) : ConcreteSyntaxTreeArena.NONE;
+    }
+
+    public int nextSibling(int node) {
+        return file.intAt(NEXT_SIBLINGS, node);
+    }
+
+    /**
+     * @return offset of the first token of the node in the script, {@link ConcreteSyntaxTreeArena#NONE} if the node has no tokens
+     */
+    public int start(int node) {
+        return file.intAt(STARTS, node);
+    }
+
+    /**
+     * @return offset right after the last token of the node in the script, {@link ConcreteSyntaxTreeArena#NONE} if the node has no tokens
+     */
+    public int end(int node) {
+        return file.intAt(ENDS, node);
+    }
+
+    private String name(int node) {
+        return file.string(NAME_TABLE, file.shortAt(NAMES, node));
+    }
+
+    private long elided(int node) {
+        return file.shortAt(ELIDED, node) & 0xFFFF;
+    }
+
+    private Token token(int token) {
+        return Token.of(
+                TOKEN_TYPES[file.byteAt(TOKEN_TYPES_SECTION, token)],
+                file.string(LEXEME_TABLE, file.intAt(TOKEN_LEXEMES, token)),
+                file.intAt(TOKEN_POSITIONS, token),
+                file.intAt(TOKEN_LINES, token),
+                file.intAt(TOKEN_COLS, token)
+        );
+    }
+
+    /**
+     * Error records are sorted by their nodes, the record of a node is a binary search away
+     */
+    private ParseError error(int node) {
+        int low = 0, high = file.length(ERROR_NODES) - 1;
+        while (low <= high) {
+            var mid = (low + high) >>> 1;
+            var errorNode = file.intAt(ERROR_NODES, mid);
+            if (errorNode < node) {
+                low = mid + 1;
+            } else if (errorNode > node) {
+                high = mid - 1;
+            } else {
+                var pos = new SourcePos(file.intAt(ERROR_POSITIONS, mid), file.intAt(ERROR_LINES, mid), file.intAt(ERROR_COLS, mid));
+                return new ParseError(source, pos, file.string(ERROR_MESSAGES, mid));
+            }
+        }
+        return null;
+    }
+
+    /**
+     * Children of a non-terminal node, read from the file on access
+     */
+    private final class Children extends AbstractList<Node> implements RandomAccess {
+        private final int[] children;
+
+        Children(int parent) {
+            var count = 0;
+            for (var child = firstChild(parent); child != ConcreteSyntaxTreeArena.NONE; child = nextSibling(child)) {
+                count++;
+            }
+            children = new int[count];
+            var i = 0;
+            for (var child = firstChild(parent); child != ConcreteSyntaxTreeArena.NONE; child = nextSibling(child)) {
+                children[i++] = child;
+            }
+        }
+
+        @Override
+        public Node get(int index) {
+            return node(children[index]);
+        }
+
+        @Override
+        public int size() {
+            return children.length;
+        }
+    }
+}
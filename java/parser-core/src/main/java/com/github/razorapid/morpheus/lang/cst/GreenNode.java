@@ -0,0 +1,229 @@
+package com.github.razorapid.morpheus.lang.cst;
+
+import com.github.razorapid.morpheus.lang.TokenType;
+import com.github.razorapid.morpheus.lang.cst.ConcreteSyntaxTree.NodeType;
+import com.github.razorapid.morpheus.lang.parser.ParseError;
+
+import java.util.Arrays;
+import java.util.Objects;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+
+/**
+ * Immutable node of the concrete syntax tree that doesn't know where it is in the script.
+ *
+ * Instead of absolute positions, a green node keeps its width and the offsets of its children relative
+ * to its own start (its first token), so the same node stands for every copy of the subtree, wherever it is
+ * in the script, in the next version of the script or in another script. Nodes are hash-consed by the {@link Cache},
+ * identical subtrees (i.e. the global/ boilerplate pasted into map scripts) are built once and shared.
+ *
+ * The tree keeps no whitespace and comments, so an offset is kept for every child, as a triple of the position,
+ * the line and the column. The column is relative when the child starts on the line the node starts on,
+ * otherwise it doesn't depend on the node and it's kept as it is. Positions in the script, parents
+ * and the {@link ConcreteSyntaxTree} nodes are computed by {@link RedNode}.
+ */
+public final class GreenNode {
+    private static final byte TOKEN = 0;
+    private static final byte EXPRESSION = 1;
+    private static final byte STATEMENT = 2;
+    private static final byte ERROR = 3;
+
+    private static final GreenNode[] NO_CHILDREN = new GreenNode[0];
+    private static final int[] NO_OFFSETS = new int[0];
+
+    private final byte kind;
+    private final NodeType type;
+    private final String name;
+    private final long elided;
+    private final TokenType tokenType;
+    private final String lexeme;
+    private final ParseError error;
+    private final GreenNode[] children;
+    private final int[] offsets;
+    private final int width;
+    private final boolean empty;
+    private final int hash;
+
+    private GreenNode(
+            byte kind, NodeType type, String name, long elided,
+            TokenType tokenType, String lexeme, ParseError error,
+            GreenNode[] children, int[] offsets, int width, boolean empty
+    ) {
+        this.kind = kind;
+        this.type = type;
+        this.name = name;
+        this.elided = elided;
+        this.tokenType = tokenType;
+        this.lexeme = lexeme;
+        this.error = error;
+        this.children = children;
+        this.offsets = offsets;
+        this.width = width;
+        this.empty = empty;
+        this.hash = hash();
+    }
+
+    static GreenNode token(NodeType type, TokenType tokenType, String lexeme) {
+        return new GreenNode(TOKEN, type, null, 0, tokenType, lexeme, null, NO_CHILDREN, NO_OFFSETS, lexeme.length(), false);
+    }
+
+    static GreenNode expression(NodeType type, String name, long elided, GreenNode[] children, int[] offsets, int width, boolean empty) {
+        return new GreenNode(EXPRESSION, type, name, elided, null, null, null, children, offsets, width, empty);
+    }
+
+    static GreenNode statement(NodeType type, String name, long elided, GreenNode[] children, int[] offsets, int width, boolean empty) {
+        return new GreenNode(STATEMENT, type, name, elided, null, null, null, children, offsets, width, empty);
+    }
+
+    static GreenNode error(ParseError error, GreenNode[] children, int[] offsets, int width, boolean empty) {
+        return new GreenNode(ERROR, NodeType.ERROR, null, 0, null, null, error, children, offsets, width, empty);
+    }
+
+    public NodeType type() {
+        return type;
+    }
+
+    public boolean isToken() {
+        return kind == TOKEN;
+    }
+
+    /**
+     * @return type of the token, null unless the node is a token
+     */
+    public TokenType tokenType() {
+        return tokenType;
+    }
+
+    /**
+     * @return lexeme of the token, null unless the node is a token
+     */
+    public String lexeme() {
+        return lexeme;
+    }
+
+    public int childCount() {
+        return children.length;
+    }
+
+    /**
+     * @return the child, null for an empty child
+     */
+    public GreenNode child(int index) {
+        return children[index];
+    }
+
+    /**
+     * @return number of characters from the first token of the node to the end of the last one, 0 without tokens
+     */
+    public int width() {
+        return width;
+    }
+
+    /**
+     * @return true if there are no tokens in the subtree
+     */
+    public boolean isEmpty() {
+        return empty;
+    }
+
+    String name() {
+        return name;
+    }
+
+    long elided() {
+        return elided;
+    }
+
+    ParseError error() {
+        return error;
+    }
+
+    boolean isExpression() {
+        return kind == EXPRESSION;
+    }
+
+    boolean isStatement() {
+        return kind == STATEMENT;
+    }
+
+    int positionOffset(int child) {
+        return offsets[child * 3];
+    }
+
+    int lineOffset(int child) {
+        return offsets[child * 3 + 1];
+    }
+
+    int colOffset(int child) {
+        return offsets[child * 3 + 2];
+    }
+
+    /**
+     * Children are hash-consed before their parent, so they're compared by identity
+     */
+    @Override
+    public boolean equals(Object other) {
+        if (this == other) {
+            return true;
+        }
+        if (!(other instanceof GreenNode node) || hash != node.hash) {
+            return false;
+        }
+        if (kind != node.kind || type != node.type || elided != node.elided || tokenType != node.tokenType || error != node.error
+                || !Objects.equals(name, node.name) || !Objects.equals(lexeme, node.lexeme)
+                || children.length != node.children.length || !Arrays.equals(offsets, node.offsets)) {
+            return false;
+        }
+        for (int i = 0; i < children.length; i++) {
+            if (children[i] != node.children[i]) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    @Override
+    public int hashCode() {
+        return hash;
+    }
+
+    private int hash() {
+        var result = Objects.hash(kind, type, name, elided, tokenType, lexeme, System.identityHashCode(error));
+        for (var child : children) {
+            result = 31 * result + (child != null ? child.hash : 0);
+        }
+        return 31 * result + Arrays.hashCode(offsets);
+    }
+
+    @Override
+    public String toString() {
+        return kind == TOKEN ? "GreenNode(" + type + ", " + tokenType + " " + lexeme + ")" : "GreenNode(" + type + ", " + children.length + " children)";
+    }
+
+    /**
+     * Hash-conses green nodes: an equal node is built only once and shared afterwards.
+     * A cache can be shared by the scripts of a project and by the versions of a script, it's thread-safe.
+     * Nodes are never evicted, the cache holds them until it's dropped itself.
+     */
+    public static final class Cache {
+        private final ConcurrentMap<GreenNode, GreenNode> nodes = new ConcurrentHashMap<>();
+
+        /**
+         * @return number of distinct nodes in the cache
+         */
+        public int size() {
+            return nodes.size();
+        }
+
+        /**
+         * Error nodes are never shared, their parse errors come with positions in the script
+         */
+        GreenNode intern(GreenNode node) {
+            if (node.kind == ERROR) {
+                return node;
+            }
+            var cached = nodes.putIfAbsent(node, node);
+            return cached != null ? cached : node;
+        }
+    }
+}
@@ -0,0 +1,281 @@
+package com.github.razorapid.morpheus.lang.cst;
+
+import com.github.razorapid.morpheus.lang.SourcePos;
+import com.github.razorapid.morpheus.lang.Token;
+import com.github.razorapid.morpheus.lang.TreeCursor;
+import com.github.razorapid.morpheus.lang.cst.ConcreteSyntaxTree.ErrorNode;
+import com.github.razorapid.morpheus.lang.cst.ConcreteSyntaxTree.ExpressionNode;
+import com.github.razorapid.morpheus.lang.cst.ConcreteSyntaxTree.LazyNode;
+import com.github.razorapid.morpheus.lang.cst.ConcreteSyntaxTree.Node;
+import com.github.razorapid.morpheus.lang.cst.ConcreteSyntaxTree.NodeType;
+import com.github.razorapid.morpheus.lang.cst.ConcreteSyntaxTree.NonTerminalNode;
+import com.github.razorapid.morpheus.lang.cst.ConcreteSyntaxTree.StatementNode;
+import com.github.razorapid.morpheus.lang.cst.ConcreteSyntaxTree.TokenNode;
+
+import java.util.AbstractList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Optional;
+import java.util.RandomAccess;
+
+/**
+ * Facade of a {@link GreenNode} at its place in the script.
+ *
+ * A red node knows its parent and its position in the script, both computed from the green nodes
+ * on the way from the root. Red children and the {@link ConcreteSyntaxTree} nodes are created
+ * on the first access and kept by the red node, so a red tree is meant to be short-lived: it's
+ * the green tree that's kept and shared, the red one is created on top of it when it's needed.
+ *
+ * Thread bodies skipped in outline mode are parsed when the green tree is built.
+ */
+public final class RedNode {
+    private static final SourcePos SCRIPT_START = new SourcePos(0, 1, 1);
+
+    private final GreenNode green;
+    private final RedNode parent;
+    private final SourcePos start;
+    private RedNode[] children;
+    private Node node;
+
+    private RedNode(GreenNode green, RedNode parent, SourcePos start) {
+        this.green = green;
+        this.parent = parent;
+        this.start = start;
+    }
+
+    /**
+     * Builds the green tree of the syntax tree, sharing the nodes already in the cache,
+     * and returns the red root on top of it
+     */
+    public static RedNode of(ConcreteSyntaxTree cst, GreenNode.Cache cache) {
+        var builder = new Builder(cache);
+        var green = builder.build(cst.cursor());
+        return new RedNode(green, null, builder.rootStart != null ? builder.rootStart : SCRIPT_START);
+    }
+
+    /**
+     * Red root of a green tree, i.e. of a version of the script kept as a green tree
+     *
+     * @param start position of the first token of the tree in the script
+     */
+    public static RedNode of(GreenNode green, SourcePos start) {
+        return new RedNode(green, null, start);
+    }
+
+    public GreenNode green() {
+        return green;
+    }
+
+    public Optional<RedNode> parent() {
+        return Optional.ofNullable(parent);
+    }
+
+    /**
+     * @return position of the first token of the node, or of the node's parent when the node has no tokens
+     */
+    public SourcePos start() {
+        return start;
+    }
+
+    /**
+     * @return position in the script right after the last token of the node
+     */
+    public long end() {
+        return start.pos() + green.width();
+    }
+
+    /**
+     * @return red children, null for the empty ones
+     */
+    public List<RedNode> children() {
+        return new Children<>(this) {
+            @Override
+            public RedNode get(int index) {
+                return child(index);
+            }
+        };
+    }
+
+    /**
+     * @return the child, null for an empty child
+     */
+    public RedNode child(int index) {
+        var redChildren = children;
+        if (redChildren == null) {
+            redChildren = new RedNode[green.childCount()];
+            children = redChildren;
+        }
+        var child = redChildren[index];
+        if (child == null && green.child(index) != null) {
+            child = new RedNode(green.child(index), this, childStart(index));
+            redChildren[index] = child;
+        }
+        return child;
+    }
+
+    /**
+     * @return the node of the concrete syntax tree, its children are created on access
+     */
+    public Node node() {
+        var result = node;
+        if (result == null) {
+            result = createNode();
+            node = result;
+        }
+        return result;
+    }
+
+    /**
+     * @return the concrete syntax tree backed by the red tree of this node
+     */
+    public ConcreteSyntaxTree tree() {
+        return new ConcreteSyntaxTree(node());
+    }
+
+    private SourcePos childStart(int index) {
+        var lines = green.lineOffset(index);
+        var col = lines == 0 ? start.col() + green.colOffset(index) : green.colOffset(index);
+        return new SourcePos(start.pos() + green.positionOffset(index), start.line() + lines, col);
+    }
+
+    private Node createNode() {
+        if (green.isToken()) {
+            return new TokenNode(green.type(), Token.of(green.tokenType(), green.lexeme(), start.pos(), start.line(), start.col()));
+        }
+        var nodes = new Children<Node>(this) {
+            @Override
+            public Node get(int index) {
+                var child = child(index);
+                return child != null ? child.node() : null;
+            }
+        };
+        if (green.isExpression()) {
+            return new ExpressionNode(green.type(), green.name(), nodes, green.elided());
+        }
+        if (green.isStatement()) {
+            return new StatementNode(green.type(), green.name(), nodes, green.elided());
+        }
+        return new ErrorNode(NodeType.ERROR, green.error(), nodes);
+    }
+
+    private abstract static class Children<T> extends AbstractList<T> implements RandomAccess {
+        private final RedNode parent;
+
+        Children(RedNode parent) {
+            this.parent = parent;
+        }
+
+        @Override
+        public int size() {
+            return parent.green.childCount();
+        }
+    }
+
+    /**
+     * Builds green nodes bottom-up as the {@link TreeCursor} leaves them, and hash-conses each of them
+     * once its children are done. Offsets of the children are taken from the positions of their first tokens.
+     */
+    private static final class Builder implements TreeCursor.Walker<Node, RuntimeException> {
+        private final GreenNode.Cache cache;
+        private SourcePos rootStart;
+        private GreenNode root;
+        private GreenChildren[] path = new GreenChildren[64];
+
+        Builder(GreenNode.Cache cache) {
+            this.cache = cache;
+        }
+
+        GreenNode build(TreeCursor<Node> cursor) {
+            cursor.walk(this);
+            return root;
+        }
+
+        @Override
+        public void enter(TreeCursor<Node> cursor) {
+            if (unwrap(cursor.node()) instanceof NonTerminalNode nonTerminal) {
+                var depth = cursor.depth();
+                if (depth == path.length) {
+                    path = Arrays.copyOf(path, depth * 2);
+                }
+                path[depth] = new GreenChildren(nonTerminal);
+            }
+        }
+
+        @Override
+        public void leave(TreeCursor<Node> cursor) {
+            var depth = cursor.depth();
+            GreenNode green;
+            SourcePos start;
+            if (unwrap(cursor.node()) instanceof TokenNode token) {
+                green = cache.intern(GreenNode.token(token.type(), token.value().type(), token.value().lexeme()));
+                start = token.value().pos();
+            } else {
+                var children = path[depth];
+                path[depth] = null;
+                green = children.green();
+                start = children.start();
+            }
+            if (depth == 0) {
+                root = green;
+                rootStart = start;
+                return;
+            }
+            var parent = path[depth - 1];
+            parent.children[cursor.index()] = green;
+            parent.starts[cursor.index()] = start;
+        }
+
+        private static Node unwrap(Node node) {
+            return node instanceof LazyNode lazy ? lazy.node() : node;
+        }
+
+        /**
+         * Green children of a non-terminal node on the path of the cursor, and the positions they start at
+         */
+        private final class GreenChildren {
+            private final NonTerminalNode node;
+            private final GreenNode[] children;
+            private final SourcePos[] starts;
+
+            GreenChildren(NonTerminalNode node) {
+                this.node = node;
+                this.children = new GreenNode[node.children().size()];
+                this.starts = new SourcePos[children.length];
+            }
+
+            SourcePos start() {
+                for (var start : starts) {
+                    if (start != null) {
+                        return start;
+                    }
+                }
+                return null;
+            }
+
+            GreenNode green() {
+                var start = start();
+                var offsets = new int[children.length * 3];
+                var width = 0;
+                for (int i = 0; i < children.length; i++) {
+                    var childStart = starts[i];
+                    if (childStart == null) {
+                        continue;
+                    }
+                    var lines = (int) (childStart.line() - start.line());
+                    offsets[i * 3] = (int) (childStart.pos() - start.pos());
+                    offsets[i * 3 + 1] = lines;
+                    offsets[i * 3 + 2] = (int) (lines == 0 ? childStart.col() - start.col() : childStart.col());
+                    width = Math.max(width, offsets[i * 3] + children[i].width());
+                }
+                var empty = start == null;
+                if (node instanceof ExpressionNode expression) {
+                    return cache.intern(GreenNode.expression(expression.type(), expression.name(), expression.elided(), children, offsets, width, empty));
+                }
+                if (node instanceof StatementNode statement) {
+                    return cache.intern(GreenNode.statement(statement.type(), statement.name(), statement.elided(), children, offsets, width, empty));
+                }
+                return cache.intern(GreenNode.error(((ErrorNode) node).error(), children, offsets, width, empty));
+            }
+        }
+    }
+}
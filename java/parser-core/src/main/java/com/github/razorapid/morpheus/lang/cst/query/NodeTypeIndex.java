@@ -0,0 +1,187 @@
+package com.github.razorapid.morpheus.lang.cst.query;
+
+import com.github.razorapid.morpheus.lang.TreeCursor;
+import com.github.razorapid.morpheus.lang.cst.ConcreteSyntaxTree;
+import com.github.razorapid.morpheus.lang.cst.ConcreteSyntaxTree.Node;
+import com.github.razorapid.morpheus.lang.cst.ConcreteSyntaxTree.NodeType;
+
+import java.util.Arrays;
+
+/**
+ * Occurrences of the node types in a concrete syntax tree, what {@link Query} matches against.
+ *
+ * Nodes are numbered in the preorder, the subtree of a node are the nodes from it up to (excluding) its end.
+ * Every node has the set of the types in its subtree, so a subtree without the types a pattern needs is skipped
+ * as a whole, and every type has the sorted list of the nodes of the type, so the nodes of a type
+ * (in the whole tree or in a subtree) are found without walking the others.
+ *
+ * Nodes of compact trees are of their own type and of the types of the pass-through wrappers elided from them.
+ * Empty children aren't indexed. Thread bodies not parsed yet in outline mode are parsed when the index is built.
+ */
+public final class NodeTypeIndex {
+    private static final NodeType[] TYPES = NodeType.values();
+
+    private final Node[] nodes;
+    private final int[] ends;
+    private final long[] subtreeTypes;
+    private final int[][] occurrences;
+
+    private NodeTypeIndex(Node[] nodes, int[] ends, long[] subtreeTypes, int[][] occurrences) {
+        this.nodes = nodes;
+        this.ends = ends;
+        this.subtreeTypes = subtreeTypes;
+        this.occurrences = occurrences;
+    }
+
+    public static NodeTypeIndex of(ConcreteSyntaxTree cst) {
+        return new Builder().build(cst.cursor());
+    }
+
+    public int size() {
+        return nodes.length;
+    }
+
+    public Node node(int node) {
+        return nodes[node];
+    }
+
+    /**
+     * @return the node right after the subtree of the node
+     */
+    public int end(int node) {
+        return ends[node];
+    }
+
+    /**
+     * @return number of the nodes of the type in the tree
+     */
+    public int count(NodeType type) {
+        return occurrences[type.ordinal()].length;
+    }
+
+    /**
+     * @return true if the type occurs in the subtree of the node (the node included)
+     */
+    public boolean contains(int node, NodeType type) {
+        return (subtreeTypes[node * 2 + (type.ordinal() >>> 6)] & (1L << type.ordinal())) != 0;
+    }
+
+    /**
+     * @return true if all the types of the mask (two longs, the bits of the type ordinals) occur in the subtree of the node
+     */
+    boolean containsAll(int node, long low, long high) {
+        return (subtreeTypes[node * 2] & low) == low && (subtreeTypes[node * 2 + 1] & high) == high;
+    }
+
+    /**
+     * @return nodes of the type in the preorder
+     */
+    int[] occurrences(NodeType type) {
+        return occurrences[type.ordinal()];
+    }
+
+    /**
+     * @return position of the first node of the type at or after the node in {@link #occurrences}
+     */
+    int firstOccurrence(NodeType type, int from) {
+        var nodesOfType = occurrences[type.ordinal()];
+        var position = Arrays.binarySearch(nodesOfType, from);
+        return position >= 0 ? position : -position - 1;
+    }
+
+    private static final class Builder implements TreeCursor.Walker<Node, RuntimeException> {
+        private int size = 0;
+        private int[] path = new int[64];
+        private Node[] nodes = new Node[1024];
+        private int[] ends = new int[1024];
+        private long[] subtreeTypes = new long[2048];
+        private final int[] counts = new int[TYPES.length];
+
+        /**
+         * Numbers the nodes in the preorder, the types of a subtree are added to its parent once the subtree is done
+         */
+        NodeTypeIndex build(TreeCursor<Node> cursor) {
+            cursor.walk(this);
+
+            var occurrences = new int[TYPES.length][];
+            for (int type = 0; type < TYPES.length; type++) {
+                occurrences[type] = new int[counts[type]];
+            }
+            var filled = new int[TYPES.length];
+            for (int node = 0; node < size; node++) {
+                var index = node;
+                forEachType(nodes[node], type -> occurrences[type][filled[type]++] = index);
+            }
+            return new NodeTypeIndex(
+                    Arrays.copyOf(nodes, size),
+                    Arrays.copyOf(ends, size),
+                    Arrays.copyOf(subtreeTypes, size * 2),
+                    occurrences
+            );
+        }
+
+        @Override
+        public void enter(TreeCursor<Node> cursor) {
+            var depth = cursor.depth();
+            if (depth == path.length) {
+                path = Arrays.copyOf(path, depth * 2);
+            }
+            path[depth] = add(cursor.node());
+        }
+
+        @Override
+        public void leave(TreeCursor<Node> cursor) {
+            var depth = cursor.depth();
+            var node = path[depth];
+            ends[node] = size;
+            if (depth > 0) {
+                var parent = path[depth - 1];
+                subtreeTypes[parent * 2] |= subtreeTypes[node * 2];
+                subtreeTypes[parent * 2 + 1] |= subtreeTypes[node * 2 + 1];
+            }
+        }
+
+        private int add(Node node) {
+            if (size == nodes.length) {
+                nodes = Arrays.copyOf(nodes, size * 2);
+                ends = Arrays.copyOf(ends, size * 2);
+                subtreeTypes = Arrays.copyOf(subtreeTypes, size * 4);
+            }
+            var index = size++;
+            nodes[index] = node;
+            forEachType(node, type -> {
+                subtreeTypes[index * 2 + (type >>> 6)] |= 1L << type;
+                counts[type]++;
+            });
+            return index;
+        }
+
+        /**
+         * Calls the action with the ordinal of the type of the node and of every type elided from it
+         */
+        private static void forEachType(Node node, TypeAction action) {
+            action.accept(node.type().ordinal());
+            if (isCompact(node)) {
+                for (var type : TYPES) {
+                    if (type != node.type() && node.isA(type)) {
+                        action.accept(type.ordinal());
+                    }
+                }
+            }
+        }
+
+        private static boolean isCompact(Node node) {
+            if (node instanceof ConcreteSyntaxTree.ExpressionNode expression) {
+                return expression.elided() != 0;
+            }
+            if (node instanceof ConcreteSyntaxTree.StatementNode statement) {
+                return statement.elided() != 0;
+            }
+            return false;
+        }
+    }
+
+    private interface TypeAction {
+        void accept(int type);
+    }
+}
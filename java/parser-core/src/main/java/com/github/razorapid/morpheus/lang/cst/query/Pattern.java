@@ -0,0 +1,291 @@
+package com.github.razorapid.morpheus.lang.cst.query;
+
+import com.github.razorapid.morpheus.lang.cst.ConcreteSyntaxTree.NodeType;
+import com.github.razorapid.morpheus.lang.cst.ConcreteSyntaxTree.TokenNode;
+
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * Compiled pattern of a {@link Query}: the type or the text of the node, and the patterns of its children
+ * (in their order, not necessarily one right after another) and of its descendants (anywhere in its subtree).
+ *
+ * Every pattern knows the types its match needs in the subtree of the matched node, the ones of its own
+ * and of its children and descendants, so it fails on a subtree without them before looking at any node in it.
+ *
+ * A pattern is matched in one of two ways. Without captures in it, only whether it matches matters,
+ * so the first way it matches is taken. With captures, every way it matches is a match of its own:
+ * the nodes are tried one by one and the rest of the query is matched for each of them (with backtracking).
+ */
+final class Pattern {
+    /** null for any node */
+    private final NodeType type;
+    /** lexeme of the token the pattern matches, null for a pattern of a node */
+    private final String text;
+    private final Item[] children;
+    private final Item[] descendants;
+    private final long low;
+    private final long high;
+    private final boolean capturing;
+
+    private Pattern(NodeType type, String text, Item[] children, Item[] descendants) {
+        this.type = type;
+        this.text = text;
+        this.children = children;
+        this.descendants = descendants;
+        long low = 0, high = 0;
+        if (type != null) {
+            if (type.ordinal() < 64) {
+                low |= 1L << type.ordinal();
+            } else {
+                high |= 1L << type.ordinal();
+            }
+        }
+        var capturing = false;
+        for (var item : children) {
+            low |= item.pattern.low;
+            high |= item.pattern.high;
+            capturing |= item.capturing();
+        }
+        for (var item : descendants) {
+            low |= item.pattern.low;
+            high |= item.pattern.high;
+            capturing |= item.capturing();
+        }
+        this.low = low;
+        this.high = high;
+        this.capturing = capturing;
+    }
+
+    static Pattern node(NodeType type, List<Item> children, List<Item> descendants) {
+        return new Pattern(type, null, children.toArray(Item[]::new), descendants.toArray(Item[]::new));
+    }
+
+    static Pattern text(String text) {
+        return new Pattern(null, text, new Item[0], new Item[0]);
+    }
+
+    NodeType type() {
+        return type;
+    }
+
+    /**
+     * @return true if the pattern matches the node, in any way
+     */
+    boolean matches(NodeTypeIndex index, int node) {
+        var candidate = index.node(node);
+        if (!matchesNode(index, node)) {
+            return false;
+        }
+        if (candidate instanceof TokenNode token) {
+            return matchesToken(token.value().lexeme());
+        }
+        return text == null && matchesChildren(index, node) && matchesDescendants(index, node);
+    }
+
+    /**
+     * Runs the continuation for every way the pattern matches the node, with the captures of that way added
+     */
+    void match(NodeTypeIndex index, int node, Captures captures, Runnable next) {
+        if (!capturing) {
+            if (matches(index, node)) {
+                next.run();
+            }
+            return;
+        }
+        if (!matchesNode(index, node) || index.node(node) instanceof TokenNode) {
+            return;
+        }
+        matchChildren(index, node, 0, node + 1, captures, () -> matchDescendants(index, node, 0, captures, next));
+    }
+
+    private boolean matchesNode(NodeTypeIndex index, int node) {
+        return (type == null || index.node(node).isA(type)) && index.containsAll(node, low, high);
+    }
+
+    /**
+     * Texts in the pattern of a token are matched against the lexeme of the token, nothing else of it can be
+     */
+    private boolean matchesToken(String lexeme) {
+        if (text != null) {
+            return text.equals(lexeme);
+        }
+        for (var item : children) {
+            if (item.pattern.text == null || !item.pattern.text.equals(lexeme)) {
+                return false;
+            }
+        }
+        return descendants.length == 0;
+    }
+
+    /**
+     * Children patterns take the children in their order, each one the first child it matches after
+     * the child matched by the previous pattern
+     */
+    private boolean matchesChildren(NodeTypeIndex index, int node) {
+        var child = node + 1;
+        var end = index.end(node);
+        for (var item : children) {
+            var found = false;
+            while (child < end && !found) {
+                found = item.pattern.matches(index, child);
+                child = index.end(child);
+            }
+            if (!found) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private void matchChildren(NodeTypeIndex index, int node, int item, int from, Captures captures, Runnable next) {
+        if (item == children.length) {
+            next.run();
+            return;
+        }
+        var end = index.end(node);
+        var pattern = children[item];
+        for (var child = from; child < end; child = index.end(child)) {
+            var after = index.end(child);
+            if (!pattern.capturing()) {
+                if (pattern.pattern.matches(index, child)) {
+                    matchChildren(index, node, item + 1, after, captures, next);
+                    return;
+                }
+                continue;
+            }
+            pattern.match(index, child, captures, () -> matchChildren(index, node, item + 1, after, captures, next));
+        }
+    }
+
+    /**
+     * Descendant patterns take the nodes of the subtree in the preorder. Patterns of a type look at the nodes
+     * of the type only, the others skip subtrees without the types they need.
+     */
+    private boolean matchesDescendants(NodeTypeIndex index, int node) {
+        var end = index.end(node);
+        for (var item : descendants) {
+            if (!forEachDescendant(item.pattern, index, node + 1, end, descendant -> !item.pattern.matches(index, descendant))) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private void matchDescendants(NodeTypeIndex index, int node, int item, Captures captures, Runnable next) {
+        if (item == descendants.length) {
+            next.run();
+            return;
+        }
+        var pattern = descendants[item];
+        var end = index.end(node);
+        if (!pattern.capturing()) {
+            if (forEachDescendant(pattern.pattern, index, node + 1, end, descendant -> !pattern.pattern.matches(index, descendant))) {
+                matchDescendants(index, node, item + 1, captures, next);
+            }
+            return;
+        }
+        forEachDescendant(pattern.pattern, index, node + 1, end, descendant -> {
+            pattern.match(index, descendant, captures, () -> matchDescendants(index, node, item + 1, captures, next));
+            return true;
+        });
+    }
+
+    /**
+     * Calls the action with the nodes in the range the pattern can match at, until the action returns false
+     *
+     * @return true if the action returned false, i.e. the nodes weren't all taken
+     */
+    private static boolean forEachDescendant(Pattern pattern, NodeTypeIndex index, int from, int end, NodeAction action) {
+        if (pattern.type != null) {
+            var nodesOfType = index.occurrences(pattern.type);
+            for (int i = index.firstOccurrence(pattern.type, from); i < nodesOfType.length && nodesOfType[i] < end; i++) {
+                if (!action.accept(nodesOfType[i])) {
+                    return true;
+                }
+            }
+            return false;
+        }
+        var node = from;
+        while (node < end) {
+            if (!index.containsAll(node, pattern.low, pattern.high)) {
+                node = index.end(node);
+                continue;
+            }
+            if (!action.accept(node++)) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * Calls the action with the nodes of the tree the pattern can match at, in the preorder: the nodes of its type,
+     * or all the nodes but the subtrees without the types it needs
+     */
+    void forEachCandidate(NodeTypeIndex index, NodeAction action) {
+        forEachDescendant(this, index, 0, index.size(), action);
+    }
+
+    interface NodeAction {
+        /**
+         * @return false to stop
+         */
+        boolean accept(int node);
+    }
+
+    /**
+     * Pattern at its place in the query, with the name it captures the matched node under (or null)
+     */
+    record Item(Pattern pattern, String capture) {
+        boolean capturing() {
+            return capture != null || pattern.capturing;
+        }
+
+        void match(NodeTypeIndex index, int node, Captures captures, Runnable next) {
+            pattern.match(index, node, captures, () -> {
+                if (capture == null) {
+                    next.run();
+                    return;
+                }
+                captures.push(capture, node);
+                next.run();
+                captures.pop();
+            });
+        }
+    }
+
+    /**
+     * Captures of the match being found, a stack, since the match is found with backtracking
+     */
+    static final class Captures {
+        private String[] names = new String[8];
+        private int[] nodes = new int[8];
+        private int size = 0;
+
+        void push(String name, int node) {
+            if (size == names.length) {
+                names = Arrays.copyOf(names, size * 2);
+                nodes = Arrays.copyOf(nodes, size * 2);
+            }
+            names[size] = name;
+            nodes[size++] = node;
+        }
+
+        void pop() {
+            size--;
+        }
+
+        int size() {
+            return size;
+        }
+
+        String name(int capture) {
+            return names[capture];
+        }
+
+        int node(int capture) {
+            return nodes[capture];
+        }
+    }
+}
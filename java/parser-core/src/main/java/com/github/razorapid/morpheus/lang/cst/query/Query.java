@@ -0,0 +1,259 @@
+package com.github.razorapid.morpheus.lang.cst.query;
+
+import com.github.razorapid.morpheus.lang.Source;
+import com.github.razorapid.morpheus.lang.cst.ConcreteSyntaxTree;
+import com.github.razorapid.morpheus.lang.cst.ConcreteSyntaxTree.Node;
+import com.github.razorapid.morpheus.lang.cst.ConcreteSyntaxTree.NodeType;
+import com.github.razorapid.morpheus.lang.lexer.Lexer;
+import com.github.razorapid.morpheus.lang.parser.Parser;
+
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.Executor;
+
+/**
+ * Structural query over concrete syntax trees, in the style of tree-sitter queries.
+ *
+ * A query is a list of patterns, a pattern is either a node, a token or any node, optionally captured by a name:
+ * <pre>
+ * pattern := ("..." )? node ("@" name)?
+ * node    := "(" type pattern* ")" | string | "_"
+ * type    := name of a {@link NodeType} | "_"
+ * </pre>
+ * Patterns nested in a node match its children, in their order but not necessarily one right after another,
+ * patterns prefixed with {@code ...} match anywhere in its subtree. A string matches a token with that lexeme,
+ * in the pattern of a token it's the lexeme of the token. Comments start with {@code ;} and last to the end of the line.
+ * A listener call of {@code spawn} anywhere in a while loop is:
+ * <pre>
+ * (WHILE_STATEMENT ... (LISTENER_FUNCTION_CALL_EXPRESSION (IDENTIFIER "spawn")) @call)
+ * </pre>
+ * Queries are compiled to matchers once and match against the {@link NodeTypeIndex} of a tree: a pattern starts
+ * at the nodes of its type only and skips the subtrees without the types it needs.
+ */
+public final class Query {
+    private final List<Pattern.Item> patterns;
+
+    private Query(List<Pattern.Item> patterns) {
+        this.patterns = patterns;
+    }
+
+    /**
+     * @throws IllegalArgumentException if the query isn't valid, the message tells where
+     */
+    public static Query compile(String query) {
+        return new Query(new Compiler(query).compile());
+    }
+
+    public int patterns() {
+        return patterns.size();
+    }
+
+    public List<QueryMatch> matches(ConcreteSyntaxTree cst) {
+        return matches(NodeTypeIndex.of(cst));
+    }
+
+    /**
+     * @return matches of all the patterns, in the preorder of the matched nodes, and in the order of the patterns
+     * for the same node. A pattern matches a node once per distinct set of captured nodes, the parts of the pattern
+     * without captures only tell whether it matches.
+     */
+    public List<QueryMatch> matches(NodeTypeIndex index) {
+        var found = new ArrayList<Found>();
+        var captures = new Pattern.Captures();
+        for (int i = 0; i < patterns.size(); i++) {
+            var patternIndex = i;
+            var item = patterns.get(i);
+            item.pattern().forEachCandidate(index, node -> {
+                item.match(index, node, captures, () -> found.add(new Found(node, patternIndex, match(index, patternIndex, node, captures))));
+                return true;
+            });
+        }
+        found.sort(Comparator.comparingInt(Found::node).thenComparingInt(Found::pattern));
+        return found.stream().map(Found::match).toList();
+    }
+
+    /**
+     * Parses the scripts and matches the query against them, the script per task of the executor
+     *
+     * @return matches by the scripts, in the order of the corpus
+     * @throws java.util.concurrent.CompletionException if a script fails to parse
+     */
+    public Map<Source, List<QueryMatch>> matchAll(List<Source> corpus, Executor executor) {
+        var results = new ArrayList<CompletableFuture<List<QueryMatch>>>(corpus.size());
+        for (var source : corpus) {
+            results.add(CompletableFuture.supplyAsync(() -> matches(new Parser(source, new Lexer(source).scan()).parse()), executor));
+        }
+        var matches = new LinkedHashMap<Source, List<QueryMatch>>();
+        for (int i = 0; i < corpus.size(); i++) {
+            matches.put(corpus.get(i), results.get(i).join());
+        }
+        return matches;
+    }
+
+    private static QueryMatch match(NodeTypeIndex index, int pattern, int node, Pattern.Captures captures) {
+        var captured = new LinkedHashMap<String, Node>();
+        for (int i = 0; i < captures.size(); i++) {
+            captured.putIfAbsent(captures.name(i), index.node(captures.node(i)));
+        }
+        return new QueryMatch(pattern, index.node(node), captured);
+    }
+
+    private record Found(int node, int pattern, QueryMatch match) {
+    }
+
+    /**
+     * Recursive descent over the text of the query, nesting of the patterns is as deep as the query is
+     */
+    private static final class Compiler {
+        private static final String ANY = "_";
+        private static final String DESCENDANT = "...";
+
+        private final String query;
+        private int pos = 0;
+
+        Compiler(String query) {
+            this.query = query;
+        }
+
+        List<Pattern.Item> compile() {
+            var patterns = new ArrayList<Pattern.Item>();
+            skipBlanks();
+            while (pos < query.length()) {
+                if (query.startsWith(DESCENDANT, pos)) {
+                    throw error("top-level pattern can't be a descendant");
+                }
+                patterns.add(item());
+                skipBlanks();
+            }
+            if (patterns.isEmpty()) {
+                throw error("expected a pattern");
+            }
+            return patterns;
+        }
+
+        private Pattern.Item item() {
+            var pattern = pattern();
+            skipBlanks();
+            String capture = null;
+            if (pos < query.length() && query.charAt(pos) == '@') {
+                pos++;
+                capture = name();
+                if (capture.isEmpty()) {
+                    throw error("expected a capture name");
+                }
+            }
+            return new Pattern.Item(pattern, capture);
+        }
+
+        private Pattern pattern() {
+            if (pos >= query.length()) {
+                throw error("expected a pattern");
+            }
+            var c = query.charAt(pos);
+            if (c == '"') {
+                return Pattern.text(string());
+            }
+            if (c == '(') {
+                pos++;
+                skipBlanks();
+                var type = type();
+                var children = new ArrayList<Pattern.Item>();
+                var descendants = new ArrayList<Pattern.Item>();
+                skipBlanks();
+                while (pos < query.length() && query.charAt(pos) != ')') {
+                    if (query.startsWith(DESCENDANT, pos)) {
+                        pos += DESCENDANT.length();
+                        skipBlanks();
+                        descendants.add(item());
+                    } else {
+                        children.add(item());
+                    }
+                    skipBlanks();
+                }
+                if (pos >= query.length()) {
+                    throw error("expected ')'");
+                }
+                pos++;
+                return Pattern.node(type, children, descendants);
+            }
+            var start = pos;
+            var name = name();
+            if (!name.equals(ANY)) {
+                pos = start;
+                throw error(name.isEmpty() ? "expected a pattern" : "expected '(' before " + name);
+            }
+            return Pattern.node(null, List.of(), List.of());
+        }
+
+        private NodeType type() {
+            var start = pos;
+            var name = name();
+            if (name.equals(ANY)) {
+                return null;
+            }
+            if (name.isEmpty()) {
+                throw error("expected a node type");
+            }
+            try {
+                return NodeType.valueOf(name);
+            } catch (IllegalArgumentException e) {
+                pos = start;
+                throw error("unknown node type '" + name + "'");
+            }
+        }
+
+        private String name() {
+            var start = pos;
+            while (pos < query.length() && (Character.isLetterOrDigit(query.charAt(pos)) || query.charAt(pos) == '_')) {
+                pos++;
+            }
+            return query.substring(start, pos);
+        }
+
+        private String string() {
+            var start = pos++;
+            var text = new StringBuilder();
+            while (pos < query.length() && query.charAt(pos) != '"') {
+                var c = query.charAt(pos++);
+                if (c == '\\' && pos < query.length()) {
+                    c = query.charAt(pos++);
+                    c = switch (c) {
+                        case 'n' -> '\n';
+                        case 't' -> '\t';
+                        default -> c;
+                    };
+                }
+                text.append(c);
+            }
+            if (pos >= query.length()) {
+                pos = start;
+                throw error("unterminated string");
+            }
+            pos++;
+            return text.toString();
+        }
+
+        private void skipBlanks() {
+            while (pos < query.length()) {
+                var c = query.charAt(pos);
+                if (c == ';') {
+                    while (pos < query.length() && query.charAt(pos) != '\n') {
+                        pos++;
+                    }
+                } else if (Character.isWhitespace(c)) {
+                    pos++;
+                } else {
+                    return;
+                }
+            }
+        }
+
+        private IllegalArgumentException error(String message) {
+            return new IllegalArgumentException("Invalid query at " + pos + ": " + message);
+        }
+    }
+}
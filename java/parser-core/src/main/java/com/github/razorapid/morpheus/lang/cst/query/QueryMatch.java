@@ -0,0 +1,19 @@
+package com.github.razorapid.morpheus.lang.cst.query;
+
+import com.github.razorapid.morpheus.lang.cst.ConcreteSyntaxTree.Node;
+import lombok.Value;
+
+import java.util.Map;
+
+@Value
+public class QueryMatch {
+    /** index of the matched pattern in the query */
+    int pattern;
+    Node node;
+    /** nodes captured by the names of the pattern, in the order they're matched */
+    Map<String, Node> captures;
+
+    public Node capture(String name) {
+        return captures.get(name);
+    }
+}
@@ -0,0 +1,417 @@
+package com.github.razorapid.morpheus.lang.cst.visitors;
+
+import com.github.razorapid.morpheus.lang.SourcePos;
+import com.github.razorapid.morpheus.lang.Token;
+import com.github.razorapid.morpheus.lang.ast.AbstractSyntaxTree;
+import com.github.razorapid.morpheus.lang.cst.ConcreteSyntaxTree;
+import com.github.razorapid.morpheus.lang.cst.ConcreteSyntaxTree.NodeType;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+
+import static com.github.razorapid.morpheus.lang.cst.ConcreteSyntaxTree.NodeType.BLOCK_END;
+import static com.github.razorapid.morpheus.lang.cst.ConcreteSyntaxTree.NodeType.BLOCK_START;
+import static com.github.razorapid.morpheus.lang.cst.ConcreteSyntaxTree.NodeType.DOUBLE_COLON;
+import static com.github.razorapid.morpheus.lang.cst.ConcreteSyntaxTree.NodeType.PREFIX_OPERATOR;
+import static com.github.razorapid.morpheus.lang.cst.ConcreteSyntaxTree.NodeType.SEMICOLON;
+
+/**
+ * Lowers concrete syntax trees to the same abstract syntax trees as {@link CstToAstVisitor}, with fewer allocations.
+ *
+ * Children are lowered in indexed loops into arrays of the exact size, instead of stream pipelines,
+ * and the lists of the nodes are views of the arrays. Chains of the wrapper nodes (nodes lowered to their only child,
+ * e.g. {@code primaryExpression}, {@code statementLine} or grouping parentheses) are collapsed in a loop,
+ * without a call per wrapper.
+ *
+ * Lists of the lowered nodes are unmodifiable, as the ones of {@link CstToAstVisitor} are.
+ */
+public final class CstToAstLowering {
+    /** types of the nodes lowered to their first child */
+    private static final boolean[] WRAPPERS = new boolean[NodeType.values().length];
+
+    static {
+        for (var type : List.of(
+                NodeType.NON_IDENTIFIER_PRIMARY_EXPRESSION, NodeType.IDENTIFIER_PRIMARY_EXPRESSION,
+                NodeType.PRIMARY_EXPRESSION, NodeType.EXPRESSION,
+                NodeType.FUNCTION_PRIMARY_EXPRESSION,
+                NodeType.BINARY_EXPRESSION,
+                NodeType.SCALAR_COMPONENT_EXPRESSION, NodeType.IDENTIFIER_SCALAR_COMPONENT_EXPRESSION,
+                NodeType.NON_IDENTIFIER_SCALAR_COMPONENT_EXPRESSION,
+                NodeType.UNARY_FUNCTION_PRIMARY_EXPRESSION, NodeType.UNARY_NON_IDENTIFIER_EXPRESSION,
+                NodeType.LITERAL_EXPRESSION,
+                NodeType.STATEMENT_LINE, NodeType.STATEMENT,
+                NodeType.LABEL_STATEMENT, NodeType.SELECTION_STATEMENT,
+                NodeType.ITERATION_STATEMENT)) {
+            WRAPPERS[type.ordinal()] = true;
+        }
+    }
+
+    public AbstractSyntaxTree lower(ConcreteSyntaxTree cst) {
+        return new AbstractSyntaxTree(lower(cst.program()));
+    }
+
+    private AbstractSyntaxTree.Node lower(ConcreteSyntaxTree.Node node) {
+        while (true) {
+            if (node instanceof ConcreteSyntaxTree.LazyNode lazy) {
+                node = lazy.node();
+            } else if (node instanceof ConcreteSyntaxTree.ExpressionNode expression) {
+                if (WRAPPERS[expression.type().ordinal()]) {
+                    node = expression.children().get(0);
+                } else if (expression.type() == NodeType.GROUPING_EXPRESSION) {
+                    node = expression.children().get(1);
+                } else {
+                    return lowerExpressionNode(expression);
+                }
+            } else if (node instanceof ConcreteSyntaxTree.StatementNode statement) {
+                if (WRAPPERS[statement.type().ordinal()]) {
+                    node = statement.children().get(0);
+                } else {
+                    return lowerStatementNode(statement);
+                }
+            } else if (node instanceof ConcreteSyntaxTree.TokenNode token) {
+                return literal(token.value());
+            } else {
+                var error = ((ConcreteSyntaxTree.ErrorNode) node).error();
+                return new AbstractSyntaxTree.SyntaxError(error, error.pos(), error.pos());
+            }
+        }
+    }
+
+    private AbstractSyntaxTree.Expression lowerExpression(ConcreteSyntaxTree.Node node) {
+        return (AbstractSyntaxTree.Expression) lower(node);
+    }
+
+    private AbstractSyntaxTree.Statement lowerStatement(ConcreteSyntaxTree.Node node) {
+        return (AbstractSyntaxTree.Statement) lower(node);
+    }
+
+    private AbstractSyntaxTree.Node lowerExpressionNode(ConcreteSyntaxTree.ExpressionNode expression) {
+        return switch (expression.type()) {
+            case THREAD_FUNCTION_CALL_EXPRESSION -> lowerFunctionCall(true, expression);
+            case LISTENER_FUNCTION_CALL_EXPRESSION -> lowerFunctionCall(false, expression);
+            case ASSIGNMENT_EXPRESSION,
+                    MEMBER_SELECTION_EXPRESSION, SUBSCRIPT_EXPRESSION,
+                    MULTIPLICATION_EXPRESSION, DIVISION_EXPRESSION,
+                    MODULO_EXPRESSION,
+                    ADDITION_EXPRESSION, SUBTRACTION_EXPRESSION,
+                    LESS_THAN_EXPRESSION, GREATER_THAN_EXPRESSION,
+                    LESS_THAN_OR_EQUALS_EXPRESSION, GREATER_THAN_OR_EQUAL_EXPRESSION,
+                    EQUALITY_EXPRESSION, INEQUALITY_EXPRESSION,
+                    BITWISE_AND_EXPRESSION, BITWISE_XOR_EXPRESSION, BITWISE_OR_EXPRESSION,
+                    LOGICAL_AND_EXPRESSION, LOGICAL_OR_EXPRESSION -> lowerBinaryExpression(expression);
+            case INCREMENT_EXPRESSION, DECREMENT_EXPRESSION -> lowerPostfixExpression(expression);
+            case EVENT_PARAMETER_LIST -> lowerParams(expression);
+            case ARITHMETIC_NEGATION_FUNCTION_EXPRESSION,
+                    BITWISE_COMPLETION_FUNCTION_EXPRESSION,
+                    LOGICAL_NEGATION_FUNCTION_EXPRESSION,
+                    TARGETNAME_EXPRESSION,
+                    ARITHMETIC_NEGATION_NON_IDENTIFIER_EXPRESSION,
+                    BITWISE_COMPLEMENT_NON_IDENTIFIER_EXPRESSION,
+                    LOGICAL_NEGATION_NON_IDENTIFIER_EXPRESSION -> lowerPrefixExpression(expression);
+            case VECTOR_DECLARATION_EXPRESSION -> lowerVectorDeclaration(expression);
+            case CONST_ARRAY_EXPRESSION -> lowerConstArrayDeclaration(expression);
+            case MAKE_ARRAY_EXPRESSION -> lowerMakeArrayDeclaration(expression);
+            case IDENTIFIER_LITERAL, STRING_LITERAL,
+                    INTEGER_LITERAL, FLOAT_LITERAL,
+                    NULL_LITERAL, NIL_LITERAL,
+                    LISTENER_LITERAL -> literal(token(expression.children().get(0)));
+            default -> throw new IllegalStateException("Unknown expression type: " + expression.type());
+        };
+    }
+
+    private AbstractSyntaxTree.Node lowerVectorDeclaration(ConcreteSyntaxTree.ExpressionNode expression) {
+        var children = expression.children();
+        var components = new AbstractSyntaxTree.Expression[3];
+        var component = 0;
+        for (int i = 0; i < children.size(); i++) {
+            var child = children.get(i);
+            if (child.type() != BLOCK_START && child.type() != BLOCK_END) {
+                components[component++] = lowerExpression(child);
+            }
+        }
+        var declStart = token(children.get(0));
+        var declEnd = token(children.get(children.size() - 1));
+
+        return new AbstractSyntaxTree.VectorDeclaration(declStart.pos(), end(declEnd), components[0], components[1], components[2]);
+    }
+
+    private AbstractSyntaxTree.Node lowerConstArrayDeclaration(ConcreteSyntaxTree.ExpressionNode expression) {
+        var children = expression.children();
+        var count = 0;
+        for (int i = 0; i < children.size(); i++) {
+            if (children.get(i).type() != DOUBLE_COLON) {
+                count++;
+            }
+        }
+        var indices = new AbstractSyntaxTree.Expression[count];
+        var index = 0;
+        for (int i = 0; i < children.size(); i++) {
+            var child = children.get(i);
+            if (child.type() != DOUBLE_COLON) {
+                indices[index++] = lowerExpression(child);
+            }
+        }
+
+        return new AbstractSyntaxTree.ConstArrayDeclaration(indices[0].start(), indices[count - 1].end(), true, List.of(listOf(indices)));
+    }
+
+    private AbstractSyntaxTree.Node lowerMakeArrayDeclaration(ConcreteSyntaxTree.ExpressionNode expression) {
+        var children = expression.children();
+        var count = 0;
+        for (int i = 0; i < children.size(); i++) {
+            if (!(children.get(i) instanceof ConcreteSyntaxTree.TokenNode)) {
+                count++;
+            }
+        }
+        @SuppressWarnings("unchecked")
+        var rows = (List<AbstractSyntaxTree.Expression>[]) new List[count];
+        var row = 0;
+        for (int i = 0; i < children.size(); i++) {
+            if (!(children.get(i) instanceof ConcreteSyntaxTree.TokenNode)) {
+                rows[row++] = lowerConstArrayRow((ConcreteSyntaxTree.ExpressionNode) children.get(i));
+            }
+        }
+        var makeArrayKeyword = token(children.get(0));
+        var endArrayKeyword = token(children.get(children.size() - 1));
+
+        return new AbstractSyntaxTree.ConstArrayDeclaration(makeArrayKeyword.pos(), end(endArrayKeyword), false, listOf(rows));
+    }
+
+    /**
+     * Elements of the row, the last child is the end of the row
+     */
+    private List<AbstractSyntaxTree.Expression> lowerConstArrayRow(ConcreteSyntaxTree.ExpressionNode expression) {
+        var children = expression.children();
+        var elements = new AbstractSyntaxTree.Expression[children.size() - 1];
+        for (int i = 0; i < elements.length; i++) {
+            elements[i] = lowerExpression(children.get(i));
+        }
+        return listOf(elements);
+    }
+
+    private AbstractSyntaxTree.Node lowerPrefixExpression(ConcreteSyntaxTree.ExpressionNode expression) {
+        var operator = token(expression.children().get(0));
+        var operand = lowerExpression(expression.children().get(1));
+
+        return new AbstractSyntaxTree.PrefixOp(operator.pos(), operand.end(), operator, operand);
+    }
+
+    private AbstractSyntaxTree.Params lowerParams(ConcreteSyntaxTree.ExpressionNode expression) {
+        var children = expression.children();
+        var params = new AbstractSyntaxTree.Expression[children.size()];
+        for (int i = 0; i < params.length; i++) {
+            params[i] = lowerExpression(children.get(i));
+        }
+
+        SourcePos start = null, end = null;
+        if (params.length > 0) {
+            start = params[0].start();
+            end = params[params.length - 1].end();
+        }
+        return new AbstractSyntaxTree.Params(start, end, listOf(params));
+    }
+
+    private AbstractSyntaxTree.Node lowerPostfixExpression(ConcreteSyntaxTree.ExpressionNode expression) {
+        var operand = lowerExpression(expression.children().get(0));
+        var operator = token(expression.children().get(1));
+
+        return new AbstractSyntaxTree.PostfixOp(operand.start(), end(operator), operand, operator);
+    }
+
+    private AbstractSyntaxTree.Node lowerBinaryExpression(ConcreteSyntaxTree.ExpressionNode expression) {
+        var children = expression.children();
+        var lhs = lowerExpression(children.get(0));
+        var operator = token(children.get(1));
+        var rhs = lowerExpression(children.get(2));
+        /* Support for subscript expression and the likes */
+        var end = children.size() > 3 ? end(token(children.get(3))) : rhs.end();
+
+        return new AbstractSyntaxTree.BinaryOp(lhs.start(), end, lhs, operator, rhs);
+    }
+
+    private AbstractSyntaxTree.Node lowerFunctionCall(boolean thread, ConcreteSyntaxTree.ExpressionNode expression) {
+        var children = expression.children();
+        if (thread) {
+            var identifier = token(children.get(0));
+            var params = lowerParams((ConcreteSyntaxTree.ExpressionNode) children.get(1));
+            var end = params.end() != null ? params.end() : end(identifier);
+
+            return new AbstractSyntaxTree.FunctionCall(identifier.pos(), end, true, null, identifier, params);
+        }
+
+        var listener = lowerExpression(children.get(0));
+        var identifier = token(children.get(1));
+        var params = lowerParams((ConcreteSyntaxTree.ExpressionNode) children.get(2));
+        var end = params.end() != null ? params.end() : end(identifier);
+
+        return new AbstractSyntaxTree.FunctionCall(listener.start(), end, false, listener, identifier, params);
+    }
+
+    private AbstractSyntaxTree.Node lowerStatementNode(ConcreteSyntaxTree.StatementNode statement) {
+        return switch (statement.type()) {
+            case STATEMENT_LIST, THREAD_BODY -> lowerStatements(statement);
+            case COMPOUND_STATEMENT -> lowerCompoundStatement(statement);
+            case TRY_CATCH_STATEMENT -> lowerTryCatchStatement(statement);
+            case BREAK_STATEMENT -> new AbstractSyntaxTree.Break(start(statement), end(token(statement.children().get(0))));
+            case CONTINUE_STATEMENT -> new AbstractSyntaxTree.Continue(start(statement), end(token(statement.children().get(0))));
+            case NOOP_STATEMENT -> new AbstractSyntaxTree.NoOperation(start(statement), end(token(statement.children().get(0))));
+            case EXPRESSION_STATEMENT -> lowerExpressionStatement(statement);
+            case SWITCH_CASE_LABEL_STATEMENT -> lowerSwitchCaseStatement(statement);
+            case THREAD_LABEL_STATEMENT -> lowerThreadLabelStatement(statement);
+            case IF_ELSE_STATEMENT -> lowerIfElseStatement(statement);
+            case SWITCH_STATEMENT -> lowerSwitchStatement(statement);
+            case WHILE_STATEMENT -> lowerWhileStatement(statement);
+            case FOR_STATEMENT -> lowerForStatement(statement);
+            default -> throw new IllegalStateException("Unknown statement type: " + statement.type());
+        };
+    }
+
+    private AbstractSyntaxTree.Node lowerForStatement(ConcreteSyntaxTree.StatementNode statement) {
+        var children = statement.children();
+        var initializer = children.get(2) != null ? lowerStatement(children.get(2)) : null;
+        var condition = lowerExpression(children.get(4));
+        var advancement = lowerStatement(children.get(6));
+        var body = lowerStatement(children.get(8));
+
+        return new AbstractSyntaxTree.ForLoop(start(statement), body.end(), initializer, condition, advancement, body);
+    }
+
+    private AbstractSyntaxTree.Node lowerWhileStatement(ConcreteSyntaxTree.StatementNode statement) {
+        var condition = lowerExpression(statement.children().get(1));
+        var body = lowerStatement(statement.children().get(2));
+
+        return new AbstractSyntaxTree.WhileLoop(start(statement), body.end(), condition, body);
+    }
+
+    private AbstractSyntaxTree.Node lowerSwitchStatement(ConcreteSyntaxTree.StatementNode statement) {
+        var condition = lowerExpression(statement.children().get(1));
+        var body = lowerStatement(statement.children().get(2));
+
+        return new AbstractSyntaxTree.Switch(start(statement), body.end(), condition, body);
+    }
+
+    private AbstractSyntaxTree.Node lowerIfElseStatement(ConcreteSyntaxTree.StatementNode statement) {
+        var children = statement.children();
+        var condition = lowerExpression(children.get(1));
+        var ifClause = lowerStatement(children.get(2));
+        AbstractSyntaxTree.Statement elseClause = null;
+        if (children.size() > 3) {
+            if (children.get(3).type() != SEMICOLON || children.size() > 4) {
+                var elseClauseIdx = children.get(3).type() != SEMICOLON ? 4 : 5;
+                elseClause = lowerStatement(children.get(elseClauseIdx));
+            }
+        }
+        var end = elseClause != null ? elseClause.end() : ifClause.end();
+
+        return new AbstractSyntaxTree.IfElse(start(statement), end, condition, ifClause, elseClause);
+    }
+
+    private AbstractSyntaxTree.Node lowerSwitchCaseStatement(ConcreteSyntaxTree.StatementNode statement) {
+        var children = statement.children();
+        Token operator = null;
+        Token identifier = token(children.get(1));
+        var paramsIdx = 2;
+        if (children.get(1).type() == PREFIX_OPERATOR) {
+            operator = identifier;
+            identifier = token(children.get(2));
+            paramsIdx = 3;
+        }
+        var params = lowerParams((ConcreteSyntaxTree.ExpressionNode) children.get(paramsIdx));
+        var colon = token(children.get(children.size() - 1));
+
+        return new AbstractSyntaxTree.SwitchCase(start(statement), end(colon), operator, identifier, params);
+    }
+
+    private AbstractSyntaxTree.Node lowerExpressionStatement(ConcreteSyntaxTree.StatementNode statement) {
+        var expression = lowerExpression(statement.children().get(0));
+
+        return new AbstractSyntaxTree.ExpressionStmt(expression.start(), expression.end(), expression);
+    }
+
+    private AbstractSyntaxTree.Node lowerTryCatchStatement(ConcreteSyntaxTree.StatementNode statement) {
+        var tryClause = lowerStatement(statement.children().get(1));
+        var catchClause = lowerStatement(statement.children().get(3));
+
+        return new AbstractSyntaxTree.TryCatch(start(statement), catchClause.end(), tryClause, catchClause);
+    }
+
+    private AbstractSyntaxTree.Node lowerThreadLabelStatement(ConcreteSyntaxTree.StatementNode statement) {
+        var children = statement.children();
+        var identifier = token(children.get(0));
+        var params = lowerParams((ConcreteSyntaxTree.ExpressionNode) children.get(1));
+        var colon = token(children.get(children.size() - 1));
+
+        return new AbstractSyntaxTree.ThreadLabel(identifier.pos(), end(colon), identifier, params);
+    }
+
+    private AbstractSyntaxTree.Node lowerCompoundStatement(ConcreteSyntaxTree.StatementNode statement) {
+        var children = statement.children();
+        var count = 0;
+        for (int i = 0; i < children.size(); i++) {
+            if (!(children.get(i) instanceof ConcreteSyntaxTree.TokenNode)) {
+                count++;
+            }
+        }
+        var statements = new AbstractSyntaxTree.Statement[count];
+        var index = 0;
+        for (int i = 0; i < children.size(); i++) {
+            if (!(children.get(i) instanceof ConcreteSyntaxTree.TokenNode)) {
+                statements[index++] = lowerStatement(children.get(i));
+            }
+        }
+        var blockEnd = token(children.get(children.size() - 1));
+
+        return new AbstractSyntaxTree.Statements(start(statement), end(blockEnd), listOf(statements));
+    }
+
+    private AbstractSyntaxTree.Node lowerStatements(ConcreteSyntaxTree.StatementNode statement) {
+        var statements = new ArrayList<AbstractSyntaxTree.Statement>(statement.children().size());
+        lowerStatementLines(statement.children(), statements);
+
+        SourcePos start = null, end = null;
+        if (!statements.isEmpty()) {
+            start = statements.get(0).start();
+            end = statements.get(statements.size() - 1).end();
+        }
+        return new AbstractSyntaxTree.Statements(start, end, Collections.unmodifiableList(statements));
+    }
+
+    /**
+     * Statement lines of the thread bodies of an outline are lowered in place of the bodies,
+     * the same as the statement lines of the full parse, which are not grouped into bodies
+     */
+    private void lowerStatementLines(List<ConcreteSyntaxTree.Node> lines, List<AbstractSyntaxTree.Statement> statements) {
+        for (var line : lines) {
+            if (line.type() == NodeType.THREAD_BODY) {
+                lowerStatementLines(((ConcreteSyntaxTree.NonTerminalNode) line).children(), statements);
+            } else {
+                statements.add(lowerStatement(line));
+            }
+        }
+    }
+
+    private static AbstractSyntaxTree.Literal literal(Token token) {
+        return new AbstractSyntaxTree.Literal(token.pos(), end(token), token);
+    }
+
+    private static Token token(ConcreteSyntaxTree.Node node) {
+        return ((ConcreteSyntaxTree.TokenNode) node).value();
+    }
+
+    /**
+     * @return position of the first token of the statement, the keyword of the statements starting with one
+     */
+    private static SourcePos start(ConcreteSyntaxTree.StatementNode statement) {
+        return token(statement.children().get(0)).pos();
+    }
+
+    private static SourcePos end(Token token) {
+        return token.pos().addCol(token.lexeme().length());
+    }
+
+    private static <T> List<T> listOf(T[] elements) {
+        return Collections.unmodifiableList(Arrays.asList(elements));
+    }
+}
@@ -8,12 +8,14 @@ import com.github.razorapid.morpheus.lang.cst.ConcreteSyntaxTree;
 import com.github.razorapid.morpheus.lang.cst.ConcreteSyntaxTreeVisitor;
 
 import java.util.List;
+import java.util.stream.Stream;
 
 import static com.github.razorapid.morpheus.lang.cst.ConcreteSyntaxTree.NodeType.BLOCK_END;
 import static com.github.razorapid.morpheus.lang.cst.ConcreteSyntaxTree.NodeType.BLOCK_START;
 import static com.github.razorapid.morpheus.lang.cst.ConcreteSyntaxTree.NodeType.DOUBLE_COLON;
 import static com.github.razorapid.morpheus.lang.cst.ConcreteSyntaxTree.NodeType.PREFIX_OPERATOR;
 import static com.github.razorapid.morpheus.lang.cst.ConcreteSyntaxTree.NodeType.SEMICOLON;
+import static com.github.razorapid.morpheus.lang.cst.ConcreteSyntaxTree.NodeType.THREAD_BODY;
 
 public class CstToAstVisitor implements ConcreteSyntaxTreeVisitor<AbstractSyntaxTree.Node> {
 
@@ -43,9 +45,9 @@ public class CstToAstVisitor implements ConcreteSyntaxTreeVisitor<AbstractSyntax
                     FUNCTION_PRIMARY_EXPRESSION,
                     BINARY_EXPRESSION,
                     SCALAR_COMPONENT_EXPRESSION, IDENTIFIER_SCALAR_COMPONENT_EXPRESSION, NON_IDENTIFIER_SCALAR_COMPONENT_EXPRESSION,
+                    UNARY_FUNCTION_PRIMARY_EXPRESSION, UNARY_NON_IDENTIFIER_EXPRESSION,
                     LITERAL_EXPRESSION -> skipToChild(expression);
-            case UNARY_FUNCTION_PRIMARY_EXPRESSION, UNARY_NON_IDENTIFIER_EXPRESSION,
-                    ARITHMETIC_NEGATION_FUNCTION_EXPRESSION,
+            case ARITHMETIC_NEGATION_FUNCTION_EXPRESSION,
                     BITWISE_COMPLETION_FUNCTION_EXPRESSION,
                     LOGICAL_NEGATION_FUNCTION_EXPRESSION,
                     TARGETNAME_EXPRESSION,
@@ -204,7 +206,7 @@ public class CstToAstVisitor implements ConcreteSyntaxTreeVisitor<AbstractSyntax
     @Override
     public AbstractSyntaxTree.Node visitStatement(ConcreteSyntaxTree.StatementNode statement) {
         return switch (statement.type()) {
-            case STATEMENT_LIST -> visitStatements(statement);
+            case STATEMENT_LIST, THREAD_BODY -> visitStatements(statement);
             case STATEMENT_LINE, STATEMENT,
                     LABEL_STATEMENT, SELECTION_STATEMENT,
                     ITERATION_STATEMENT -> skipToChild(statement);
@@ -225,7 +227,7 @@ public class CstToAstVisitor implements ConcreteSyntaxTreeVisitor<AbstractSyntax
     }
 
     private AbstractSyntaxTree.Node visitForStatement(ConcreteSyntaxTree.StatementNode statement) {
-        var initializer = (AbstractSyntaxTree.Statement) statement.children().get(2) != null ?
+        var initializer = statement.children().get(2) != null ?
                 (AbstractSyntaxTree.Statement) statement.children().get(2).accept(this) :
                 null;
         var condition = (AbstractSyntaxTree.Expression) statement.children().get(4).accept(this);
@@ -360,7 +362,7 @@ public class CstToAstVisitor implements ConcreteSyntaxTreeVisitor<AbstractSyntax
     }
 
     private AbstractSyntaxTree.Node visitStatements(ConcreteSyntaxTree.StatementNode statement) {
-        var statements = statement.children().stream().sequential()
+        var statements = statementLines(statement.children()).stream().sequential()
             .map(node -> node.accept(this))
             .map(AbstractSyntaxTree.Statement.class::cast)
             .toList();
@@ -373,6 +375,18 @@ public class CstToAstVisitor implements ConcreteSyntaxTreeVisitor<AbstractSyntax
         return new AbstractSyntaxTree.Statements(start, end, statements);
     }
 
+    /**
+     * Statement lines of the thread bodies of an outline are visited in place of the bodies,
+     * the same as the statement lines of the full parse, which are not grouped into bodies
+     */
+    private static List<ConcreteSyntaxTree.Node> statementLines(List<ConcreteSyntaxTree.Node> lines) {
+        return lines.stream()
+            .flatMap(line -> line.type() == THREAD_BODY
+                ? statementLines(((ConcreteSyntaxTree.NonTerminalNode) line).children()).stream()
+                : Stream.of(line))
+            .toList();
+    }
+
     @Override
     public AbstractSyntaxTree.Node visitToken(ConcreteSyntaxTree.TokenNode token) {
         return new AbstractSyntaxTree.Literal(token.value().pos(), token.value().pos().addCol(token.value().lexeme().length()), token.value());
@@ -0,0 +1,67 @@
+package com.github.razorapid.morpheus.lang.cst.visitors;
+
+import com.github.razorapid.morpheus.lang.DotWriter;
+import com.github.razorapid.morpheus.lang.TreeCursor;
+import com.github.razorapid.morpheus.lang.cst.ConcreteSyntaxTree;
+
+import java.io.IOException;
+import java.util.Arrays;
+
+/**
+ * Writes the same graph as {@code VisualGraphVisitor} in the DOT language, node by node as the tree is walked.
+ * Nodes get sequential ids, nothing but the ids of the nodes on the path of the {@link TreeCursor} is kept in the memory.
+ */
+public class DotGraphWriter {
+
+    /**
+     * @return number of nodes written
+     */
+    public int write(ConcreteSyntaxTree cst, Appendable out) throws IOException {
+        var dot = new DotWriter(out).begin("program");
+        cst.cursor().walk(new Writer(dot));
+        dot.end();
+        return dot.nodes();
+    }
+
+    private static final class Writer implements TreeCursor.Walker<ConcreteSyntaxTree.Node, IOException> {
+        private final DotWriter dot;
+        private int[] ids = new int[64];
+
+        Writer(DotWriter dot) {
+            this.dot = dot;
+        }
+
+        @Override
+        public void enter(TreeCursor<ConcreteSyntaxTree.Node> cursor) throws IOException {
+            var id = node(cursor.node());
+            var depth = cursor.depth();
+            if (depth > 0) {
+                dot.edge(ids[depth - 1], id);
+            }
+            if (depth == ids.length) {
+                ids = Arrays.copyOf(ids, depth * 2);
+            }
+            ids[depth] = id;
+        }
+
+        @Override
+        public void leave(TreeCursor<ConcreteSyntaxTree.Node> cursor) {
+        }
+
+        private int node(ConcreteSyntaxTree.Node node) throws IOException {
+            if (node instanceof ConcreteSyntaxTree.LazyNode lazy) {
+                node = lazy.node();
+            }
+            if (node instanceof ConcreteSyntaxTree.TokenNode token) {
+                return dot.htmlNode(token.value().type().name(), token.value().lexeme());
+            }
+            if (node instanceof ConcreteSyntaxTree.ErrorNode error) {
+                return dot.htmlNode("ERROR", error.error().error());
+            }
+            if (node instanceof ConcreteSyntaxTree.ExpressionNode) {
+                return dot.node("invhouse", node.name());
+            }
+            return dot.node("rectangle", node.name());
+        }
+    }
+}
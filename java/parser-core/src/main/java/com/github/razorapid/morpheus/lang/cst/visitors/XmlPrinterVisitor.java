@@ -1,10 +1,14 @@
 package com.github.razorapid.morpheus.lang.cst.visitors;
 
+import com.github.razorapid.morpheus.lang.BufferedOutput;
+import com.github.razorapid.morpheus.lang.Escapes;
+import com.github.razorapid.morpheus.lang.TreeCursor;
 import com.github.razorapid.morpheus.lang.cst.ConcreteSyntaxTree;
 import com.github.razorapid.morpheus.lang.cst.ConcreteSyntaxTreeVisitor;
 import lombok.RequiredArgsConstructor;
-import org.apache.commons.lang3.StringEscapeUtils;
 
+import java.io.Flushable;
+import java.io.IOException;
 import java.util.Objects;
 
 @RequiredArgsConstructor
@@ -15,6 +19,67 @@ public class XmlPrinterVisitor implements ConcreteSyntaxTreeVisitor<String> {
         return visitStatement((ConcreteSyntaxTree.StatementNode) cst.program());
     }
 
+    /**
+     * Writes the same document as {@link #visit(ConcreteSyntaxTree)} to the output as the tree is walked
+     * by its {@link TreeCursor}, through a {@link BufferedOutput}, so the document is never on the heap as a whole.
+     * The output is flushed (but not closed) when it's {@link Flushable}.
+     */
+    public void write(ConcreteSyntaxTree cst, Appendable out) throws IOException {
+        var output = new BufferedOutput(out);
+        cst.cursor().walk(new Writer(output));
+        output.flush();
+    }
+
+    private final class Writer implements TreeCursor.Walker<ConcreteSyntaxTree.Node, IOException> {
+        private final BufferedOutput out;
+
+        Writer(BufferedOutput out) {
+            this.out = out;
+        }
+
+        @Override
+        public void enter(TreeCursor<ConcreteSyntaxTree.Node> cursor) throws IOException {
+            var node = unwrap(cursor.node());
+            if (node instanceof ConcreteSyntaxTree.TokenNode token) {
+                out.append("<Token");
+                if (includeLineAndCol) {
+                    out.append(" col=\"").append(token.value().col()).append("\" line=\"").append(token.value().line()).append("\"");
+                }
+                out.append(" type=\"").append(String.valueOf(token.value().type())).append("\" value=\"").append(escape(token.value().lexeme())).append("\"/>");
+                return;
+            }
+            if (node instanceof ConcreteSyntaxTree.ErrorNode error) {
+                var se = error.error();
+                out.append("<Error");
+                if (includeLineAndCol) {
+                    out.append(" col=\"").append(se.pos().col()).append("\" line=\"").append(se.pos().line()).append("\"");
+                }
+                out.append(" type=\"").append(String.valueOf(error.type())).append("\" value=\"").append(escape(se.error())).append("\">");
+                return;
+            }
+            out.append("<").append(tag(node)).append(" name=\"").append(node.name());
+            out.append(((ConcreteSyntaxTree.NonTerminalNode) node).children().isEmpty() ? "\"/>" : "\">");
+        }
+
+        @Override
+        public void leave(TreeCursor<ConcreteSyntaxTree.Node> cursor) throws IOException {
+            var node = unwrap(cursor.node());
+            if (node instanceof ConcreteSyntaxTree.ErrorNode) {
+                out.append("</Error>");
+            } else if (node instanceof ConcreteSyntaxTree.NonTerminalNode nonTerminal && !nonTerminal.children().isEmpty()) {
+                out.append("</").append(tag(node)).append(">");
+            }
+        }
+
+        private static ConcreteSyntaxTree.Node unwrap(ConcreteSyntaxTree.Node node) {
+            return node instanceof ConcreteSyntaxTree.LazyNode lazy ? lazy.node() : node;
+        }
+
+        private static String tag(ConcreteSyntaxTree.Node node) {
+            return node instanceof ConcreteSyntaxTree.ExpressionNode ? "Expression" : "Statement";
+        }
+    }
+
     @Override
     public String visitExpression(ConcreteSyntaxTree.ExpressionNode expression) {
         return xmlExpression(expression);
@@ -93,10 +158,8 @@ public class XmlPrinterVisitor implements ConcreteSyntaxTreeVisitor<String> {
         return result;
     }
 
-    private String escape(String s){
-        return StringEscapeUtils.escapeHtml4(
-                StringEscapeUtils.escapeJava(s).replace("\\\"", "\"")
-        ).replace("]", "&#93;");
+    private static String escape(String s){
+        return Escapes.javaHtml(s);
     }
 
     private String escapeTokenName(String s){
@@ -1,5 +1,7 @@
 package com.github.razorapid.morpheus.lang.lexer;
 
+import com.github.razorapid.morpheus.lang.CancellationToken;
+import com.github.razorapid.morpheus.lang.CancelledException;
 import com.github.razorapid.morpheus.lang.Source;
 import com.github.razorapid.morpheus.lang.Tape;
 import com.github.razorapid.morpheus.lang.Token;
@@ -37,12 +39,23 @@ public class Lexer {
     private LexerStateName state = BEGIN;
     private Token prevToken = null;
     private int startPos = 0;
+    private CancellationToken cancellation = CancellationToken.none();
 
     public Lexer(Source script) {
         this.source = createSource(requireNonNull(script, "script must not be null"));
     }
 
     public Tokens scan() {
+        return scan(CancellationToken.none());
+    }
+
+    /**
+     * Scans the whole script, unless the cancellation token is cancelled in the meantime
+     *
+     * @throws CancelledException when scanning was cancelled
+     */
+    public Tokens scan(CancellationToken cancellation) {
+        this.cancellation = requireNonNull(cancellation, "cancellation must not be null");
         Tokens tokens = Tokens.create();
         Token t;
         do {
@@ -57,6 +70,7 @@ public class Lexer {
         if (prevTokenType() == TOKEN_EOF) return prevToken();
         MatchedToken token;
         do {
+            cancellation.throwIfCancelled("Scanning");
             token = nextToken();
         } while (token.isNotMatched());
 
@@ -0,0 +1,550 @@
+package com.github.razorapid.morpheus.lang.parser;
+
+import com.github.razorapid.morpheus.lang.Token;
+import com.github.razorapid.morpheus.lang.cst.ConcreteSyntaxTree;
+import com.github.razorapid.morpheus.lang.cst.ConcreteSyntaxTreeBuilder;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.List;
+
+import static com.github.razorapid.morpheus.lang.TokenType.TOKEN_CATCH;
+import static com.github.razorapid.morpheus.lang.TokenType.TOKEN_ELSE;
+import static com.github.razorapid.morpheus.lang.TokenType.TOKEN_FOR;
+import static com.github.razorapid.morpheus.lang.TokenType.TOKEN_IF;
+import static com.github.razorapid.morpheus.lang.TokenType.TOKEN_LEFT_BRACES;
+import static com.github.razorapid.morpheus.lang.TokenType.TOKEN_LEFT_BRACKET;
+import static com.github.razorapid.morpheus.lang.TokenType.TOKEN_RIGHT_BRACES;
+import static com.github.razorapid.morpheus.lang.TokenType.TOKEN_RIGHT_BRACKET;
+import static com.github.razorapid.morpheus.lang.TokenType.TOKEN_SEMICOLON;
+import static com.github.razorapid.morpheus.lang.TokenType.TOKEN_SWITCH;
+import static com.github.razorapid.morpheus.lang.TokenType.TOKEN_TRY;
+import static com.github.razorapid.morpheus.lang.TokenType.TOKEN_WHILE;
+
+/**
+ * Statements nest in each other (blocks, if/else chains, loop bodies), so a recursive descent parser
+ * needs a call stack frame for every nesting level, which overflows the stack on deeply nested
+ * or generated scripts.
+ *
+ * This parser follows the same production rules as the recursive descent one, but each rule
+ * that contains nested statements is a {@link Frame} kept on an explicit stack. When the rule reaches
+ * a nested statement, it pushes the frame of the nested rule and it's resumed with its result
+ * once the nested rule is done. Rules without nested statements are parsed directly by the {@link Parser}.
+ */
+class IterativeStatementParser {
+    private final Parser parser;
+    private final ConcreteSyntaxTreeBuilder nodes;
+
+    IterativeStatementParser(Parser parser) {
+        this.parser = parser;
+        this.nodes = parser.nodes();
+    }
+
+    ConcreteSyntaxTree.Node parseStatementList(boolean strict) {
+        return run(new StatementListFrame(strict));
+    }
+
+    ConcreteSyntaxTree.Node parseStatement() {
+        return run(new StatementFrame());
+    }
+
+    private ConcreteSyntaxTree.Node run(Frame root) {
+        var profiler = parser.profiler();
+        var frames = new ArrayDeque<Frame>();
+        var depth = profiler.depth();
+        root.started = profiler.enter(root.production);
+        frames.push(root);
+
+        ConcreteSyntaxTree.Node result = null;
+        try {
+            while (true) {
+                parser.checkCancelled();
+                var frame = frames.peek();
+                var nested = frame.resume(result);
+                if (nested != null) {
+                    nested.started = profiler.enter(nested.production);
+                    frames.push(nested);
+                    result = null;
+                    continue;
+                }
+
+                frames.pop();
+                result = frame.result;
+                profiler.exit(frame.production, frame.started, parser.isMatched(result));
+                if (frames.isEmpty()) {
+                    return result;
+                }
+            }
+        } finally {
+            // rules left on the stack by an exception (i.e. cancellation) didn't match
+            profiler.unwind(depth);
+        }
+    }
+
+    /**
+     * Production rule in progress.
+     *
+     * Frame is resumed first with no result and then with the result of every nested rule it asked for
+     * (null when the nested rule didn't match). It either returns the nested rule frame to parse next
+     * or finishes with {@link #done} and returns null.
+     */
+    private abstract static class Frame {
+        private final Production production;
+        private long started;
+        private ConcreteSyntaxTree.Node result;
+
+        Frame(Production production) {
+            this.production = production;
+        }
+
+        abstract Frame resume(ConcreteSyntaxTree.Node nested);
+
+        Frame done(ConcreteSyntaxTree.Node result) {
+            this.result = result;
+            return null;
+        }
+    }
+
+    private final class StatementListFrame extends Frame {
+        private final boolean strict;
+        private final List<ConcreteSyntaxTree.Node> statements = new ArrayList<>();
+        private boolean started = false;
+
+        StatementListFrame(boolean strict) {
+            super(Production.STATEMENT_LIST);
+            this.strict = strict;
+        }
+
+        @Override
+        Frame resume(ConcreteSyntaxTree.Node statement) {
+            if (started) {
+                var statementLine = parser.statementLine(statement, strict);
+                if (!parser.isMatched(statementLine)) {
+                    return done(nodes.statementList(statements));
+                }
+                statements.add(statementLine);
+                parser.forgetMemoizedExpressions();
+            }
+            started = true;
+
+            if (!parser.isNotEOF()) {
+                return done(nodes.statementList(statements));
+            }
+            parser.consumeNewLines();
+            return new StatementFrame();
+        }
+    }
+
+    private enum StatementRule {
+        COMPOUND, LABEL, IF_ELSE, SWITCH, WHILE, FOR, TRY_CATCH, BREAK, CONTINUE, NOOP, EXPRESSION
+    }
+
+    private static final StatementRule[] RULES = StatementRule.values();
+
+    /**
+     * Alternatives are tried in the same order as in the recursive descent parser.
+     * The nested rule frames are pushed only when the current token can start them,
+     * otherwise they wouldn't match anyway.
+     */
+    private final class StatementFrame extends Frame {
+        private int rule = -1;
+
+        StatementFrame() {
+            super(Production.STATEMENT);
+        }
+
+        @Override
+        Frame resume(ConcreteSyntaxTree.Node nested) {
+            if (parser.isMatched(nested)) {
+                return done(nodes.statement(switch (RULES[rule]) {
+                    case IF_ELSE, SWITCH -> nodes.selectionStatement(nested);
+                    case WHILE, FOR -> nodes.iterationStatement(nested);
+                    default -> nested;
+                }));
+            }
+
+            while (++rule < RULES.length) {
+                var nestedStatement = nestedStatementFrame(RULES[rule]);
+                if (nestedStatement != null) {
+                    return nestedStatement;
+                }
+
+                var statement = parseSimpleStatement(RULES[rule]);
+                if (parser.isMatched(statement)) {
+                    return done(nodes.statement(statement));
+                }
+            }
+            return done(null);
+        }
+
+        private Frame nestedStatementFrame(StatementRule rule) {
+            return switch (rule) {
+                case COMPOUND -> parser.check(TOKEN_LEFT_BRACES) ? new CompoundFrame() : null;
+                case IF_ELSE -> parser.check(TOKEN_IF) ? new IfElseFrame() : null;
+                case SWITCH -> parser.check(TOKEN_SWITCH) ? new SwitchFrame() : null;
+                case WHILE -> parser.check(TOKEN_WHILE) ? new WhileFrame() : null;
+                case FOR -> parser.check(TOKEN_FOR) ? new ForFrame() : null;
+                case TRY_CATCH -> parser.check(TOKEN_TRY) ? new TryCatchFrame() : null;
+                default -> null;
+            };
+        }
+
+        private ConcreteSyntaxTree.Node parseSimpleStatement(StatementRule rule) {
+            return switch (rule) {
+                case LABEL -> parser.parseLabelStatement();
+                case BREAK -> parser.parseBreakStatement();
+                case CONTINUE -> parser.parseContinueStatement();
+                case NOOP -> parser.parseNoopStatement();
+                case EXPRESSION -> parser.parseExpressionStatement();
+                default -> null;
+            };
+        }
+    }
+
+    private final class CompoundFrame extends Frame {
+        private Token tokenLeftBraces;
+        private final List<ConcreteSyntaxTree.Node> statements = new ArrayList<>();
+
+        CompoundFrame() {
+            super(Production.COMPOUND_STATEMENT);
+        }
+
+        @Override
+        Frame resume(ConcreteSyntaxTree.Node statement) {
+            if (tokenLeftBraces == null) {
+                tokenLeftBraces = parser.consume(TOKEN_LEFT_BRACES);
+                if (!parser.isMatched(tokenLeftBraces)) {
+                    return done(null);
+                }
+                parser.consumeNewLines();
+            } else {
+                if (!parser.isMatched(statement)) {
+                    return done(null);
+                }
+                statements.add(statement);
+                parser.consumeNewLines();
+            }
+
+            if (parser.isNotEOF() && !parser.check(TOKEN_RIGHT_BRACES)) {
+                return new StatementFrame();
+            }
+
+            var tokenRightBraces = parser.consume(TOKEN_RIGHT_BRACES);
+            if (!parser.isMatched(tokenRightBraces)) {
+                parser.errorBadToken(parser.peekToken(), TOKEN_RIGHT_BRACES);
+                return done(null);
+            }
+
+            return done(nodes.compoundStatement(tokenLeftBraces, statements, tokenRightBraces));
+        }
+    }
+
+    private final class IfElseFrame extends Frame {
+        private Token ifToken;
+        private ConcreteSyntaxTree.Node primaryExpression;
+        private ConcreteSyntaxTree.Node statement;
+        private Token optionalSemicolon;
+        private Token tokenElse;
+
+        IfElseFrame() {
+            super(Production.IF_ELSE_STATEMENT);
+        }
+
+        @Override
+        Frame resume(ConcreteSyntaxTree.Node nested) {
+            if (ifToken == null) {
+                ifToken = parser.consume(TOKEN_IF);
+                if (!parser.isMatched(ifToken)) {
+                    return done(null);
+                }
+                parser.consumeNewLines();
+
+                primaryExpression = parser.parsePrimaryExpression();
+                if (!parser.isMatched(primaryExpression)) {
+                    parser.errorBadToken(parser.peekToken(), "primary expression");
+                    return done(null);
+                }
+                parser.consumeNewLines();
+
+                return new StatementFrame();
+            }
+
+            if (statement == null) {
+                statement = nested;
+                if (!parser.isMatched(statement)) {
+                    parser.errorBadToken(parser.peekToken(), "statement");
+                    return done(null);
+                }
+
+                // optional semicolon at the end of the statement
+                optionalSemicolon = parser.consume(TOKEN_SEMICOLON);
+
+                parser.consumeNewLines();
+
+                tokenElse = parser.consume(TOKEN_ELSE);
+                if (parser.isMatched(tokenElse)) {
+                    parser.consumeNewLines();
+                    return new StatementFrame();
+                }
+
+                // We consumed all new lines looking for else statement
+                // We didn't find it so we end the if statement with a new line
+                parser.rewindNewLine();
+                return done(nodes.ifElseStatement(ifToken, primaryExpression, statement, optionalSemicolon, null, null));
+            }
+
+            if (!parser.isMatched(nested)) {
+                parser.errorBadToken(parser.peekToken(), "else statement");
+                return done(null);
+            }
+            return done(nodes.ifElseStatement(ifToken, primaryExpression, statement, optionalSemicolon, tokenElse, nested));
+        }
+    }
+
+    private final class SwitchFrame extends Frame {
+        private Token tokenSwitch;
+        private ConcreteSyntaxTree.Node primaryExpression;
+
+        SwitchFrame() {
+            super(Production.SWITCH_STATEMENT);
+        }
+
+        @Override
+        Frame resume(ConcreteSyntaxTree.Node compoundStatement) {
+            if (tokenSwitch == null) {
+                tokenSwitch = parser.consume(TOKEN_SWITCH);
+                if (!parser.isMatched(tokenSwitch)) {
+                    return done(null);
+                }
+                parser.consumeNewLines();
+
+                primaryExpression = parser.parsePrimaryExpression();
+                if (!parser.isMatched(primaryExpression)) {
+                    parser.errorBadToken(parser.peekToken(), "primary expression");
+                    return done(null);
+                }
+                parser.consumeNewLines();
+
+                return new CompoundFrame();
+            }
+
+            if (!parser.isMatched(compoundStatement)) {
+                parser.errorBadToken(parser.peekToken(), "block of statements beginning with " + TOKEN_LEFT_BRACES.nameWithExample());
+                return done(null);
+            }
+
+            return done(nodes.switchStatement(tokenSwitch, primaryExpression, compoundStatement));
+        }
+    }
+
+    private final class WhileFrame extends Frame {
+        private Token tokenWhile;
+        private ConcreteSyntaxTree.Node primaryExpression;
+
+        WhileFrame() {
+            super(Production.WHILE_STATEMENT);
+        }
+
+        @Override
+        Frame resume(ConcreteSyntaxTree.Node loopStatement) {
+            if (tokenWhile == null) {
+                tokenWhile = parser.consume(TOKEN_WHILE);
+                if (!parser.isMatched(tokenWhile)) {
+                    return done(null);
+                }
+                parser.consumeNewLines();
+
+                primaryExpression = parser.parsePrimaryExpression();
+                if (!parser.isMatched(primaryExpression)) {
+                    parser.errorBadToken(parser.peekToken(), "primary expression");
+                    return done(null);
+                }
+                parser.consumeNewLines();
+
+                return new StatementFrame();
+            }
+
+            if (!parser.isMatched(loopStatement)) {
+                parser.errorBadToken(parser.peekToken(), "loop body");
+                return done(null);
+            }
+
+            return done(nodes.whileStatement(tokenWhile, primaryExpression, loopStatement));
+        }
+    }
+
+    private final class ForFrame extends Frame {
+        private enum Stage { FOR, PRE_STATEMENT, POST_STATEMENTS, LOOP_STATEMENT }
+
+        private Stage stage = Stage.FOR;
+        private Token tokenFor;
+        private Token tokenLeftBracket;
+        private ConcreteSyntaxTree.Node preStatement;
+        private Token tokenStatementSemicolon;
+        private ConcreteSyntaxTree.Node expression;
+        private Token expressionSemicolon;
+        private ConcreteSyntaxTree.Node postStatements;
+        private Token tokenRightBracket;
+
+        ForFrame() {
+            super(Production.FOR_STATEMENT);
+        }
+
+        @Override
+        Frame resume(ConcreteSyntaxTree.Node nested) {
+            return switch (stage) {
+                case FOR -> parseFor();
+                case PRE_STATEMENT -> parsePreStatement(nested);
+                case POST_STATEMENTS -> parsePostStatements(nested);
+                case LOOP_STATEMENT -> parseLoopStatement(nested);
+            };
+        }
+
+        private Frame parseFor() {
+            tokenFor = parser.consume(TOKEN_FOR);
+            if (!parser.isMatched(tokenFor)) {
+                return done(null);
+            }
+            parser.consumeNewLines();
+
+            tokenLeftBracket = parser.consume(TOKEN_LEFT_BRACKET);
+            if (!parser.isMatched(tokenLeftBracket)) {
+                parser.errorBadToken(parser.peekToken(), TOKEN_LEFT_BRACKET);
+                return done(null);
+            }
+            parser.consumeNewLines();
+
+            if (parser.check(TOKEN_SEMICOLON)) {
+                preStatement = null;
+                tokenStatementSemicolon = parser.consume(TOKEN_SEMICOLON);
+                return parseExpression();
+            }
+
+            stage = Stage.PRE_STATEMENT;
+            return new StatementFrame();
+        }
+
+        private Frame parsePreStatement(ConcreteSyntaxTree.Node statement) {
+            preStatement = statement;
+            if (!parser.isMatched(preStatement)) {
+                parser.errorBadToken(parser.peekToken(), "statement");
+                return done(null);
+            }
+            parser.consumeNewLines();
+
+            tokenStatementSemicolon = parser.consume(TOKEN_SEMICOLON);
+            if (!parser.isMatched(tokenStatementSemicolon)) {
+                parser.errorBadToken(parser.peekToken(), TOKEN_SEMICOLON);
+                return done(null);
+            }
+            parser.consumeNewLines();
+
+            return parseExpression();
+        }
+
+        private Frame parseExpression() {
+            expression = parser.parseExpression();
+            if (!parser.isMatched(expression)) {
+                parser.errorBadToken(parser.peekToken(), "expression");
+                return done(null);
+            }
+            parser.consumeNewLines();
+
+            expressionSemicolon = parser.consume(TOKEN_SEMICOLON);
+            if (!parser.isMatched(expressionSemicolon)) {
+                parser.errorBadToken(parser.peekToken(), TOKEN_SEMICOLON);
+                return done(null);
+            }
+            parser.consumeNewLines();
+
+            stage = Stage.POST_STATEMENTS;
+            return new StatementListFrame(false);
+        }
+
+        private Frame parsePostStatements(ConcreteSyntaxTree.Node statements) {
+            postStatements = statements;
+            if (!parser.isMatched(postStatements)) {
+                parser.errorBadToken(parser.peekToken(), "statement");
+                return done(null);
+            }
+            parser.consumeNewLines();
+
+            tokenRightBracket = parser.consume(TOKEN_RIGHT_BRACKET);
+            if (!parser.isMatched(tokenRightBracket)) {
+                parser.errorBadToken(parser.peekToken(), TOKEN_RIGHT_BRACKET);
+                return done(null);
+            }
+            parser.consumeNewLines();
+
+            stage = Stage.LOOP_STATEMENT;
+            return new StatementFrame();
+        }
+
+        private Frame parseLoopStatement(ConcreteSyntaxTree.Node loopStatement) {
+            if (!parser.isMatched(loopStatement)) {
+                parser.errorBadToken(parser.peekToken(), "loop body");
+                return done(null);
+            }
+
+            return done(nodes.forStatement(
+                    tokenFor,
+                    tokenLeftBracket,
+                    preStatement,
+                    tokenStatementSemicolon,
+                    expression,
+                    expressionSemicolon,
+                    postStatements,
+                    tokenRightBracket,
+                    loopStatement
+            ));
+        }
+    }
+
+    private final class TryCatchFrame extends Frame {
+        private Token tokenTry;
+        private ConcreteSyntaxTree.Node tryStatement;
+        private Token tokenCatch;
+
+        TryCatchFrame() {
+            super(Production.TRY_CATCH_STATEMENT);
+        }
+
+        @Override
+        Frame resume(ConcreteSyntaxTree.Node compoundStatement) {
+            if (tokenTry == null) {
+                tokenTry = parser.consume(TOKEN_TRY);
+                if (!parser.isMatched(tokenTry)) {
+                    return done(null);
+                }
+                parser.consumeNewLines();
+
+                return new CompoundFrame();
+            }
+
+            if (tryStatement == null) {
+                tryStatement = compoundStatement;
+                if (!parser.isMatched(tryStatement)) {
+                    parser.errorBadToken(parser.peekToken(), "block of statements beginning with " + TOKEN_LEFT_BRACES.nameWithExample());
+                    return done(null);
+                }
+                parser.consumeNewLines();
+
+                tokenCatch = parser.consume(TOKEN_CATCH);
+                if (!parser.isMatched(tokenCatch)) {
+                    parser.errorBadToken(parser.peekToken(), TOKEN_CATCH);
+                    return done(null);
+                }
+                parser.consumeNewLines();
+
+                return new CompoundFrame();
+            }
+
+            if (!parser.isMatched(compoundStatement)) {
+                parser.errorBadToken(parser.peekToken(), TOKEN_LEFT_BRACES);
+                return done(null);
+            }
+
+            return done(nodes.tryCatchStatement(tokenTry, tryStatement, tokenCatch, compoundStatement));
+        }
+    }
+}
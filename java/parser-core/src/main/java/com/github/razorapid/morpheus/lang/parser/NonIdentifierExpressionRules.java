@@ -3,7 +3,6 @@ package com.github.razorapid.morpheus.lang.parser;
 import com.github.razorapid.morpheus.lang.Token;
 import com.github.razorapid.morpheus.lang.TokenType;
 import com.github.razorapid.morpheus.lang.cst.ConcreteSyntaxTree;
-import com.github.razorapid.morpheus.lang.cst.ConcreteSyntaxTreeBuilder;
 import lombok.Getter;
 
 import java.util.HashMap;
@@ -55,8 +54,6 @@ import static com.github.razorapid.morpheus.lang.cst.ConcreteSyntaxTree.NodeType
 import static com.github.razorapid.morpheus.lang.cst.ConcreteSyntaxTree.NodeType.STRING_LITERAL;
 
 class NonIdentifierExpressionRules {
-    private static final ConcreteSyntaxTreeBuilder nodes = new ConcreteSyntaxTreeBuilder();
-
     private final Parser parser;
     @Getter
     private final Map<TokenType, ParseRule> nonIdentifierPrimaryExpressionRules;
@@ -94,16 +91,17 @@ class NonIdentifierExpressionRules {
     }
 
     private ConcreteSyntaxTree.Node parseScalarComponentExpression() {
+        var started = parser.profiler().enter(Production.SCALAR_COMPONENT);
         var expression = parseIdentifierScalarComponentExpression();
         if (parser.isMatched(expression)) {
-            return nodes.scalarComponentExpression(expression);
+            return parser.exit(Production.SCALAR_COMPONENT, started, parser.nodes().scalarComponentExpression(expression));
         }
 
         expression = parseNonIdentifierScalarComponentExpression();
         if (parser.isMatched(expression)) {
-            return nodes.scalarComponentExpression(expression);
+            return parser.exit(Production.SCALAR_COMPONENT, started, parser.nodes().scalarComponentExpression(expression));
         }
-        return null;
+        return parser.exit(Production.SCALAR_COMPONENT, started, null);
     }
 
     private ConcreteSyntaxTree.Node parseIdentifierScalarComponentExpression() {
@@ -111,7 +109,7 @@ class NonIdentifierExpressionRules {
         if (!parser.isMatched(tokenIdentifier)) {
             return null;
         }
-        return nodes.identifierScalarComponentExpression(tokenIdentifier);
+        return parser.nodes().identifierScalarComponentExpression(tokenIdentifier);
     }
 
     private ConcreteSyntaxTree.Node parseNonIdentifierScalarComponentExpression() {
@@ -120,7 +118,7 @@ class NonIdentifierExpressionRules {
 
     private ConcreteSyntaxTree.Node parseNonIdentifierScalarComponentExpression(Operator precedence) {
         var result = parser.parseRules(precedence, nonIdentifierScalarComponentExpressionRules);
-        return parser.isMatched(result) ? nodes.nonIdentifierScalarComponentExpression(result) : null;
+        return parser.isMatched(result) ? parser.nodes().nonIdentifierScalarComponentExpression(result) : null;
     }
 
     ParseRule.ParseFn VECTOR_OR_GROUP_EXPRESSION_FN = (ConcreteSyntaxTree.Node lhs, ParseRule rule, Parser parser) -> {
@@ -144,7 +142,7 @@ class NonIdentifierExpressionRules {
                 // Try vector
                 parser.restore(pos);
             } else {
-                return nodes.groupingExpression(tokenLeftBracket, expression, tokenRightBracket);
+                return parser.nodes().groupingExpression(tokenLeftBracket, expression, tokenRightBracket);
             }
         }
 
@@ -179,7 +177,7 @@ class NonIdentifierExpressionRules {
             return null;
         }
 
-        return nodes.vectorDeclarationExpression(
+        return parser.nodes().vectorDeclarationExpression(
                 tokenLeftBracket,
                 numberExpressionX,
                 numberExpressionY,
@@ -198,7 +196,7 @@ class NonIdentifierExpressionRules {
             parser.errorBadToken(parser.currentToken(), "non identifier primary expression");
             return null;
         }
-        return nodes.targetnameExpression(tokenDollar, primaryExpression);
+        return parser.nodes().targetnameExpression(tokenDollar, primaryExpression);
     };
 
     ParseRule.ParseFn TARGETNAME_SCALAR_COMPONENT_EXPRESSION_FN = (ConcreteSyntaxTree.Node lhs, ParseRule rule, Parser parser) -> {
@@ -211,7 +209,7 @@ class NonIdentifierExpressionRules {
             parser.errorBadToken(parser.currentToken(), "number expression");
             return null;
         }
-        return nodes.targetnameScalarComponentExpression(tokenDollar, expression);
+        return parser.nodes().targetnameScalarComponentExpression(tokenDollar, expression);
     };
 
     ParseRule.ParseFn MEMBER_SELECTION_EXPRESSION_FN = (ConcreteSyntaxTree.Node lhs, ParseRule rule, Parser parser) -> {
@@ -243,7 +241,7 @@ class NonIdentifierExpressionRules {
             return null;
         }
 
-        return nodes.memberSelectionExpression(lhs, tokenPeriod, tokenMemberName);
+        return parser.nodes().memberSelectionExpression(lhs, tokenPeriod, tokenMemberName);
     };
 
     ParseRule.ParseFn SUBSCRIPT_EXPRESSION_FN = (ConcreteSyntaxTree.Node lhs, ParseRule rule, Parser parser) -> {
@@ -261,6 +259,6 @@ class NonIdentifierExpressionRules {
             parser.errorBadToken(parser.currentToken(), TOKEN_RIGHT_SQUARE_BRACKET);
             return null;
         }
-        return nodes.subscriptExpression(lhs, tokenLeftSqBracket, expression, tokenRightSqBracket);
+        return parser.nodes().subscriptExpression(lhs, tokenLeftSqBracket, expression, tokenRightSqBracket);
     };
 }
@@ -0,0 +1,398 @@
+package com.github.razorapid.morpheus.lang.parser;
+
+import com.github.razorapid.morpheus.lang.SectionFile;
+import com.github.razorapid.morpheus.lang.Source;
+import com.github.razorapid.morpheus.lang.SourcePos;
+import com.github.razorapid.morpheus.lang.Token;
+import com.github.razorapid.morpheus.lang.TokenType;
+import com.github.razorapid.morpheus.lang.cst.ConcreteSyntaxTree;
+import com.github.razorapid.morpheus.lang.cst.ConcreteSyntaxTreeFile;
+import com.github.razorapid.morpheus.lang.lexer.Lexer;
+import lombok.EqualsAndHashCode;
+import lombok.NonNull;
+import lombok.Value;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.AbstractList;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.RandomAccess;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Cache of lexed and parsed scripts, addressed by their content.
+ *
+ * Entries are keyed by a 128-bit hash of the text of the script and {@link Parser#VERSION}, so a script
+ * is parsed again only when it changes or the parser does. The name of the script isn't a part of the key,
+ * scripts with the same text share the entry. An entry holds the tokens, the tree and the parse errors, stored
+ * in a {@link SectionFile} with the tree nested as a {@link ConcreteSyntaxTreeFile}.
+ *
+ * The memory tier keeps the entries as buffers, up to the given number of bytes, and evicts the least recently
+ * used ones beyond it. The disk tier, if there's one, keeps an entry file for every script parsed and is never
+ * evicted: it survives the process and is shared by the caches created on the same directory.
+ * An entry file of another version, or a broken one, is a miss and it's written again.
+ *
+ * The cache is thread-safe. Concurrent lookups of the same script wait for a single thread to parse it.
+ */
+public final class ParseCache {
+    private static final int MAGIC = 0x4543504d;
+    private static final int FORMAT_VERSION = 2;
+    private static final long STAMP = SectionFile.stamp(TokenType.class) * 31 + Parser.VERSION;
+    private static final String EXTENSION = ".parse";
+
+    private static final TokenType[] TOKEN_TYPES = TokenType.values();
+
+    private static final int TOKEN_TYPES_SECTION = 0;
+    private static final int TOKEN_LEXEMES = 1;
+    private static final int TOKEN_POSITIONS = 2;
+    private static final int TOKEN_LINES = 3;
+    private static final int TOKEN_COLS = 4;
+    private static final int LEXEME_TABLE = 5;
+    private static final int ERROR_POSITIONS = 6;
+    private static final int ERROR_LINES = 7;
+    private static final int ERROR_COLS = 8;
+    private static final int ERROR_MESSAGES = 9;
+    private static final int TREE = 10;
+    private static final int SECTIONS = 11;
+
+    private final long maxMemoryBytes;
+    private final Path directory;
+
+    private final LinkedHashMap<Key, ByteBuffer> memory = new LinkedHashMap<>(16, 0.75f, true);
+    private long memoryBytes = 0;
+    private final ConcurrentMap<Key, CompletableFuture<ByteBuffer>> computations = new ConcurrentHashMap<>();
+
+    private final LongAdder memoryHits = new LongAdder();
+    private final LongAdder diskHits = new LongAdder();
+    private final LongAdder misses = new LongAdder();
+    private final LongAdder joined = new LongAdder();
+    private final LongAdder evictions = new LongAdder();
+
+    private ParseCache(long maxMemoryBytes, Path directory) {
+        this.maxMemoryBytes = maxMemoryBytes;
+        this.directory = directory;
+    }
+
+    /**
+     * Cache without the disk tier
+     *
+     * @param maxMemoryBytes size of the entries kept in the memory
+     */
+    public static ParseCache inMemory(long maxMemoryBytes) {
+        return new ParseCache(maxMemoryBytes, null);
+    }
+
+    /**
+     * Cache with the disk tier in the directory, the directory is created if it doesn't exist
+     *
+     * @param maxMemoryBytes size of the entries kept in the memory
+     */
+    public static ParseCache persistent(long maxMemoryBytes, @NonNull Path directory) throws IOException {
+        Files.createDirectories(directory);
+        return new ParseCache(maxMemoryBytes, directory);
+    }
+
+    /**
+     * Looks the script up in the memory, then on the disk, and lexes and parses it only if it isn't in either
+     *
+     * @throws IOException if the entry of a parsed script couldn't be written to the disk
+     */
+    public Entry parse(@NonNull Source source) throws IOException {
+        var key = Key.of(source);
+        var buffer = remembered(key);
+        if (buffer != null) {
+            memoryHits.increment();
+            return entry(buffer, source);
+        }
+
+        var computation = new CompletableFuture<ByteBuffer>();
+        var pending = computations.putIfAbsent(key, computation);
+        if (pending != null) {
+            joined.increment();
+            return entry(join(pending), source);
+        }
+        try {
+            buffer = remembered(key);
+            if (buffer != null) {
+                memoryHits.increment();
+            } else {
+                buffer = load(key);
+                if (buffer != null) {
+                    diskHits.increment();
+                } else {
+                    misses.increment();
+                    buffer = parseEntry(source);
+                    store(key, buffer);
+                }
+                remember(key, buffer);
+            }
+            computation.complete(buffer);
+        } catch (IOException | RuntimeException | Error e) {
+            computation.completeExceptionally(e);
+            throw e;
+        } finally {
+            computations.remove(key, computation);
+        }
+        return entry(buffer, source);
+    }
+
+    public Stats stats() {
+        synchronized (memory) {
+            return new Stats(memoryHits.sum(), diskHits.sum(), misses.sum(), joined.sum(), evictions.sum(), memory.size(), memoryBytes);
+        }
+    }
+
+    private ByteBuffer remembered(Key key) {
+        synchronized (memory) {
+            return memory.get(key);
+        }
+    }
+
+    private void remember(Key key, ByteBuffer buffer) {
+        if (buffer.capacity() > maxMemoryBytes) {
+            return;
+        }
+        synchronized (memory) {
+            var previous = memory.put(key, buffer);
+            memoryBytes += buffer.capacity() - (previous != null ? previous.capacity() : 0);
+            var entries = memory.entrySet().iterator();
+            while (memoryBytes > maxMemoryBytes && entries.hasNext()) {
+                var eldest = entries.next();
+                if (eldest.getKey().equals(key)) {
+                    continue;
+                }
+                memoryBytes -= eldest.getValue().capacity();
+                entries.remove();
+                evictions.increment();
+            }
+        }
+    }
+
+    /**
+     * @return the entry file mapped into the memory, null if there's none or it can't be used
+     */
+    private ByteBuffer load(Key key) {
+        if (directory == null) {
+            return null;
+        }
+        var path = directory.resolve(key + EXTENSION);
+        if (!Files.isRegularFile(path)) {
+            return null;
+        }
+        try (var channel = FileChannel.open(path, StandardOpenOption.READ)) {
+            var buffer = channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size());
+            entry(buffer, null);
+            return buffer;
+        } catch (IOException e) {
+            return null;
+        }
+    }
+
+    /**
+     * Writes the entry file next to its place and moves it there, so a concurrent reader never sees it half-written
+     */
+    private void store(Key key, ByteBuffer buffer) throws IOException {
+        if (directory == null) {
+            return;
+        }
+        var path = directory.resolve(key + EXTENSION);
+        var temporary = Files.createTempFile(directory, key.toString(), ".tmp");
+        try (var channel = FileChannel.open(temporary, StandardOpenOption.WRITE)) {
+            var contents = buffer.duplicate().clear();
+            while (contents.hasRemaining()) {
+                channel.write(contents);
+            }
+        } catch (IOException e) {
+            Files.deleteIfExists(temporary);
+            throw e;
+        }
+        Files.move(temporary, path, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+    }
+
+    private static ByteBuffer parseEntry(Source source) {
+        var tokens = new Lexer(source).scan();
+        var parser = new Parser(source, tokens);
+        var tree = parser.parse();
+        var tokenList = tokens.list();
+        var errors = parser.errors();
+
+        var count = tokenList.size();
+        var types = new byte[count];
+        var lexemes = new int[count];
+        var positions = new int[count];
+        var lines = new int[count];
+        var cols = new int[count];
+        var lexemeIds = new HashMap<String, Integer>();
+        for (int i = 0; i < count; i++) {
+            var token = tokenList.get(i);
+            types[i] = (byte) token.type().ordinal();
+            lexemes[i] = lexemeIds.computeIfAbsent(token.lexeme(), it -> lexemeIds.size());
+            positions[i] = (int) token.pos().pos();
+            lines[i] = (int) token.line();
+            cols[i] = (int) token.col();
+        }
+        var lexemeTable = new String[lexemeIds.size()];
+        lexemeIds.forEach((lexeme, id) -> lexemeTable[id] = lexeme);
+
+        var errorPositions = new int[errors.size()];
+        var errorLines = new int[errors.size()];
+        var errorCols = new int[errors.size()];
+        var errorMessages = new String[errors.size()];
+        for (int i = 0; i < errors.size(); i++) {
+            var error = errors.get(i);
+            errorPositions[i] = (int) error.pos().pos();
+            errorLines[i] = (int) error.pos().line();
+            errorCols[i] = (int) error.pos().col();
+            errorMessages[i] = error.error();
+        }
+
+        return new SectionFile.Writer(MAGIC, FORMAT_VERSION, STAMP)
+                .bytes(types, count)
+                .ints(lexemes, count)
+                .ints(positions, count)
+                .ints(lines, count)
+                .ints(cols, count)
+                .strings(lexemeTable)
+                .ints(errorPositions, errors.size())
+                .ints(errorLines, errors.size())
+                .ints(errorCols, errors.size())
+                .strings(errorMessages)
+                .bytes(ConcreteSyntaxTreeFile.toBuffer(tree))
+                .toBuffer();
+    }
+
+    /**
+     * @throws IOException if the buffer doesn't hold an entry of this version, or its tree isn't of this version
+     */
+    private static Entry entry(ByteBuffer buffer, Source source) throws IOException {
+        var file = SectionFile.of(buffer, MAGIC, FORMAT_VERSION, STAMP);
+        if (file.sections() != SECTIONS) {
+            throw new IOException("Parse cache entry has " + file.sections() + " sections, expected " + SECTIONS);
+        }
+        return new Entry(file, source, ConcreteSyntaxTreeFile.of(file.slice(TREE), source));
+    }
+
+    private static ByteBuffer join(CompletableFuture<ByteBuffer> computation) throws IOException {
+        try {
+            return computation.join();
+        } catch (CompletionException e) {
+            if (e.getCause() instanceof IOException io) {
+                throw io;
+            }
+            if (e.getCause() instanceof RuntimeException runtime) {
+                throw runtime;
+            }
+            if (e.getCause() instanceof Error error) {
+                throw error;
+            }
+            throw e;
+        }
+    }
+
+    /**
+     * Parsed script read from the cache, tokens and nodes are created on access
+     */
+    public static final class Entry {
+        private final SectionFile file;
+        private final Source source;
+        private final ConcreteSyntaxTreeFile tree;
+
+        private Entry(SectionFile file, Source source, ConcreteSyntaxTreeFile tree) {
+            this.file = file;
+            this.source = source;
+            this.tree = tree;
+        }
+
+        public List<Token> tokens() {
+            return new Tokens();
+        }
+
+        public ConcreteSyntaxTree tree() {
+            return tree.tree();
+        }
+
+        public List<ParseError> errors() {
+            return new Errors();
+        }
+
+        private final class Tokens extends AbstractList<Token> implements RandomAccess {
+            @Override
+            public Token get(int index) {
+                return Token.of(
+                        TOKEN_TYPES[file.byteAt(TOKEN_TYPES_SECTION, index)],
+                        file.string(LEXEME_TABLE, file.intAt(TOKEN_LEXEMES, index)),
+                        file.intAt(TOKEN_POSITIONS, index),
+                        file.intAt(TOKEN_LINES, index),
+                        file.intAt(TOKEN_COLS, index)
+                );
+            }
+
+            @Override
+            public int size() {
+                return file.length(TOKEN_TYPES_SECTION);
+            }
+        }
+
+        private final class Errors extends AbstractList<ParseError> implements RandomAccess {
+            @Override
+            public ParseError get(int index) {
+                var pos = new SourcePos(file.intAt(ERROR_POSITIONS, index), file.intAt(ERROR_LINES, index), file.intAt(ERROR_COLS, index));
+                return new ParseError(source, pos, file.string(ERROR_MESSAGES, index));
+            }
+
+            @Override
+            public int size() {
+                return file.length(ERROR_POSITIONS);
+            }
+        }
+    }
+
+    @Value
+    @EqualsAndHashCode
+    public static class Stats {
+        long memoryHits;
+        long diskHits;
+        /** lookups that lexed and parsed the script */
+        long misses;
+        /** lookups that waited for another thread parsing (or loading) the same script */
+        long joined;
+        long evictions;
+        /** entries in the memory tier */
+        long entries;
+        long memoryBytes;
+    }
+
+    private record Key(long high, long low) {
+        /**
+         * Two 64-bit hashes of the text over the characters, one FNV-1a, the other multiply-rotate,
+         * both seeded with the version of the parser
+         */
+        static Key of(Source source) {
+            var text = source.source();
+            var high = 0xcbf29ce484222325L ^ Parser.VERSION;
+            var low = 0x9e3779b97f4a7c15L + Parser.VERSION;
+            for (int i = 0; i < text.length(); i++) {
+                var c = text.charAt(i);
+                high = (high ^ c) * 0x100000001b3L;
+                low = Long.rotateLeft(low + c * 0xc2b2ae3d27d4eb4fL, 31) * 0x9e3779b97f4a7c15L;
+            }
+            return new Key(high, low ^ text.length());
+        }
+
+        @Override
+        public String toString() {
+            return String.format("%016x%016x", high, low);
+        }
+    }
+}
@@ -1,7 +1,6 @@
 package com.github.razorapid.morpheus.lang.parser;
 
 import com.github.razorapid.morpheus.lang.TokenType;
-import com.github.razorapid.morpheus.lang.cst.ConcreteSyntaxTreeBuilder;
 import com.github.razorapid.morpheus.lang.cst.ConcreteSyntaxTree;
 import lombok.Data;
 import lombok.RequiredArgsConstructor;
@@ -11,7 +10,6 @@ import static lombok.AccessLevel.PRIVATE;
 @Data
 @RequiredArgsConstructor(access = PRIVATE)
 class ParseRule {
-    private static final ConcreteSyntaxTreeBuilder nodes = new ConcreteSyntaxTreeBuilder();
     private final ParseFn prefix;
     private final ParseFn infix;
     private final Operator precedence;
@@ -36,7 +34,7 @@ class ParseRule {
                 if (!parser.isMatched(token)) {
                     return null;
                 }
-                return nodes.literalExpression(nodeType, name, token);
+                return parser.nodes().literalExpression(nodeType, name, token);
             };
         }
 
@@ -50,24 +48,7 @@ class ParseRule {
                 if (!parser.isMatched(expression)) {
                     return parser.error(parser.lastToken(), "bad token - got " + parser.lastToken().type().name() + " expected non identify primary expression");
                 }
-                return nodes.unaryNonIdentifierExpression(rule.prefix != null, nodeType, name, token, expression);
-            };
-        }
-
-        static ParseRule.ParseFn binary(ConcreteSyntaxTree.NodeType nodeType, String name, TokenType operator) {
-            return (ConcreteSyntaxTree.Node lhs, ParseRule rule, Parser parser) -> {
-                var token = parser.consume(operator);
-                if (!parser.isMatched(token)) {
-                    return null;
-                }
-
-                parser.consumeNewLines();
-
-                var expression = parser.parseExpression(rule.precedence());
-                if (!parser.isMatched(expression)) {
-                    return parser.error(parser.lastToken(), "bad token - got " + parser.lastToken().type().name() + " expected expression");
-                }
-                return nodes.binarySubexpression(nodeType, name, lhs, token, expression);
+                return parser.nodes().unaryNonIdentifierExpression(rule.prefix != null, nodeType, name, token, expression);
             };
         }
     }
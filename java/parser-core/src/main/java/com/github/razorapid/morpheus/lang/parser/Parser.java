@@ -0,0 +1,1399 @@
+package com.github.razorapid.morpheus.lang.parser;
+
+import com.github.razorapid.morpheus.lang.CancellationToken;
+import com.github.razorapid.morpheus.lang.CancelledException;
+import com.github.razorapid.morpheus.lang.Source;
+import com.github.razorapid.morpheus.lang.Token;
+import com.github.razorapid.morpheus.lang.TokenType;
+import com.github.razorapid.morpheus.lang.Tokens;
+import com.github.razorapid.morpheus.lang.cst.ConcreteSyntaxTree;
+import com.github.razorapid.morpheus.lang.cst.ConcreteSyntaxTreeBuilder;
+import lombok.NonNull;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.NoSuchElementException;
+import java.util.function.Supplier;
+
+import static com.github.razorapid.morpheus.lang.parser.Operator.BITWISE_AND;
+import static com.github.razorapid.morpheus.lang.parser.Operator.BITWISE_OR;
+import static com.github.razorapid.morpheus.lang.parser.Operator.BITWISE_XOR;
+import static com.github.razorapid.morpheus.lang.parser.Operator.DIVIDE;
+import static com.github.razorapid.morpheus.lang.parser.Operator.EQUALITY;
+import static com.github.razorapid.morpheus.lang.parser.Operator.GREATER_THAN;
+import static com.github.razorapid.morpheus.lang.parser.Operator.GREATER_THAN_OR_EQUAL;
+import static com.github.razorapid.morpheus.lang.parser.Operator.INEQUALITY;
+import static com.github.razorapid.morpheus.lang.parser.Operator.LESS_THAN;
+import static com.github.razorapid.morpheus.lang.parser.Operator.LESS_THAN_OR_EQUAL;
+import static com.github.razorapid.morpheus.lang.parser.Operator.LOGICAL_AND;
+import static com.github.razorapid.morpheus.lang.parser.Operator.LOGICAL_OR;
+import static com.github.razorapid.morpheus.lang.parser.Operator.MINUS;
+import static com.github.razorapid.morpheus.lang.parser.Operator.MODULUS;
+import static com.github.razorapid.morpheus.lang.parser.Operator.MULTIPLY;
+import static com.github.razorapid.morpheus.lang.parser.Operator.NONE;
+import static com.github.razorapid.morpheus.lang.parser.Operator.NULL;
+import static com.github.razorapid.morpheus.lang.parser.Operator.PLUS;
+import static com.github.razorapid.morpheus.lang.TokenType.TOKEN_ASSIGNMENT;
+import static com.github.razorapid.morpheus.lang.TokenType.TOKEN_BITWISE_AND;
+import static com.github.razorapid.morpheus.lang.TokenType.TOKEN_BITWISE_EXCL_OR;
+import static com.github.razorapid.morpheus.lang.TokenType.TOKEN_BITWISE_OR;
+import static com.github.razorapid.morpheus.lang.TokenType.TOKEN_BREAK;
+import static com.github.razorapid.morpheus.lang.TokenType.TOKEN_CASE;
+import static com.github.razorapid.morpheus.lang.TokenType.TOKEN_COLON;
+import static com.github.razorapid.morpheus.lang.TokenType.TOKEN_COMPLEMENT;
+import static com.github.razorapid.morpheus.lang.TokenType.TOKEN_CONTINUE;
+import static com.github.razorapid.morpheus.lang.TokenType.TOKEN_DEC;
+import static com.github.razorapid.morpheus.lang.TokenType.TOKEN_DIVIDE;
+import static com.github.razorapid.morpheus.lang.TokenType.TOKEN_DOUBLE_COLON;
+import static com.github.razorapid.morpheus.lang.TokenType.TOKEN_END;
+import static com.github.razorapid.morpheus.lang.TokenType.TOKEN_ENDARRAY;
+import static com.github.razorapid.morpheus.lang.TokenType.TOKEN_EOF;
+import static com.github.razorapid.morpheus.lang.TokenType.TOKEN_EOL;
+import static com.github.razorapid.morpheus.lang.TokenType.TOKEN_EQUALITY;
+import static com.github.razorapid.morpheus.lang.TokenType.TOKEN_GREATER_THAN;
+import static com.github.razorapid.morpheus.lang.TokenType.TOKEN_GREATER_THAN_OR_EQUAL;
+import static com.github.razorapid.morpheus.lang.TokenType.TOKEN_IDENTIFIER;
+import static com.github.razorapid.morpheus.lang.TokenType.TOKEN_INC;
+import static com.github.razorapid.morpheus.lang.TokenType.TOKEN_INEQUALITY;
+import static com.github.razorapid.morpheus.lang.TokenType.TOKEN_INTEGER;
+import static com.github.razorapid.morpheus.lang.TokenType.TOKEN_LEFT_BRACES;
+import static com.github.razorapid.morpheus.lang.TokenType.TOKEN_LEFT_BRACKET;
+import static com.github.razorapid.morpheus.lang.TokenType.TOKEN_LEFT_SQUARE_BRACKET;
+import static com.github.razorapid.morpheus.lang.TokenType.TOKEN_LESS_THAN;
+import static com.github.razorapid.morpheus.lang.TokenType.TOKEN_LESS_THAN_OR_EQUAL;
+import static com.github.razorapid.morpheus.lang.TokenType.TOKEN_LOGICAL_AND;
+import static com.github.razorapid.morpheus.lang.TokenType.TOKEN_LOGICAL_OR;
+import static com.github.razorapid.morpheus.lang.TokenType.TOKEN_MAKEARRAY;
+import static com.github.razorapid.morpheus.lang.TokenType.TOKEN_MINUS;
+import static com.github.razorapid.morpheus.lang.TokenType.TOKEN_MINUS_EQUALS;
+import static com.github.razorapid.morpheus.lang.TokenType.TOKEN_MULTIPLY;
+import static com.github.razorapid.morpheus.lang.TokenType.TOKEN_NEG;
+import static com.github.razorapid.morpheus.lang.TokenType.TOKEN_NOT;
+import static com.github.razorapid.morpheus.lang.TokenType.TOKEN_PERCENTAGE;
+import static com.github.razorapid.morpheus.lang.TokenType.TOKEN_PLUS;
+import static com.github.razorapid.morpheus.lang.TokenType.TOKEN_PLUS_EQUALS;
+import static com.github.razorapid.morpheus.lang.TokenType.TOKEN_RIGHT_BRACES;
+import static com.github.razorapid.morpheus.lang.TokenType.TOKEN_RIGHT_BRACKET;
+import static com.github.razorapid.morpheus.lang.TokenType.TOKEN_RIGHT_SQUARE_BRACKET;
+import static com.github.razorapid.morpheus.lang.TokenType.TOKEN_SEMICOLON;
+import static com.github.razorapid.morpheus.lang.TokenType.TOKEN_STRING;
+import static com.github.razorapid.morpheus.lang.cst.ConcreteSyntaxTree.NodeType.ADDITION_EXPRESSION;
+import static com.github.razorapid.morpheus.lang.cst.ConcreteSyntaxTree.NodeType.BITWISE_AND_EXPRESSION;
+import static com.github.razorapid.morpheus.lang.cst.ConcreteSyntaxTree.NodeType.BITWISE_OR_EXPRESSION;
+import static com.github.razorapid.morpheus.lang.cst.ConcreteSyntaxTree.NodeType.BITWISE_XOR_EXPRESSION;
+import static com.github.razorapid.morpheus.lang.cst.ConcreteSyntaxTree.NodeType.DIVISION_EXPRESSION;
+import static com.github.razorapid.morpheus.lang.cst.ConcreteSyntaxTree.NodeType.EQUALITY_EXPRESSION;
+import static com.github.razorapid.morpheus.lang.cst.ConcreteSyntaxTree.NodeType.GREATER_THAN_EXPRESSION;
+import static com.github.razorapid.morpheus.lang.cst.ConcreteSyntaxTree.NodeType.GREATER_THAN_OR_EQUAL_EXPRESSION;
+import static com.github.razorapid.morpheus.lang.cst.ConcreteSyntaxTree.NodeType.INEQUALITY_EXPRESSION;
+import static com.github.razorapid.morpheus.lang.cst.ConcreteSyntaxTree.NodeType.LESS_THAN_EXPRESSION;
+import static com.github.razorapid.morpheus.lang.cst.ConcreteSyntaxTree.NodeType.LESS_THAN_OR_EQUALS_EXPRESSION;
+import static com.github.razorapid.morpheus.lang.cst.ConcreteSyntaxTree.NodeType.LOGICAL_AND_EXPRESSION;
+import static com.github.razorapid.morpheus.lang.cst.ConcreteSyntaxTree.NodeType.LOGICAL_OR_EXPRESSION;
+import static com.github.razorapid.morpheus.lang.cst.ConcreteSyntaxTree.NodeType.MODULO_EXPRESSION;
+import static com.github.razorapid.morpheus.lang.cst.ConcreteSyntaxTree.NodeType.MULTIPLICATION_EXPRESSION;
+import static com.github.razorapid.morpheus.lang.cst.ConcreteSyntaxTree.NodeType.SUBTRACTION_EXPRESSION;
+import static com.github.razorapid.morpheus.lang.cst.ConcreteSyntaxTree.NodeType.THREAD_LABEL_STATEMENT;
+
+public class Parser {
+    /**
+     * Version of the trees the parser builds, to be bumped whenever a change of the parser changes them,
+     * so the trees stored by an older version (i.e. in a {@link ParseCache}) aren't used anymore
+     */
+    public static final int VERSION = 1;
+
+    /**
+     * Levels of memoized rules parsed in place on the call stack, see {@link #memoized}
+     */
+    private static final int MAX_NESTING = 64;
+
+    private final Source script;
+    private final Tokens tokens;
+    private final ConcreteSyntaxTreeBuilder nodes;
+    private final Map<TokenType, ParseRule> nonIdentifierPrimaryExpressionRules;
+    private final IterativeStatementParser statementParser;
+    private final ParserProfiler profiler;
+
+    private Map<Integer, ParseResult> nonIdentifierPrimaryExpressions = new HashMap<>();
+    private Map<Integer, ParseResult> functionPrimaryExpressions = new HashMap<>();
+    private int consumedTokens = 0;
+    private int nesting = 0;
+    private CancellationToken cancellation = CancellationToken.none();
+
+    private boolean panicMode = false;
+    private final List<ParseError> errors = new ArrayList<>();
+
+    public Parser(@NonNull Source script, @NonNull Tokens tokens) {
+        this(script, tokens, ParserProfiler.NONE, new ConcreteSyntaxTreeBuilder());
+    }
+
+    private Parser(Source script, Tokens tokens, ParserProfiler profiler, ConcreteSyntaxTreeBuilder nodes) {
+        this.script = script;
+        this.tokens = tokens;
+        this.profiler = profiler;
+        this.nodes = nodes;
+
+        var nonIdentifierExpressionRules = new NonIdentifierExpressionRules(this);
+        this.nonIdentifierPrimaryExpressionRules = nonIdentifierExpressionRules.nonIdentifierPrimaryExpressionRules();
+        this.statementParser = new IterativeStatementParser(this);
+    }
+
+    /**
+     * Parser that records the statistics of the production rules while it parses, see {@link #stats()}.
+     * It's meant for finding the productions that dominate parsing time and backtracking,
+     * the parser created with the constructor doesn't pay for it.
+     */
+    public static Parser profiled(@NonNull Source script, @NonNull Tokens tokens) {
+        return new Parser(script, tokens, new ParserProfiler.Recording(), new ConcreteSyntaxTreeBuilder());
+    }
+
+    /**
+     * Parser that builds a compact tree, without the pass-through wrapper nodes (i.e. expression, primaryExpression
+     * or statement) that have a single child and add nothing but their type. The types of the elided wrappers
+     * are kept in a mask of the wrapped node, see {@link ConcreteSyntaxTree.Node#isA}.
+     *
+     * The compact tree lowers to the same abstract syntax tree with fewer nodes to allocate and to visit,
+     * but it's not the tree of the grammar, so it doesn't print as one.
+     */
+    public static Parser compact(@NonNull Source script, @NonNull Tokens tokens) {
+        return new Parser(script, tokens, ParserProfiler.NONE, ConcreteSyntaxTreeBuilder.compact());
+    }
+
+    /**
+     * Errors of the syntax tree parsed so far, in source order. Errors of the outline thread bodies
+     * are included once the bodies are parsed.
+     */
+    public List<ParseError> errors() {
+        synchronized (errors) {
+            return List.copyOf(errors);
+        }
+    }
+
+    /**
+     * Statistics of the production rules parsed so far, including thread bodies of the outline parsed since.
+     * Empty, unless the parser was created with {@link #profiled}.
+     */
+    public ParserStats stats() {
+        return profiler.stats();
+    }
+
+    public ConcreteSyntaxTree parse() {
+        return parse(CancellationToken.none());
+    }
+
+    /**
+     * Parses the script, unless the cancellation token is cancelled in the meantime.
+     * The token is checked at statement boundaries and between nested expressions.
+     *
+     * @throws CancelledException when parsing was cancelled
+     */
+    public ConcreteSyntaxTree parse(@NonNull CancellationToken cancellation) {
+        this.cancellation = cancellation;
+        var statementList = parseStatementList(true);
+        collectErrors(statementList, errors);
+        return new ConcreteSyntaxTree(statementList);
+    }
+
+    /**
+     * Parses the script in outline mode.
+     *
+     * Thread labels (and any statements preceding the first label) are parsed as usual,
+     * while thread bodies are skipped by scanning tokens up to the next thread label
+     * (or the end of the script). Each skipped body is represented in the tree
+     * by a {@link ConcreteSyntaxTree.LazyNode} that parses its statements on the first access.
+     *
+     * This is enough to build a symbol index (thread names, parameters and spans)
+     * without paying for parsing of every thread body.
+     */
+    public ConcreteSyntaxTree parseOutline() {
+        return parseOutline(CancellationToken.none());
+    }
+
+    /**
+     * Parses the script in outline mode, unless the cancellation token is cancelled in the meantime.
+     * Thread bodies are parsed later, on the first access, so the token doesn't apply to them.
+     *
+     * @throws CancelledException when parsing was cancelled
+     */
+    public ConcreteSyntaxTree parseOutline(@NonNull CancellationToken cancellation) {
+        this.cancellation = cancellation;
+        var statements = new ArrayList<ConcreteSyntaxTree.Node>();
+        while (isNotEOF()) {
+            var statement = parseStatementLine(true);
+            if (!isMatched(statement)) {
+                break;
+            }
+            statements.add(statement);
+
+            if (isThreadLabel(statement)) {
+                var threadBody = skipThreadBody();
+                if (isMatched(threadBody)) {
+                    statements.add(threadBody);
+                }
+            }
+        }
+
+        var statementList = nodes.statementList(statements);
+        collectErrors(statementList, errors);
+        return new ConcreteSyntaxTree(statementList);
+    }
+
+    /**
+     * Parses the script one top-level statement line at a time, as the returned iterator advances.
+     *
+     * The lines are the same as the children of the statement list returned by {@link #parse()},
+     * but the parser keeps no references to the lines it already returned. When the caller processes
+     * and drops them one by one, the memory used for the syntax tree doesn't grow with the script.
+     */
+    public Iterator<ConcreteSyntaxTree.Node> statements() {
+        return statements(CancellationToken.none());
+    }
+
+    /**
+     * Parses the script one top-level statement line at a time, unless the cancellation token is cancelled in the meantime.
+     * The token is checked at statement boundaries and between nested expressions, while the iterator advances.
+     *
+     * @see #statements()
+     */
+    public Iterator<ConcreteSyntaxTree.Node> statements(@NonNull CancellationToken cancellation) {
+        this.cancellation = cancellation;
+        return new StatementLineIterator();
+    }
+
+    private final class StatementLineIterator implements Iterator<ConcreteSyntaxTree.Node> {
+        private ConcreteSyntaxTree.Node next = null;
+        private boolean finished = false;
+
+        @Override
+        public boolean hasNext() {
+            if (next == null && !finished) {
+                next = isNotEOF() ? parseStatementLine(true) : null;
+                finished = !isMatched(next);
+                collectErrors(next, errors);
+                forgetMemoizedExpressions();
+            }
+            return next != null;
+        }
+
+        @Override
+        public ConcreteSyntaxTree.Node next() {
+            if (!hasNext()) {
+                throw new NoSuchElementException();
+            }
+            var statementLine = next;
+            next = null;
+            return statementLine;
+        }
+    }
+
+    /**
+     * Memoized expressions are keyed by position, the parser never gets back to the positions of the lines
+     * it's done with, so they would only hold on to the subtrees of these lines
+     */
+    void forgetMemoizedExpressions() {
+        if (!nonIdentifierPrimaryExpressions.isEmpty()) {
+            nonIdentifierPrimaryExpressions = new HashMap<>();
+        }
+        if (!functionPrimaryExpressions.isEmpty()) {
+            functionPrimaryExpressions = new HashMap<>();
+        }
+    }
+
+    private ConcreteSyntaxTree.Node parseStatementList(boolean strict) {
+        return statementParser.parseStatementList(strict);
+    }
+
+    private boolean isThreadLabel(ConcreteSyntaxTree.Node statementLine) {
+        var node = statementLine;
+        while (node instanceof ConcreteSyntaxTree.NonTerminalNode nonTerminal && !nonTerminal.children().isEmpty()) {
+            if (node.type() == THREAD_LABEL_STATEMENT) {
+                return true;
+            }
+            node = nonTerminal.childAt(0);
+        }
+        return false;
+    }
+
+    /**
+     * Thread body spans all the statements up to the next thread label.
+     * Thread bodies usually finish with an "end" statement, but "end" can also be used
+     * to return early from nested statements, i.e. inside if statement,
+     * so it can't be used as a reliable body delimiter.
+     *
+     * The body ends where the full parse would start the next thread label statement line of the statement list:
+     * at the start of a line, outside any brackets and not in place of the statement of an if, else, while or for
+     * still to come, the thread label rule is tried on the lines with a colon. Apart from these and the conditions
+     * of if and while statements, parsed to find where they end, the body is only scanned.
+     * Labels following a semicolon are left to the body, the full parse reports an error before them anyway.
+     */
+    private ConcreteSyntaxTree.LazyNode skipThreadBody() {
+        consumeNewLines();
+        var bodyStart = mark();
+        var bodyEnd = bodyStart;
+        Token lastToken = null;
+
+        var depth = 0;
+        var lineStart = true;
+        var forHeader = false;
+        var nestedStatement = false;
+        for (var token = tokens.get(bodyEnd); token != null && !token.isType(TOKEN_EOF); token = tokens.get(++bodyEnd)) {
+            if (lineStart && isThreadLabelLine(bodyEnd)) {
+                break;
+            }
+            if (!token.isType(TOKEN_EOL)) {
+                lastToken = token;
+                nestedStatement = false;
+            }
+            switch (token.type()) {
+                case TOKEN_LEFT_BRACES, TOKEN_LEFT_BRACKET, TOKEN_LEFT_SQUARE_BRACKET -> depth++;
+                case TOKEN_RIGHT_BRACES, TOKEN_RIGHT_BRACKET, TOKEN_RIGHT_SQUARE_BRACKET -> {
+                    depth = Math.max(0, depth - 1);
+                    if (depth == 0 && forHeader) {
+                        forHeader = false;
+                        nestedStatement = true;
+                    }
+                }
+                case TOKEN_IF, TOKEN_WHILE -> {
+                    if (depth == 0) {
+                        bodyEnd = conditionEnd(bodyEnd);
+                        lastToken = tokens.get(bodyEnd);
+                        nestedStatement = true;
+                    }
+                }
+                case TOKEN_FOR -> forHeader = depth == 0;
+                case TOKEN_ELSE -> nestedStatement = depth == 0;
+                default -> { }
+            }
+            lineStart = depth == 0 && !forHeader && !nestedStatement && token.isType(TOKEN_EOL);
+        }
+
+        if (lastToken == null) {
+            return null;
+        }
+
+        var bodyTokens = Tokens.of(tokens.list().subList(bodyStart, bodyEnd));
+        bodyTokens.add(bodyEndToken(bodyEnd));
+        restore(bodyEnd);
+        return nodes.lazyThreadBody(tokens.get(bodyStart), lastToken, () -> parseThreadBody(bodyTokens));
+    }
+
+    /**
+     * Body ends either with the end of the script, or with the next thread label,
+     * which is presented to the body parser as the end of the script at the same position,
+     * so that errors at the end of the body point to the same place as errors of the full parse.
+     */
+    private Token bodyEndToken(int bodyEnd) {
+        var token = tokens.get(bodyEnd);
+        if (token == null || token.isType(TOKEN_EOF)) {
+            return token != null ? token : Token.of(TOKEN_EOF, "", -1, -1, -1);
+        }
+        return Token.of(TOKEN_EOF, "", token.pos().pos(), token.line(), token.col());
+    }
+
+    /**
+     * @return position of the last token of the condition of the if or while at the given position,
+     * the position itself when there's no condition to parse
+     */
+    private int conditionEnd(int keyword) {
+        var mark = mark();
+        var markedToken = tokens.lastToken();
+        restore(keyword + 1);
+        consumeNewLines();
+        var condition = parsePrimaryExpression();
+        var end = isMatched(condition) ? mark() - 1 : keyword;
+        restore(mark, markedToken);
+        return end;
+    }
+
+    private boolean isThreadLabelLine(int lineStart) {
+        var token = tokens.get(lineStart);
+        if (!token.isType(TOKEN_IDENTIFIER) && !token.isType(TOKEN_END)) {
+            return false;
+        }
+        var colon = false;
+        for (var i = lineStart + 1; !colon && (token = tokens.get(i)) != null && !token.isType(TOKEN_EOL); i++) {
+            colon = token.isType(TOKEN_COLON);
+        }
+        if (!colon) {
+            return false;
+        }
+        var mark = mark();
+        var markedToken = tokens.lastToken();
+        restore(lineStart);
+        var label = parseThreadLabelStatement();
+        restore(mark, markedToken);
+        return isMatched(label);
+    }
+
+    private ConcreteSyntaxTree.StatementNode parseThreadBody(Tokens bodyTokens) {
+        var bodyParser = new Parser(script, bodyTokens, profiler, nodes);
+        var statementList = (ConcreteSyntaxTree.NonTerminalNode) bodyParser.parse().program();
+        synchronized (errors) {
+            errors.addAll(bodyParser.errors());
+            errors.sort(Comparator.comparingLong(error -> error.pos().pos()));
+        }
+        return nodes.threadBody(statementList.children());
+    }
+
+    /**
+     * Errors are collected from the tree, rather than when they're reported, because errors of the alternatives
+     * the parser backtracked from never make it to the tree. Thread bodies that are not parsed yet are skipped.
+     */
+    private static void collectErrors(ConcreteSyntaxTree.Node node, List<ParseError> errors) {
+        var nodes = new ArrayDeque<ConcreteSyntaxTree.Node>();
+        if (node != null) {
+            nodes.push(node);
+        }
+        while (!nodes.isEmpty()) {
+            var current = nodes.pop();
+            if (current instanceof ConcreteSyntaxTree.ErrorNode errorNode) {
+                errors.add(errorNode.error());
+            }
+            if (current instanceof ConcreteSyntaxTree.LazyNode lazy && !lazy.isParsed()) {
+                continue;
+            }
+            if (current instanceof ConcreteSyntaxTree.NonTerminalNode nonTerminal) {
+                var children = nonTerminal.children();
+                for (var i = children.size() - 1; i >= 0; i--) {
+                    if (children.get(i) != null) {
+                        nodes.push(children.get(i));
+                    }
+                }
+            }
+        }
+    }
+
+    private ConcreteSyntaxTree.Node parseStatementLine(boolean strict) {
+        var started = profiler.enter(Production.STATEMENT_LINE);
+        consumeNewLines();
+        var statement = parseStatement();
+        return exit(Production.STATEMENT_LINE, started, statementLine(statement, strict));
+    }
+
+    /**
+     * Parses a single statement line at the current position of the tokens,
+     * for the lines {@link TableAssistedParser} leaves to this parser
+     */
+    ConcreteSyntaxTree.Node parseStatementLine(@NonNull CancellationToken cancellation) {
+        this.cancellation = cancellation;
+        return parseStatementLine(true);
+    }
+
+    ConcreteSyntaxTree.Node statementLine(ConcreteSyntaxTree.Node statement, boolean strict) {
+        if (!isMatched(statement)) {
+            if (strict && !check(TOKEN_EOL, TOKEN_SEMICOLON)) {
+                errorBadToken(peekToken(), "next statement");
+            }
+            return null;
+        }
+        if (strict && !check(TOKEN_EOL, TOKEN_SEMICOLON)) {
+            errorBadToken(peekToken(), "next statement or semicolon");
+        }
+        var tokenEol = consume(TOKEN_EOL);
+        return nodes.statementLine(statement, tokenEol);
+    }
+
+    private ConcreteSyntaxTree.Node parseStatement() {
+        return statementParser.parseStatement();
+    }
+
+    ConcreteSyntaxTree.Node parseLabelStatement() {
+        var started = profiler.enter(Production.LABEL_STATEMENT);
+        var statement = parseSwitchCaseLabelStatement();
+        if (isMatched(statement)) {
+            return exit(Production.LABEL_STATEMENT, started, nodes.labelStatement(statement));
+        }
+
+        statement = parseThreadLabelStatement();
+        if (isMatched(statement)) {
+            return exit(Production.LABEL_STATEMENT, started, nodes.labelStatement(statement));
+        }
+        return exit(Production.LABEL_STATEMENT, started, null);
+    }
+
+    ConcreteSyntaxTree.Node parseBreakStatement() {
+        var started = profiler.enter(Production.BREAK_STATEMENT);
+        if (match(TOKEN_BREAK)) {
+            return exit(Production.BREAK_STATEMENT, started, nodes.breakStatement(tokens.lastToken()));
+        }
+        return exit(Production.BREAK_STATEMENT, started, null);
+    }
+
+    ConcreteSyntaxTree.Node parseContinueStatement() {
+        var started = profiler.enter(Production.CONTINUE_STATEMENT);
+        if (match(TOKEN_CONTINUE)) {
+            return exit(Production.CONTINUE_STATEMENT, started, nodes.continueStatement(tokens.lastToken()));
+        }
+        return exit(Production.CONTINUE_STATEMENT, started, null);
+    }
+
+    ConcreteSyntaxTree.Node parseNoopStatement() {
+        var started = profiler.enter(Production.NOOP_STATEMENT);
+        if (match(TOKEN_SEMICOLON)) {
+            return exit(Production.NOOP_STATEMENT, started, nodes.noopStatement(tokens.lastToken()));
+        }
+        return exit(Production.NOOP_STATEMENT, started, null);
+    }
+
+    ConcreteSyntaxTree.Node parseExpressionStatement() {
+        var started = profiler.enter(Production.EXPRESSION_STATEMENT);
+        var statement = parseThreadFunctionCallExpression();
+        if (isMatched(statement)) {
+            return exit(Production.EXPRESSION_STATEMENT, started, nodes.expressionStatement(statement));
+        }
+
+        statement = parseListenerFunctionCallExpression();
+        if (isMatched(statement)) {
+            return exit(Production.EXPRESSION_STATEMENT, started, nodes.expressionStatement(statement));
+        }
+
+        statement = parseAssignmentExpression();
+        if (isMatched(statement)) {
+            return exit(Production.EXPRESSION_STATEMENT, started, nodes.expressionStatement(statement));
+        }
+
+        statement = parseIncrementOrDecrementExpression();
+        if (isMatched(statement)) {
+            return exit(Production.EXPRESSION_STATEMENT, started, nodes.expressionStatement(statement));
+        }
+        return exit(Production.EXPRESSION_STATEMENT, started, null);
+    }
+
+    private ConcreteSyntaxTree.Node parseSwitchCaseLabelStatement() {
+        var started = profiler.enter(Production.SWITCH_CASE_LABEL_STATEMENT);
+        var tokenCase = consume(TOKEN_CASE);
+        if (!isMatched(tokenCase)) {
+            return exit(Production.SWITCH_CASE_LABEL_STATEMENT, started, null);
+        }
+
+        Token tokenNeg = null;
+        Token tokenInt = null;
+
+        var tokenIntOrText = consume(TOKEN_INTEGER, TOKEN_IDENTIFIER, TOKEN_STRING, TOKEN_END);
+        if (!isMatched(tokenIntOrText)) {
+            tokenNeg = consume(TOKEN_NEG);
+
+            if (!isMatched(tokenNeg)) {
+                errorBadToken(tokens.peekToken(), TOKEN_INTEGER, TOKEN_IDENTIFIER, TOKEN_STRING, TOKEN_END);
+                return exit(Production.SWITCH_CASE_LABEL_STATEMENT, started, null);
+            } else {
+                tokenInt = consume(TOKEN_INTEGER);
+
+                if (!isMatched(tokenInt)) {
+                    errorBadToken(tokens.peekToken(), TOKEN_INTEGER);
+                    return exit(Production.SWITCH_CASE_LABEL_STATEMENT, started, null);
+                }
+            }
+        }
+
+        var eventParamList = parseEventParameterList();
+
+        var tokenColon = consume(TOKEN_COLON);
+        if (!isMatched(tokenColon)) {
+            errorBadToken(tokens.peekToken(), TOKEN_COLON);
+            return exit(Production.SWITCH_CASE_LABEL_STATEMENT, started, null);
+        }
+
+        if (tokenIntOrText != null) {
+            return exit(Production.SWITCH_CASE_LABEL_STATEMENT, started, nodes.switchCaseLabelStatement(tokenCase, tokenIntOrText, eventParamList, tokenColon));
+        } else {
+            return exit(Production.SWITCH_CASE_LABEL_STATEMENT, started, nodes.switchCaseLabelStatement(tokenCase, tokenNeg, tokenInt, eventParamList, tokenColon));
+        }
+    }
+
+    /**
+     * This rule is ambiguous with rule: threadFunctionCallExpression
+     * We mark parser position, to backtrack to known state if we don't match colon
+     * at the end of the statement.
+     *
+     * This way we will later parse this in threadFunctionCallExpression production rule.
+     *
+     * Note: This backtracking is quite expensive. Especially if there were a lot of event parameters used.
+     * This is done for the sake of keeping source code close to grammar rules definitions
+     * (which themselves are defined with readability and comprehensibility in mind)
+     *
+     * @see #parseThreadFunctionCallExpression
+     */
+    private ConcreteSyntaxTree.Node parseThreadLabelStatement() {
+        var started = profiler.enter(Production.THREAD_LABEL_STATEMENT);
+        var mark = mark(); //
+        var tokenIdentOrEnd = consume(TOKEN_IDENTIFIER, TOKEN_END);
+        if (!isMatched(tokenIdentOrEnd)) {
+            return exit(Production.THREAD_LABEL_STATEMENT, started, null);
+        }
+
+        var eventParamList = parseEventParameterList();
+
+        var tokenColon = consume(TOKEN_COLON);
+        if (isMatched(tokenColon)) {
+            return exit(Production.THREAD_LABEL_STATEMENT, started, nodes.threadLabelStatement(tokenIdentOrEnd, eventParamList, tokenColon));
+        }
+
+        // not matched, try threadFunctionCallExpression later
+        restore(mark);
+        return exit(Production.THREAD_LABEL_STATEMENT, started, null);
+    }
+
+    /**
+     * This rule is ambiguous with threadLabelStatement (see #parseThreadLabelStatement)
+     * You need to be careful with rule parsing order.
+     *
+     * @see #parseThreadLabelStatement
+     */
+    private ConcreteSyntaxTree.Node parseThreadFunctionCallExpression() {
+        var started = profiler.enter(Production.THREAD_FUNCTION_CALL_EXPRESSION);
+        var tokenIdentOrEnd = consume(TOKEN_IDENTIFIER, TOKEN_END);
+        if (!isMatched(tokenIdentOrEnd)) {
+            return exit(Production.THREAD_FUNCTION_CALL_EXPRESSION, started, null);
+        }
+
+        var eventParamList = parseEventParameterList();
+
+        return exit(Production.THREAD_FUNCTION_CALL_EXPRESSION, started, nodes.threadFunctionCallExpression(tokenIdentOrEnd, eventParamList));
+    }
+
+    /**
+     * This rule is ambiguous with the rest of expression statements
+     * that start with nonIdentifierPrimaryExpression rule.
+     *
+     * This method uses backtracking to rollback to last known parser position
+     * upon failing to match the rule at the ambiguity points.
+     *
+     * @see #parseAssignmentExpression
+     * @see #parseIncrementOrDecrementExpression
+     * @return
+     */
+    private ConcreteSyntaxTree.Node parseListenerFunctionCallExpression() {
+        var started = profiler.enter(Production.LISTENER_FUNCTION_CALL_EXPRESSION);
+        var pos = mark();
+
+        var expression = parseNonIdentifierPrimaryExpression();
+        if (!isMatched(expression)) {
+            return exit(Production.LISTENER_FUNCTION_CALL_EXPRESSION, started, null);
+        }
+
+        var tokenIdentifier = consume(TOKEN_IDENTIFIER, TOKEN_END);
+        if (!isMatched(tokenIdentifier)) {
+            restore(pos);
+            return exit(Production.LISTENER_FUNCTION_CALL_EXPRESSION, started, null);
+        }
+
+        var eventParamList = parseEventParameterList();
+
+        return exit(Production.LISTENER_FUNCTION_CALL_EXPRESSION, started, nodes.listenerFunctionCallExpression(expression, tokenIdentifier, eventParamList));
+    }
+
+    private ConcreteSyntaxTree.Node parseAssignmentExpression() {
+        var started = profiler.enter(Production.ASSIGNMENT_EXPRESSION);
+        var pos = mark();
+
+        var lhs = parseNonIdentifierPrimaryExpression();
+        if (!isMatched(lhs)) {
+            return exit(Production.ASSIGNMENT_EXPRESSION, started, null);
+        }
+
+        var tokenAssignmentOp = consume(TOKEN_ASSIGNMENT, TOKEN_PLUS_EQUALS, TOKEN_MINUS_EQUALS);
+        if (!isMatched(tokenAssignmentOp)) {
+            restore(pos);
+            return exit(Production.ASSIGNMENT_EXPRESSION, started, null);
+        }
+
+        consumeNewLines();
+
+        var rhs = parseExpression();
+        if (!isMatched(rhs)) {
+            return exit(Production.ASSIGNMENT_EXPRESSION, started, error("Expected expression on the right side of the " + tokenAssignmentOp.lexeme() + " operator."));
+        }
+        return exit(Production.ASSIGNMENT_EXPRESSION, started, nodes.assignmentExpression(lhs, tokenAssignmentOp, rhs));
+    }
+
+    private ConcreteSyntaxTree.Node parseIncrementOrDecrementExpression() {
+        var started = profiler.enter(Production.INCREMENT_OR_DECREMENT_EXPRESSION);
+        var pos = mark();
+
+        var lhs = parseNonIdentifierPrimaryExpression();
+        if (!isMatched(lhs)) {
+            return exit(Production.INCREMENT_OR_DECREMENT_EXPRESSION, started, null);
+        }
+
+        var tokenOp = consume(TOKEN_INC, TOKEN_DEC);
+        if (!isMatched(tokenOp)) {
+            restore(pos);
+            return exit(Production.INCREMENT_OR_DECREMENT_EXPRESSION, started, null);
+        }
+
+        var expression = switch (tokenOp.type()) {
+            case TOKEN_INC -> nodes.incrementExpression(lhs, tokenOp);
+            case TOKEN_DEC -> nodes.decrementExpression(lhs, tokenOp);
+            default -> throw new IllegalStateException("Unexpected value: " + tokenOp.type());
+        };
+        return exit(Production.INCREMENT_OR_DECREMENT_EXPRESSION, started, expression);
+    }
+
+    private ConcreteSyntaxTree.Node parseEventParameterList() {
+        var started = profiler.enter(Production.EVENT_PARAMETER_LIST);
+        var expressions = new ArrayList<ConcreteSyntaxTree.Node>();
+        while(isNotEOF()) {
+            var primExpression = parsePrimaryExpression();
+            if (isMatched(primExpression)) {
+                expressions.add(primExpression);
+            } else {
+                break;
+            }
+        }
+        return exit(Production.EVENT_PARAMETER_LIST, started, nodes.eventParameterList(expressions));
+    }
+
+    /**
+     * nonIdentifierPrimaryExpression production rule is left-recursive
+     * In order to handle it in an elegant way, Pratt expression parsing algorithm is used
+     * This way we don't need to factor our rules to get rid of left-recursion and focusing instead
+     * on grammar readability
+     */
+    ConcreteSyntaxTree.Node parseNonIdentifierPrimaryExpression() {
+        var started = profiler.enter(Production.NON_IDENTIFIER_PRIMARY_EXPRESSION);
+        var expression = memoized(nonIdentifierPrimaryExpressions, () -> parseNonIdentifierPrimaryExpression(NONE));
+        return exit(Production.NON_IDENTIFIER_PRIMARY_EXPRESSION, started, expression);
+    }
+
+    private ConcreteSyntaxTree.Node parseNonIdentifierPrimaryExpression(Operator precedence) {
+        var expression = parseRules(precedence, nonIdentifierPrimaryExpressionRules);
+        return isMatched(expression) ? nodes.nonIdentifierPrimaryExpression(expression) : null;
+    }
+
+    ConcreteSyntaxTree.Node parsePrimaryExpression() {
+        var started = profiler.enter(Production.PRIMARY_EXPRESSION);
+        var expression = parseConstArrayExpression();
+        if (isMatched(expression)) {
+            return exit(Production.PRIMARY_EXPRESSION, started, nodes.primaryExpression(expression));
+        }
+
+        expression = parseIdentifierPrimaryExpression();
+        if (isMatched(expression)) {
+            return exit(Production.PRIMARY_EXPRESSION, started, nodes.primaryExpression(expression));
+        }
+
+        expression = parseNonIdentifierPrimaryExpression();
+        if (isMatched(expression)) {
+            return exit(Production.PRIMARY_EXPRESSION, started, nodes.primaryExpression(expression));
+        }
+
+        return exit(Production.PRIMARY_EXPRESSION, started, null);
+    }
+
+    private ConcreteSyntaxTree.Node parseConstArrayExpression() {
+        var started = profiler.enter(Production.CONST_ARRAY_EXPRESSION);
+        var pos = mark();
+        var lhs = parseIdentifierPrimaryExpression();
+        if (!isMatched(lhs)) {
+            lhs = parseNonIdentifierPrimaryExpression();
+            if (!isMatched(lhs)) {
+                restore(pos);
+                return exit(Production.CONST_ARRAY_EXPRESSION, started, null);
+            }
+        }
+
+        if (!check(TOKEN_DOUBLE_COLON)) {
+            restore(pos);
+            return exit(Production.CONST_ARRAY_EXPRESSION, started, null);
+        }
+
+        var constArrayElems = new ArrayList<ConcreteSyntaxTree.Node>();
+        constArrayElems.add(lhs);
+        ConcreteSyntaxTree.Node rhs;
+        do {
+            var tokenDoubleColon = consume(TOKEN_DOUBLE_COLON);
+            if (!isMatched(tokenDoubleColon)) {
+                break;
+            }
+            rhs = parseIdentifierPrimaryExpression();
+            if (!isMatched(rhs)) {
+                rhs = parseNonIdentifierPrimaryExpression();
+                if (!isMatched(rhs)) {
+                    error(
+                        "Const array declaration can't end on " +
+                        tokenDoubleColon.lexeme() +
+                        ". You need to end the declaration with array element."
+                    );
+                }
+            }
+
+            constArrayElems.add(nodes.constArrayElementSeparator(tokenDoubleColon));
+            constArrayElems.add(rhs);
+
+        } while (isMatched(rhs));
+
+        return exit(Production.CONST_ARRAY_EXPRESSION, started, nodes.constArrayExpression(constArrayElems));
+    }
+
+    private ConcreteSyntaxTree.Node parseIdentifierPrimaryExpression() {
+        var started = profiler.enter(Production.IDENTIFIER_PRIMARY_EXPRESSION);
+        var tokenIdentifier = consume(TOKEN_IDENTIFIER, TOKEN_END);
+        if (!isMatched(tokenIdentifier)) {
+            return exit(Production.IDENTIFIER_PRIMARY_EXPRESSION, started, null);
+        }
+        return exit(Production.IDENTIFIER_PRIMARY_EXPRESSION, started, nodes.identifierPrimaryExpression(tokenIdentifier));
+    }
+
+    ConcreteSyntaxTree.Node parseExpression() {
+        return parseExpression(NONE);
+    }
+
+    ConcreteSyntaxTree.Node parseExpression(Operator precedence) {
+        var started = profiler.enter(Production.EXPRESSION);
+        var expression = parseOperandExpression();
+        if (!isMatched(expression)) {
+            errorBadToken(peekToken(), "make array expression, function primary expression or non identifier primary expression");
+            return exit(Production.EXPRESSION, started, null);
+        }
+        return exit(Production.EXPRESSION, started, parseBinaryExpression(precedence, expression));
+    }
+
+    private ConcreteSyntaxTree.Node parseOperandExpression() {
+        var expression = parseMakeArrayExpression();
+        if (isMatched(expression)) {
+            return expression;
+        }
+
+        expression = parseFunctionPrimaryExpression();
+        if (isMatched(expression)) {
+            return expression;
+        }
+
+        return parseNonIdentifierPrimaryExpression();
+    }
+
+    private ConcreteSyntaxTree.Node parseMakeArrayExpression() {
+        var started = profiler.enter(Production.MAKE_ARRAY_EXPRESSION);
+        var tokenMakeArray = consume(TOKEN_MAKEARRAY);
+        if (!isMatched(tokenMakeArray)) {
+            return exit(Production.MAKE_ARRAY_EXPRESSION, started, null);
+        }
+        var tokenEol = consume(TOKEN_EOL);
+        if (!isMatched(tokenEol)) {
+            errorBadToken(peekToken(), TOKEN_EOL);
+            return exit(Production.MAKE_ARRAY_EXPRESSION, started, null);
+        }
+
+        var rows = new ArrayList<ConcreteSyntaxTree.Node>();
+        while (!check(TOKEN_ENDARRAY)) {
+            var row = parseMakeArrayRowExpression();
+            if (!isMatched(row)) {
+                break;
+            }
+            rows.add(row);
+        }
+
+        var tokenEndArray = consume(TOKEN_ENDARRAY);
+        if (!isMatched(tokenEndArray)) {
+            errorBadToken(peekToken(), TOKEN_ENDARRAY);
+            return exit(Production.MAKE_ARRAY_EXPRESSION, started, null);
+        }
+
+        return exit(Production.MAKE_ARRAY_EXPRESSION, started, nodes.makeArrayExpression(tokenMakeArray, tokenEol, rows, tokenEndArray));
+    }
+
+    private ConcreteSyntaxTree.Node parseMakeArrayRowExpression() {
+        var started = profiler.enter(Production.MAKE_ARRAY_ROW_EXPRESSION);
+        var cols = new ArrayList<ConcreteSyntaxTree.Node>();
+        while (true) {
+            var col = parsePrimaryExpression();
+            if (isMatched(col)) {
+                cols.add(col);
+            } else {
+                errorBadToken(peekToken(), "primary expression");
+                return exit(Production.MAKE_ARRAY_ROW_EXPRESSION, started, null);
+            }
+
+            if (check(TOKEN_EOL)) {
+                break;
+            }
+        }
+        var rowEnd = consume(TOKEN_EOL);
+        if (!isMatched(rowEnd)) {
+            errorBadToken(peekToken(), TOKEN_EOL);
+            return exit(Production.MAKE_ARRAY_ROW_EXPRESSION, started, null);
+        }
+
+        return exit(Production.MAKE_ARRAY_ROW_EXPRESSION, started, nodes.makeArrayRowExpression(cols, rowEnd));
+    }
+
+    private ConcreteSyntaxTree.Node parseFunctionPrimaryExpression() {
+        var started = profiler.enter(Production.FUNCTION_PRIMARY_EXPRESSION);
+        var expression = memoized(functionPrimaryExpressions, this::parseFunctionPrimaryExpressionAlternatives);
+        return exit(Production.FUNCTION_PRIMARY_EXPRESSION, started, expression);
+    }
+
+    private ConcreteSyntaxTree.Node parseFunctionPrimaryExpressionAlternatives() {
+        var expression = parseUnaryFunctionPrimaryExpression();
+        if (isMatched(expression)) {
+            return nodes.functionPrimaryExpression(expression);
+        }
+
+        expression = parseConstArrayExpression();
+        if (isMatched(expression)) {
+            return nodes.functionPrimaryExpression(expression);
+        }
+
+        expression = parseThreadFunctionCallExpression();
+        if (isMatched(expression)) {
+            return nodes.functionPrimaryExpression(expression);
+        }
+
+        expression = parseListenerFunctionCallExpression();
+        if (isMatched(expression)) {
+            return nodes.functionPrimaryExpression(expression);
+        }
+
+        return null;
+    }
+
+    /**
+     * Pratt parsing of binary operators with an explicit stack of operands.
+     *
+     * An operator that binds tighter than the one on the top of the stack starts a new operand
+     * with its right hand side, otherwise the operand on the top is complete and becomes
+     * the right hand side of its operator. This gives the same trees as parsing the right hand side
+     * with a recursive call to {@link #parseExpression(Operator)} with the precedence of the operator.
+     */
+    private ConcreteSyntaxTree.Node parseBinaryExpression(Operator precedence, ConcreteSyntaxTree.Node expression) {
+        var operands = new ArrayDeque<BinaryOperand>();
+        var operand = new BinaryOperand(precedence, null, null, null, expression);
+
+        while (true) {
+            var rule = binaryExpressionRules.get(peekToken().type());
+            if (rule != null && operand.precedence().precedenceLowerThan(rule.precedence())) {
+                var lhs = operand.binary() ? operand.expression() : nodes.expression(operand.expression());
+                var tokenOperator = consume(rule.operator());
+                consumeNewLines();
+
+                var rhs = parseOperandExpression();
+                if (!isMatched(rhs)) {
+                    errorBadToken(peekToken(), "make array expression, function primary expression or non identifier primary expression");
+                    var error = error(lastToken(), "bad token - got " + lastToken().type().name() + " expected expression");
+                    operand = operand.withExpression(nodes.binaryExpression(error));
+                    continue;
+                }
+
+                operands.push(operand);
+                operand = new BinaryOperand(rule.precedence(), rule, lhs, tokenOperator, rhs);
+                continue;
+            }
+
+            // nothing binds tighter, so the operand on the top of the stack is complete
+            var completed = nodes.expression(operand.expression());
+            if (operands.isEmpty()) {
+                return completed;
+            }
+
+            var binaryOperator = operand.operator();
+            operand = operands.pop().withExpression(nodes.binaryExpression(nodes.binarySubexpression(
+                binaryOperator.nodeType(),
+                binaryOperator.name(),
+                operand.lhs(),
+                operand.tokenOperator(),
+                completed
+            )));
+        }
+    }
+
+    /**
+     * Right hand side of the binary operator in progress (or the leftmost operand of the whole expression)
+     *
+     * @param precedence precedence of the operator, operators that bind tighter continue this operand
+     * @param operator binary operator rule that this operand is the right hand side of
+     * @param lhs left hand side of the operator
+     * @param tokenOperator operator token
+     * @param expression operand parsed so far, either a single operand expression or a binary expression
+     * @param binary whether the expression is a binary expression
+     */
+    private record BinaryOperand(
+        Operator precedence,
+        BinaryRule operator,
+        ConcreteSyntaxTree.Node lhs,
+        Token tokenOperator,
+        ConcreteSyntaxTree.Node expression,
+        boolean binary
+    ) {
+        BinaryOperand(Operator precedence, BinaryRule operator, ConcreteSyntaxTree.Node lhs, Token tokenOperator, ConcreteSyntaxTree.Node expression) {
+            this(precedence, operator, lhs, tokenOperator, expression, false);
+        }
+
+        BinaryOperand withExpression(ConcreteSyntaxTree.Node binaryExpression) {
+            return new BinaryOperand(precedence, operator, lhs, tokenOperator, binaryExpression, true);
+        }
+    }
+
+    private ConcreteSyntaxTree.Node parseUnaryFunctionPrimaryExpression() {
+        var started = profiler.enter(Production.UNARY_FUNCTION_PRIMARY_EXPRESSION);
+        /*
+            This rule is ambiguous with unary non identifier primary expression
+            that can also start with one of these unary operators
+        */
+        var pos = mark();
+        var token = consume(TOKEN_NEG, TOKEN_COMPLEMENT, TOKEN_NOT);
+        if (!isMatched(token)) {
+            return exit(Production.UNARY_FUNCTION_PRIMARY_EXPRESSION, started, null);
+        }
+
+        var expression = parseFunctionPrimaryExpression();
+        if (!isMatched(expression)) {
+            restore(pos);
+            return exit(Production.UNARY_FUNCTION_PRIMARY_EXPRESSION, started, null);
+        }
+
+        var function = switch (token.type()) {
+            case TOKEN_NEG -> nodes.arithmeticNegationFunctionExpression(token, expression);
+            case TOKEN_COMPLEMENT -> nodes.bitwiseCompletionFunctionExpression(token, expression);
+            case TOKEN_NOT -> nodes.logicalNegationFunctionExpression(token, expression);
+            default -> throw new IllegalStateException("Unexpected value: " + token.type());
+        };
+        return exit(Production.UNARY_FUNCTION_PRIMARY_EXPRESSION, started, nodes.unaryFunctionPrimaryExpression(function));
+    }
+
+    /**
+     * Pratt parsing algorithm
+     */
+    ConcreteSyntaxTree.Node parseRules(Operator precedence, Map<TokenType, ParseRule> rules) {
+        var tokenType = peekToken().type();
+        var rule = rules.get(tokenType);
+        var prefix = rule != null ? rule.prefix() : null;
+
+        if (prefix == null) {
+            return null;
+        }
+
+        var leftHandSide = prefix.parse(rule, this);
+        if (!isMatched(leftHandSide)) {
+            throw new UnmatchedPrefixException(tokenType);
+        }
+
+        while (precedence.precedenceLowerThan(nextRulePrecedence(rules))) {
+            rule = rules.get(peekToken().type());
+            var infix = rule != null ? rule.infix() : null;
+            /*
+                No infix expression at this point, so we're done.
+                This should never happen, because we won't go inside while loop without any infix rule
+            */
+            if (infix == null) {
+                return leftHandSide;
+            }
+            leftHandSide = infix.parse(leftHandSide, rule, this);
+        }
+        return leftHandSide;
+    }
+
+    /**
+     * Expression rules are tried one after another with backtracking, so the same expression
+     * is parsed many times at the same position (i.e. as a const array element, listener and then
+     * on its own). With nested expressions this grows exponentially with the nesting depth.
+     *
+     * Parsing depends only on the position, so the result (and the position after it)
+     * is remembered and replayed when the rule is tried again at the same position.
+     *
+     * Every level of nested expressions (operands of prefix operators, brackets, subscripts or targetnames)
+     * goes through a memoized rule. The rule nested {@link #MAX_NESTING} levels deep isn't parsed in place,
+     * it's thrown as a {@link NestedOperand} to the outermost memoized rule, which keeps the operands
+     * on an explicit stack and parses them from the innermost one outwards. The rule of an outer operand
+     * then finds its nested operand already parsed, so the call stack never holds more than {@link #MAX_NESTING} levels.
+     */
+    private ConcreteSyntaxTree.Node memoized(Map<Integer, ParseResult> results, Supplier<ConcreteSyntaxTree.Node> rule) {
+        checkCancelled();
+        var start = mark();
+        if (!results.containsKey(start)) {
+            var lastToken = lastToken();
+            var consumed = consumedTokens;
+            if (nesting == MAX_NESTING) {
+                throw new NestedOperand(results, rule, start, lastToken, consumed);
+            }
+            if (nesting > 0) {
+                memoize(results, rule, start, lastToken, consumed);
+            } else {
+                var depth = profiler.depth();
+                try {
+                    memoize(results, rule, start, lastToken, consumed);
+                } catch (NestedOperand nested) {
+                    profiler.unwind(depth);
+                    memoizeNested(new NestedOperand(results, rule, start, lastToken, consumed), nested);
+                }
+            }
+        }
+
+        var result = results.get(start);
+        if (result.lastToken() != null) {
+            restore(result.end(), result.lastToken());
+            consumedTokens++;
+        } else {
+            restore(result.end());
+        }
+        return result.node();
+    }
+
+    /**
+     * Parses the outermost operand once the nested operand (and the operands nested in it too deep) are parsed,
+     * from the innermost one outwards
+     */
+    private void memoizeNested(NestedOperand outermost, NestedOperand nested) {
+        var operands = new ArrayDeque<NestedOperand>();
+        operands.push(outermost);
+        operands.push(nested);
+        var depth = profiler.depth();
+        while (!operands.isEmpty()) {
+            checkCancelled();
+            var operand = operands.peek();
+            restore(operand.start(), operand.lastToken());
+            consumedTokens = operand.consumedTokens();
+            try {
+                memoize(operand.results(), operand.rule(), operand.start(), operand.lastToken(), operand.consumedTokens());
+                operands.pop();
+            } catch (NestedOperand deeper) {
+                // the operand is parsed again once the deeper one is
+                profiler.unwind(depth);
+                operands.push(deeper);
+            }
+        }
+    }
+
+    /**
+     * @param lastToken last token consumed before the start
+     * @param consumed tokens consumed before the start
+     */
+    private void memoize(Map<Integer, ParseResult> results, Supplier<ConcreteSyntaxTree.Node> rule, int start, Token lastToken, int consumed) {
+        nesting++;
+        ConcreteSyntaxTree.Node node;
+        try {
+            node = rule.get();
+        } finally {
+            nesting--;
+        }
+        results.put(start, new ParseResult(node, tokens.mark(), consumed != consumedTokens ? lastToken() : null));
+        restore(start, lastToken);
+        consumedTokens = consumed;
+    }
+
+    /**
+     * Thrown when the operand of a prefix operator doesn't parse
+     */
+    static final class UnmatchedPrefixException extends RuntimeException {
+        UnmatchedPrefixException(TokenType tokenType) {
+            super("Could not parse \"" + tokenType + "\".");
+        }
+    }
+
+    /**
+     * @param lastToken last token consumed by the rule, null if the rule didn't consume any tokens
+     */
+    private record ParseResult(ConcreteSyntaxTree.Node node, int end, Token lastToken) {}
+
+    /**
+     * Memoized rule to parse at the position, thrown when it's nested too deep to be parsed in place.
+     * It's only used to unwind the recursion, so it's without the stack trace.
+     *
+     * @param lastToken last token consumed before the position
+     * @param consumedTokens tokens consumed before the position
+     */
+    private static final class NestedOperand extends RuntimeException {
+        private final Map<Integer, ParseResult> results;
+        private final Supplier<ConcreteSyntaxTree.Node> rule;
+        private final int start;
+        private final Token lastToken;
+        private final int consumedTokens;
+
+        NestedOperand(Map<Integer, ParseResult> results, Supplier<ConcreteSyntaxTree.Node> rule, int start, Token lastToken, int consumedTokens) {
+            super(null, null, false, false);
+            this.results = results;
+            this.rule = rule;
+            this.start = start;
+            this.lastToken = lastToken;
+            this.consumedTokens = consumedTokens;
+        }
+
+        Map<Integer, ParseResult> results() {
+            return results;
+        }
+
+        Supplier<ConcreteSyntaxTree.Node> rule() {
+            return rule;
+        }
+
+        int start() {
+            return start;
+        }
+
+        Token lastToken() {
+            return lastToken;
+        }
+
+        int consumedTokens() {
+            return consumedTokens;
+        }
+    }
+
+    private Operator nextRulePrecedence(Map<TokenType, ParseRule> rules) {
+        var rule = rules.get(peekToken().type());
+        return rule != null && rule.infix() != null ? rule.precedence() : NULL;
+    }
+
+    boolean isMatched(ConcreteSyntaxTree.Node node) {
+        return node != null;
+    }
+
+    boolean isMatched(Token token) {
+        return token != null;
+    }
+
+    Token lastToken() {
+        return tokens.lastToken();
+    }
+
+    Token currentToken() {
+        return peekToken();
+    }
+
+    int mark() {
+        profiler.marked();
+        return tokens.mark();
+    }
+
+    void restore(int pos) {
+        profiler.restored(tokens.mark() - pos);
+        tokens.restore(pos);
+    }
+
+    private void restore(int pos, Token lastToken) {
+        profiler.restored(tokens.mark() - pos);
+        tokens.restore(pos, lastToken);
+    }
+
+    ParserProfiler profiler() {
+        return profiler;
+    }
+
+    ConcreteSyntaxTreeBuilder nodes() {
+        return nodes;
+    }
+
+    /**
+     * Ends the production entered at {@code started}
+     *
+     * @return the node the production parsed, null if it didn't match
+     */
+    ConcreteSyntaxTree.Node exit(Production production, long started, ConcreteSyntaxTree.Node node) {
+        profiler.exit(production, started, isMatched(node));
+        return node;
+    }
+
+    private boolean match(TokenType... types) {
+        if (tokens.match(types)) {
+            consumedTokens++;
+            return true;
+        }
+        return false;
+    }
+
+    boolean check(TokenType... types) {
+        return tokens.check(types);
+    }
+
+    Token consume(TokenType... type) {
+        var token = tokens.consume(type);
+        if (token != null) {
+            consumedTokens++;
+        }
+        return token;
+    }
+
+    private Token nextToken() {
+        return tokens.nextToken();
+    }
+
+    Token peekToken() {
+        return tokens.peekToken();
+    }
+
+    boolean isNotEOF() {
+        return !tokens.isEOF();
+    }
+
+    void checkCancelled() {
+        cancellation.throwIfCancelled("Parsing");
+    }
+
+    void consumeNewLines() {
+        while (tokens.check(TOKEN_EOL)) tokens.nextToken();
+    }
+
+    /**
+     * Gives back the new line consumed while looking ahead for optional tokens,
+     * so it can end the statement line
+     */
+    void rewindNewLine() {
+        if (tokens.peekTokenAhead(-1).type() == TOKEN_EOL) {
+            tokens.rewind(1);
+        }
+    }
+
+    ConcreteSyntaxTree.Node errorBadToken(Token badToken, TokenType... expectedTokenTypes) {
+        return error(badToken, "bad token '" + badToken.type().name() + " (" + badToken.lexeme() + ")', expected " + tokenNames(expectedTokenTypes));
+    }
+
+    ConcreteSyntaxTree.Node errorBadToken(Token badToken, String expected) {
+        return error(badToken, "bad token '" + badToken.type().name() + " (" + badToken.lexeme() + ")', expected " + expected + "'");
+    }
+
+    String tokenNames(TokenType... tokens) {
+        return String.join(" | ", Arrays.stream(tokens).map(TokenType::nameWithExample).toList());
+    }
+
+    ConcreteSyntaxTree.Node error(String message) {
+        return error(tokens.lastToken(), message);
+    }
+
+    ConcreteSyntaxTree.Node error(Token token, String message) {
+        panicMode = true;
+        var error = new ParseError(script, token.pos(), message);
+        var skipNodes = sync();
+        skipNodes.add(0, nodes.parseErrorToken(token));
+        return nodes.parseError(error, skipNodes);
+    }
+
+    private List<ConcreteSyntaxTree.Node> sync() {
+        var skipNodes = new ArrayList<ConcreteSyntaxTree.Node>();
+        while (isNotEOF()) {
+            var token = nextToken();
+            skipNodes.add(nodes.parseErrorToken(token));
+            if (token.isType(TOKEN_EOL)) {
+                break;
+            }
+        }
+        return skipNodes;
+    }
+
+    private static final Map<TokenType, BinaryRule> binaryExpressionRules = new HashMap<>();
+    static {
+        binaryExpressionRules.put(TOKEN_MULTIPLY, new BinaryRule(MULTIPLICATION_EXPRESSION, "multiplicationExpression", TOKEN_MULTIPLY, MULTIPLY));
+        binaryExpressionRules.put(TOKEN_DIVIDE, new BinaryRule(DIVISION_EXPRESSION, "divisionExpression", TOKEN_DIVIDE, DIVIDE));
+        binaryExpressionRules.put(TOKEN_PERCENTAGE, new BinaryRule(MODULO_EXPRESSION, "moduloExpression", TOKEN_PERCENTAGE, MODULUS));
+        binaryExpressionRules.put(TOKEN_PLUS, new BinaryRule(ADDITION_EXPRESSION, "additionExpression", TOKEN_PLUS, PLUS));
+        binaryExpressionRules.put(TOKEN_MINUS, new BinaryRule(SUBTRACTION_EXPRESSION, "subtractionExpression", TOKEN_MINUS, MINUS));
+        binaryExpressionRules.put(TOKEN_LESS_THAN, new BinaryRule(LESS_THAN_EXPRESSION, "lessThanExpression", TOKEN_LESS_THAN, LESS_THAN));
+        binaryExpressionRules.put(TOKEN_GREATER_THAN, new BinaryRule(GREATER_THAN_EXPRESSION, "greaterThanExpression", TOKEN_GREATER_THAN, GREATER_THAN));
+        binaryExpressionRules.put(TOKEN_LESS_THAN_OR_EQUAL, new BinaryRule(LESS_THAN_OR_EQUALS_EXPRESSION, "lessThanOrEqualExpression", TOKEN_LESS_THAN_OR_EQUAL, LESS_THAN_OR_EQUAL));
+        binaryExpressionRules.put(TOKEN_GREATER_THAN_OR_EQUAL, new BinaryRule(GREATER_THAN_OR_EQUAL_EXPRESSION, "greaterThanOrEqualExpression", TOKEN_GREATER_THAN_OR_EQUAL, GREATER_THAN_OR_EQUAL));
+        binaryExpressionRules.put(TOKEN_EQUALITY, new BinaryRule(EQUALITY_EXPRESSION, "equalityExpression", TOKEN_EQUALITY, EQUALITY));
+        binaryExpressionRules.put(TOKEN_INEQUALITY, new BinaryRule(INEQUALITY_EXPRESSION, "inequalityExpression", TOKEN_INEQUALITY, INEQUALITY));
+        binaryExpressionRules.put(TOKEN_BITWISE_AND, new BinaryRule(BITWISE_AND_EXPRESSION, "bitwiseAndExpression", TOKEN_BITWISE_AND, BITWISE_AND));
+        binaryExpressionRules.put(TOKEN_BITWISE_EXCL_OR, new BinaryRule(BITWISE_XOR_EXPRESSION, "bitwiseXorExpression", TOKEN_BITWISE_EXCL_OR, BITWISE_XOR));
+        binaryExpressionRules.put(TOKEN_BITWISE_OR, new BinaryRule(BITWISE_OR_EXPRESSION, "bitwiseOrExpression", TOKEN_BITWISE_OR, BITWISE_OR));
+        binaryExpressionRules.put(TOKEN_LOGICAL_AND, new BinaryRule(LOGICAL_AND_EXPRESSION, "logicalAndExpression", TOKEN_LOGICAL_AND, LOGICAL_AND));
+        binaryExpressionRules.put(TOKEN_LOGICAL_OR, new BinaryRule(LOGICAL_OR_EXPRESSION, "logicalOrExpression", TOKEN_LOGICAL_OR, LOGICAL_OR));
+    }
+
+    private record BinaryRule(ConcreteSyntaxTree.NodeType nodeType, String name, TokenType operator, Operator precedence) {}
+}
@@ -0,0 +1,177 @@
+package com.github.razorapid.morpheus.lang.parser;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.List;
+
+/**
+ * Records the productions the parser goes through.
+ *
+ * Every production rule enters and exits the profiler, whether it records or not. Profiling is switched off
+ * with {@link #NONE}, whose methods do nothing and are inlined into nothing by the JIT.
+ * Only the parser created with {@link Parser#profiled} records.
+ */
+interface ParserProfiler {
+
+    ParserProfiler NONE = new ParserProfiler() {
+        @Override
+        public long enter(Production production) {
+            return 0;
+        }
+
+        @Override
+        public void exit(Production production, long started, boolean matched) {
+        }
+
+        @Override
+        public void marked() {
+        }
+
+        @Override
+        public void restored(int tokensRewound) {
+        }
+
+        @Override
+        public int depth() {
+            return 0;
+        }
+
+        @Override
+        public void unwind(int depth) {
+        }
+
+        @Override
+        public ParserStats stats() {
+            return ParserStats.empty();
+        }
+    };
+
+    /**
+     * @return time the production started at, to pass to {@link #exit}
+     */
+    long enter(Production production);
+
+    void exit(Production production, long started, boolean matched);
+
+    /**
+     * The production in progress marked the position to backtrack to
+     */
+    void marked();
+
+    /**
+     * The production in progress restored the marked position
+     */
+    void restored(int tokensRewound);
+
+    /**
+     * @return number of productions in progress, to pass to {@link #unwind}
+     */
+    int depth();
+
+    /**
+     * Productions entered after the given depth were left by an exception, they failed
+     */
+    void unwind(int depth);
+
+    ParserStats stats();
+
+    /**
+     * Productions nest, so the production in progress is on the top of the stack.
+     * Time of a production is counted only by its outermost invocation, so it doesn't add up
+     * the time of recursive invocations more than once.
+     */
+    final class Recording implements ParserProfiler {
+        private static final Production[] PRODUCTIONS = Production.values();
+
+        private final long[] invocations = new long[PRODUCTIONS.length];
+        private final long[] matched = new long[PRODUCTIONS.length];
+        private final long[] marks = new long[PRODUCTIONS.length];
+        private final long[] restores = new long[PRODUCTIONS.length];
+        private final long[] tokensRewound = new long[PRODUCTIONS.length];
+        private final long[] nanos = new long[PRODUCTIONS.length];
+        private final int[] active = new int[PRODUCTIONS.length];
+
+        private Production[] stack = new Production[64];
+        private long[] started = new long[64];
+        private int depth = 0;
+
+        @Override
+        public long enter(Production production) {
+            var i = production.ordinal();
+            invocations[i]++;
+            active[i]++;
+            if (depth == stack.length) {
+                stack = Arrays.copyOf(stack, depth * 2);
+                started = Arrays.copyOf(started, depth * 2);
+            }
+            var now = System.nanoTime();
+            stack[depth] = production;
+            started[depth++] = now;
+            return now;
+        }
+
+        @Override
+        public void exit(Production production, long started, boolean matched) {
+            var i = production.ordinal();
+            depth--;
+            if (matched) {
+                this.matched[i]++;
+            }
+            if (--active[i] == 0) {
+                nanos[i] += System.nanoTime() - started;
+            }
+        }
+
+        @Override
+        public void marked() {
+            if (depth > 0) {
+                marks[stack[depth - 1].ordinal()]++;
+            }
+        }
+
+        @Override
+        public void restored(int tokensRewound) {
+            if (depth == 0 || tokensRewound <= 0) {
+                return;
+            }
+            var i = stack[depth - 1].ordinal();
+            restores[i]++;
+            this.tokensRewound[i] += tokensRewound;
+        }
+
+        @Override
+        public int depth() {
+            return depth;
+        }
+
+        @Override
+        public void unwind(int depth) {
+            while (this.depth > depth) {
+                exit(stack[this.depth - 1], started[this.depth - 1], false);
+            }
+        }
+
+        @Override
+        public ParserStats stats() {
+            var productions = new ArrayList<ParserStats.ProductionStats>();
+            for (var production : PRODUCTIONS) {
+                var i = production.ordinal();
+                if (invocations[i] > 0) {
+                    productions.add(new ParserStats.ProductionStats(
+                        production.ruleName(),
+                        invocations[i],
+                        matched[i],
+                        invocations[i] - matched[i] - active[i],
+                        marks[i],
+                        restores[i],
+                        tokensRewound[i],
+                        nanos[i]
+                    ));
+                }
+            }
+            productions.sort(Comparator.comparingLong(ParserStats.ProductionStats::nanos).reversed());
+            return new ParserStats(List.copyOf(productions));
+        }
+    }
+}
@@ -0,0 +1,66 @@
+package com.github.razorapid.morpheus.lang.parser;
+
+import lombok.EqualsAndHashCode;
+import lombok.Value;
+
+import java.util.List;
+import java.util.Optional;
+
+/**
+ * Statistics of the production rules recorded by the parser created with {@link Parser#profiled}.
+ *
+ * Productions are listed by their cumulative time, the slowest first. Productions that were never invoked are left out.
+ */
+@Value
+@EqualsAndHashCode
+public class ParserStats {
+    private static final ParserStats EMPTY = new ParserStats(List.of());
+
+    List<ProductionStats> productions;
+
+    /**
+     * Statistics of a parser without profiling
+     */
+    public static ParserStats empty() {
+        return EMPTY;
+    }
+
+    /**
+     * @param production name of the rule or its labelled alternative in the grammar, i.e. "assignmentExpression"
+     */
+    public Optional<ProductionStats> production(String production) {
+        return productions.stream().filter(it -> it.production().equals(production)).findFirst();
+    }
+
+    public long marks() {
+        return productions.stream().mapToLong(ProductionStats::marks).sum();
+    }
+
+    public long restores() {
+        return productions.stream().mapToLong(ProductionStats::restores).sum();
+    }
+
+    public long tokensRewound() {
+        return productions.stream().mapToLong(ProductionStats::tokensRewound).sum();
+    }
+
+    @Value
+    @EqualsAndHashCode
+    public static class ProductionStats {
+        /** name of the rule or its labelled alternative in the grammar */
+        String production;
+        /** number of times the production was tried */
+        long invocations;
+        long matched;
+        /** tried at a position the production doesn't start at, or backtracked */
+        long failed;
+        /** number of times the production marked the position to backtrack to */
+        long marks;
+        /** number of times the production restored the marked position to backtrack */
+        long restores;
+        /** tokens given back by these restores, they're parsed again by the next alternative */
+        long tokensRewound;
+        /** time spent in the production including the nested ones, recursive invocations are counted once */
+        long nanos;
+    }
+}
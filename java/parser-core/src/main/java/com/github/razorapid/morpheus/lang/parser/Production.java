@@ -0,0 +1,49 @@
+package com.github.razorapid.morpheus.lang.parser;
+
+/**
+ * Production rules (or labelled alternatives) of the morpheus.xbnf grammar
+ * that the {@link Parser} parses with a method or a statement frame of their own
+ */
+enum Production {
+    STATEMENT_LIST("statementList"),
+    STATEMENT_LINE("statementLine"),
+    STATEMENT("statement"),
+    COMPOUND_STATEMENT("compoundStatement"),
+    LABEL_STATEMENT("labelStatement"),
+    THREAD_LABEL_STATEMENT("threadLabelStatement"),
+    SWITCH_CASE_LABEL_STATEMENT("switchCaseLabelStatement"),
+    IF_ELSE_STATEMENT("ifElseStatement"),
+    SWITCH_STATEMENT("switchStatement"),
+    WHILE_STATEMENT("whileStatement"),
+    FOR_STATEMENT("forStatement"),
+    TRY_CATCH_STATEMENT("tryCatchStatement"),
+    BREAK_STATEMENT("breakStatement"),
+    CONTINUE_STATEMENT("continueStatement"),
+    NOOP_STATEMENT("noopStatement"),
+    EXPRESSION_STATEMENT("expressionStatement"),
+    THREAD_FUNCTION_CALL_EXPRESSION("threadFunctionCallExpression"),
+    LISTENER_FUNCTION_CALL_EXPRESSION("listenerFunctionCallExpression"),
+    ASSIGNMENT_EXPRESSION("assignmentExpression"),
+    INCREMENT_OR_DECREMENT_EXPRESSION("incrementOrDecrementExpression"),
+    PRIMARY_EXPRESSION("primaryExpression"),
+    CONST_ARRAY_EXPRESSION("constArrayExpression"),
+    IDENTIFIER_PRIMARY_EXPRESSION("identifierPrimaryExpression"),
+    NON_IDENTIFIER_PRIMARY_EXPRESSION("nonIdentifierPrimaryExpression"),
+    SCALAR_COMPONENT("scalarComponent"),
+    EVENT_PARAMETER_LIST("eventParameterList"),
+    EXPRESSION("expression"),
+    FUNCTION_PRIMARY_EXPRESSION("functionPrimaryExpression"),
+    UNARY_FUNCTION_PRIMARY_EXPRESSION("unaryFunctionPrimaryExpression"),
+    MAKE_ARRAY_EXPRESSION("makeArrayExpression"),
+    MAKE_ARRAY_ROW_EXPRESSION("makeArrayRowExpression");
+
+    private final String ruleName;
+
+    Production(String ruleName) {
+        this.ruleName = ruleName;
+    }
+
+    String ruleName() {
+        return ruleName;
+    }
+}
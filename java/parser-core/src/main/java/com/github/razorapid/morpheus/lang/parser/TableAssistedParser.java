@@ -0,0 +1,847 @@
+package com.github.razorapid.morpheus.lang.parser;
+
+import com.github.razorapid.morpheus.lang.CancellationToken;
+import com.github.razorapid.morpheus.lang.CancelledException;
+import com.github.razorapid.morpheus.lang.Source;
+import com.github.razorapid.morpheus.lang.Token;
+import com.github.razorapid.morpheus.lang.TokenType;
+import com.github.razorapid.morpheus.lang.Tokens;
+import com.github.razorapid.morpheus.lang.cst.ConcreteSyntaxTree;
+import com.github.razorapid.morpheus.lang.cst.ConcreteSyntaxTreeBuilder;
+import com.github.razorapid.morpheus.lang.parser.GrammarTables.BinaryExpression;
+import com.github.razorapid.morpheus.lang.parser.GrammarTables.Expression;
+import com.github.razorapid.morpheus.lang.parser.GrammarTables.IdentifierPrimaryExpression;
+import com.github.razorapid.morpheus.lang.parser.GrammarTables.IterationStatement;
+import com.github.razorapid.morpheus.lang.parser.GrammarTables.LabelStatement;
+import com.github.razorapid.morpheus.lang.parser.GrammarTables.LiteralExpression;
+import com.github.razorapid.morpheus.lang.parser.GrammarTables.MemberSelectionExpression;
+import com.github.razorapid.morpheus.lang.parser.GrammarTables.NonIdentifierPrimaryExpression;
+import com.github.razorapid.morpheus.lang.parser.GrammarTables.NonIdentifierScalarComponentExpression;
+import com.github.razorapid.morpheus.lang.parser.GrammarTables.PrimaryExpression;
+import com.github.razorapid.morpheus.lang.parser.GrammarTables.ScalarComponent;
+import com.github.razorapid.morpheus.lang.parser.GrammarTables.SelectionStatement;
+import com.github.razorapid.morpheus.lang.parser.GrammarTables.Statement;
+import com.github.razorapid.morpheus.lang.parser.GrammarTables.UnaryFunctionPrimaryExpression;
+import com.github.razorapid.morpheus.lang.parser.GrammarTables.UnaryNonIdentifierExpression;
+import lombok.NonNull;
+
+import java.util.ArrayList;
+
+import static com.github.razorapid.morpheus.lang.TokenType.TOKEN_COLON;
+import static com.github.razorapid.morpheus.lang.TokenType.TOKEN_CASE;
+import static com.github.razorapid.morpheus.lang.TokenType.TOKEN_CATCH;
+import static com.github.razorapid.morpheus.lang.TokenType.TOKEN_DOUBLE_COLON;
+import static com.github.razorapid.morpheus.lang.TokenType.TOKEN_ELSE;
+import static com.github.razorapid.morpheus.lang.TokenType.TOKEN_END;
+import static com.github.razorapid.morpheus.lang.TokenType.TOKEN_ENDARRAY;
+import static com.github.razorapid.morpheus.lang.TokenType.TOKEN_EOF;
+import static com.github.razorapid.morpheus.lang.TokenType.TOKEN_EOL;
+import static com.github.razorapid.morpheus.lang.TokenType.TOKEN_IDENTIFIER;
+import static com.github.razorapid.morpheus.lang.TokenType.TOKEN_INTEGER;
+import static com.github.razorapid.morpheus.lang.TokenType.TOKEN_LEFT_BRACES;
+import static com.github.razorapid.morpheus.lang.TokenType.TOKEN_LEFT_BRACKET;
+import static com.github.razorapid.morpheus.lang.TokenType.TOKEN_NEG;
+import static com.github.razorapid.morpheus.lang.TokenType.TOKEN_RIGHT_BRACES;
+import static com.github.razorapid.morpheus.lang.TokenType.TOKEN_RIGHT_BRACKET;
+import static com.github.razorapid.morpheus.lang.TokenType.TOKEN_RIGHT_SQUARE_BRACKET;
+import static com.github.razorapid.morpheus.lang.TokenType.TOKEN_SEMICOLON;
+import static com.github.razorapid.morpheus.lang.TokenType.TOKEN_STRING;
+
+/**
+ * Hand-written parser that predicts its alternatives from the parsing tables generated from morpheus.xbnf
+ * (see {@link GrammarTables}), for parsing large batches of scripts. It builds the same concrete syntax trees
+ * as {@link Parser}, which stays the reference implementation of the grammar.
+ *
+ * Only the tables are generated: FIRST sets, the alternative predicted by the next token and the precedence levels
+ * of the binary operators. The parse procedures below follow the grammar by hand, so a change of the grammar
+ * changes them too. Rule alternatives are predicted from the tables instead of being tried one by one,
+ * and binary operators are parsed by precedence climbing over the generated precedence levels.
+ * Rules sharing a prefix are left-factored: the non identifier primary expression that starts listener calls,
+ * assignments, increments and const arrays is parsed once and the token after it picks the alternative.
+ * Only grouping expressions and vector declarations, which both start with a bracket and can't be told apart
+ * by a fixed number of tokens, are tried one after another, with their results memoized by the position of the bracket.
+ *
+ * This parser handles neither errors nor deep nesting. A statement line that doesn't parse cleanly,
+ * or nests deeper than {@link #MAX_DEPTH} rules, is given up and parsed again from its beginning
+ * by the reference parser, so the trees of invalid scripts are the reference ones. {@link #fallbacks()} counts them.
+ */
+public class TableAssistedParser {
+    private static final int MAX_DEPTH = 200;
+    private static final Fallback FALLBACK = new Fallback();
+    private static final int FAILED = -1;
+
+    private final Tokens tokens;
+    private final Parser reference;
+    private final ConcreteSyntaxTreeBuilder nodes = new ConcreteSyntaxTreeBuilder();
+
+    private Token[] input;
+    private int size;
+    private int pos;
+    private int depth;
+    private boolean tooDeep;
+    private Token lastToken;
+    private int fallbacks;
+
+    private ConcreteSyntaxTree.Node[] bracketExpressions;
+    private int[] bracketExpressionEnds;
+
+    private CancellationToken cancellation = CancellationToken.none();
+
+    public TableAssistedParser(@NonNull Source script, @NonNull Tokens tokens) {
+        this.tokens = tokens;
+        this.reference = new Parser(script, tokens);
+    }
+
+    public ConcreteSyntaxTree parse() {
+        return parse(CancellationToken.none());
+    }
+
+    /**
+     * Parses the script, unless the cancellation token is cancelled in the meantime.
+     * The token is checked at statement boundaries.
+     *
+     * @throws CancelledException when parsing was cancelled
+     */
+    public ConcreteSyntaxTree parse(@NonNull CancellationToken cancellation) {
+        this.cancellation = cancellation;
+        this.input = tokens.list().toArray(new Token[0]);
+        this.size = input.length;
+        this.pos = tokens.mark();
+        this.lastToken = tokens.lastToken();
+        this.bracketExpressions = null;
+        this.bracketExpressionEnds = null;
+        this.fallbacks = 0;
+
+        var statements = new ArrayList<ConcreteSyntaxTree.Node>();
+        while (isNotEOF()) {
+            var statement = parseStatementLineOrFallback();
+            if (statement == null) {
+                break;
+            }
+            statements.add(statement);
+        }
+        tokens.restore(pos, lastToken);
+
+        return new ConcreteSyntaxTree(nodes.statementList(statements));
+    }
+
+    /**
+     * Statement lines of the last parse that were parsed again by the reference parser
+     */
+    public int fallbacks() {
+        return fallbacks;
+    }
+
+    private ConcreteSyntaxTree.Node parseStatementLineOrFallback() {
+        var lineStart = pos;
+        var lineLastToken = lastToken;
+        try {
+            depth = 0;
+            tooDeep = false;
+            return parseStatementLine();
+        } catch (Fallback e) {
+            fallbacks++;
+            tokens.restore(lineStart, lineLastToken);
+            var statement = reference.parseStatementLine(cancellation);
+            pos = tokens.mark();
+            lastToken = tokens.lastToken();
+            return statement;
+        }
+    }
+
+    private ConcreteSyntaxTree.Node parseStatementLine() {
+        consumeNewLines();
+        var statement = parseStatement();
+        if (statement == null || !check(TOKEN_EOL) && !check(TOKEN_SEMICOLON)) {
+            throw FALLBACK;
+        }
+        var tokenEol = match(TOKEN_EOL);
+        return nodes.statementLine(statement, tokenEol);
+    }
+
+    /**
+     * Statement lines of the post statements of the for loop, a statement that can't be parsed ends the list
+     */
+    private ConcreteSyntaxTree.Node parseStatementList() {
+        var statements = new ArrayList<ConcreteSyntaxTree.Node>();
+        while (isNotEOF()) {
+            consumeNewLines();
+            var statement = parseStatement();
+            if (statement == null) {
+                break;
+            }
+            statements.add(nodes.statementLine(statement, match(TOKEN_EOL)));
+        }
+        return nodes.statementList(statements);
+    }
+
+    /**
+     * @return statement, or null when no statement starts at the current position
+     */
+    private ConcreteSyntaxTree.Node parseStatement() {
+        cancellation.throwIfCancelled("Parsing");
+        enter();
+        var statement = switch (Statement.PREDICT[peek().ordinal()]) {
+            case Statement.COMPOUND_STATEMENT -> parseCompoundStatement();
+            case Statement.LABEL_STATEMENT -> parseLabelOrThreadFunctionCallStatement();
+            case Statement.SELECTION_STATEMENT -> nodes.selectionStatement(
+                SelectionStatement.PREDICT[peek().ordinal()] == SelectionStatement.IF_ELSE_STATEMENT
+                    ? parseIfElseStatement()
+                    : parseSwitchStatement()
+            );
+            case Statement.ITERATION_STATEMENT -> nodes.iterationStatement(
+                IterationStatement.PREDICT[peek().ordinal()] == IterationStatement.WHILE_STATEMENT
+                    ? parseWhileStatement()
+                    : parseForStatement()
+            );
+            case Statement.TRY_CATCH_STATEMENT -> parseTryCatchStatement();
+            case Statement.BREAK_STATEMENT -> nodes.breakStatement(next());
+            case Statement.CONTINUE_STATEMENT -> nodes.continueStatement(next());
+            case Statement.NOOP_STATEMENT -> nodes.noopStatement(next());
+            case Statement.EXPRESSION_STATEMENT -> parseExpressionStatement();
+            default -> null;
+        };
+        depth--;
+        return statement != null ? nodes.statement(statement) : null;
+    }
+
+    private ConcreteSyntaxTree.Node expectStatement() {
+        var statement = parseStatement();
+        if (statement == null) {
+            throw FALLBACK;
+        }
+        return statement;
+    }
+
+    private ConcreteSyntaxTree.Node parseCompoundStatement() {
+        var tokenLeftBraces = expect(TOKEN_LEFT_BRACES);
+        consumeNewLines();
+        var statements = new ArrayList<ConcreteSyntaxTree.Node>();
+        while (isNotEOF() && !check(TOKEN_RIGHT_BRACES)) {
+            statements.add(expectStatement());
+            consumeNewLines();
+        }
+        var tokenRightBraces = expect(TOKEN_RIGHT_BRACES);
+        return nodes.compoundStatement(tokenLeftBraces, statements, tokenRightBraces);
+    }
+
+    /**
+     * Thread labels and thread function calls both start with the name and the parameters,
+     * only the colon after them makes the label
+     */
+    private ConcreteSyntaxTree.Node parseLabelOrThreadFunctionCallStatement() {
+        if (LabelStatement.PREDICT[peek().ordinal()] == LabelStatement.SWITCH_CASE_LABEL_STATEMENT) {
+            return nodes.labelStatement(parseSwitchCaseLabelStatement());
+        }
+
+        var tokenIdentOrEnd = next();
+        var eventParamList = parseEventParameterList();
+        var tokenColon = match(TOKEN_COLON);
+        if (tokenColon != null) {
+            return nodes.labelStatement(nodes.threadLabelStatement(tokenIdentOrEnd, eventParamList, tokenColon));
+        }
+        return nodes.expressionStatement(nodes.threadFunctionCallExpression(tokenIdentOrEnd, eventParamList));
+    }
+
+    private ConcreteSyntaxTree.Node parseSwitchCaseLabelStatement() {
+        var tokenCase = expect(TOKEN_CASE);
+        var type = peek();
+        if (type == TOKEN_INTEGER || type == TOKEN_IDENTIFIER || type == TOKEN_STRING || type == TOKEN_END) {
+            var tokenIntOrText = next();
+            var eventParamList = parseEventParameterList();
+            var tokenColon = expect(TOKEN_COLON);
+            return nodes.switchCaseLabelStatement(tokenCase, tokenIntOrText, eventParamList, tokenColon);
+        }
+
+        var tokenNeg = expect(TOKEN_NEG);
+        var tokenInt = expect(TOKEN_INTEGER);
+        var eventParamList = parseEventParameterList();
+        var tokenColon = expect(TOKEN_COLON);
+        return nodes.switchCaseLabelStatement(tokenCase, tokenNeg, tokenInt, eventParamList, tokenColon);
+    }
+
+    private ConcreteSyntaxTree.Node parseIfElseStatement() {
+        var tokenIf = next();
+        consumeNewLines();
+        var primaryExpression = expectPrimaryExpression();
+        consumeNewLines();
+        var statement = expectStatement();
+        var optionalSemicolon = match(TOKEN_SEMICOLON);
+        consumeNewLines();
+
+        var tokenElse = match(TOKEN_ELSE);
+        if (tokenElse == null) {
+            rewindNewLine();
+            return nodes.ifElseStatement(tokenIf, primaryExpression, statement, optionalSemicolon, null, null);
+        }
+        consumeNewLines();
+        var elseStatement = expectStatement();
+        return nodes.ifElseStatement(tokenIf, primaryExpression, statement, optionalSemicolon, tokenElse, elseStatement);
+    }
+
+    private ConcreteSyntaxTree.Node parseSwitchStatement() {
+        var tokenSwitch = next();
+        consumeNewLines();
+        var primaryExpression = expectPrimaryExpression();
+        consumeNewLines();
+        var compoundStatement = parseCompoundStatement();
+        return nodes.switchStatement(tokenSwitch, primaryExpression, compoundStatement);
+    }
+
+    private ConcreteSyntaxTree.Node parseWhileStatement() {
+        var tokenWhile = next();
+        consumeNewLines();
+        var primaryExpression = expectPrimaryExpression();
+        consumeNewLines();
+        var loopStatement = expectStatement();
+        return nodes.whileStatement(tokenWhile, primaryExpression, loopStatement);
+    }
+
+    private ConcreteSyntaxTree.Node parseForStatement() {
+        var tokenFor = next();
+        consumeNewLines();
+        var tokenLeftBracket = expect(TOKEN_LEFT_BRACKET);
+        consumeNewLines();
+
+        ConcreteSyntaxTree.Node preStatement = null;
+        Token tokenStatementSemicolon;
+        if (check(TOKEN_SEMICOLON)) {
+            tokenStatementSemicolon = next();
+        } else {
+            preStatement = expectStatement();
+            consumeNewLines();
+            tokenStatementSemicolon = expect(TOKEN_SEMICOLON);
+            consumeNewLines();
+        }
+
+        var expression = expectExpression();
+        consumeNewLines();
+        var tokenExpressionSemicolon = expect(TOKEN_SEMICOLON);
+        consumeNewLines();
+        var postStatements = parseStatementList();
+        consumeNewLines();
+        var tokenRightBracket = expect(TOKEN_RIGHT_BRACKET);
+        consumeNewLines();
+        var loopStatement = expectStatement();
+
+        return nodes.forStatement(
+            tokenFor,
+            tokenLeftBracket,
+            preStatement,
+            tokenStatementSemicolon,
+            expression,
+            tokenExpressionSemicolon,
+            postStatements,
+            tokenRightBracket,
+            loopStatement
+        );
+    }
+
+    private ConcreteSyntaxTree.Node parseTryCatchStatement() {
+        var tokenTry = next();
+        consumeNewLines();
+        var tryStatement = parseCompoundStatement();
+        consumeNewLines();
+        var tokenCatch = expect(TOKEN_CATCH);
+        consumeNewLines();
+        var catchStatement = parseCompoundStatement();
+        return nodes.tryCatchStatement(tokenTry, tryStatement, tokenCatch, catchStatement);
+    }
+
+    /**
+     * Listener calls, assignments and increments (or decrements) share the leading non identifier primary expression,
+     * it's parsed once and the next token decides the statement.
+     *
+     * @return statement, or null (at the starting position) when the token after the expression doesn't continue any statement
+     */
+    private ConcreteSyntaxTree.Node parseExpressionStatement() {
+        var start = pos;
+        var expression = parseNonIdentifierPrimaryExpression();
+        if (expression == null) {
+            return null;
+        }
+
+        var statement = switch (peek()) {
+            case TOKEN_IDENTIFIER, TOKEN_END -> {
+                var tokenIdentifier = next();
+                yield nodes.listenerFunctionCallExpression(expression, tokenIdentifier, parseEventParameterList());
+            }
+            case TOKEN_ASSIGNMENT, TOKEN_PLUS_EQUALS, TOKEN_MINUS_EQUALS -> {
+                var tokenAssignmentOp = next();
+                consumeNewLines();
+                yield nodes.assignmentExpression(expression, tokenAssignmentOp, expectExpression());
+            }
+            case TOKEN_INC -> nodes.incrementExpression(expression, next());
+            case TOKEN_DEC -> nodes.decrementExpression(expression, next());
+            default -> null;
+        };
+        if (statement == null) {
+            pos = start;
+            return null;
+        }
+        return nodes.expressionStatement(statement);
+    }
+
+    private ConcreteSyntaxTree.Node parseEventParameterList() {
+        var expressions = new ArrayList<ConcreteSyntaxTree.Node>();
+        while (isNotEOF()) {
+            var expression = parsePrimaryExpression();
+            if (expression == null) {
+                break;
+            }
+            expressions.add(expression);
+        }
+        return nodes.eventParameterList(expressions);
+    }
+
+    /**
+     * @return primary expression, or null when the next token can't start it
+     */
+    private ConcreteSyntaxTree.Node parsePrimaryExpression() {
+        enter();
+        var expression = switch (PrimaryExpression.PREDICT[peek().ordinal()]) {
+            case PrimaryExpression.IDENTIFIER_PRIMARY_EXPRESSION -> nodes.identifierPrimaryExpression(next());
+            case PrimaryExpression.NON_IDENTIFIER_PRIMARY_EXPRESSION -> parseNonIdentifierPrimaryExpression();
+            default -> null;
+        };
+        if (expression != null && PrimaryExpression.POSTFIX[peek().ordinal()] == PrimaryExpression.DOUBLE_COLON) {
+            expression = parseConstArrayExpression(expression);
+        }
+        depth--;
+        return expression != null ? nodes.primaryExpression(expression) : null;
+    }
+
+    private ConcreteSyntaxTree.Node expectPrimaryExpression() {
+        var expression = parsePrimaryExpression();
+        if (expression == null) {
+            throw FALLBACK;
+        }
+        return expression;
+    }
+
+    private ConcreteSyntaxTree.Node parseConstArrayExpression(ConcreteSyntaxTree.Node lhs) {
+        var elements = new ArrayList<ConcreteSyntaxTree.Node>();
+        elements.add(lhs);
+        while (check(TOKEN_DOUBLE_COLON)) {
+            var tokenDoubleColon = next();
+            var rhs = IdentifierPrimaryExpression.FIRST[peek().ordinal()]
+                ? nodes.identifierPrimaryExpression(next())
+                : parseNonIdentifierPrimaryExpression();
+            if (rhs == null) {
+                throw FALLBACK;
+            }
+            elements.add(nodes.constArrayElementSeparator(tokenDoubleColon));
+            elements.add(rhs);
+        }
+        return nodes.constArrayExpression(elements);
+    }
+
+    private ConcreteSyntaxTree.Node expectExpression() {
+        enter();
+        var operand = parseOperandExpression();
+        if (operand == null) {
+            throw FALLBACK;
+        }
+        var expression = parseBinaryExpression(0, operand);
+        depth--;
+        return expression;
+    }
+
+    /**
+     * Precedence climbing over the binary operators, operators of the same precedence are left associative
+     */
+    private ConcreteSyntaxTree.Node parseBinaryExpression(int precedence, ConcreteSyntaxTree.Node operand) {
+        var expression = operand;
+        var binary = false;
+        while (true) {
+            var alternative = BinaryExpression.POSTFIX[peek().ordinal()];
+            if (alternative == 0 || BinaryExpression.PRECEDENCE[alternative] <= precedence) {
+                break;
+            }
+            var lhs = binary ? expression : nodes.expression(expression);
+            var tokenOperator = next();
+            consumeNewLines();
+            var rhsOperand = parseOperandExpression();
+            if (rhsOperand == null) {
+                throw FALLBACK;
+            }
+            var rhs = parseBinaryExpression(BinaryExpression.PRECEDENCE[alternative], rhsOperand);
+            expression = nodes.binaryExpression(nodes.binarySubexpression(
+                BinaryExpression.NODE_TYPES[alternative],
+                BinaryExpression.NAMES[alternative],
+                lhs,
+                tokenOperator,
+                rhs
+            ));
+            binary = true;
+        }
+        return nodes.expression(expression);
+    }
+
+    private ConcreteSyntaxTree.Node parseOperandExpression() {
+        if (Expression.PREDICT[peek().ordinal()] == Expression.MAKE_ARRAY_EXPRESSION) {
+            return parseMakeArrayExpression();
+        }
+        return parseFunctionOrNonIdentifierPrimaryExpression();
+    }
+
+    /**
+     * Function primary expression, or the non identifier primary expression when the operand isn't a function.
+     *
+     * A run of unary operators applies to the function when the operand after it is a function,
+     * otherwise the operator applies to the non identifier expression and the result can start a listener call
+     * or a const array, i.e. "-local.x foo" negates the listener call, while "-local.x" negates the expression.
+     * So the operators are applied from the innermost one, checking for the function after every one of them.
+     *
+     * @return expression, or null (at the starting position) when the next token can't start it
+     */
+    private ConcreteSyntaxTree.Node parseFunctionOrNonIdentifierPrimaryExpression() {
+        var operators = pos;
+        while (UnaryFunctionPrimaryExpression.PREDICT[peek().ordinal()] != 0) {
+            next();
+        }
+        var operand = pos;
+
+        ConcreteSyntaxTree.Node function;
+        ConcreteSyntaxTree.Node nonIdentifier = null;
+        var nonIdentifierEnd = pos;
+        if (IdentifierPrimaryExpression.FIRST[peek().ordinal()]) {
+            function = parseThreadFunctionCallOrConstArrayExpression();
+        } else {
+            nonIdentifier = parsePrefixNonIdentifierPrimaryExpression();
+            nonIdentifierEnd = pos;
+            function = nonIdentifier != null ? parseListenerFunctionCallOrConstArrayExpression(nonIdentifier) : null;
+        }
+        var functionEnd = pos;
+        var functionLastToken = lastToken;
+
+        for (var i = operand - 1; i >= operators; i--) {
+            var tokenOperator = input[i];
+            if (function != null) {
+                function = unaryFunctionPrimaryExpression(tokenOperator, function);
+                continue;
+            }
+            if (nonIdentifier == null) {
+                throw FALLBACK;
+            }
+            nonIdentifier = nodes.nonIdentifierPrimaryExpression(unaryNonIdentifierExpression(tokenOperator, nonIdentifier));
+            pos = nonIdentifierEnd;
+            function = parseListenerFunctionCallOrConstArrayExpression(nonIdentifier);
+            functionEnd = pos;
+            functionLastToken = lastToken;
+        }
+
+        if (function != null) {
+            pos = functionEnd;
+            lastToken = functionLastToken;
+            return function;
+        }
+        if (nonIdentifier == null) {
+            pos = operators;
+            return null;
+        }
+        pos = nonIdentifierEnd;
+        lastToken = input[nonIdentifierEnd - 1];
+        return nonIdentifier;
+    }
+
+    private ConcreteSyntaxTree.Node parseThreadFunctionCallOrConstArrayExpression() {
+        var tokenIdentOrEnd = next();
+        if (check(TOKEN_DOUBLE_COLON)) {
+            return nodes.functionPrimaryExpression(parseConstArrayExpression(nodes.identifierPrimaryExpression(tokenIdentOrEnd)));
+        }
+        return nodes.functionPrimaryExpression(nodes.threadFunctionCallExpression(tokenIdentOrEnd, parseEventParameterList()));
+    }
+
+    /**
+     * @return function primary expression continuing the given expression, or null when the next token doesn't continue it
+     */
+    private ConcreteSyntaxTree.Node parseListenerFunctionCallOrConstArrayExpression(ConcreteSyntaxTree.Node expression) {
+        if (check(TOKEN_DOUBLE_COLON)) {
+            return nodes.functionPrimaryExpression(parseConstArrayExpression(expression));
+        }
+        if (IdentifierPrimaryExpression.FIRST[peek().ordinal()]) {
+            var tokenIdentifier = next();
+            return nodes.functionPrimaryExpression(nodes.listenerFunctionCallExpression(expression, tokenIdentifier, parseEventParameterList()));
+        }
+        return null;
+    }
+
+    private ConcreteSyntaxTree.Node unaryFunctionPrimaryExpression(Token tokenOperator, ConcreteSyntaxTree.Node function) {
+        var expression = switch (UnaryFunctionPrimaryExpression.PREDICT[tokenOperator.type().ordinal()]) {
+            case UnaryFunctionPrimaryExpression.ARITHMETIC_NEGATION_FUNCTION_EXPRESSION -> nodes.arithmeticNegationFunctionExpression(tokenOperator, function);
+            case UnaryFunctionPrimaryExpression.BITWISE_COMPLETION_FUNCTION_EXPRESSION -> nodes.bitwiseCompletionFunctionExpression(tokenOperator, function);
+            case UnaryFunctionPrimaryExpression.LOGICAL_NEGATION_FUNCTION_EXPRESSION -> nodes.logicalNegationFunctionExpression(tokenOperator, function);
+            default -> throw new IllegalStateException("Unexpected value: " + tokenOperator.type());
+        };
+        return nodes.functionPrimaryExpression(nodes.unaryFunctionPrimaryExpression(expression));
+    }
+
+    private ConcreteSyntaxTree.Node unaryNonIdentifierExpression(Token tokenOperator, ConcreteSyntaxTree.Node expression) {
+        var alternative = UnaryNonIdentifierExpression.PREDICT[tokenOperator.type().ordinal()];
+        return nodes.unaryNonIdentifierExpression(
+            true,
+            UnaryNonIdentifierExpression.NODE_TYPES[alternative],
+            UnaryNonIdentifierExpression.NAMES[alternative],
+            tokenOperator,
+            expression
+        );
+    }
+
+    /**
+     * @return non identifier primary expression, or null (at the starting position) when the next token can't start it
+     */
+    private ConcreteSyntaxTree.Node parseNonIdentifierPrimaryExpression() {
+        var operators = pos;
+        while (UnaryNonIdentifierExpression.PREDICT[peek().ordinal()] != 0) {
+            next();
+        }
+        var operand = pos;
+
+        var expression = parsePrefixNonIdentifierPrimaryExpression();
+        if (expression == null) {
+            if (operand > operators) {
+                throw FALLBACK;
+            }
+            return null;
+        }
+        for (var i = operand - 1; i >= operators; i--) {
+            expression = nodes.nonIdentifierPrimaryExpression(unaryNonIdentifierExpression(input[i], expression));
+        }
+        return expression;
+    }
+
+    /**
+     * Literal, vector, grouping or targetname expression with the member selections and subscripts following it
+     *
+     * @return non identifier primary expression, or null when the next token can't start it
+     */
+    private ConcreteSyntaxTree.Node parsePrefixNonIdentifierPrimaryExpression() {
+        var expression = switch (NonIdentifierPrimaryExpression.PREDICT[peek().ordinal()]) {
+            case NonIdentifierPrimaryExpression.LITERAL_EXPRESSION -> parseLiteralExpression();
+            case NonIdentifierPrimaryExpression.VECTOR_DECLARATION_EXPRESSION -> parseVectorOrGroupingExpression();
+            case NonIdentifierPrimaryExpression.TARGETNAME_EXPRESSION -> parseTargetnameExpression();
+            default -> null;
+        };
+        if (expression == null) {
+            return null;
+        }
+        return nodes.nonIdentifierPrimaryExpression(parseMemberSelectionAndSubscriptExpressions(expression));
+    }
+
+    private ConcreteSyntaxTree.Node parseMemberSelectionAndSubscriptExpressions(ConcreteSyntaxTree.Node lhs) {
+        var expression = lhs;
+        while (true) {
+            switch (NonIdentifierPrimaryExpression.POSTFIX[peek().ordinal()]) {
+                case NonIdentifierPrimaryExpression.MEMBER_SELECTION_EXPRESSION -> {
+                    var tokenPeriod = next();
+                    if (!MemberSelectionExpression.GROUP_1[peek().ordinal()]) {
+                        throw FALLBACK;
+                    }
+                    expression = nodes.memberSelectionExpression(expression, tokenPeriod, next());
+                }
+                case NonIdentifierPrimaryExpression.SUBSCRIPT_EXPRESSION -> {
+                    var tokenLeftSqBracket = next();
+                    var subscript = expectExpression();
+                    var tokenRightSqBracket = expect(TOKEN_RIGHT_SQUARE_BRACKET);
+                    expression = nodes.subscriptExpression(expression, tokenLeftSqBracket, subscript, tokenRightSqBracket);
+                }
+                default -> {
+                    return expression;
+                }
+            }
+        }
+    }
+
+    private ConcreteSyntaxTree.Node parseLiteralExpression() {
+        var alternative = LiteralExpression.PREDICT[peek().ordinal()];
+        return nodes.literalExpression(LiteralExpression.NODE_TYPES[alternative], LiteralExpression.NAMES[alternative], next());
+    }
+
+    private ConcreteSyntaxTree.Node parseTargetnameExpression() {
+        var tokenDollar = next();
+        return nodes.targetnameExpression(tokenDollar, expectPrimaryExpression());
+    }
+
+    /**
+     * Grouping expression and vector declaration both start with a bracket, the grouping expression is tried first.
+     * Vector components can be brackets themselves, so the result (or the failure) is memoized by the bracket position,
+     * to not parse nested brackets again on backtracking.
+     */
+    private ConcreteSyntaxTree.Node parseVectorOrGroupingExpression() {
+        var start = pos;
+        if (bracketExpressionEnds == null) {
+            bracketExpressions = new ConcreteSyntaxTree.Node[size];
+            bracketExpressionEnds = new int[size];
+        }
+        var end = bracketExpressionEnds[start];
+        if (end == FAILED) {
+            throw FALLBACK;
+        }
+        if (end > start) {
+            pos = end;
+            lastToken = input[end - 1];
+            return bracketExpressions[start];
+        }
+
+        try {
+            var expression = parseGroupingOrVectorDeclarationExpression();
+            bracketExpressions[start] = expression;
+            bracketExpressionEnds[start] = pos;
+            return expression;
+        } catch (Fallback e) {
+            if (!tooDeep) {
+                bracketExpressionEnds[start] = FAILED;
+            }
+            throw e;
+        }
+    }
+
+    private ConcreteSyntaxTree.Node parseGroupingOrVectorDeclarationExpression() {
+        var tokenLeftBracket = next();
+        consumeNewLines();
+        var mark = pos;
+        var expression = parseGroupingExpressionContent();
+        if (expression != null) {
+            consumeNewLines();
+            var tokenRightBracket = match(TOKEN_RIGHT_BRACKET);
+            if (tokenRightBracket != null) {
+                return nodes.groupingExpression(tokenLeftBracket, expression, tokenRightBracket);
+            }
+        }
+
+        pos = mark;
+        var x = expectScalarComponent();
+        var y = expectScalarComponent();
+        var z = expectScalarComponent();
+        consumeNewLines();
+        var tokenRightBracket = expect(TOKEN_RIGHT_BRACKET);
+        return nodes.vectorDeclarationExpression(tokenLeftBracket, x, y, z, tokenRightBracket);
+    }
+
+    /**
+     * Expression inside the brackets, or null when it doesn't parse, so the brackets can still make a vector
+     */
+    private ConcreteSyntaxTree.Node parseGroupingExpressionContent() {
+        var mark = pos;
+        var markDepth = depth;
+        try {
+            return expectExpression();
+        } catch (Fallback e) {
+            if (tooDeep) {
+                throw e;
+            }
+            pos = mark;
+            depth = markDepth;
+            return null;
+        }
+    }
+
+    private ConcreteSyntaxTree.Node expectScalarComponent() {
+        enter();
+        var expression = switch (ScalarComponent.PREDICT[peek().ordinal()]) {
+            case ScalarComponent.IDENTIFIER_SCALAR_COMPONENT_EXPRESSION -> nodes.identifierScalarComponentExpression(next());
+            case ScalarComponent.NON_IDENTIFIER_SCALAR_COMPONENT_EXPRESSION -> parseNonIdentifierScalarComponentExpression();
+            default -> throw FALLBACK;
+        };
+        depth--;
+        return nodes.scalarComponentExpression(expression);
+    }
+
+    /**
+     * Vector components are separated with whitespace only, so the binary and function expressions can't be components,
+     * but the unary operators can, as well as the member selections and subscripts
+     */
+    private ConcreteSyntaxTree.Node parseNonIdentifierScalarComponentExpression() {
+        var expression = switch (NonIdentifierScalarComponentExpression.PREDICT[peek().ordinal()]) {
+            case NonIdentifierScalarComponentExpression.LITERAL_EXPRESSION -> parseLiteralExpression();
+            case NonIdentifierScalarComponentExpression.VECTOR_DECLARATION_EXPRESSION -> parseVectorOrGroupingExpression();
+            case NonIdentifierScalarComponentExpression.TARGETNAME_SCALAR_COMPONENT_EXPRESSION -> {
+                var tokenDollar = next();
+                yield nodes.targetnameScalarComponentExpression(tokenDollar, expectScalarComponent());
+            }
+            case NonIdentifierScalarComponentExpression.UNARY_NON_IDENTIFIER_EXPRESSION -> {
+                var tokenOperator = next();
+                var operand = parseNonIdentifierPrimaryExpression();
+                if (operand == null) {
+                    throw FALLBACK;
+                }
+                yield unaryNonIdentifierExpression(tokenOperator, operand);
+            }
+            default -> throw FALLBACK;
+        };
+        return nodes.nonIdentifierScalarComponentExpression(parseMemberSelectionAndSubscriptExpressions(expression));
+    }
+
+    private ConcreteSyntaxTree.Node parseMakeArrayExpression() {
+        var tokenMakeArray = next();
+        var tokenEol = expect(TOKEN_EOL);
+        var rows = new ArrayList<ConcreteSyntaxTree.Node>();
+        while (!check(TOKEN_ENDARRAY)) {
+            var cols = new ArrayList<ConcreteSyntaxTree.Node>();
+            do {
+                cols.add(expectPrimaryExpression());
+            } while (!check(TOKEN_EOL));
+            rows.add(nodes.makeArrayRowExpression(cols, next()));
+        }
+        var tokenEndArray = next();
+        return nodes.makeArrayExpression(tokenMakeArray, tokenEol, rows, tokenEndArray);
+    }
+
+    private void enter() {
+        if (++depth > MAX_DEPTH) {
+            tooDeep = true;
+            throw FALLBACK;
+        }
+    }
+
+    private TokenType peek() {
+        return pos < size ? input[pos].type() : TOKEN_EOF;
+    }
+
+    private boolean check(TokenType type) {
+        return peek() == type;
+    }
+
+    private boolean isNotEOF() {
+        return peek() != TOKEN_EOF;
+    }
+
+    private Token next() {
+        lastToken = input[pos++];
+        return lastToken;
+    }
+
+    private Token match(TokenType type) {
+        return check(type) ? next() : null;
+    }
+
+    private Token expect(TokenType type) {
+        if (!check(type)) {
+            throw FALLBACK;
+        }
+        return next();
+    }
+
+    private void consumeNewLines() {
+        while (check(TOKEN_EOL)) {
+            pos++;
+        }
+    }
+
+    private void rewindNewLine() {
+        if (pos > 0 && input[pos - 1].type() == TOKEN_EOL) {
+            pos--;
+        }
+    }
+
+    /**
+     * Thrown when the statement line can't be parsed cleanly and has to be parsed by the reference parser,
+     * preallocated and without the stack trace, as it's only used to unwind the recursion
+     */
+    private static final class Fallback extends RuntimeException {
+        Fallback() {
+            super(null, null, false, false);
+        }
+    }
+}
@@ -4,6 +4,8 @@ import com.github.razorapid.morpheus.lang.lexer.Lexer
 import spock.lang.Specification
 import spock.lang.Unroll
 
+import java.time.Duration
+
 import static TokenType.*
 
 class LexerSpec extends Specification {
@@ -1109,6 +1111,42 @@ class LexerSpec extends Specification {
         "line_and_col_test.scr" || "line_and_col_test.tokens"
     }
 
+    def "stops scanning when cancelled"() {
+        setup:
+        def script = new Source("test_script.scr", "local.x = 1\nlocal.y = 2\n")
+        def lexer = new Lexer(script)
+
+        when:
+        lexer.scan(cancellation)
+
+        then:
+        thrown(CancelledException)
+
+        where:
+        cancellation << [
+            CancellationToken.create().tap { it.cancel() },
+            CancellationToken.withTimeout(Duration.ZERO)
+        ]
+    }
+
+    def "scans whole script when not cancelled"() {
+        setup:
+        def script = new Source("test_script.scr", "local.x = 1\n")
+
+        when:
+        def result = new Lexer(script).scan(cancellation)
+
+        then:
+        result.list() == new Lexer(script).scan().list()
+
+        where:
+        cancellation << [
+            CancellationToken.none(),
+            CancellationToken.create(),
+            CancellationToken.withTimeout(Duration.ofHours(1))
+        ]
+    }
+
     private String loadScript(String scriptFilename) {
         return this.class.getResource("/lexer/" + scriptFilename).text
     }
@@ -0,0 +1,64 @@
+package com.github.razorapid.morpheus.lang
+
+import com.github.razorapid.morpheus.lang.cst.ConcreteSyntaxTree
+import com.github.razorapid.morpheus.lang.cst.visitors.XmlPrinterVisitor
+import groovy.transform.CompileStatic
+
+import static org.xmlunit.assertj3.XmlAssert.assertThat
+
+/**
+ * Scripts and expected trees of the parser resources, and the assertions on the parsed trees shared by the specs
+ */
+class ParserFixtures {
+
+    static String loadScr(String scrFilename, String subdir = null) {
+        if (subdir == null) {
+            return ParserFixtures.getResource("/parser/${scrFilename}.scr").text
+        } else {
+            return ParserFixtures.getResource("/parser/$subdir/${scrFilename}.scr").text
+        }
+    }
+
+    static String loadXml(String xmlFilename, String subdir = null) {
+        if (subdir == null) {
+            return ParserFixtures.getResource("/parser/${xmlFilename}.xml").text
+        } else {
+            return ParserFixtures.getResource("/parser/$subdir/${xmlFilename}.xml").text
+        }
+    }
+
+    static void assertCstAsExpected(ConcreteSyntaxTree cst, String expectedXml) {
+        def xmlTree = new XmlPrinterVisitor(false).visit(cst)
+        assertThat(xmlTree).and(expectedXml)
+                .ignoreWhitespace()
+                .areIdentical()
+    }
+
+    static int countNodes(ConcreteSyntaxTree cst, ConcreteSyntaxTree.NodeType type) {
+        return countNodes(cst) { it.type() == type }
+    }
+
+    static int countNodes(ConcreteSyntaxTree cst, Class<? extends ConcreteSyntaxTree.Node> nodeClass) {
+        return countNodes(cst) { nodeClass.isInstance(it) }
+    }
+
+    @CompileStatic
+    static int countNodes(ConcreteSyntaxTree cst, Closure<Boolean> counted) {
+        def count = 0
+        def nodes = new ArrayDeque<ConcreteSyntaxTree.Node>([cst.program()])
+        while (!nodes.isEmpty()) {
+            def node = nodes.pop()
+            if (counted(node)) {
+                count++
+            }
+            if (node instanceof ConcreteSyntaxTree.NonTerminalNode) {
+                for (def child : node.children()) {
+                    if (child != null) {
+                        nodes.push(child)
+                    }
+                }
+            }
+        }
+        return count
+    }
+}
@@ -1,19 +1,44 @@
 package com.github.razorapid.morpheus.lang
 
+import com.github.razorapid.morpheus.lang.cst.ConcreteSyntaxTree
 import com.github.razorapid.morpheus.lang.lexer.Lexer
 import com.github.razorapid.morpheus.lang.parser.Parser
-import guru.nidi.graphviz.engine.Format
-import guru.nidi.graphviz.engine.Graphviz
-import guru.nidi.graphviz.engine.GraphvizV8Engine
-import com.github.razorapid.morpheus.lang.ast.visitors.VisualAstGraphVisitor
-import com.github.razorapid.morpheus.lang.cst.visitors.VisualGraphVisitor
+import com.github.razorapid.morpheus.lang.parser.ParserStats
+import com.github.razorapid.morpheus.lang.ast.visitors.DotAstGraphWriter
+import com.github.razorapid.morpheus.lang.cst.visitors.CstToAstLowering
+import com.github.razorapid.morpheus.lang.cst.visitors.CstToAstVisitor
+import com.github.razorapid.morpheus.lang.cst.visitors.DotGraphWriter
 import com.github.razorapid.morpheus.lang.cst.visitors.XmlPrinterVisitor
 import spock.lang.Specification
 
+import java.lang.ref.WeakReference
 import java.nio.file.Files
+import java.time.Duration
 
 import static TokenType.TOKEN_SEMICOLON
-import static org.xmlunit.assertj3.XmlAssert.assertThat
+import static com.github.razorapid.morpheus.lang.cst.ConcreteSyntaxTree.NodeType.ADDITION_EXPRESSION
+import static com.github.razorapid.morpheus.lang.cst.ConcreteSyntaxTree.NodeType.BINARY_EXPRESSION
+import static com.github.razorapid.morpheus.lang.cst.ConcreteSyntaxTree.NodeType.COMPOUND_STATEMENT
+import static com.github.razorapid.morpheus.lang.cst.ConcreteSyntaxTree.NodeType.ERROR
+import static com.github.razorapid.morpheus.lang.cst.ConcreteSyntaxTree.NodeType.EXPRESSION
+import static com.github.razorapid.morpheus.lang.cst.ConcreteSyntaxTree.NodeType.EXPRESSION_STATEMENT
+import static com.github.razorapid.morpheus.lang.cst.ConcreteSyntaxTree.NodeType.FUNCTION_PRIMARY_EXPRESSION
+import static com.github.razorapid.morpheus.lang.cst.ConcreteSyntaxTree.NodeType.GROUPING_EXPRESSION
+import static com.github.razorapid.morpheus.lang.cst.ConcreteSyntaxTree.NodeType.IF_ELSE_STATEMENT
+import static com.github.razorapid.morpheus.lang.cst.ConcreteSyntaxTree.NodeType.INTEGER_LITERAL
+import static com.github.razorapid.morpheus.lang.cst.ConcreteSyntaxTree.NodeType.LITERAL_EXPRESSION
+import static com.github.razorapid.morpheus.lang.cst.ConcreteSyntaxTree.NodeType.NON_IDENTIFIER_PRIMARY_EXPRESSION
+import static com.github.razorapid.morpheus.lang.cst.ConcreteSyntaxTree.NodeType.PRIMARY_EXPRESSION
+import static com.github.razorapid.morpheus.lang.cst.ConcreteSyntaxTree.NodeType.STATEMENT
+import static com.github.razorapid.morpheus.lang.cst.ConcreteSyntaxTree.NodeType.SUBSCRIPT_EXPRESSION
+import static com.github.razorapid.morpheus.lang.cst.ConcreteSyntaxTree.NodeType.TARGETNAME_EXPRESSION
+import static com.github.razorapid.morpheus.lang.cst.ConcreteSyntaxTree.NodeType.UNARY_FUNCTION_PRIMARY_EXPRESSION
+import static com.github.razorapid.morpheus.lang.cst.ConcreteSyntaxTree.NodeType.UNARY_NON_IDENTIFIER_EXPRESSION
+import static com.github.razorapid.morpheus.lang.cst.ConcreteSyntaxTree.NodeType.WHILE_STATEMENT
+import static com.github.razorapid.morpheus.lang.ParserFixtures.assertCstAsExpected
+import static com.github.razorapid.morpheus.lang.ParserFixtures.countNodes
+import static com.github.razorapid.morpheus.lang.ParserFixtures.loadScr
+import static com.github.razorapid.morpheus.lang.ParserFixtures.loadXml
 
 class ParserSpec extends Specification {
 
@@ -447,24 +472,357 @@ class ParserSpec extends Specification {
 
     }
 
+    def "parses scripts in outline mode with lazily parsed thread bodies"() {
+        setup:
+        def source = new Source(script, loadScr(script, "scripts"))
+        def expectedCst = new Parser(source, new Lexer(source).scan()).parse()
+        def parser = new Parser(source, new Lexer(source).scan())
+
+        when:
+        def cst = parser.parseOutline()
+        def threadBodies = cst.program().children().findAll { it instanceof ConcreteSyntaxTree.LazyNode }
+
+        then:
+        !threadBodies.isEmpty()
+        threadBodies.every { !it.isParsed() }
+
+        and:
+        cst.program().children().collectMany { it instanceof ConcreteSyntaxTree.LazyNode ? it.children() : [it] } ==
+                expectedCst.program().children()
+        threadBodies.every { it.isParsed() }
+
+        where:
+        script    || _
+        "0_test"  || _
+        "3_test"  || _
+        "5_test"  || _
+        "11_test" || _
+    }
+
+    def "expands outline of the script to the same trees as the full parse"() {
+        setup:
+        def source = new Source("test_script.scr", script ?: loadScr(fixture, "scripts"))
+        def fullParser = new Parser(source, new Lexer(source).scan())
+        def fullCst = fullParser.parse()
+        def parser = new Parser(source, new Lexer(source).scan())
+
+        when:
+        def cst = parser.parseOutline()
+
+        then:
+        cst.program().children().collectMany { it instanceof ConcreteSyntaxTree.LazyNode ? it.children() : [it] } ==
+                fullCst.program().children()
+        new CstToAstVisitor().visit(cst) == new CstToAstVisitor().visit(fullCst)
+        new CstToAstLowering().lower(cst) == new CstToAstLowering().lower(fullCst)
+        parser.errors() == fullParser.errors()
+
+        where:
+        fixture   | script
+        "0_test"  | null
+        "1_test"  | null
+        "2_test"  | null
+        "3_test"  | null
+        "4_test"  | null
+        "5_test"  | null
+        "6_test"  | null
+        "7_test"  | null
+        "8_test"  | null
+        "9_test"  | null
+        "10_test" | null
+        "11_test" | null
+        "12_test" | null
+        "13_test" | null
+        null      | "main:\nwaitthread foo 1 == 2 : 3\nlocal.x = 1\nend\nbar:\nend\n"
+        null      | "main:\nlocal.x = 1; foo local.y:\nlocal.z = 2\nend\n"
+        null      | "main:\nif (local.x)\nfoo:\nend\nbar:\nend\n"
+        null      | "main:\nif (local.x) wait 1\nelse\nfoo:\nend\n"
+        null      | "main:\nwhile local.x\n\nfoo:\nend\n"
+        null      | "main:\nfor (local.i = 0; local.i < 2; local.i++)\nfoo:\nend\n"
+        null      | "main:\n{\nfoo:\n}\nend\nbar: end\n"
+    }
+
+    def "reports errors of lazily parsed thread bodies once they are parsed"() {
+        setup:
+        def source = new Source("test_script.scr", script)
+        def fullParser = new Parser(source, new Lexer(source).scan())
+        def fullCst = fullParser.parse()
+        def parser = new Parser(source, new Lexer(source).scan())
+
+        when:
+        def cst = parser.parseOutline()
+
+        then:
+        parser.errors().isEmpty()
+
+        when:
+        cst.program().children().findAll { it instanceof ConcreteSyntaxTree.LazyNode }.each { it.children() }
+
+        then:
+        !fullParser.errors().isEmpty()
+        fullParser.errors().size() == countNodes(fullCst, ConcreteSyntaxTree.ErrorNode)
+        parser.errors() == fullParser.errors()
+
+        where:
+        script                                                                           || _
+        "main:\nlocal.x = )\nend\n"                                                      || _
+        "main:\nlocal.x = )\nend\nfoo local.y:\nlocal.z = ]\nend\nbar:\nwait 1 + )\nend\n" || _
+    }
+
+    def "parses deeply nested statements and expressions"() {
+        setup:
+        def source = new Source("test_script.scr", script)
+        def parser = new Parser(source, new Lexer(source).scan())
+
+        when:
+        def cst = parser.parse()
+
+        then:
+        countNodes(cst, nodeType) == count
+        parser.errors().isEmpty()
+
+        where:
+        script                                                       | nodeType                          || count
+        "if (1) x\n" + "else if (1) x\n" * 200000 + "else y\n"       | IF_ELSE_STATEMENT                 || 200001
+        "{\n" * 200000 + "}\n" * 200000                              | COMPOUND_STATEMENT                || 200000
+        "while (1) " * 200000 + "x\n"                                 | WHILE_STATEMENT                   || 200000
+        "local.x = 1" + " + 1" * 200000                               | BINARY_EXPRESSION                 || 200000
+        "local.x = " + "(" * 200000 + "1" + ")" * 200000              | GROUPING_EXPRESSION               || 200000
+        "local.x = " + "!" * 200000 + "\$y"                           | UNARY_NON_IDENTIFIER_EXPRESSION   || 200000
+        "local.x = " + "~" * 200000 + "\$y"                           | UNARY_NON_IDENTIFIER_EXPRESSION   || 200000
+        "local.x = " + "!" * 200000 + "y"                             | UNARY_FUNCTION_PRIMARY_EXPRESSION || 200000
+        "local.x = " + "\$a[" * 200000 + "1" + "]" * 200000           | SUBSCRIPT_EXPRESSION              || 200000
+        "local.x = " + "\$" * 200000 + "y"                            | TARGETNAME_EXPRESSION             || 200000
+        "local.x = " + "(\$a[" * 200000 + "1" + "])" * 200000         | SUBSCRIPT_EXPRESSION              || 200000
+    }
+
+    def "parses top-level statement lines one by one"() {
+        setup:
+        def source = new Source(script, loadScr(script, "scripts"))
+        def expectedCst = new Parser(source, new Lexer(source).scan()).parse()
+        def parser = new Parser(source, new Lexer(source).scan())
+
+        when:
+        def statements = parser.statements()
+
+        then:
+        statements.toList() == expectedCst.program().children()
+        !statements.hasNext()
+
+        where:
+        script    || _
+        "0_test"  || _
+        "5_test"  || _
+        "11_test" || _
+    }
+
+    def "parser forgets memoized expressions of the statement lines it parsed"() {
+        setup:
+        def source = new Source(script, loadScr(script, "scripts"))
+        def parser = new Parser(source, new Lexer(source).scan())
+
+        when:
+        def expressions = parseExpressions(parser)
+
+        then:
+        !expressions.isEmpty()
+        isCollected(expressions)
+        parser.errors() == new Parser(source, new Lexer(source).scan()).tap { it.parse() }.errors()
+
+        where:
+        script    || _
+        "0_test"  || _
+        "5_test"  || _
+        "11_test" || _
+    }
+
+    def "stops parsing when cancelled"() {
+        setup:
+        def source = new Source("test_script.scr", "main:\nlocal.x = 1\nend\n")
+        def parser = new Parser(source, new Lexer(source).scan())
+
+        when:
+        parser.parse(cancellation)
+
+        then:
+        thrown(CancelledException)
+
+        where:
+        cancellation << [
+            CancellationToken.create().tap { it.cancel() },
+            CancellationToken.withTimeout(Duration.ZERO)
+        ]
+    }
+
+    def "stops parsing in the middle of deeply nested expressions when cancelled"() {
+        setup:
+        def source = new Source("test_script.scr", "main:\nlocal.x = ${expression}\nend\n")
+        def parser = Parser.profiled(source, new Lexer(source).scan())
+        def clockReads = 0
+        def cancellation = CancellationToken.withDeadline(1, { (long) clockReads++ })
+
+        when:
+        parser.parse(cancellation)
+
+        then:
+        thrown(CancelledException)
+        clockReads == 2
+        parser.stats().productions().every { it.invocations() == it.matched() + it.failed() }
+        parser.stats().production("statement").orElseThrow().matched() == 1
+        parser.stats().production("nonIdentifierPrimaryExpression").orElseThrow().matched() < 50000
+
+        where:
+        nesting    | expression
+        "grouping" | "(" * 50000 + "1" + ")" * 50000
+        "binary"   | "1" + " + 1" * 50000
+        "unary"    | "!" * 50000 + "\$y"
+    }
+
+    def "parses whole script when not cancelled"() {
+        setup:
+        def source = new Source("test_script.scr", "main:\nlocal.x = 1\nend\n")
+        def expectedCst = new Parser(source, new Lexer(source).scan()).parse()
+        def parser = new Parser(source, new Lexer(source).scan())
+
+        when:
+        def cst = parser.parse(CancellationToken.withTimeout(Duration.ofHours(1)))
+
+        then:
+        cst == expectedCst
+    }
+
+    def "profiled parser records statistics of production rules"() {
+        setup:
+        def source = new Source("test_script.scr", "main:\nlocal.x = 1\nwait 1\nlocal.x++\nend\n")
+        def expectedCst = new Parser(source, new Lexer(source).scan()).parse()
+        def parser = Parser.profiled(source, new Lexer(source).scan())
+
+        when:
+        def cst = parser.parse()
+        def stats = parser.stats()
+
+        then:
+        cst == expectedCst
+        stats.productions().every { it.invocations() == it.matched() + it.failed() }
+        with(stats.production("assignmentExpression").orElseThrow()) {
+            invocations() == 2
+            matched() == 1
+            restores() == 1
+            tokensRewound() == 3
+        }
+        with(stats.production("threadLabelStatement").orElseThrow()) {
+            matched() == 1
+            restores() == 2
+        }
+        stats.restores() > 0
+        stats.tokensRewound() >= stats.restores()
+    }
+
+    def "profiled parser records marks and the backtracking of memoized expressions"() {
+        setup:
+        def source = new Source("test_script.scr", "main:\nlocal.x = -(1 + 2)\nlocal.y = -!(\$z)\nend\n")
+        def expectedCst = new Parser(source, new Lexer(source).scan()).parse()
+        def parser = Parser.profiled(source, new Lexer(source).scan())
+
+        when:
+        def cst = parser.parse()
+        def stats = parser.stats()
+
+        then:
+        cst == expectedCst
+        stats.productions().every { it.invocations() == it.matched() + it.failed() }
+        with(stats.production("nonIdentifierPrimaryExpression").orElseThrow()) {
+            marks() == 36
+            restores() == 10
+            tokensRewound() == 36
+        }
+        with(stats.production("assignmentExpression").orElseThrow()) {
+            marks() == 2
+            restores() == 0
+        }
+        stats.marks() >= stats.restores()
+    }
+
+    def "parser records no statistics unless profiled"() {
+        setup:
+        def source = new Source("test_script.scr", "main:\nlocal.x = 1\nend\n")
+        def parser = new Parser(source, new Lexer(source).scan())
+
+        when:
+        parser.parse()
+
+        then:
+        parser.stats() == ParserStats.empty()
+    }
+
+    def "compact parser elides pass-through wrapper nodes"() {
+        setup:
+        def source = new Source("test_script.scr", "main:\nlocal.x = 1 + 2\nend\n")
+        def cst = new Parser(source, new Lexer(source).scan()).parse()
+        def parser = Parser.compact(source, new Lexer(source).scan())
+
+        when:
+        def compactCst = parser.parse()
+        def statement = compactCst.program().children()[1].children()[0]
+        def assignment = statement.children()[0]
+        def addition = assignment.children()[2]
+        def literal = addition.children()[0]
+
+        then:
+        new CstToAstVisitor().visit(compactCst) == new CstToAstVisitor().visit(cst)
+        statement.type() == EXPRESSION_STATEMENT
+        statement.isA(STATEMENT)
+        addition.type() == ADDITION_EXPRESSION
+        addition.isA(EXPRESSION)
+        !addition.isA(PRIMARY_EXPRESSION)
+        literal.type() == INTEGER_LITERAL
+        literal.isA(LITERAL_EXPRESSION)
+        literal.isA(NON_IDENTIFIER_PRIMARY_EXPRESSION)
+        !literal.isA(STATEMENT)
+    }
+
+    def "compact parser lowers scripts to the same abstract syntax tree"() {
+        setup:
+        def source = new Source(script, loadScr(script, "scripts"))
+        def cst = new Parser(source, new Lexer(source).scan()).parse()
+
+        when:
+        def compactCst = Parser.compact(source, new Lexer(source).scan()).parse()
+
+        then:
+        new CstToAstVisitor().visit(compactCst) == new CstToAstVisitor().visit(cst)
+
+        where:
+        script << (0..13).collect { "${it}_test".toString() }
+    }
+
     private static Token t(TokenType type) {
         return Token.of(type, "", -1, -1, -1);
     }
 
-    private String loadScr(String scrFilename, String subdir = null) {
-        if (subdir == null) {
-            return this.class.getResource("/parser/${scrFilename}.scr").text
-        } else {
-            return this.class.getResource("/parser/$subdir/${scrFilename}.scr").text
+    /**
+     * @return expressions of the tree the parser parsed, referenced only weakly once the tree is dropped
+     */
+    private static List<WeakReference<ConcreteSyntaxTree.Node>> parseExpressions(Parser parser) {
+        def expressions = []
+        def nodes = new ArrayDeque<ConcreteSyntaxTree.Node>([parser.parse().program()])
+        while (!nodes.isEmpty()) {
+            def node = nodes.pop()
+            if (node.type() in [NON_IDENTIFIER_PRIMARY_EXPRESSION, FUNCTION_PRIMARY_EXPRESSION]) {
+                expressions << new WeakReference<ConcreteSyntaxTree.Node>(node)
+            }
+            if (node instanceof ConcreteSyntaxTree.NonTerminalNode) {
+                node.children().findAll { it != null }.each { nodes.push(it) }
+            }
         }
+        return expressions
     }
 
-    private String loadXml(String xmlFilename, String subdir = null) {
-        if (subdir == null) {
-            return this.class.getResource("/parser/${xmlFilename}.xml").text
-        } else {
-            return this.class.getResource("/parser/$subdir/${xmlFilename}.xml").text
+    private static boolean isCollected(List<WeakReference<ConcreteSyntaxTree.Node>> references) {
+        for (int i = 0; i < 20 && references.any { it.get() != null }; i++) {
+            System.gc()
+            Thread.sleep(10)
         }
+        return references.every { it.get() == null }
     }
 
     private void printAnyErrors(Parser parser) {
@@ -476,22 +834,16 @@ class ParserSpec extends Specification {
     private void visualizeCst(boolean visualize, com.github.razorapid.morpheus.lang.cst.ConcreteSyntaxTree cst, String name) {
         if (!visualize) return;
 
-        def graph = new VisualGraphVisitor().visit(cst)
-        def file = File.createTempFile("morpheus-lang-$name", ".svg")
-        def g = Graphviz.fromGraph(graph)
-        g.useEngine(new GraphvizV8Engine())
-        g.render(Format.SVG_STANDALONE).toFile(file)
+        def file = File.createTempFile("morpheus-lang-$name", ".dot")
+        file.withWriter { new DotGraphWriter().write(cst, it) }
     }
 
     private void visualizeAst(boolean visualize, com.github.razorapid.morpheus.lang.cst.ConcreteSyntaxTree cst, String name) {
         if (!visualize) return;
 
         def ast = new com.github.razorapid.morpheus.lang.cst.visitors.CstToAstVisitor().visit(cst)
-        def graph = new VisualAstGraphVisitor().visit(ast)
-        def file = File.createTempFile("morpheus-lang-ast-$name", ".svg")
-        def g = Graphviz.fromGraph(graph)
-        g.useEngine(new GraphvizV8Engine())
-        g.render(Format.SVG_STANDALONE).toFile(file)
+        def file = File.createTempFile("morpheus-lang-ast-$name", ".dot")
+        file.withWriter { new DotAstGraphWriter().write(ast, it) }
     }
 
     private void serializeCstToXml(boolean serialize, com.github.razorapid.morpheus.lang.cst.ConcreteSyntaxTree cst, String name) {
@@ -501,11 +853,4 @@ class ParserSpec extends Specification {
         def file = File.createTempFile("morpheus-lang-$name", ".xml")
         Files.writeString(file.toPath(), xml)
     }
-
-    private void assertCstAsExpected(com.github.razorapid.morpheus.lang.cst.ConcreteSyntaxTree cst, String expectedXml) {
-        def xmlTree = new XmlPrinterVisitor(false).visit(cst)
-        assertThat(xmlTree).and(expectedXml)
-                .ignoreWhitespace()
-                .areIdentical()
-    }
 }
@@ -0,0 +1,90 @@
+package com.github.razorapid.morpheus.lang
+
+import com.github.razorapid.morpheus.lang.lexer.Lexer
+import spock.lang.Specification
+
+class SourceSpec extends Specification {
+
+    def "gives proper source line by it's line number"() {
+        given:
+        def source = new Source(script, loadScript(script))
+
+        expect:
+        source.line(lineNo).get() == expectedLine
+
+        where:
+
+        script       | lineNo || expectedLine
+        '1_test.scr' | 1      || 'conprintf "HERE I AM\\n";'
+        '1_test.scr' | 2      || 'println "TEST TEST";'
+        '1_test.scr' | 13     || '\tlevel.players = local CreateListener'
+        '1_test.scr' | 72     || 'end local.ipOnly'
+    }
+
+    def "no line present for line number outside of source range"() {
+        given:
+        def source = new Source(script, loadScript(script))
+
+        expect:
+        source.line(lineNo).isEmpty()
+
+        where:
+
+        script       | lineNo || _
+        '6_test.scr' | 72     || _
+    }
+
+    def "resolves offsets to lines and columns as the lexer counts them"() {
+        given:
+        def lines = new Source("test_script.scr", "main:\r\n\tlocal.a = 1\n\nend\n").lineIndex()
+
+        expect:
+        lines.lines() == 5
+        lines.position(offset) == new SourcePos(offset, line, col)
+
+        where:
+
+        offset || line | col
+        0      || 1    | 1
+        5      || 1    | 6
+        6      || 1    | 7
+        7      || 2    | 1
+        8      || 2    | 2
+        20     || 3    | 1
+        21     || 4    | 1
+        25     || 5    | 1
+    }
+
+    def "resolves positions of the tokens but the end of the source as the lexer counts them"() {
+        given:
+        def source = new Source(script, loadScript(script))
+        def lines = source.lineIndex()
+
+        expect:
+        new Lexer(source).scan().list()
+                .findAll { it.type() != TokenType.TOKEN_EOF }
+                .every { lines.position((int) it.pos().pos()) == it.pos() }
+
+        where:
+
+        script                  | _
+        '1_test.scr'            | _
+        '6_test.scr'            | _
+        'line_and_col_test.scr' | _
+    }
+
+    def "builds the line index once and keeps it out of the source equality"() {
+        given:
+        def source = new Source("test_script.scr", "main:\nend\n")
+
+        expect:
+        source.lineIndex().is(source.lineIndex())
+        source == new Source("test_script.scr", "main:\nend\n")
+        source.hashCode() == new Source("test_script.scr", "main:\nend\n").hashCode()
+        source.toString() == new Source("test_script.scr", "main:\nend\n").toString()
+    }
+
+    private String loadScript(String scriptFilename) {
+        return this.class.getResource("/lexer/" + scriptFilename).text
+    }
+}
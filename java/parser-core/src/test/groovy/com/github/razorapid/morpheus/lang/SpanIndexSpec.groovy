@@ -0,0 +1,106 @@
+package com.github.razorapid.morpheus.lang
+
+import com.github.razorapid.morpheus.lang.ast.AbstractSyntaxTree
+import com.github.razorapid.morpheus.lang.cst.visitors.CstToAstVisitor
+import com.github.razorapid.morpheus.lang.lexer.Lexer
+import com.github.razorapid.morpheus.lang.parser.Parser
+import spock.lang.Specification
+
+import static com.github.razorapid.morpheus.lang.cst.ConcreteSyntaxTree.NodeType.ADDITION_EXPRESSION
+import static com.github.razorapid.morpheus.lang.cst.ConcreteSyntaxTree.NodeType.GROUPING_EXPRESSION
+import static com.github.razorapid.morpheus.lang.cst.ConcreteSyntaxTree.NodeType.NON_IDENTIFIER_PRIMARY_EXPRESSION
+
+class SpanIndexSpec extends Specification {
+
+    def "span index finds the innermost node at an offset"() {
+        setup:
+        def script = "main:\n  local.x = (1 + 2)\nend\n"
+        def source = new Source("test_script.scr", script)
+        def cst = new Parser(source, new Lexer(source).scan()).parse()
+
+        when:
+        def index = cst.spanIndex()
+        def grouping = index.nodesIn(script.indexOf("("), script.indexOf(")") + 1).find { it.type() == GROUPING_EXPRESSION }
+
+        then:
+        index.nodeAt(script.indexOf("2")).get().value().lexeme() == "2"
+        index.nodeAt(script.indexOf("+") - 1).get().type() == ADDITION_EXPRESSION
+        index.nodeAt(script.length() + 1).isEmpty()
+        grouping.type() == GROUPING_EXPRESSION
+        script.substring(index.start(grouping), index.end(grouping)) == "(1 + 2)"
+        index.parent(grouping).get().type() == NON_IDENTIFIER_PRIMARY_EXPRESSION
+        index.start(cst.program()) == 0
+        index.end(cst.program()) == script.length()
+    }
+
+    def "span index finds the innermost node of abstract syntax tree at an offset"() {
+        setup:
+        def script = "main:\n  local.x = (1 + 2)\nend\n"
+        def source = new Source("test_script.scr", script)
+        def ast = new CstToAstVisitor().visit(new Parser(source, new Lexer(source).scan()).parse())
+
+        when:
+        def index = ast.spanIndex()
+
+        then:
+        index.nodeAt(script.indexOf("2")).get() instanceof AbstractSyntaxTree.Literal
+        index.nodeAt(script.indexOf("+")).get() instanceof AbstractSyntaxTree.BinaryOp
+        index.nodesIn(script.indexOf("1"), script.indexOf(")")).size() == 3
+    }
+
+    def "span index is updated when a subtree is replaced"() {
+        setup:
+        def script = "main:\n  local.x = (1 + 2)\n  local.y = 3\nend\n"
+        def editedScript = "main:\n  local.x = (1234 + 2)\n  local.y = 3\nend\n"
+        def source = new Source("test_script.scr", script)
+        def editedSource = new Source("test_script.scr", editedScript)
+        def index = new Parser(source, new Lexer(source).scan()).parse().spanIndex()
+        def expectedIndex = new Parser(editedSource, new Lexer(editedSource).scan()).parse().spanIndex()
+        def literal = index.nodeAt(script.indexOf("1")).get()
+        def editedLiteral = expectedIndex.nodeAt(editedScript.indexOf("1")).get()
+
+        when:
+        index.replace(literal, editedLiteral)
+
+        then:
+        index.size() == expectedIndex.size()
+        (0..<editedScript.length()).every { offset ->
+            def node = index.nodeAt(offset).get()
+            def expectedNode = expectedIndex.nodeAt(offset).get()
+            node.name() == expectedNode.name() &&
+                index.start(node) == expectedIndex.start(expectedNode) &&
+                index.end(node) == expectedIndex.end(expectedNode)
+        }
+        index.nodeAt(editedScript.lastIndexOf("3")).get().value().lexeme() == "3"
+    }
+
+    def "span index renumbers the nodes that follow a replacement with another number of nodes"() {
+        setup:
+        def script = "main:\n  local.x = (1 + 2)\n  local.y = 3\nend\n"
+        def editedScript = "main:\n  local.x = (1 + 2 * 4)\n  local.y = 3\nend\n"
+        def source = new Source("test_script.scr", script)
+        def editedSource = new Source("test_script.scr", editedScript)
+        def index = new Parser(source, new Lexer(source).scan()).parse().spanIndex()
+        def expectedIndex = new Parser(editedSource, new Lexer(editedSource).scan()).parse().spanIndex()
+        def grouping = index.nodesIn(0, script.length()).find { it.type() == GROUPING_EXPRESSION }
+        def editedGrouping = expectedIndex.nodesIn(0, editedScript.length()).find { it.type() == GROUPING_EXPRESSION }
+        def sizeBefore = index.size()
+
+        when:
+        index.replace(grouping, editedGrouping)
+        def nodes = index.nodesIn(0, editedScript.length())
+        def expectedNodes = expectedIndex.nodesIn(0, editedScript.length())
+
+        then:
+        index.size() > sizeBefore
+        index.size() == expectedIndex.size()
+        nodes.size() == expectedNodes.size()
+        [nodes, expectedNodes].transpose().every { node, expectedNode ->
+            node.name() == expectedNode.name() &&
+                index.start(node) == expectedIndex.start(expectedNode) &&
+                index.end(node) == expectedIndex.end(expectedNode) &&
+                index.parent(node).map { it.name() } == expectedIndex.parent(expectedNode).map { it.name() }
+        }
+        index.nodeAt(editedScript.lastIndexOf("3")).get().value().lexeme() == "3"
+    }
+}
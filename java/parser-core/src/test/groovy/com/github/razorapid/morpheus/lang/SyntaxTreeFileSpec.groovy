@@ -0,0 +1,121 @@
+package com.github.razorapid.morpheus.lang
+
+import com.github.razorapid.morpheus.lang.ast.AbstractSyntaxTree
+import com.github.razorapid.morpheus.lang.ast.AbstractSyntaxTreeFile
+import com.github.razorapid.morpheus.lang.cst.ConcreteSyntaxTree
+import com.github.razorapid.morpheus.lang.cst.ConcreteSyntaxTreeFile
+import com.github.razorapid.morpheus.lang.cst.visitors.CstToAstVisitor
+import com.github.razorapid.morpheus.lang.lexer.Lexer
+import com.github.razorapid.morpheus.lang.parser.ParseError
+import com.github.razorapid.morpheus.lang.parser.Parser
+import spock.lang.Specification
+
+import java.nio.ByteBuffer
+import java.nio.ByteOrder
+import java.nio.file.Files
+
+import static com.github.razorapid.morpheus.lang.ParserFixtures.assertCstAsExpected
+import static com.github.razorapid.morpheus.lang.ParserFixtures.countNodes
+import static com.github.razorapid.morpheus.lang.ParserFixtures.loadScr
+import static com.github.razorapid.morpheus.lang.ParserFixtures.loadXml
+
+class SyntaxTreeFileSpec extends Specification {
+
+    def "loads scripts from binary tree files"() {
+        setup:
+        def source = new Source(script, loadScr(script, "scripts"))
+        def expectedCst = new Parser(source, new Lexer(source).scan()).parse()
+        def expectedAst = new CstToAstVisitor().visit(expectedCst)
+        def compactCst = Parser.compact(source, new Lexer(source).scan()).parse()
+        def cstFile = Files.createTempFile("morpheus-lang-$script", ".cst")
+        def astFile = Files.createTempFile("morpheus-lang-$script", ".ast")
+
+        when:
+        ConcreteSyntaxTreeFile.write(expectedCst, cstFile)
+        AbstractSyntaxTreeFile.write(expectedAst, astFile)
+        def cst = ConcreteSyntaxTreeFile.map(cstFile, source).tree()
+        def ast = AbstractSyntaxTreeFile.map(astFile, source).tree()
+        def loadedCompactCst = ConcreteSyntaxTreeFile.of(ConcreteSyntaxTreeFile.toBuffer(compactCst), source).tree()
+
+        then:
+        cst == expectedCst
+        assertCstAsExpected(cst, loadXml(script, 'scripts'))
+        ast == expectedAst
+        loadedCompactCst == compactCst
+        new CstToAstVisitor().visit(loadedCompactCst) == expectedAst
+
+        cleanup:
+        Files.deleteIfExists(cstFile)
+        Files.deleteIfExists(astFile)
+
+        where:
+        script << (0..13).collect { "${it}_test".toString() }
+    }
+
+    def "binary tree files keep parse errors"() {
+        setup:
+        def source = new Source("test_script.scr", "main:\nlocal.x = )\nend\n")
+        def cst = new Parser(source, new Lexer(source).scan()).parse()
+        def error = new ParseError(source, new SourcePos(16, 2, 11), "bad token")
+        def ast = new AbstractSyntaxTree(new AbstractSyntaxTree.Statements(new SourcePos(0, 1, 1), new SourcePos(21, 3, 4), [
+                new AbstractSyntaxTree.SyntaxError(error, error.pos(), error.pos().addCol(1))
+        ]))
+
+        when:
+        def loadedCst = ConcreteSyntaxTreeFile.of(ConcreteSyntaxTreeFile.toBuffer(cst), source).tree()
+        def loadedAst = AbstractSyntaxTreeFile.of(AbstractSyntaxTreeFile.toBuffer(ast), source).tree()
+
+        then:
+        countNodes(cst, ConcreteSyntaxTree.ErrorNode) == 1
+        loadedCst == cst
+        loadedAst == ast
+        loadedAst.program().statements()[0].error().errorMessage() == error.errorMessage()
+    }
+
+    def "rejects binary files of another format"() {
+        setup:
+        def source = new Source("test_script.scr", "main:\nlocal.x = 1\nend\n")
+        def cstBuffer = ConcreteSyntaxTreeFile.toBuffer(new Parser(source, new Lexer(source).scan()).parse())
+
+        when:
+        AbstractSyntaxTreeFile.of(cstBuffer, source)
+
+        then:
+        thrown(IOException)
+    }
+
+    def "rejects truncated and corrupt binary files when they are opened"() {
+        setup:
+        def source = new Source("test_script.scr", loadScr("0_test", "scripts"))
+        def cst = new Parser(source, new Lexer(source).scan()).parse()
+        def ast = new CstToAstVisitor().visit(cst)
+        def cstBuffer = ConcreteSyntaxTreeFile.toBuffer(cst)
+        def astBuffer = AbstractSyntaxTreeFile.toBuffer(ast)
+
+        when:
+        ConcreteSyntaxTreeFile.of(corrupt(cstBuffer), source)
+
+        then:
+        thrown(IOException)
+
+        when:
+        AbstractSyntaxTreeFile.of(corrupt(astBuffer), source)
+
+        then:
+        thrown(IOException)
+
+        where:
+        corrupt << [
+                { ByteBuffer buffer -> buffer.slice(0, 20) },
+                { ByteBuffer buffer -> buffer.slice(0, buffer.limit().intdiv(2)) },
+                { ByteBuffer buffer -> buffer.slice(0, buffer.limit() - 8) },
+                { ByteBuffer buffer -> withInt(buffer, 28, Integer.MAX_VALUE) },
+                { ByteBuffer buffer -> withInt(buffer, 32, 3) },
+        ]
+    }
+
+    private static ByteBuffer withInt(ByteBuffer buffer, int offset, int value) {
+        def copy = ByteBuffer.allocate(buffer.limit()).order(ByteOrder.LITTLE_ENDIAN).put(buffer.duplicate()).clear()
+        copy.putInt(offset, value)
+    }
+}
@@ -0,0 +1,144 @@
+package com.github.razorapid.morpheus.lang
+
+import com.github.razorapid.morpheus.lang.ast.AbstractSyntaxTree
+import com.github.razorapid.morpheus.lang.cst.visitors.CstToAstVisitor
+import com.github.razorapid.morpheus.lang.lexer.Lexer
+import com.github.razorapid.morpheus.lang.parser.Parser
+import groovy.transform.CompileStatic
+import spock.lang.Specification
+
+import java.lang.management.ManagementFactory
+
+import static com.github.razorapid.morpheus.lang.ParserFixtures.loadScr
+
+class TreeCursorSpec extends Specification {
+
+    def "tree cursor walks the trees in the preorder"() {
+        setup:
+        def source = new Source(script, loadScr(script, "scripts"))
+        def cst = new Parser(source, new Lexer(source).scan()).parse()
+        def ast = new CstToAstVisitor().visit(cst)
+
+        expect:
+        [cst, ast].each { tree ->
+            def spanIndex = tree.spanIndex()
+            def cursor = tree.cursor()
+            def path = []
+            def nodes = 0
+            while (true) {
+                path = path.take(cursor.depth())
+                assert spanIndex.parent(cursor.node()).orElse(null).is(path ? path.last() : null)
+                path << cursor.node()
+                nodes++
+                if (!cursor.gotoNext()) break
+            }
+            assert nodes == spanIndex.size()
+            assert cursor.depth() == 0 && cursor.node().is(tree.program())
+        }
+
+        where:
+        script << (0..13).collect { "${it}_test".toString() }
+    }
+
+    def "tree cursor moves to children, siblings, parents and past subtrees"() {
+        setup:
+        def source = new Source("test_script.scr", "if (1) { local.a = 1 } else local.b = 2\nlocal.c = 3\n")
+        def cst = new Parser(source, new Lexer(source).scan()).parse()
+        def cursor = new CstToAstVisitor().visit(cst).cursor()
+
+        expect:
+        cursor.node() instanceof AbstractSyntaxTree.Statements
+        cursor.gotoFirstChild()
+        cursor.node() instanceof AbstractSyntaxTree.IfElse
+        cursor.gotoFirstChild()
+        cursor.node() instanceof AbstractSyntaxTree.Literal
+        cursor.depth() == 2
+        cursor.skipSubtree()
+        cursor.node() instanceof AbstractSyntaxTree.Statements
+        cursor.gotoNextSibling()
+        cursor.node() instanceof AbstractSyntaxTree.ExpressionStmt
+        cursor.index() == 2
+        !cursor.gotoNextSibling()
+        cursor.gotoParent()
+        cursor.node() instanceof AbstractSyntaxTree.IfElse
+        cursor.skipSubtree()
+        cursor.node() instanceof AbstractSyntaxTree.ExpressionStmt
+        cursor.index() == 1
+        !cursor.skipSubtree()
+        cursor.depth() == 0
+        !cursor.gotoParent()
+    }
+
+    def "tree cursor walk enters and leaves every node and stops at empty children when asked to"() {
+        setup:
+        def source = new Source("test_script.scr", "if (1) local.a = 1\nlocal.b = 2\n")
+        def ast = new CstToAstVisitor().visit(new Parser(source, new Lexer(source).scan()).parse())
+        def events = []
+        def walker = new TreeCursor.Walker<AbstractSyntaxTree.Node, RuntimeException>() {
+            void enter(TreeCursor<AbstractSyntaxTree.Node> cursor) {
+                events << "enter ${cursor.node()?.getClass()?.simpleName} ${cursor.depth()}"
+            }
+
+            void leave(TreeCursor<AbstractSyntaxTree.Node> cursor) {
+                events << "leave ${cursor.node()?.getClass()?.simpleName} ${cursor.depth()}"
+            }
+        }
+        def ifElse = ast.cursor().tap { it.gotoFirstChild() }
+
+        when:
+        ifElse.walk(walker)
+
+        then:
+        events.collect { it.toString() } == [
+                "enter IfElse 1", "enter Literal 2", "leave Literal 2",
+                "enter ExpressionStmt 2", "enter BinaryOp 3",
+                "enter BinaryOp 4", "enter Literal 5", "leave Literal 5", "enter Literal 5", "leave Literal 5", "leave BinaryOp 4",
+                "enter Literal 4", "leave Literal 4",
+                "leave BinaryOp 3", "leave ExpressionStmt 2", "leave IfElse 1"
+        ]
+        ifElse.node() instanceof AbstractSyntaxTree.IfElse
+        ifElse.gotoNextSibling()
+
+        when:
+        def cursor = new TreeCursor<AbstractSyntaxTree.Node>(ast.program().statements()[0], new AbstractSyntaxTree.ChildSlots(), true)
+        cursor.gotoFirstChild()
+        cursor.gotoNextSibling()
+        cursor.gotoNextSibling()
+
+        then:
+        cursor.index() == 2
+        cursor.node() == null
+        !cursor.gotoFirstChild()
+        !cursor.gotoNextSibling()
+    }
+
+    def "tree cursor walks deeply nested trees without allocating per step"() {
+        setup:
+        def source = new Source("test_script.scr", "{\n" * 50000 + "}\n" * 50000)
+        def cst = new Parser(source, new Lexer(source).scan()).parse()
+        def cursor = cst.cursor()
+        def threads = (com.sun.management.ThreadMXBean) ManagementFactory.threadMXBean
+        def nodes = walk(cursor)
+
+        when:
+        def allocated = threads.currentThreadAllocatedBytes
+        walk(cursor)
+        allocated = threads.currentThreadAllocatedBytes - allocated
+
+        then:
+        nodes == 200003
+        allocated < nodes
+    }
+
+    /**
+     * Compiled statically, so the walk allocates only what the cursor does
+     */
+    @CompileStatic
+    private static int walk(TreeCursor<?> cursor) {
+        int nodes = 1
+        while (cursor.gotoNext()) {
+            nodes++
+        }
+        return nodes
+    }
+}
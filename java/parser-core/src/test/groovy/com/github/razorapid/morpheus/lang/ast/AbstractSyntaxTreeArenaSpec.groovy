@@ -0,0 +1,47 @@
+package com.github.razorapid.morpheus.lang.ast
+
+import com.github.razorapid.morpheus.lang.Source
+import com.github.razorapid.morpheus.lang.SourcePos
+import com.github.razorapid.morpheus.lang.cst.visitors.CstToAstVisitor
+import com.github.razorapid.morpheus.lang.lexer.Lexer
+import com.github.razorapid.morpheus.lang.parser.Parser
+import spock.lang.Specification
+
+import static com.github.razorapid.morpheus.lang.ParserFixtures.loadScr
+
+class AbstractSyntaxTreeArenaSpec extends Specification {
+
+    def "abstract syntax tree arena gives back the flattened tree"() {
+        setup:
+        def source = new Source(script, loadScr(script, "scripts"))
+        def ast = new CstToAstVisitor().visit(new Parser(source, new Lexer(source).scan()).parse())
+
+        when:
+        def arena = AbstractSyntaxTreeArena.of(ast, source)
+
+        then:
+        arena.size() == ast.spanIndex().size()
+        arena.tree() == ast
+        arena.tree().toString() == ast.toString()
+
+        where:
+        script << (0..13).collect { "${it}_test".toString() }
+    }
+
+    def "abstract syntax tree arena keeps positions as offsets and dispatches nodes to visitors"() {
+        setup:
+        def source = new Source("test_script.scr", "main:\r\n\tlocal.a = (1 + 2)\nlocal.b = makeArray\n1 2\n3 4\nendArray\nend\n")
+        def ast = new CstToAstVisitor().visit(new Parser(source, new Lexer(source).scan()).parse())
+        def arena = AbstractSyntaxTreeArena.of(ast, source)
+        def visitor = AbstractSyntaxTreeVisitor.methods.collectEntries { [it.name, { node -> node.class.simpleName }] } as AbstractSyntaxTreeVisitor
+
+        expect:
+        arena.tree() == ast
+        arena.start(0) == 0
+        arena.end(0) == source.source().lastIndexOf("end") + 3
+        arena.start(1) == 0 && arena.end(1) == 5
+        arena.node(1) == ast.program().statements()[0]
+        (0..<arena.size()).collect { arena.accept(it, visitor) }.take(4) == ["Statements", "ThreadLabel", "Params", "ExpressionStmt"]
+        arena.node(4).start() == new SourcePos(8, 2, 2)
+    }
+}
@@ -0,0 +1,44 @@
+package com.github.razorapid.morpheus.lang.ast
+
+import com.github.razorapid.morpheus.lang.Source
+import com.github.razorapid.morpheus.lang.cst.visitors.CstToAstVisitor
+import com.github.razorapid.morpheus.lang.lexer.Lexer
+import com.github.razorapid.morpheus.lang.parser.Parser
+import spock.lang.Specification
+
+import java.lang.reflect.Modifier
+
+import static com.github.razorapid.morpheus.lang.ParserFixtures.loadScr
+
+class AbstractSyntaxTreeDispatcherSpec extends Specification {
+
+    def "dispatcher dispatches every node to the same visit method as accept"() {
+        setup:
+        def source = new Source(script, loadScr(script, "scripts"))
+        def ast = new CstToAstVisitor().visit(new Parser(source, new Lexer(source).scan()).parse())
+        def methods = AbstractSyntaxTreeVisitor.methods.collectEntries { method -> [method.name, { node -> method.name }] }
+        def visitor = methods as AbstractSyntaxTreeVisitor
+        def dispatcher = methods as AbstractSyntaxTreeDispatcher
+        def cursor = ast.cursor()
+        def nodes = [cursor.node()]
+        while (cursor.gotoNext()) {
+            nodes << cursor.node()
+        }
+
+        expect:
+        nodes.every { dispatcher.dispatch(it) == it.accept(visitor) }
+
+        where:
+        script << (0..13).collect { "${it}_test".toString() }
+    }
+
+    def "abstract syntax tree nodes are sealed to the classes visitors visit"() {
+        setup:
+        def leaves = AbstractSyntaxTree.Node.permittedSubclasses.collectMany { it.permittedSubclasses as List }
+
+        expect:
+        AbstractSyntaxTree.Node.sealed
+        leaves.every { Modifier.isFinal(it.modifiers) }
+        leaves.collect { "visit${it.simpleName}".toString() } as Set == AbstractSyntaxTreeVisitor.methods*.name as Set
+    }
+}
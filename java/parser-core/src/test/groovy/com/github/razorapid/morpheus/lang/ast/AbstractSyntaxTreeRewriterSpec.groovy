@@ -0,0 +1,80 @@
+package com.github.razorapid.morpheus.lang.ast
+
+import com.github.razorapid.morpheus.lang.Source
+import com.github.razorapid.morpheus.lang.Token
+import com.github.razorapid.morpheus.lang.TokenType
+import com.github.razorapid.morpheus.lang.ast.visitors.ScriptPrinter
+import com.github.razorapid.morpheus.lang.cst.visitors.CstToAstVisitor
+import com.github.razorapid.morpheus.lang.lexer.Lexer
+import com.github.razorapid.morpheus.lang.parser.Parser
+import spock.lang.Specification
+
+class AbstractSyntaxTreeRewriterSpec extends Specification {
+
+    def "rewriter copies only the paths to the edited nodes"() {
+        setup:
+        def source = new Source("test_script.scr", "main:\n\tlocal.a = 1\n\twait local.a\n\tif (local.a) {\n\t\tprintln \"a\"\n\t}\nend\n\nfoo local.x:\n\tprintln local.x\nend\n")
+        def ast = new CstToAstVisitor().visit(new Parser(source, new Lexer(source).scan()).parse())
+        def program = ast.program().statements()
+        def inserted = new AbstractSyntaxTree.ExpressionStmt(null, null, new AbstractSyntaxTree.FunctionCall(null, null, true, null,
+                Token.of(TokenType.TOKEN_IDENTIFIER, "println", 0, 1, 1), new AbstractSyntaxTree.Params(null, null, [literal(TokenType.TOKEN_STRING, '"b"')])))
+
+        when:
+        def rewritten = new AbstractSyntaxTreeRewriter(ast)
+                .rename([0] as int[], "start")
+                .replace([1, 0, 1] as int[], literal(TokenType.TOKEN_INTEGER, "2"))
+                .remove([2] as int[])
+                .insert([3, 1, 1] as int[], inserted)
+                .rename([6, 0, 1, 0, 1] as int[], "y")
+                .apply()
+
+        then:
+        new ScriptPrinter().print(rewritten) == "start:\n\tlocal.a = 2\n\tif (local.a) {\n\t\tprintln \"a\"\n\t\tprintln \"b\"\n\t}\nend\n\nfoo local.x:\n\tprintln local.y\nend\n"
+        rewritten.program().statements()[1].expression().lhs().is(program[1].expression().lhs())
+        rewritten.program().statements()[2].condition().is(program[3].condition())
+        rewritten.program().statements()[2].ifClause().statements()[0].is(program[3].ifClause().statements()[0])
+        rewritten.program().statements()[3].is(program[4])
+        rewritten.program().statements()[4].is(program[5])
+        ast.program().statements() == program
+        program.size() == 8
+    }
+
+    def "rewriter rejects edits that don't apply to the tree"() {
+        setup:
+        def source = new Source("test_script.scr", "main:\n\tlocal.a = 1\n\tif (local.a) {\n\t\twait 1\n\t}\nend\n")
+        def ast = new CstToAstVisitor().visit(new Parser(source, new Lexer(source).scan()).parse())
+
+        when:
+        edit(new AbstractSyntaxTreeRewriter(ast)).apply()
+
+        then:
+        def e = thrown(IllegalArgumentException)
+        e.message == message
+
+        where:
+        edit << [
+                { it.replace([9] as int[], new AbstractSyntaxTree.Break(null, null)) },
+                { it.replace([1, 0] as int[], new AbstractSyntaxTree.Break(null, null)) },
+                { it.replace([0, 0] as int[], literal(TokenType.TOKEN_INTEGER, "1")) },
+                { it.remove([1, 0] as int[]) },
+                { it.remove([] as int[]) },
+                { it.insert([2, 1, 2] as int[], new AbstractSyntaxTree.Break(null, null)) },
+                { it.rename([1] as int[], "x") },
+                { it.remove([2] as int[]).rename([2, 0, 0] as int[], "x") }
+        ]
+        message << [
+                "No node at path [9]",
+                "Can't replace BinaryOp with Break at path [1, 0]",
+                "Can't replace Params with Literal at path [0, 0]",
+                "No statement to remove from a list of statements at path [1, 0]",
+                "The program isn't in a list of statements",
+                "No list of statements to insert at 2 at path [2, 1]",
+                "Nothing to rename at path [1]",
+                "Overlapping edits at path [2]"
+        ]
+    }
+
+    private static AbstractSyntaxTree.Literal literal(TokenType type, String lexeme) {
+        return new AbstractSyntaxTree.Literal(null, null, Token.of(type, lexeme, -1, -1, -1))
+    }
+}
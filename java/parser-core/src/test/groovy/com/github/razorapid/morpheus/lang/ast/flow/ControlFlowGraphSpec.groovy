@@ -0,0 +1,140 @@
+package com.github.razorapid.morpheus.lang.ast.flow
+
+import com.github.razorapid.morpheus.lang.Source
+import com.github.razorapid.morpheus.lang.Token
+import com.github.razorapid.morpheus.lang.TokenType
+import com.github.razorapid.morpheus.lang.ast.AbstractSyntaxTree
+import com.github.razorapid.morpheus.lang.ast.visitors.ScriptPrinter
+import com.github.razorapid.morpheus.lang.cst.visitors.CstToAstVisitor
+import com.github.razorapid.morpheus.lang.lexer.Lexer
+import com.github.razorapid.morpheus.lang.parser.Parser
+import spock.lang.Specification
+
+import static com.github.razorapid.morpheus.lang.ParserFixtures.loadScr
+
+class ControlFlowGraphSpec extends Specification {
+
+    def "control flow graph jumps through branches, loops, switches and try clauses"() {
+        setup:
+        def source = new Source("test_script.scr", "main:\n\tlocal.i = 0\n\twhile (local.i < 10) {\n\t\tif (local.i == 5) break\n\t\tlocal.i++\n\t}\n\tswitch (local.x) {\n\t\tcase 1:\n\t\t\twait 1\n\t\tcase 2:\n\t\t\twait 2\n\t\t\tbreak\n\t\tdefault:\n\t\t\twait 3\n\t}\n\ttry {\n\t\twait 4\n\t} catch {\n\t\twait 5\n\t}\nend\n")
+        def ast = new CstToAstVisitor().visit(new Parser(source, new Lexer(source).scan()).parse())
+
+        when:
+        def graph = new ControlFlowGraphs(ast).graph(0)
+        def successors = (0..<graph.blockCount()).collectEntries { block ->
+            [(blockText(graph, block)): (0..<graph.successorCount(block)).collect { blockText(graph, graph.successor(block, it)) } as Set]
+        }
+
+        then:
+        graph.blockCount() == 13
+        successors == [
+                "main:; local.i = 0"    : ["local.i < 10"] as Set,
+                ""                      : [] as Set,
+                "local.i < 10"          : ["local.i == 5", "local.x"] as Set,
+                "local.i == 5"          : ["break", "local.i++"] as Set,
+                "break"                 : ["local.x"] as Set,
+                "local.i++"             : ["local.i < 10"] as Set,
+                "local.x"               : ["case 1:; wait 1", "case 2:; wait 2; break", "default:; wait 3"] as Set,
+                "case 1:; wait 1"       : ["case 2:; wait 2; break"] as Set,
+                "case 2:; wait 2; break": ["wait 4"] as Set,
+                "default:; wait 3"      : ["wait 4"] as Set,
+                "wait 4"                : ["wait 5", "end"] as Set,
+                "wait 5"                : ["end"] as Set,
+                "end"                   : [""] as Set,
+        ]
+        (0..<graph.blockCount()).every { block ->
+            (0..<graph.successorCount(block)).every { successor ->
+                def target = graph.successor(block, successor)
+                (0..<graph.predecessorCount(target)).any { graph.predecessor(target, it) == block }
+            }
+        }
+        graph.block(ast.program().statements()[2].condition()) == graph.successor(ControlFlowGraph.ENTRY, 0)
+    }
+
+    def "control flow graph finds dominators and nested loops"() {
+        setup:
+        def source = new Source("test_script.scr", "main:\nend\n\nloops:\n\tfor (local.i = 0; local.i < 3; local.i++) {\n\t\twhile (local.j) {\n\t\t\twait 1\n\t\t\tcontinue\n\t\t}\n\t}\n\twhile (1) {\n\t\twait 2\n\t}\n\twait 3\nend\n")
+        def ast = new CstToAstVisitor().visit(new Parser(source, new Lexer(source).scan()).parse())
+
+        when:
+        def graph = new ControlFlowGraphs(ast).graph("loops").get()
+        def blocks = (0..<graph.blockCount()).collectEntries { [(blockText(graph, it)): it] }
+
+        then:
+        graph.isLoopHeader(blocks["local.i < 3"])
+        graph.isLoopHeader(blocks["local.j"])
+        graph.isLoopHeader(blocks["1"])
+        !graph.isLoopHeader(blocks["local.i++"])
+        graph.loopHeader(blocks["wait 1; continue"]) == blocks["local.j"]
+        graph.loopHeader(blocks["local.i++"]) == blocks["local.i < 3"]
+        graph.loopParent(blocks["local.j"]) == blocks["local.i < 3"]
+        graph.loopParent(blocks["local.i < 3"]) == ControlFlowGraph.NONE
+        graph.loopDepth(blocks["wait 1; continue"]) == 2
+        graph.loopDepth(blocks["local.i++"]) == 1
+        graph.loopDepth(blocks["wait 2"]) == 1
+        graph.loopDepth(ControlFlowGraph.ENTRY) == 0
+        graph.immediateDominator(blocks["local.i++"]) == blocks["local.j"]
+        graph.immediateDominator(blocks["1"]) == blocks["local.i < 3"]
+        graph.dominates(blocks["local.i < 3"], blocks["wait 2"])
+        !graph.dominates(blocks["wait 1; continue"], blocks["local.i++"])
+        !graph.isReachable(blocks["wait 3; end"])
+        !graph.isReachable(ControlFlowGraph.EXIT)
+        graph.immediateDominator(ControlFlowGraph.EXIT) == ControlFlowGraph.NONE
+        graph.loopHeader(blocks["wait 3; end"]) == ControlFlowGraph.NONE
+    }
+
+    def "control flow graphs are built once per thread and shared between threads"() {
+        setup:
+        def source = new Source(script, loadScr(script, "scripts"))
+        def ast = new CstToAstVisitor().visit(new Parser(source, new Lexer(source).scan()).parse())
+        def graphs = new ControlFlowGraphs(ast)
+        def built = new java.util.concurrent.ConcurrentLinkedQueue<ControlFlowGraph>()
+
+        when:
+        (0..<8).collect { Thread.start { (0..<graphs.threadCount()).each { built << graphs.graph(it) } } }*.join()
+
+        then:
+        built.size() == 8 * graphs.threadCount()
+        built.toSet().size() == graphs.threadCount()
+        (0..<graphs.threadCount()).every { thread ->
+            def name = graphs.name(thread)
+            name == null || graphs.graph(name).get().is(graphs.graph((0..<graphs.threadCount()).find { graphs.name(it) == name }))
+        }
+        !graphs.graph("no such thread").isPresent()
+
+        where:
+        script << (0..13).collect { "${it}_test".toString() }
+    }
+
+    def "control flow graph builds deeply nested statements"() {
+        setup:
+        AbstractSyntaxTree.Statement statement = new AbstractSyntaxTree.ExpressionStmt(null, null, literal(TokenType.TOKEN_IDENTIFIER, "wait"))
+        50000.times {
+            def body = new AbstractSyntaxTree.Statements(null, null, [statement])
+            statement = loop ? new AbstractSyntaxTree.WhileLoop(null, null, literal(TokenType.TOKEN_IDENTIFIER, "local.x"), body)
+                    : new AbstractSyntaxTree.IfElse(null, null, literal(TokenType.TOKEN_IDENTIFIER, "local.x"), body, null)
+        }
+        def ast = new AbstractSyntaxTree(new AbstractSyntaxTree.Statements(null, null, [statement]))
+
+        when:
+        def graph = new ControlFlowGraphs(ast).graph(0)
+
+        then:
+        graph.blockCount() == blocks
+        (0..<graph.blockCount()).every { graph.isReachable(it) }
+        (0..<graph.blockCount()).collect { graph.loopDepth(it) }.max() == depth
+
+        where:
+        loop  || blocks | depth
+        true  || 50003  | 50000
+        false || 50002  | 0
+    }
+
+    private static AbstractSyntaxTree.Literal literal(TokenType type, String lexeme) {
+        return new AbstractSyntaxTree.Literal(null, null, Token.of(type, lexeme, -1, -1, -1))
+    }
+
+    private static String blockText(ControlFlowGraph graph, int block) {
+        return graph.nodes(block).collect { new ScriptPrinter().print(it).trim() }.join("; ")
+    }
+}
@@ -0,0 +1,85 @@
+package com.github.razorapid.morpheus.lang.ast.visitors
+
+import com.github.razorapid.morpheus.lang.Source
+import com.github.razorapid.morpheus.lang.ast.AbstractSyntaxTree
+import com.github.razorapid.morpheus.lang.cst.visitors.CstToAstVisitor
+import com.github.razorapid.morpheus.lang.lexer.Lexer
+import com.github.razorapid.morpheus.lang.parser.Parser
+import spock.lang.Specification
+
+import static com.github.razorapid.morpheus.lang.ParserFixtures.loadScr
+
+class ConstantFolderSpec extends Specification {
+
+    def "constant folder folds literal expressions as the game evaluates them"() {
+        setup:
+        def source = new Source("test_script.scr", "local.a = ${expression}\n")
+        def ast = new CstToAstVisitor().visit(new Parser(source, new Lexer(source).scan()).parse())
+
+        when:
+        def result = new ConstantFolder().fold(ast)
+
+        then:
+        new ScriptPrinter().print(result.ast().program().statements()[0].expression().rhs()).trim() == folded
+        result.folds().size() == folds
+
+        where:
+        expression                    || folded                  | folds
+        "1 + 2 * 3"                   || "7"                     | 1
+        "7 / 2"                       || "3"                     | 1
+        "-7 % 3"                      || "-1"                    | 1
+        "2147483647 + 1"              || "-2147483648"           | 1
+        "1 + 0.5"                     || "1.5"                   | 1
+        "0.1 + 0.2"                   || "0.3"                   | 1
+        "1 < 2.5"                     || "1"                     | 1
+        "5 & 3 | 8 ^ 1"               || "9"                     | 1
+        "!1 || ~0"                    || "1"                     | 1
+        "0 && local.b"                || "0"                     | 1
+        "1 && local.b"                || "1 && local.b"          | 0
+        "\"a\" + \"b\""               || "\"ab\""                | 1
+        "( 1 2 3 ) + ( 1 1 1 ) * 2"   || "( 3.0 4.0 5.0 )"       | 1
+        "( 1 2 -3 )"                  || "( 1 2  -3 )"           | 1
+        "local.b - (0 - 3)"           || "local.b -  -3"         | 1
+        "local.c[1 + 0]"              || "local.c[1]"            | 1
+        "1 / 0"                       || "1 / 0"                 | 0
+        "3.0E38 * 10"                 || "3.0E38 * 10"           | 0
+    }
+
+    def "constant folder replaces ifs of constant conditions with the branches that run"() {
+        setup:
+        def source = new Source("test_script.scr", "main:\n\tif 0 {\n\t\tprintln 1\n\t}\n\tif (1) {\n\t\tprintln (1 + 1)\n\t\tif (2 < 1) println 3 else println (2 * 2)\n\t} else println 5\n\twhile (local.x) if 0 wait 1\n\tif (local.y) wait 1\nend\n")
+        def ast = new CstToAstVisitor().visit(new Parser(source, new Lexer(source).scan()).parse())
+        def program = ast.program().statements()
+
+        when:
+        def result = new ConstantFolder().fold(ast)
+
+        then:
+        new ScriptPrinter().print(result.ast()) == "main:\n\t{\n\t\tprintln 2\n\t\tprintln 4\n\t}\n\twhile (local.x) ;\n\tif (local.y) wait 1\nend\n"
+        result.folds()*.original()*.getClass()*.simpleName == ["IfElse", "BinaryOp", "BinaryOp", "IfElse", "IfElse", "IfElse"]
+        result.folds()[0].folded() == null
+        result.folds()[4].original().is(program[2])
+        result.folds()[5].folded() instanceof AbstractSyntaxTree.NoOperation
+        result.ast().program().statements()[0].is(program[0])
+        result.ast().program().statements()[3].is(program[4])
+        new ConstantFolder().fold(result.ast()).folds().isEmpty()
+    }
+
+    def "constant folder folds scripts to trees that print and fold no further"() {
+        setup:
+        def source = new Source(script, loadScr(script, "scripts"))
+        def ast = new CstToAstVisitor().visit(new Parser(source, new Lexer(source).scan()).parse())
+
+        when:
+        def folded = new ConstantFolder().fold(ast).ast()
+        def printedSource = new Source(script, new ScriptPrinter().print(folded))
+        def reparsed = new CstToAstVisitor().visit(new Parser(printedSource, new Lexer(printedSource).scan()).parse())
+
+        then:
+        new ConstantFolder().fold(folded).folds().isEmpty()
+        new ScriptPrinter().print(new ConstantFolder().fold(reparsed).ast()) == printedSource.source()
+
+        where:
+        script << (0..13).collect { "${it}_test".toString() }
+    }
+}
@@ -0,0 +1,103 @@
+package com.github.razorapid.morpheus.lang.ast.visitors
+
+import com.github.razorapid.morpheus.lang.Source
+import com.github.razorapid.morpheus.lang.ast.AbstractSyntaxTree
+import com.github.razorapid.morpheus.lang.ast.AbstractSyntaxTreeVisitor
+import com.github.razorapid.morpheus.lang.cst.visitors.CstToAstVisitor
+import com.github.razorapid.morpheus.lang.lexer.Lexer
+import com.github.razorapid.morpheus.lang.parser.Parser
+import spock.lang.Specification
+
+import static com.github.razorapid.morpheus.lang.ParserFixtures.loadScr
+
+class FusedTraversalSpec extends Specification {
+
+    def "fused traversal dispatches the nodes only to the rules interested in them"() {
+        setup:
+        def source = new Source(script, loadScr(script, "scripts"))
+        def ast = new CstToAstVisitor().visit(new Parser(source, new Lexer(source).scan()).parse())
+        def nodes = []
+        def cursor = ast.cursor()
+        nodes << cursor.node()
+        while (cursor.gotoNext()) {
+            nodes << cursor.node()
+        }
+        def literals = []
+        def statements = []
+        def all = []
+        def traversal = new FusedTraversal()
+                .add(new FusedTraversal.Rule() {
+                    @Override
+                    FusedTraversal.Walk visitLiteral(AbstractSyntaxTree.Literal node) {
+                        literals << node
+                        return FusedTraversal.Walk.CONTINUE
+                    }
+                }, AbstractSyntaxTree.Literal)
+                .add([visitStatements: { statements << it; FusedTraversal.Walk.CONTINUE }] as AbstractSyntaxTreeVisitor, AbstractSyntaxTree.Statements)
+                .add(new FusedTraversal.Rule() {
+                    @Override
+                    FusedTraversal.Walk visitLiteral(AbstractSyntaxTree.Literal node) {
+                        all << node
+                        return FusedTraversal.Walk.CONTINUE
+                    }
+
+                    @Override
+                    FusedTraversal.Walk visitIfElse(AbstractSyntaxTree.IfElse node) {
+                        all << node
+                        return FusedTraversal.Walk.CONTINUE
+                    }
+                }, AbstractSyntaxTree.Node)
+
+        when:
+        traversal.walk(ast)
+
+        then:
+        traversal.rules() == 3
+        literals == nodes.findAll { it instanceof AbstractSyntaxTree.Literal }
+        statements == nodes.findAll { it instanceof AbstractSyntaxTree.Statements }
+        all == nodes.findAll { it instanceof AbstractSyntaxTree.Literal || it instanceof AbstractSyntaxTree.IfElse }
+
+        where:
+        script << (0..13).collect { "${it}_test".toString() }
+    }
+
+    def "fused traversal skips subtrees per rule"() {
+        setup:
+        def source = new Source("test_script.scr", "local.a = 1\nwhile (2) { local.b = 3 }\nif (4) { local.c = 5 }\nlocal.d = 6\n")
+        def ast = new CstToAstVisitor().visit(new Parser(source, new Lexer(source).scan()).parse())
+        def outsideLoops = []
+        def everywhere = []
+        def visited = 0
+
+        when:
+        new FusedTraversal()
+                .add(new FusedTraversal.Rule() {
+                    @Override
+                    FusedTraversal.Walk visitWhileLoop(AbstractSyntaxTree.WhileLoop node) {
+                        return FusedTraversal.Walk.SKIP_SUBTREE
+                    }
+
+                    @Override
+                    FusedTraversal.Walk visitLiteral(AbstractSyntaxTree.Literal node) {
+                        outsideLoops << node.token().lexeme()
+                        return FusedTraversal.Walk.CONTINUE
+                    }
+                }, AbstractSyntaxTree.WhileLoop, AbstractSyntaxTree.Literal)
+                .add(new FusedTraversal.Rule() {
+                    @Override
+                    FusedTraversal.Walk visitLiteral(AbstractSyntaxTree.Literal node) {
+                        everywhere << node.token().lexeme()
+                        return FusedTraversal.Walk.CONTINUE
+                    }
+                }, AbstractSyntaxTree.Literal)
+                .walk(ast)
+        new FusedTraversal()
+                .add([visitStatements: { visited++; FusedTraversal.Walk.SKIP_SUBTREE }] as AbstractSyntaxTreeVisitor, AbstractSyntaxTree.Node)
+                .walk(ast)
+
+        then:
+        outsideLoops == ["local", "a", "1", "4", "local", "c", "5", "local", "d", "6"]
+        everywhere == ["local", "a", "1", "2", "local", "b", "3", "4", "local", "c", "5", "local", "d", "6"]
+        visited == 1
+    }
+}
@@ -0,0 +1,51 @@
+package com.github.razorapid.morpheus.lang.ast.visitors
+
+import com.github.razorapid.morpheus.lang.Source
+import com.github.razorapid.morpheus.lang.ast.AbstractSyntaxTreeVisitor
+import com.github.razorapid.morpheus.lang.cst.visitors.CstToAstVisitor
+import com.github.razorapid.morpheus.lang.lexer.Lexer
+import com.github.razorapid.morpheus.lang.parser.Parser
+import spock.lang.Specification
+
+import java.util.concurrent.ForkJoinPool
+
+import static com.github.razorapid.morpheus.lang.ParserFixtures.loadScr
+
+class ParallelVisitorSpec extends Specification {
+
+    def "parallel visitor merges the results of thread sections in the order of the statements"() {
+        setup:
+        def source = new Source("test_script.scr", (0..<2000).collect { "thread$it local.x:\nlocal.a = local.x + $it\nwait 1\nend\n" }.join())
+        def ast = new CstToAstVisitor().visit(new Parser(source, new Lexer(source).scan()).parse())
+        def visitor = [
+                visitThreadLabel   : { [it.identifier().lexeme()] },
+                visitExpressionStmt: { [it.start().line()] }
+        ] as AbstractSyntaxTreeVisitor
+        def pool = new ForkJoinPool(4)
+
+        when:
+        def result = new ParallelVisitor(visitor, [], { a, b -> a + b }).visit(ast, pool)
+
+        then:
+        result == ast.program().statements().collectMany { it.accept(visitor) }
+        result.size() == 8000
+        result.take(4) == ["thread0", 2, 3, 4]
+
+        cleanup:
+        pool.shutdown()
+    }
+
+    def "parallel visitor visits scripts as a sequential visit"() {
+        setup:
+        def source = new Source(script, loadScr(script, "scripts"))
+        def ast = new CstToAstVisitor().visit(new Parser(source, new Lexer(source).scan()).parse())
+        def visitor = AbstractSyntaxTreeVisitor.methods.collectEntries { [it.name, { node -> [node.start()] }] } as AbstractSyntaxTreeVisitor
+
+        expect:
+        new ParallelVisitor(visitor, [], { a, b -> a + b }).visit(ast, ForkJoinPool.commonPool()) ==
+                ast.program().statements().collectMany { it.accept(visitor) }
+
+        where:
+        script << (0..13).collect { "${it}_test".toString() }
+    }
+}
@@ -0,0 +1,30 @@
+package com.github.razorapid.morpheus.lang.ast.visitors
+
+import com.github.razorapid.morpheus.lang.Source
+import com.github.razorapid.morpheus.lang.cst.visitors.CstToAstVisitor
+import com.github.razorapid.morpheus.lang.lexer.Lexer
+import com.github.razorapid.morpheus.lang.parser.Parser
+import spock.lang.Specification
+
+import static com.github.razorapid.morpheus.lang.ParserFixtures.loadScr
+
+class ScriptPrinterSpec extends Specification {
+
+    def "script printer prints scripts that parse to the same tree"() {
+        setup:
+        def source = new Source(script, loadScr(script, "scripts"))
+        def ast = new CstToAstVisitor().visit(new Parser(source, new Lexer(source).scan()).parse())
+
+        when:
+        def printed = new ScriptPrinter().print(ast)
+        def printedSource = new Source(script, printed)
+        def reparsed = new CstToAstVisitor().visit(new Parser(printedSource, new Lexer(printedSource).scan()).parse())
+
+        then:
+        new ScriptPrinter().print(reparsed) == printed
+        reparsed.spanIndex().size() == ast.spanIndex().size()
+
+        where:
+        script << (0..13).collect { "${it}_test".toString() }
+    }
+}
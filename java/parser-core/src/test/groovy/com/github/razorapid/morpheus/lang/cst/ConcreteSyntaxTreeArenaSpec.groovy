@@ -0,0 +1,101 @@
+package com.github.razorapid.morpheus.lang.cst
+
+import com.github.razorapid.morpheus.lang.Source
+import com.github.razorapid.morpheus.lang.TreeCursor
+import com.github.razorapid.morpheus.lang.cst.visitors.CstToAstVisitor
+import com.github.razorapid.morpheus.lang.lexer.Lexer
+import com.github.razorapid.morpheus.lang.parser.Parser
+import groovy.transform.CompileStatic
+import spock.lang.Specification
+
+import java.lang.management.ManagementFactory
+
+import static com.github.razorapid.morpheus.lang.ParserFixtures.assertCstAsExpected
+import static com.github.razorapid.morpheus.lang.ParserFixtures.countNodes
+import static com.github.razorapid.morpheus.lang.ParserFixtures.loadScr
+import static com.github.razorapid.morpheus.lang.ParserFixtures.loadXml
+import static com.github.razorapid.morpheus.lang.cst.ConcreteSyntaxTree.NodeType.COMPOUND_STATEMENT
+import static com.github.razorapid.morpheus.lang.cst.ConcreteSyntaxTree.NodeType.GROUPING_EXPRESSION
+
+class ConcreteSyntaxTreeArenaSpec extends Specification {
+
+    def "flattens scripts into an arena backed tree"() {
+        setup:
+        def source = new Source(script, loadScr(script, "scripts"))
+        def expectedCst = new Parser(source, new Lexer(source).scan()).parse()
+
+        when:
+        def arena = ConcreteSyntaxTreeArena.of(expectedCst)
+        def streamedArena = ConcreteSyntaxTreeArena.of(new Parser(source, new Lexer(source).scan()).statements())
+
+        then:
+        arena.tree() == expectedCst
+        streamedArena.tree() == expectedCst
+        assertCstAsExpected(arena.tree(), loadXml(script, 'scripts'))
+        new CstToAstVisitor().visit(arena.tree()) == new CstToAstVisitor().visit(expectedCst)
+
+        where:
+        script << (0..13).collect { "${it}_test".toString() }
+    }
+
+    def "arena keeps node spans"() {
+        setup:
+        def source = new Source("test_script.scr", "main:\n  local.x = (1 + 2)\nend\n")
+        def cst = new Parser(source, new Lexer(source).scan()).parse()
+
+        when:
+        def arena = ConcreteSyntaxTreeArena.of(cst)
+        def grouping = (0..<arena.size()).find { arena.type(it) == GROUPING_EXPRESSION }
+
+        then:
+        arena.start(0) == 0
+        arena.end(0) == source.source().length()
+        source.source().substring(arena.start(grouping), arena.end(grouping)) == "(1 + 2)"
+        arena.isTerminal(arena.firstChild(grouping))
+        arena.type(arena.nextSibling(arena.firstChild(grouping))) == ConcreteSyntaxTree.NodeType.EXPRESSION
+    }
+
+    def "flattens deeply nested trees into an arena"() {
+        setup:
+        def source = new Source("test_script.scr", "{\n" * 50000 + "}\n" * 50000)
+        def cst = new Parser(source, new Lexer(source).scan()).parse()
+
+        when:
+        def arena = ConcreteSyntaxTreeArena.of(cst)
+
+        then:
+        countNodes(arena.tree(), COMPOUND_STATEMENT) == 50000
+    }
+
+    def "views of the arena keep the views of their children"() {
+        setup:
+        def source = new Source("5_test", loadScr("5_test", "scripts"))
+        def tree = ConcreteSyntaxTreeArena.of(new Parser(source, new Lexer(source).scan()).parse()).tree()
+        def threads = (com.sun.management.ThreadMXBean) ManagementFactory.threadMXBean
+        def cursor = tree.cursor()
+        def nodes = walk(cursor)
+
+        when:
+        def allocated = threads.currentThreadAllocatedBytes
+        walk(cursor)
+        allocated = threads.currentThreadAllocatedBytes - allocated
+        def statements = (tree.program() as ConcreteSyntaxTree.NonTerminalNode).children()
+
+        then:
+        allocated < nodes
+        statements.get(0).is(statements.get(0))
+        tree.program() == new Parser(source, new Lexer(source).scan()).parse().program()
+    }
+
+    /**
+     * Compiled statically, so the walk allocates only what the cursor and the views do
+     */
+    @CompileStatic
+    private static int walk(TreeCursor<?> cursor) {
+        int nodes = 1
+        while (cursor.gotoNext()) {
+            nodes++
+        }
+        return nodes
+    }
+}
@@ -0,0 +1,56 @@
+package com.github.razorapid.morpheus.lang.cst
+
+import com.github.razorapid.morpheus.lang.Source
+import com.github.razorapid.morpheus.lang.SourcePos
+import com.github.razorapid.morpheus.lang.lexer.Lexer
+import com.github.razorapid.morpheus.lang.parser.Parser
+import spock.lang.Specification
+
+import static com.github.razorapid.morpheus.lang.ParserFixtures.assertCstAsExpected
+import static com.github.razorapid.morpheus.lang.ParserFixtures.loadScr
+import static com.github.razorapid.morpheus.lang.ParserFixtures.loadXml
+
+class RedGreenTreeSpec extends Specification {
+
+    def "red-green tree backs the same tree as the parsed one"() {
+        setup:
+        def source = new Source(script, loadScr(script, "scripts"))
+        def expectedCst = new Parser(source, new Lexer(source).scan()).parse()
+
+        when:
+        def red = RedNode.of(expectedCst, new GreenNode.Cache())
+
+        then:
+        red.tree() == expectedCst
+        assertCstAsExpected(red.tree(), loadXml(script, 'scripts'))
+
+        where:
+        script << (0..13).collect { "${it}_test".toString() }
+    }
+
+    def "green nodes are shared by identical subtrees"() {
+        setup:
+        def thread = "main:\n  local.x = 1\n  wait 1\nend\n"
+        def script = thread + "\n" + thread.replace("main", "other")
+        def editedScript = script.replace("wait 1", "wait 2")
+        def cache = new GreenNode.Cache()
+        def source = new Source("test_script.scr", script)
+        def editedSource = new Source("test_script.scr", editedScript)
+
+        when:
+        def red = RedNode.of(new Parser(source, new Lexer(source).scan()).parse(), cache)
+        def nodesOfScript = cache.size()
+        def editedRed = RedNode.of(new Parser(editedSource, new Lexer(editedSource).scan()).parse(), cache)
+        def assignment = red.child(1)
+        def otherAssignment = red.child(5)
+
+        then:
+        assignment.green().is(otherAssignment.green())
+        assignment.start() == new SourcePos(8, 2, 3)
+        otherAssignment.start() == new SourcePos(43, 7, 3)
+        otherAssignment.parent().get().is(red)
+        editedRed.child(1).green().is(assignment.green())
+        !editedRed.child(2).green().is(red.child(2).green())
+        cache.size() - nodesOfScript == 11
+    }
+}
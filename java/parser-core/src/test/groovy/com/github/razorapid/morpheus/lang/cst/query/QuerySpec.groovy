@@ -0,0 +1,90 @@
+package com.github.razorapid.morpheus.lang.cst.query
+
+import com.github.razorapid.morpheus.lang.Source
+import com.github.razorapid.morpheus.lang.cst.ConcreteSyntaxTree
+import com.github.razorapid.morpheus.lang.lexer.Lexer
+import com.github.razorapid.morpheus.lang.parser.Parser
+import spock.lang.Specification
+
+import java.util.concurrent.Executors
+
+import static com.github.razorapid.morpheus.lang.ParserFixtures.countNodes
+import static com.github.razorapid.morpheus.lang.ParserFixtures.loadScr
+import static com.github.razorapid.morpheus.lang.cst.ConcreteSyntaxTree.NodeType.LISTENER_FUNCTION_CALL_EXPRESSION
+import static com.github.razorapid.morpheus.lang.cst.ConcreteSyntaxTree.NodeType.WHILE_STATEMENT
+
+class QuerySpec extends Specification {
+
+    def "query captures every listener call of spawn in while loops"() {
+        setup:
+        def source = new Source("test_script.scr", "main:\nself spawn a\nwhile (1) {\n  local.ent = spawn script_model\n  self foo spawn\n  if (local.x) {\n    level.y spawn b\n  }\n  self spawn c\n}\nend\n")
+        def cst = new Parser(source, new Lexer(source).scan()).parse()
+        def query = Query.compile("""
+            ; listener calls of spawn anywhere in while loops
+            (WHILE_STATEMENT ... (LISTENER_FUNCTION_CALL_EXPRESSION (IDENTIFIER "spawn") @callee) @call) @loop
+        """)
+
+        when:
+        def matches = query.matches(cst)
+
+        then:
+        matches.size() == 2
+        matches*.node()*.type() == [WHILE_STATEMENT, WHILE_STATEMENT]
+        matches.collect { it.capture("callee").value().pos().line() } == [7, 9]
+        matches.every { it.capture("call").type() == LISTENER_FUNCTION_CALL_EXPRESSION && it.capture("loop").is(it.node()) }
+    }
+
+    def "query of a node type matches every node of the type"() {
+        setup:
+        def source = new Source(script, loadScr(script, "scripts"))
+        def cst = new Parser(source, new Lexer(source).scan()).parse()
+        def index = NodeTypeIndex.of(cst)
+
+        expect:
+        ConcreteSyntaxTree.NodeType.values().each { type ->
+            assert index.count(type) == countNodes(cst, type)
+            assert Query.compile("($type)").matches(index).size() == countNodes(cst, type)
+        }
+
+        where:
+        script << (0..13).collect { "${it}_test".toString() }
+    }
+
+    def "rejects invalid queries"() {
+        when:
+        Query.compile(query)
+
+        then:
+        def e = thrown(IllegalArgumentException)
+        e.message == message
+
+        where:
+        query              || message
+        ''                 || 'Invalid query at 0: expected a pattern'
+        '(FOO)'            || "Invalid query at 1: unknown node type 'FOO'"
+        '(WHILE_STATEMENT' || "Invalid query at 16: expected ')'"
+        '"spawn'           || 'Invalid query at 0: unterminated string'
+        'IDENTIFIER'       || "Invalid query at 0: expected '(' before IDENTIFIER"
+        '... (IDENTIFIER)' || "Invalid query at 0: top-level pattern can't be a descendant"
+        '(_) @'            || 'Invalid query at 5: expected a capture name'
+    }
+
+    def "matches query against a corpus of scripts in parallel"() {
+        setup:
+        def corpus = (0..13).collect { new Source("${it}_test.scr", loadScr("${it}_test", "scripts")) }
+        def query = Query.compile('(IDENTIFIER) @id (THREAD_FUNCTION_CALL_EXPRESSION) @thread')
+        def executor = Executors.newFixedThreadPool(4)
+
+        when:
+        def matches = query.matchAll(corpus, executor)
+
+        then:
+        matches.keySet() as List == corpus
+        corpus.each { source ->
+            assert matches[source] == query.matches(new Parser(source, new Lexer(source).scan()).parse())
+        }
+
+        cleanup:
+        executor.shutdown()
+    }
+}
@@ -0,0 +1,69 @@
+package com.github.razorapid.morpheus.lang.cst.visitors
+
+import com.github.razorapid.morpheus.lang.Source
+import com.github.razorapid.morpheus.lang.TokenType
+import com.github.razorapid.morpheus.lang.ast.AbstractSyntaxTree
+import com.github.razorapid.morpheus.lang.lexer.Lexer
+import com.github.razorapid.morpheus.lang.parser.Parser
+import spock.lang.Specification
+
+import static com.github.razorapid.morpheus.lang.ParserFixtures.loadScr
+
+class CstToAstLoweringSpec extends Specification {
+
+    def "lowering builds the same abstract syntax tree as the visitor"() {
+        setup:
+        def source = new Source(script, loadScr(script, "scripts"))
+
+        expect:
+        [
+                new Parser(source, new Lexer(source).scan()).parse(),
+                Parser.compact(source, new Lexer(source).scan()).parse(),
+                new Parser(source, new Lexer(source).scan()).parseOutline()
+        ].each { cst ->
+            assert new CstToAstLowering().lower(cst) == new CstToAstVisitor().visit(cst)
+        }
+
+        where:
+        script << (0..13).collect { "${it}_test".toString() }
+    }
+
+    def "lowers for loops with and without an initializer"() {
+        setup:
+        def source = new Source("test_script.scr", "for (local.i = 0; local.i < 3; local.i++) wait 1\nfor (; local.j < 3; ) wait 1\n")
+        def cst = new Parser(source, new Lexer(source).scan()).parse()
+
+        when:
+        def loops = new CstToAstVisitor().visit(cst).program().statements()
+
+        then:
+        loops*.class == [AbstractSyntaxTree.ForLoop, AbstractSyntaxTree.ForLoop]
+        loops[0].initializer() instanceof AbstractSyntaxTree.ExpressionStmt
+        loops[1].initializer() == null
+        new CstToAstLowering().lower(cst) == new CstToAstVisitor().visit(cst)
+    }
+
+    def "lowers unary operators of expressions to prefix operations"() {
+        setup:
+        def source = new Source("test_script.scr", "local.a = ${script}\n")
+        def cst = new Parser(source, new Lexer(source).scan()).parse()
+
+        when:
+        def ast = new CstToAstVisitor().visit(cst)
+        def expression = ast.program().statements()[0].expression().rhs()
+
+        then:
+        new CstToAstLowering().lower(cst) == ast
+        expression instanceof AbstractSyntaxTree.PrefixOp
+        expression.operator().type() == operator
+        !(expression.rhs() instanceof AbstractSyntaxTree.PrefixOp)
+
+        where:
+        script        || operator
+        "-1"          || TokenType.TOKEN_NEG
+        "-local.b"    || TokenType.TOKEN_NEG
+        "!local.c"    || TokenType.TOKEN_NOT
+        "~3"          || TokenType.TOKEN_COMPLEMENT
+        "\$local.d"   || TokenType.TOKEN_DOLLAR
+    }
+}
@@ -0,0 +1,52 @@
+package com.github.razorapid.morpheus.lang.cst.visitors
+
+import com.github.razorapid.morpheus.lang.Source
+import com.github.razorapid.morpheus.lang.Token
+import com.github.razorapid.morpheus.lang.ast.visitors.DotAstGraphWriter
+import com.github.razorapid.morpheus.lang.lexer.Lexer
+import com.github.razorapid.morpheus.lang.parser.Parser
+import spock.lang.Specification
+
+import static com.github.razorapid.morpheus.lang.ParserFixtures.loadScr
+
+class DotGraphWriterSpec extends Specification {
+
+    def "writes dot graphs of scripts with sequential node ids"() {
+        setup:
+        def source = new Source(script, loadScr(script, "scripts"))
+        def cst = new Parser(source, new Lexer(source).scan()).parse()
+        def ast = new CstToAstVisitor().visit(cst)
+        def xml = new XmlPrinterVisitor(false).visit(cst)
+        def cstDot = new StringWriter()
+        def astDot = new StringWriter()
+
+        when:
+        def cstNodes = new DotGraphWriter().write(cst, cstDot)
+        def astNodes = new DotAstGraphWriter().write(ast, astDot)
+
+        then:
+        cstNodes == ["<Statement", "<Expression", "<Token", "<Error"].sum { xml.count(it) }
+        [[cstDot.toString(), cstNodes], [astDot.toString(), astNodes]].each { dot, nodes ->
+            def lines = dot.readLines()
+            assert lines.first() == 'digraph "program" {' && lines.last() == '}'
+            assert lines.findAll { it ==~ /n\d+ \[.*/ }.collect { it.substring(1, it.indexOf(' ')) as int } == (0..<nodes).toList()
+            assert lines.count { it ==~ /n\d+ -> n\d+/ } == nodes - 1
+        }
+
+        where:
+        script << (0..13).collect { "${it}_test".toString() }
+    }
+
+    def "writes dot graphs of deeply nested trees"() {
+        setup:
+        def source = new Source("test_script.scr", "{\n" * 10000 + "}\n" * 10000)
+        def cst = new Parser(source, new Lexer(source).scan()).parse()
+        def dot = new StringBuilder()
+
+        when:
+        new DotGraphWriter().write(cst, dot)
+
+        then:
+        (dot =~ /label="compoundStatement"/).size() == 10000
+    }
+}
@@ -0,0 +1,41 @@
+package com.github.razorapid.morpheus.lang.cst.visitors
+
+import com.github.razorapid.morpheus.lang.Source
+import com.github.razorapid.morpheus.lang.lexer.Lexer
+import com.github.razorapid.morpheus.lang.parser.Parser
+import spock.lang.Specification
+
+import static com.github.razorapid.morpheus.lang.ParserFixtures.loadScr
+
+class XmlPrinterVisitorSpec extends Specification {
+
+    def "writes the same xml to a writer as it prints"() {
+        setup:
+        def source = new Source(script, loadScr(script, "scripts"))
+        def cst = new Parser(source, new Lexer(source).scan()).parse()
+        def printer = new XmlPrinterVisitor(includeLineAndCol)
+        def writer = new StringWriter()
+
+        when:
+        printer.write(cst, writer)
+
+        then:
+        writer.toString() == printer.visit(cst)
+
+        where:
+        [script, includeLineAndCol] << [(0..13).collect { "${it}_test".toString() }, [true, false]].combinations()
+    }
+
+    def "writes xml of deeply nested trees"() {
+        setup:
+        def source = new Source("test_script.scr", "{\n" * 10000 + "}\n" * 10000)
+        def cst = new Parser(source, new Lexer(source).scan()).parse()
+        def xml = new StringBuilder()
+
+        when:
+        new XmlPrinterVisitor(false).write(cst, xml)
+
+        then:
+        (xml =~ /<Statement name="compoundStatement">/).size() == 10000
+    }
+}
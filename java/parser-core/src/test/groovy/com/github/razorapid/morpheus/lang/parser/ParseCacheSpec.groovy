@@ -0,0 +1,112 @@
+package com.github.razorapid.morpheus.lang.parser
+
+import com.github.razorapid.morpheus.lang.Source
+import com.github.razorapid.morpheus.lang.lexer.Lexer
+import spock.lang.Specification
+
+import java.nio.file.Files
+import java.util.concurrent.Callable
+import java.util.concurrent.CountDownLatch
+import java.util.concurrent.Executors
+
+import static com.github.razorapid.morpheus.lang.ParserFixtures.loadScr
+
+class ParseCacheSpec extends Specification {
+
+    def "parse cache returns scripts from the memory and from the disk"() {
+        setup:
+        def directory = Files.createTempDirectory("morpheus-lang-cache")
+        def source = new Source("test_script.scr", "main:\n  local.x = 1\nend\n")
+        def expectedTokens = new Lexer(source).scan()
+        def expectedCst = new Parser(source, new Lexer(source).scan()).parse()
+        def cache = ParseCache.persistent(1 << 20, directory)
+
+        when:
+        def parsed = cache.parse(source)
+        def remembered = cache.parse(source)
+        def otherCache = ParseCache.persistent(1 << 20, directory)
+        def loaded = otherCache.parse(new Source("copy_of_test_script.scr", source.source()))
+
+        then:
+        parsed.tree() == expectedCst
+        parsed.tokens() == expectedTokens.list()
+        parsed.errors().isEmpty()
+        remembered.tree() == expectedCst
+        loaded.tree() == expectedCst
+        cache.stats().misses() == 1
+        cache.stats().memoryHits() == 1
+        otherCache.stats().diskHits() == 1
+        otherCache.stats().misses() == 0
+
+        cleanup:
+        directory.toFile().deleteDir()
+    }
+
+    def "parse cache parses scripts again whose files on the disk are truncated"() {
+        setup:
+        def directory = Files.createTempDirectory("morpheus-lang-cache")
+        def source = new Source("test_script.scr", "main:\n  local.x = 1\nend\n")
+        def expectedCst = new Parser(source, new Lexer(source).scan()).parse()
+        ParseCache.persistent(1 << 20, directory).parse(source)
+        Files.list(directory).withCloseable { files ->
+            files.forEach { file -> Files.write(file, Files.readAllBytes(file)[0..<(Files.size(file).intdiv(2))] as byte[]) }
+        }
+        def cache = ParseCache.persistent(1 << 20, directory)
+
+        when:
+        def parsed = cache.parse(source)
+
+        then:
+        parsed.tree() == expectedCst
+        cache.stats().diskHits() == 0
+        cache.stats().misses() == 1
+
+        cleanup:
+        directory.toFile().deleteDir()
+    }
+
+    def "parse cache evicts the least recently used scripts from the memory"() {
+        setup:
+        def sources = (0..2).collect { new Source("test_script_${it}.scr", "main:\n  local.x = $it\nend\n") }
+        def entrySize = ParseCache.inMemory(1 << 20).with { it.parse(sources[0]); it.stats().memoryBytes() }
+        def cache = ParseCache.inMemory(entrySize * 2)
+
+        when:
+        cache.parse(sources[0])
+        cache.parse(sources[1])
+        cache.parse(sources[0])
+        cache.parse(sources[2])
+        def evictions = cache.stats().evictions()
+        cache.parse(sources[0])
+        cache.parse(sources[1])
+
+        then:
+        evictions == 1
+        cache.stats().memoryHits() == 2
+        cache.stats().misses() == 4
+        cache.stats().entries() == 2
+    }
+
+    def "concurrent lookups of the same script parse it once"() {
+        setup:
+        def source = new Source("test_script.scr", (0..13).collect { loadScr("${it}_test", "scripts") }.join("\n") * 5)
+        def cache = ParseCache.inMemory(1 << 24)
+        def executor = Executors.newFixedThreadPool(8)
+        def start = new CountDownLatch(1)
+
+        when:
+        def lookups = (1..8).collect {
+            executor.submit({ start.await(); cache.parse(source).tree() } as Callable)
+        }
+        start.countDown()
+        def trees = lookups*.get()
+
+        then:
+        trees.every { it == trees[0] }
+        cache.stats().misses() == 1
+        cache.stats().joined() + cache.stats().memoryHits() == 7
+
+        cleanup:
+        executor.shutdown()
+    }
+}
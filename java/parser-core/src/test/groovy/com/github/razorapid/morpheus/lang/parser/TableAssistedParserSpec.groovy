@@ -0,0 +1,194 @@
+package com.github.razorapid.morpheus.lang.parser
+
+import com.github.razorapid.morpheus.lang.Source
+import com.github.razorapid.morpheus.lang.Token
+import com.github.razorapid.morpheus.lang.TokenType
+import com.github.razorapid.morpheus.lang.Tokens
+import com.github.razorapid.morpheus.lang.cst.ConcreteSyntaxTree
+import com.github.razorapid.morpheus.lang.lexer.Lexer
+import groovy.io.FileType
+import spock.lang.Specification
+
+import static com.github.razorapid.morpheus.lang.ParserFixtures.assertCstAsExpected
+import static com.github.razorapid.morpheus.lang.ParserFixtures.countNodes
+import static com.github.razorapid.morpheus.lang.ParserFixtures.loadScr
+import static com.github.razorapid.morpheus.lang.ParserFixtures.loadXml
+import static com.github.razorapid.morpheus.lang.cst.ConcreteSyntaxTree.NodeType.COMPOUND_STATEMENT
+import static com.github.razorapid.morpheus.lang.cst.ConcreteSyntaxTree.NodeType.ERROR
+import static com.github.razorapid.morpheus.lang.cst.ConcreteSyntaxTree.NodeType.GROUPING_EXPRESSION
+
+class TableAssistedParserSpec extends Specification {
+
+    def "table assisted parser parses scripts to the same tree as the parser"() {
+        setup:
+        def source = new Source(script, loadScr(script, "scripts"))
+        def expectedCst = new Parser(source, new Lexer(source).scan()).parse()
+        def parser = new TableAssistedParser(source, new Lexer(source).scan())
+
+        when:
+        def cst = parser.parse()
+
+        then:
+        cst == expectedCst
+        assertCstAsExpected(cst, loadXml(script, 'scripts'))
+
+        where:
+        script << (0..13).collect { "${it}_test".toString() }
+    }
+
+    def "table assisted parser parses statements and expressions to the same tree as the parser"() {
+        setup:
+        def source = new Source("test_script.scr", script)
+        def expectedCst = new Parser(source, new Lexer(source).scan()).parse()
+        def parser = new TableAssistedParser(source, new Lexer(source).scan())
+
+        when:
+        def cst = parser.parse()
+
+        then:
+        cst == expectedCst
+
+        where:
+        script                                                         || _
+        "local.i = 1 + 2 * 3 - 4 && 5 <= 6 | 7 % 8"                    || _
+        "local.i = -exec local_thread"                                 || _
+        "local.i = -local.x foo 1 2"                                   || _
+        "println abc::~\$players.size[2]"                              || _
+        "local.x = ( -(1 + 2) \$(1 + 2) -(1))"                         || _
+        "local.x = (getclientnum \$player[local.i] == local.id)"       || _
+        "local.x = makeArray\n10 20 30\na b c\nendArray"               || _
+        "main local.a:\nif (local.a) x; else\n{\ny\n}\nend"            || _
+        "for (local.i = 0; local.i < 10; local.i++) {\nbreak\n}"       || _
+        "switch (local.x) {\ncase -1:\ncase \"a\" local.b:\nend\n}"    || _
+        "try {\nlocal.x.case = \$a.size\n} catch {\ncontinue\n}"       || _
+        "local.x = 1 + )\nlocal.y = 2"                                 || _
+        "if (1) x\n} else y"                                           || _
+    }
+
+    def "table assisted parser leaves deeply nested statement lines to the parser"() {
+        setup:
+        def source = new Source("test_script.scr", script)
+        def parser = new TableAssistedParser(source, new Lexer(source).scan())
+
+        when:
+        def cst = parser.parse()
+
+        then:
+        countNodes(cst, nodeType) == count
+        countNodes(cst, ERROR) == 0
+
+        where:
+        script                                                     | nodeType            || count
+        "{\n" * 50000 + "}\n" * 50000                               | COMPOUND_STATEMENT  || 50000
+        "local.x = " + "(" * 50000 + "1" + ")" * 50000              | GROUPING_EXPRESSION || 50000
+    }
+
+    def "table assisted parser parses the tokens of every parser fixture to the same tree as the parser"() {
+        setup:
+        def tokens = fixtureTokens(loadXml(fixture))
+        def source = new Source(fixture, "")
+        def parser = new TableAssistedParser(source, Tokens.of(tokens))
+
+        when:
+        def expected = parsedOrThrown { new Parser(source, Tokens.of(tokens)).parse() }
+        def actual = parsedOrThrown { parser.parse() }
+
+        then:
+        actual == expected
+        !(actual instanceof ConcreteSyntaxTree) || parser.fallbacks() == linesWithErrors(actual)
+
+        where:
+        fixture << parserFixtures()
+    }
+
+    def "table assisted parser parses randomly mutated tokens of the scripts to the same tree as the parser"() {
+        setup:
+        def scripts = (0..13).collect {
+            def source = new Source("${it}_test", loadScr("${it}_test", "scripts"))
+            new Lexer(source).scan().list()
+        }
+        def vocabulary = scripts.flatten().findAll { it.type() != TokenType.TOKEN_EOF }
+        def mutations = 0
+        def fallbacks = 0
+        def mismatchedSeeds = []
+
+        when:
+        for (seed in 0..<1000) {
+            def random = new Random(seed)
+            def tokens = new ArrayList<Token>(scripts[random.nextInt(scripts.size())])
+            def mutated = 1 + random.nextInt(3)
+            mutated.times {
+                def i = random.nextInt(tokens.size() - 1)
+                switch (random.nextInt(3)) {
+                    case 0:
+                        tokens.remove(i)
+                        break
+                    case 1:
+                        tokens.add(i, vocabulary[random.nextInt(vocabulary.size())])
+                        break
+                    default:
+                        tokens.set(i, vocabulary[random.nextInt(vocabulary.size())])
+                }
+            }
+            mutations += mutated
+
+            def source = new Source("fuzzed_${seed}.scr", "")
+            def parser = new TableAssistedParser(source, Tokens.of(tokens))
+            def expected = parsedOrThrown { new Parser(source, Tokens.of(tokens)).parse() }
+            def actual = parsedOrThrown { parser.parse() }
+            if (actual != expected) {
+                mismatchedSeeds << seed
+            } else if (actual instanceof ConcreteSyntaxTree) {
+                fallbacks += parser.fallbacks()
+            }
+        }
+
+        then:
+        mismatchedSeeds.isEmpty()
+        fallbacks > 0
+        fallbacks < mutations / 2
+    }
+
+    /**
+     * Names of the xml fixtures of the parser, relative to the parser resources and without the extension
+     */
+    private static List<String> parserFixtures() {
+        def root = new File(TableAssistedParserSpec.getResource("/parser").toURI())
+        def fixtures = []
+        root.eachFileRecurse(FileType.FILES) {
+            if (it.name.endsWith(".xml")) {
+                fixtures << (root.toPath().relativize(it.toPath()).toString().replace(File.separator, "/") - ".xml")
+            }
+        }
+        return fixtures.sort()
+    }
+
+    /**
+     * Tokens of the tree of the xml fixture, in order, followed by the end of the script.
+     * The fixtures don't keep the newlines that the parser skips, so the tokens aren't the tokens of the script itself,
+     * but both parsers get the same ones.
+     */
+    private static List<Token> fixtureTokens(String xml) {
+        def tokens = []
+        (xml =~ /<Token type="(TOKEN_\w+)" value="([^"]*)"\/>/).each { match, type, value ->
+            tokens << Token.of(TokenType.valueOf(type), value, tokens.size(), 1, tokens.size() + 1)
+        }
+        tokens << Token.of(TokenType.TOKEN_EOF, "", tokens.size(), 1, tokens.size() + 1)
+        return tokens
+    }
+
+    /**
+     * @return the tree, or the class of the exception the parser threw
+     */
+    private static Object parsedOrThrown(Closure<ConcreteSyntaxTree> parse) {
+        try {
+            return parse()
+        } catch (RuntimeException e) {
+            return e.class
+        }
+    }
+
+    private static int linesWithErrors(ConcreteSyntaxTree cst) {
+        return cst.program().children().count { countNodes(new ConcreteSyntaxTree(it), ConcreteSyntaxTree.ErrorNode) > 0 }
+    }
+}
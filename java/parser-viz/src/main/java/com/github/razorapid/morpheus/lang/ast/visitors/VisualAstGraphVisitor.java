@@ -1,5 +1,6 @@
 package com.github.razorapid.morpheus.lang.ast.visitors;
 
+import com.github.razorapid.morpheus.lang.Escapes;
 import com.github.razorapid.morpheus.lang.Token;
 import com.github.razorapid.morpheus.lang.ast.AbstractSyntaxTree;
 import guru.nidi.graphviz.attribute.Label;
@@ -7,7 +8,6 @@ import guru.nidi.graphviz.attribute.Shape;
 import guru.nidi.graphviz.model.Graph;
 import guru.nidi.graphviz.model.Node;
 import com.github.razorapid.morpheus.lang.ast.AbstractSyntaxTreeVisitor;
-import org.apache.commons.lang3.StringEscapeUtils;
 
 import java.util.List;
 import java.util.Objects;
@@ -271,9 +271,7 @@ public class VisualAstGraphVisitor implements AbstractSyntaxTreeVisitor<Node> {
     }
 
     private String escape(String s){
-        return StringEscapeUtils.escapeHtml4(
-                StringEscapeUtils.escapeJava(s).replace("\\\"", "\"")
-        ).replace("]", "&#93;");
+        return Escapes.javaHtml(s);
     }
 
     private String escapeTokenName(String s){
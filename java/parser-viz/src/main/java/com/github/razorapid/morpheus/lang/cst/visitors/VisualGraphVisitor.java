@@ -1,12 +1,12 @@
 package com.github.razorapid.morpheus.lang.cst.visitors;
 
+import com.github.razorapid.morpheus.lang.Escapes;
 import com.github.razorapid.morpheus.lang.cst.ConcreteSyntaxTree;
 import com.github.razorapid.morpheus.lang.cst.ConcreteSyntaxTreeVisitor;
 import guru.nidi.graphviz.attribute.Label;
 import guru.nidi.graphviz.attribute.Shape;
 import guru.nidi.graphviz.model.Graph;
 import guru.nidi.graphviz.model.Node;
-import org.apache.commons.lang3.StringEscapeUtils;
 
 import java.util.Objects;
 import java.util.UUID;
@@ -94,9 +94,7 @@ public class VisualGraphVisitor implements ConcreteSyntaxTreeVisitor<Node> {
     }
 
     private String escape(String s){
-        return StringEscapeUtils.escapeHtml4(
-                StringEscapeUtils.escapeJava(s).replace("\\\"", "\"")
-        ).replace("]", "&#93;");
+        return Escapes.javaHtml(s);
     }
 
     private String escapeTokenName(String s){